@@ -0,0 +1,71 @@
+package pokerclient.controller;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Frames messages for the wire. Each frame is a four byte big-endian length
+ * followed by that many bytes of payload, so a reader can tell where one
+ * message ends without parsing it. The payload is one message as Protocol
+ * writes it.
+ */
+public final class Frames {
+
+	/**
+	 * Bytes in the length prefix.
+	 */
+	public static final int HEADER_SIZE = 4;
+
+	/**
+	 * Largest payload accepted. Anything bigger is taken to be a corrupt
+	 * stream.
+	 */
+	public static final int MAX_FRAME_SIZE = 1 << 20;
+
+	private Frames() {
+	}
+
+	/**
+	 * Checks a length read from a prefix.
+	 *
+	 * @param length length to check
+	 * @throws IOException if the length can't be a frame's
+	 */
+	public static void checkLength(int length) throws IOException {
+		if (length < 0 || length > MAX_FRAME_SIZE) {
+			throw new IOException("Bad frame length " + length);
+		}
+	}
+
+	/**
+	 * Writes a frame to a blocking stream and flushes it.
+	 *
+	 * @param out stream to write to
+	 * @param frame frame to write, as Protocol encodes it
+	 * @throws IOException if the write fails
+	 */
+	public static void write(OutputStream out, ByteBuffer frame)
+			throws IOException {
+		out.write(frame.array(), frame.arrayOffset() + frame.position(),
+				frame.remaining());
+		out.flush();
+	}
+
+	/**
+	 * Reads one frame from a blocking stream.
+	 *
+	 * @param in stream to read from
+	 * @return payload of the frame
+	 * @throws IOException if the read fails or the frame is bad
+	 */
+	public static ByteBuffer read(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		checkLength(length);
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+		return ByteBuffer.wrap(payload);
+	}
+
+}
@@ -1,14 +1,20 @@
 package pokerclient.controller;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
 
 import pokerclient.gui.GameView;
+import pokerclient.model.Action;
 import pokerclient.model.GameSettings;
+import pokerclient.model.ThreadMode;
 
 public class GameClient implements PropertyChangeListener, Runnable {
 	
@@ -18,14 +24,26 @@ public class GameClient implements PropertyChangeListener, Runnable {
 	private static final String PASS = "supersecret";
 	
 	private static final String USAGE =
-			"Usage: java GameClient host port playerName pathToAvatar";	
+			"Usage: java GameClient host port[:table] playerName pathToAvatar";	
 	private Socket socket;
 	private GameView view;
-	private ObjectInputStream in;
-	private ObjectOutputStream out;
+	private DataInputStream in;
+	private OutputStream out;
+	private StateStream states = new StateStream();
+	
+	/**
+	 * Held while a frame is written. A lock rather than a monitor, so a
+	 * reading thread that is virtual doesn't pin its carrier in the write.
+	 */
+	private final ReentrantLock sendLock = new ReentrantLock();
 
 	public GameClient(String host, int port, String name, String path) {
-		this(host, port, name, path,
+		this(host, port, JoinSettings.DEFAULT_TABLE, name, path);
+	}
+	
+	public GameClient(String host, int port, int tableId, String name,
+			String path) {
+		this(host, port, tableId, name, path,
 				new GameSettings(GameServer.DEFAULT_STACK, GameServer.DEFAULT_BB,
 						GameServer.DEFAULT_SB, GameServer.DEFAULT_ANTE,
 						GameServer.DEFAULT_TIME_BANK,
@@ -33,8 +51,18 @@ public class GameClient implements PropertyChangeListener, Runnable {
 						GameServer.DEFAULT_TOP_OFF));
 	}
 	
-	public GameClient(String host, int port, String name, String path, 
-			GameSettings settings) {
+	/**
+	 * Connects to a server and joins a table.
+	 * 
+	 * @param host server's host
+	 * @param port server's port
+	 * @param tableId table to join, which a server with one table ignores
+	 * @param name player's name
+	 * @param path path of the player's avatar
+	 * @param settings settings of the table
+	 */
+	public GameClient(String host, int port, int tableId, String name,
+			String path, GameSettings settings) {
 		// TODO - make sure that the view gets updated if the server says that
 		// the BB or time bank is different.
 		view = new GameView(this, name, settings.getTimebank(),
@@ -45,8 +73,9 @@ public class GameClient implements PropertyChangeListener, Runnable {
 		view.run();
 		try {
 			socket = new Socket(host, port);
-			initializeOutStream(name, path);
-			new Thread(this).start();
+			initializeOutStream(name, path, tableId);
+			ThreadMode.getConfigured().newThread(this, "client-" + name)
+					.start();
 			System.out.println(host + "\t" + port);
 		} catch (UnknownHostException e) {
 			e.printStackTrace();
@@ -61,14 +90,13 @@ public class GameClient implements PropertyChangeListener, Runnable {
 	 *  Establish connection and write name and avatar path. Will terminate on
 	 *  error.
 	 */
-	private void initializeOutStream(String name, String path) {
+	private void initializeOutStream(String name, String path, int tableId) {
 		try {
-			out = new ObjectOutputStream(socket.getOutputStream());
+			out = new BufferedOutputStream(socket.getOutputStream());
 			if (path.equals(NULL_PATH)) {
 				path = DEFAULT_PATH;
 			}
-			out.writeObject(new JoinSettings(name, path));
-			out.flush();
+			send(Protocol.encodeJoin(new JoinSettings(name, path, tableId)));
 		} catch (IOException e) {
 			e.printStackTrace();
 			System.exit(1);
@@ -78,31 +106,51 @@ public class GameClient implements PropertyChangeListener, Runnable {
 	public void run() {
 		// TODO - can this be at the end of the constructor?
         try {
-            in = new ObjectInputStream((socket.getInputStream()));
+            in = new DataInputStream(new BufferedInputStream(
+            		socket.getInputStream()));
         } catch (IOException e) {
             e.printStackTrace();
         }
 		while (true) {
 			try {
-				PropertyChangeEvent pce = (PropertyChangeEvent) in.readObject();
-				view.propertyChange(pce);
+				PropertyChangeEvent pce = Protocol.decodeEvent(Frames.read(in),
+						this, states);
+				if (states.takeResyncRequest()) {
+					send(Protocol.encodeResync());
+				}
+				if (pce != null) {
+					view.propertyChange(pce);
+				}
 			} catch (IOException e) {
 				// TODO - terminate?
 				e.printStackTrace();
-			} catch (ClassNotFoundException e) {
-				// TODO - terminate?
-				e.printStackTrace();
 			}
 		}
 	}
 	
 	public static void main(String[] args) {
-		if (args.length == 3) {
-			new GameClient(args[0], Integer.parseInt(args[1]), args[2], NULL_PATH);
-		} else if (args.length == 4) {
-			new GameClient(args[0], Integer.parseInt(args[1]), args[2], args[3]);
-		} else {
+		if (args.length < 3 || args.length > 4) {
 			System.err.println(USAGE);
+			return;
+		}
+		// A table host takes the table after the port: 10071:12.
+		String[] address = args[1].split(":", 2);
+		int port = Integer.parseInt(address[0]);
+		int tableId = address.length == 2 ? Integer.parseInt(address[1])
+				: JoinSettings.DEFAULT_TABLE;
+		new GameClient(args[0], port, tableId, args[2],
+				args.length == 4 ? args[3] : NULL_PATH);
+	}
+
+	/**
+	 * Sends a frame to the server. Both the view and the reading thread send.
+	 */
+	private void send(ByteBuffer frame) throws IOException {
+		sendLock.lock();
+		try {
+			Frames.write(out, frame);
+		} finally {
+			sendLock.unlock();
 		}
 	}
 
@@ -110,8 +158,7 @@ public class GameClient implements PropertyChangeListener, Runnable {
 	public void propertyChange(PropertyChangeEvent evt) {
 		if (evt.getPropertyName().equals(GameView.PLAYER_ACTION)) {
 			try {
-				out.writeObject(evt.getNewValue());
-                out.flush();
+				send(Protocol.encodeAction((Action) evt.getNewValue()));
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -2,83 +2,327 @@ package pokerclient.controller;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.concurrent.locks.ReentrantLock;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import pokerclient.model.Action;
 import pokerclient.model.GameModel;
 import pokerclient.model.Player;
 
+/**
+ * State of one client connection. The worker has no thread: the
+ * SelectorServer calls readFrames and writeFrames when the socket is ready,
+ * and sendChange only queues a frame. A connection belongs to no table until
+ * its first frame says which one to join.
+ */
 // TODO - refactor; unclear if the playing variable is needed since it doesn't
 // seem possible for a player to reconnect.
-public class GameClientWorker implements Runnable {
-	
-	private ObjectInputStream in;
-	private ObjectOutputStream out;
+public class GameClientWorker {
+
+	/**
+	 * Size the read buffer starts at. It grows to fit larger frames.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+
+	private SocketChannel channel;
+	private SelectorServer server;
+	private SelectionKey key;
+	private ByteBuffer readBuffer;
+
+	/**
+	 * Frames waiting to be written, oldest first. The head may be partly
+	 * written.
+	 */
+	private OutboundQueue outbound;
+
+	/**
+	 * True once the queue has overflowed and the connection is to be closed.
+	 */
+	private volatile boolean overflowed;
+
+	/**
+	 * True while the queue is deep enough to report the client as lagging.
+	 */
+	private final AtomicBoolean lagging = new AtomicBoolean();
+
+	/**
+	 * True while the worker is queued with the server for writing.
+	 */
+	private AtomicBoolean writeRequested;
+
+	/**
+	 * Game state the client was last sent, as it saw it. The next one is
+	 * sent as changes to this. Only touched under the server's state lock.
+	 */
+	private GameState lastState;
+
+	private TableRouter router;
+
+	/**
+	 * Table the client joined, and its model. Null until it joins.
+	 */
+	private GameServer table;
+	private GameModel model;
 	private Player player;
 	private PropertyChangeListener listener;
-	private boolean playing;
-	  
-	  GameClientWorker(Socket socket, GameModel model,
-			  ReentrantLock workersLock, ArrayList<GameClientWorker> workers,
-			  PropertyChangeListener listener) throws IOException, ClassNotFoundException {
+	private volatile boolean playing;
+
+	  GameClientWorker(SocketChannel channel, SelectorServer server,
+			  TableRouter router, OutboundQueue outbound) {
 		  System.out.println("GCW start");
-		  this.out = new ObjectOutputStream(socket.getOutputStream());
-		  this.in = new ObjectInputStream(socket.getInputStream());
-		  JoinSettings settings = (JoinSettings) in.readObject();
-	      this.player = new Player(settings.getName(), settings.getAvatarPath(),
-	    		  model.getSettings(), model);
-	      System.out.println("New player: " + settings.getName() + " \t" + settings.getAvatarPath());
+		  this.channel = channel;
+		  this.server = server;
+		  this.router = router;
+		  readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		  this.outbound = outbound;
+		  writeRequested = new AtomicBoolean();
+	  }
 
-	      this.listener = listener;
+	  /**
+	   * Reads what has arrived and handles every complete frame. Runs on the
+	   * selector thread.
+	   *
+	   * @throws IOException if the connection is closed or sends a bad frame
+	   */
+	  void readFrames() throws IOException {
+		  if (channel.read(readBuffer) < 0) {
+			  throw new EOFException();
+		  }
+		  readBuffer.flip();
+		  while (readBuffer.remaining() >= Frames.HEADER_SIZE) {
+			  int start = readBuffer.position();
+			  int length = readBuffer.getInt(start);
+			  Frames.checkLength(length);
+			  if (readBuffer.remaining() < Frames.HEADER_SIZE + length) {
+				  break;
+			  }
+			  ByteBuffer payload = readBuffer.duplicate();
+			  payload.position(start + Frames.HEADER_SIZE);
+			  payload.limit(start + Frames.HEADER_SIZE + length);
+			  readBuffer.position(payload.limit());
+			  handleFrame(payload);
+		  }
+		  readBuffer.compact();
+		  if (!readBuffer.hasRemaining()) {
+			  // A frame bigger than the buffer is on its way.
+			  ByteBuffer bigger = ByteBuffer.allocate(Math.min(
+					  2 * readBuffer.capacity(),
+					  Frames.MAX_FRAME_SIZE + Frames.HEADER_SIZE));
+			  readBuffer.flip();
+			  bigger.put(readBuffer);
+			  readBuffer = bigger;
+		  }
+	  }
+
+	  /**
+	   * The first frame from a client says who is joining; every one after
+	   * that is an action.
+	   */
+	  private void handleFrame(ByteBuffer payload) throws IOException {
+		  Protocol.Type type = Protocol.readType(payload);
+		  if (player == null) {
+			  if (type != Protocol.Type.JOIN) {
+				  throw new IOException("Expected to be told who is joining");
+			  }
+			  join(Protocol.decodeJoin(payload));
+		  } else if (type == Protocol.Type.ACTION) {
+			  model.submitAction(player,
+					  Protocol.decodeAction(payload, player.getName()));
+		  } else if (type == Protocol.Type.RESYNC) {
+			  requestState();
+		  }
+	  }
+
+	  /**
+	   * Asks the server to send the client the whole of the latest game state.
+	   */
+	  private void requestState() {
+		  listener.propertyChange(new PropertyChangeEvent(this,
+				  GameServer.RESYNC_REQUESTED, null, player));
+	  }
+
+	  private void join(JoinSettings settings) throws IOException {
+		  try {
+			  // Checked before a table is started for the client.
+			  JoinSettings.checkName(settings.getName());
+			  router.join(this, settings);
+		  } catch (IOException e) {
+			  // Tells the client why before the selector closes the
+			  // connection. The frame is small enough for the empty socket
+			  // buffer, so one write sends it.
+			  System.out.println("Turned away " + settings.getName() + ": "
+					  + e.getMessage());
+			  channel.write(Protocol.encodeError(e.getMessage()));
+			  throw e;
+		  }
+		  requestState();
+	  }
+
+	  /**
+	   * Seats the client at a table. Called by the router while it handles
+	   * the join.
+	   *
+	   * @param table table to join
+	   * @param settings who the client is
+	   * @return false if the name is taken at the table, in which case the
+	   * client isn't seated
+	   */
+	  boolean seat(GameServer table, JoinSettings settings) {
+		  GameModel model = table.getModel();
+		  Player player = new Player(settings.getName(),
+				  settings.getAvatarPath(), model.getSettings(), model);
+		  if (!model.addPlayer(player)) {
+			  return false;
+		  }
+		  this.table = table;
+		  this.model = model;
+		  this.player = player;
+		  listener = table;
+	      System.out.println("New player: " + settings.getName() + " \t" + settings.getAvatarPath());
 		  playing = true;
 
-          model.addPlayer(player);
-          workersLock.lock();
-	      workers.add(this);
-	      workersLock.unlock();
-	  }
-	  
-	  public void run(){
-		 while (playing) {
-		   try {
-		    	Action action = null;
-		    	action = (Action) in.readObject();
-		    	if (player.getName().equals(action.getPlayerName())) {
-		    		  player.acceptAction(action);
-				}
-		   } catch (ClassNotFoundException e) {
-			   e.printStackTrace();
-		   } catch (IOException e) {
-			   System.out.println("Player " + player.getName() + " exited.");
-			   player.fold();
-	    	   playing = false;
-			   listener.propertyChange(new PropertyChangeEvent(this, 
-					   GameServer.PLAYER_QUIT, null, player));
-	       }
-		 }
-	  }
-	  
+          table.addWorker(this);
+          return true;
+	  }
+
+	  /**
+	   * Writes queued frames until they are all out or the socket is full.
+	   * Runs on the selector thread.
+	   *
+	   * @return true if nothing is left to write
+	   * @throws IOException if the connection is closed
+	   */
+	  boolean writeFrames() throws IOException {
+		  ByteBuffer frame;
+		  while ((frame = outbound.peek()) != null) {
+			  channel.write(frame);
+			  if (frame.hasRemaining()) {
+				  return false;
+			  }
+			  outbound.remove();
+		  }
+		  return true;
+	  }
+
+	  /**
+	   * Closes the connection after it failed or ended. Runs on the selector
+	   * thread.
+	   */
+	  void close() {
+		  try {
+			  channel.close();
+		  } catch (IOException e) {
+			  e.printStackTrace();
+		  }
+		  outbound.clear();
+		  if (player == null) {
+			  return;
+		  }
+		  System.out.println("Player " + player.getName() + " exited.");
+		  if (playing) {
+			  playing = false;
+			  listener.propertyChange(new PropertyChangeEvent(this,
+					  GameServer.PLAYER_QUIT, null, player));
+		  }
+	  }
+
+	  void setKey(SelectionKey key) {
+		  this.key = key;
+	  }
+
+	  SelectionKey getKey() {
+		  return key;
+	  }
+
+	  GameState getLastState() {
+		  return lastState;
+	  }
+
+	  void setLastState(GameState state) {
+		  lastState = state;
+	  }
+
+	  void clearWriteRequest() {
+		  writeRequested.set(false);
+	  }
+
+	  /**
+	   * True if the client fell too far behind and must be disconnected.
+	   */
+	  boolean isOverflowed() {
+		  return overflowed;
+	  }
+
+	  /**
+	   * Returns the queue of frames waiting for the client, whose numbers show
+	   * how far behind it is.
+	   *
+	   * @return outbound queue
+	   */
+	  public OutboundQueue getQueue() {
+		  return outbound;
+	  }
+
 	  public void setPlaying(boolean b) {
 		  playing = b;
 	  }
-	  
+
 	  public Player getPlayer() {
 		  return player;
 	  }
-	  
-	  public void sendChange(PropertyChangeEvent evt) {
-		  if (playing) {
-			 try {
-	            out.writeObject(evt);
-	            out.flush();
-			} catch (IOException e) {
-				System.out.println("IO Error: connection closed");
-			}
+
+	  /**
+	   * Returns the table the client joined.
+	   *
+	   * @return table, or null before the client joins
+	   */
+	  public GameServer getTable() {
+		  return table;
+	  }
+
+	  /**
+	   * Queues an encoded event for the client. Safe to call from any thread;
+	   * the write happens on the selector thread. The frame may be shared with
+	   * other workers, so it is never changed; the queue writes from its own
+	   * view of the bytes. If the queue has no room the connection is closed.
+	   *
+	   * @param frame frame to send
+	   * @param kind what the frame carries
+	   */
+	  public void sendFrame(ByteBuffer frame, OutboundQueue.Kind kind) {
+		  if (!playing || overflowed) {
+			  return;
+		  }
+		  if (!outbound.offer(frame, kind)) {
+			  System.out.println("Player " + player.getName()
+					  + " fell too far behind: " + outbound);
+			  overflowed = true;
+		  } else {
+			  reportLag();
+		  }
+		  if (writeRequested.compareAndSet(false, true)) {
+			  server.requestWrite(this);
+		  }
+	  }
+
+	  /**
+	   * Logs the client once when its queue passes three quarters full, and
+	   * again after it has caught up. Takes no lock, as table threads call
+	   * it and the log may block.
+	   */
+	  private void reportLag() {
+		  int depth = outbound.getDepth();
+		  int capacity = outbound.getCapacity();
+		  if (depth >= capacity * 3 / 4 && lagging.compareAndSet(false, true)) {
+			  System.out.println("Player " + player.getName()
+					  + " is lagging: " + outbound);
+		  } else if (depth <= capacity / 4
+				  && lagging.compareAndSet(true, false)) {
+			  System.out.println("Player " + player.getName()
+					  + " caught up: " + outbound);
 		  }
 	  }
 
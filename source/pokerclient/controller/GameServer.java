@@ -1,72 +1,158 @@
 package pokerclient.controller;
 
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.event.AdjustmentEvent;
-import java.awt.event.AdjustmentListener;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintStream;
-import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.locks.ReentrantLock;
 
-import javax.swing.BorderFactory;
-import javax.swing.JFrame;
-import javax.swing.JScrollPane;
-import javax.swing.JTextArea;
-import javax.swing.SwingUtilities;
-
+import pokerclient.gui.GameView;
+import pokerclient.gui.ServerConsole;
 import pokerclient.model.GameModel;
 import pokerclient.model.GameSettings;
 import pokerclient.model.Player;
 
-public class GameServer implements PropertyChangeListener, Runnable {
+/**
+ * One table and its clients. Run on its own, a GameServer listens on a port
+ * of its own, and may open a ServerConsole tailing the log; a TableHost
+ * makes one for each of the tables behind its port instead. Nothing here
+ * touches AWT unless a console is asked for.
+ */
+public class GameServer implements PropertyChangeListener, Runnable,
+		TableRouter {
 	
 	public static final String PLAYER_QUIT = "A player quit";
     public static final String REMOVE_ABSENT_PLAYERS = "Remove all the missing players";
+	public static final String RESYNC_REQUESTED = "A client needs a full state";
 
 	public static final int DEFAULT_BB = 10;
 	public static final int DEFAULT_SB = 5;
 	public static final int DEFAULT_ANTE = 0;
 	public static final int DEFAULT_STACK = 2000;
-	public static final int DEFAULT_FRAME_WIDTH = 400;
-	public static final int DEFAULT_FRAME_HEIGHT = 400;
 	public static final int DEFAULT_TIME_BANK = 500 * 1000;
 	public static final boolean DEFAULT_TOP_OFF = true;
 	public static final int DEFAULT_MAX_PLAYERS = 6;
+	
+	/**
+	 * System property with the most frames queued for one client.
+	 */
+	public static final String QUEUE_CAPACITY_PROPERTY =
+			"pokerclient.queuecapacity";
+	
+	/**
+	 * System property naming the OverflowPolicy for full client queues.
+	 */
+	public static final String OVERFLOW_POLICY_PROPERTY =
+			"pokerclient.overflowpolicy";
+	
+	public static final int DEFAULT_QUEUE_CAPACITY = 256;
+	public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY =
+			OverflowPolicy.COALESCE;
     
-	private ServerSocket server;
+	private SelectorServer server;
 	private ArrayList<GameClientWorker> workers;
 	private GameModel model;
-	private JTextArea messageDisplay;     
-	private boolean shouldScroll;
+	
+	/**
+	 * Host of the table, or null if the server runs on its own.
+	 */
+	private TableHost host;
+	private int tableId;
 	
 	private ReentrantLock workersLock = new ReentrantLock();
 	
+	/**
+	 * Held while game states are numbered and queued, so that every client
+	 * gets them in order. Taken before workersLock, never after.
+	 */
+	private ReentrantLock stateLock = new ReentrantLock();
+	
+	/**
+	 * Sequence number of the latest game state.
+	 */
+	private int stateSequence;
+	
+	/**
+	 * Latest game state, with nothing hidden, and the update it was for.
+	 * Null before the first one.
+	 */
+	private GameState latestState;
+	private String latestUpdate;
+	
+	/**
+	 * Latest game state as a client without cards sees it.
+	 */
+	private GameState latestPublicState;
+	
+	/**
+	 * Starts a table listening on a port, logging through the installed
+	 * ServerLog.
+	 * 
+	 * @param port port to listen on
+	 * @param frameName title of a console tailing the log, or null to run
+	 * headless
+	 */
 	public GameServer(int port, String frameName) {
+		ServerLog log = ServerLog.getInstalled();
+		if (frameName != null) {
+			new ServerConsole(log, frameName, true);
+		}
 		initModel(port);
-		initGUI(frameName);
-		redirectSystemStreams();
 	}
 	
 	public GameServer(int port) {
 		this(port, Integer.toString(port));
 	}
 	
+	/**
+	 * Makes a table of a host. The host serves its connections and starts
+	 * the model.
+	 * 
+	 * @param host host of the table
+	 * @param tableId id of the table
+	 * @param model the table's model
+	 */
+	GameServer(TableHost host, int tableId, GameModel model) {
+		this.host = host;
+		this.tableId = tableId;
+		this.model = model;
+		model.setPropertyChangeListener(this);
+		workers = new ArrayList<GameClientWorker>();
+	}
+	
+	/**
+	 * Returns the settings every table is made with.
+	 * 
+	 * @return default settings
+	 */
+	public static GameSettings defaultSettings() {
+		return new GameSettings(DEFAULT_STACK, DEFAULT_BB, DEFAULT_SB,
+				DEFAULT_ANTE, DEFAULT_TIME_BANK, DEFAULT_MAX_PLAYERS,
+				DEFAULT_TOP_OFF);
+	}
+	
+	/**
+	 * Makes the outbound queue for a new client, as the system properties
+	 * configure it.
+	 * 
+	 * @return empty queue
+	 */
+	static OutboundQueue newOutboundQueue() {
+		return new OutboundQueue(Integer.getInteger(QUEUE_CAPACITY_PROPERTY,
+				DEFAULT_QUEUE_CAPACITY), OverflowPolicy.valueOf(
+				System.getProperty(OVERFLOW_POLICY_PROPERTY,
+						DEFAULT_OVERFLOW_POLICY.name())));
+	}
+	
 	private void initModel(int port) {
-		GameSettings settings = new GameSettings(DEFAULT_STACK, DEFAULT_BB,
-				DEFAULT_SB, DEFAULT_ANTE, DEFAULT_TIME_BANK,
-				DEFAULT_MAX_PLAYERS, DEFAULT_TOP_OFF);
-		model = new GameModel(settings, port);
+		tableId = port;
+		model = new GameModel(defaultSettings(), port);
 		model.setPropertyChangeListener(this);
 		try {
-			server = new ServerSocket(port);
+			server = new SelectorServer(port, this);
 		} catch (IOException e) {
 			e.printStackTrace();
 			System.exit(1);
@@ -75,112 +161,112 @@ public class GameServer implements PropertyChangeListener, Runnable {
 		new Thread(this).start();
 	}
 	
-	private void initGUI(String serverName) {
-		JFrame displayFrame = new JFrame("Server" + " - " + serverName);
-		displayFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		displayFrame.getContentPane().add(makeScrollPane());
-		displayFrame.setPreferredSize(
-				new Dimension(DEFAULT_FRAME_WIDTH, DEFAULT_FRAME_HEIGHT));
-        displayFrame.pack();
-        displayFrame.setVisible(true);
+	/**
+	 * Starts the table and serves the connections on this thread.
+	 */
+	public void run(){
+		model.start();
+		server.run();
 	}
-	
-	private JScrollPane makeScrollPane() {
-		messageDisplay = new JTextArea();
-		messageDisplay.setEditable(false);
-		messageDisplay.setLineWrap(true);
-		messageDisplay.setWrapStyleWord(true);
-		
-		JScrollPane chatScrollPane = new JScrollPane(messageDisplay);
-		chatScrollPane.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-		controlScrolling(chatScrollPane);
-		return chatScrollPane;
+
+	/**
+	 * Makes the worker for a new connection. Called on the selector thread.
+	 * 
+	 * @param channel the connection
+	 * @return worker for the connection
+	 */
+	@Override
+	public GameClientWorker newWorker(SocketChannel channel) {
+		return new GameClientWorker(channel, server, this,
+				newOutboundQueue());
 	}
 
 	/**
-	 * Avoids scrolling down when reading the logs.
-	 * @param chatScrollPane the pane for which scrolling should be limited.
+	 * Seats every client at this table, whichever table it asked for.
 	 */
-	private void controlScrolling(JScrollPane chatScrollPane) {
-		messageDisplay.addMouseListener(new 
-				MouseAdapter() {
-			public void mouseEntered(MouseEvent evt) {
-				shouldScroll = false;
-			}
-			public void mouseExited(MouseEvent evt) {
-				shouldScroll = true;
-			}
-		});
-		chatScrollPane.getVerticalScrollBar().addMouseListener(new 
-				MouseAdapter() {
-			public void mouseEntered(MouseEvent evt) {
-				shouldScroll = false;
-			}
-			public void mouseExited(MouseEvent evt) {
-				shouldScroll = true;
-			}
-		});
-		chatScrollPane.getVerticalScrollBar().addAdjustmentListener(
-			new AdjustmentListener() {
-				public void adjustmentValueChanged(AdjustmentEvent e) {
-					if (shouldScroll) {
-						e.getAdjustable().setValue(e.getAdjustable().getMaximum());
-					}
-				}
-		});
+	@Override
+	public void join(GameClientWorker worker, JoinSettings settings)
+			throws IOException {
+		seat(worker, settings);
 	}
-	
-	private void updateTextArea(final String text) {
-	  SwingUtilities.invokeLater(new Runnable() {
-	    public void run() {
-	      messageDisplay.append(text);
-	    }
-	  });
-	}
-		  
-	private void redirectSystemStreams() {  
-	  OutputStream out = new OutputStream() {  
-	    @Override  
-	    public void write(int b) throws IOException {  
-	      updateTextArea(String.valueOf((char) b));  
-	    }
-	  
-	    @Override  
-	    public void write(byte[] b, int off, int len) throws IOException {  
-	      updateTextArea(new String(b, off, len));
-	    }  
-	  
-	    @Override  
-	    public void write(byte[] b) throws IOException {  
-	      write(b, 0, b.length);  
-	    }  
-	  };  
-	  
-	  System.setOut(new PrintStream(out, true));  
-	  System.setErr(new PrintStream(out, true));  
-	}  
 
-	public void run(){
-		new Thread(model).start();
-		while (true) {
-			try {
-				System.out.println("server accepting");
-				GameClientWorker w = new GameClientWorker(server.accept(), model, workersLock, workers, this);
-				Thread t = new Thread(w);
-				t.start();
-			} catch (IOException e) {
-				e.printStackTrace();
-				System.exit(1);
-			} catch (ClassNotFoundException e) {
-				e.printStackTrace();
-				System.exit(1);
+	/**
+	 * Seats a client at this table, unless its name is taken here.
+	 * 
+	 * @param worker worker of the client
+	 * @param settings who the client is
+	 * @throws IOException if the name is taken
+	 */
+	void seat(GameClientWorker worker, JoinSettings settings)
+			throws IOException {
+		if (!worker.seat(this, settings)) {
+			throw new IOException("The name " + settings.getName()
+					+ " is taken at table " + tableId);
+		}
+	}
+
+	/**
+	 * Adds a seated client to those sent the table's events.
+	 * 
+	 * @param gcw worker of the client
+	 */
+	void addWorker(GameClientWorker gcw) {
+		workersLock.lock();
+		try {
+			workers.add(gcw);
+		} finally {
+			workersLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of clients at the table.
+	 * 
+	 * @return clients sent the table's events
+	 */
+	int getWorkerCount() {
+		workersLock.lock();
+		try {
+			return workers.size();
+		} finally {
+			workersLock.unlock();
+		}
+	}
+
+	public GameModel getModel() {
+		return model;
+	}
+
+	public int getTableId() {
+		return tableId;
+	}
+
+	/**
+	 * Describes every client's outbound queue, to see who is lagging.
+	 * 
+	 * @return one line per client
+	 */
+	public String getQueueReport() {
+		StringBuilder report = new StringBuilder();
+		workersLock.lock();
+		try {
+			for (GameClientWorker gcw : workers) {
+				report.append(gcw.getPlayer().getName()).append(": ")
+						.append(gcw.getQueue()).append("\n");
 			}
+		} finally {
+			workersLock.unlock();
 		}
+		return report.toString();
 	}
 
   	protected void finalize(){
   		// Objects created in run method are finalized when program terminates
   		// and thread exits
+  		if (server == null) {
+  			// The host's, not ours to close.
+  			return;
+  		}
   		try{
 	        server.close();
 	    } catch (IOException e) {
@@ -191,23 +277,186 @@ public class GameServer implements PropertyChangeListener, Runnable {
   	
   	private boolean isGameModelMessage(String s) {
   		return !s.equals(GameServer.PLAYER_QUIT) && 
-  				!s.equals(GameServer.REMOVE_ABSENT_PLAYERS);
+  				!s.equals(GameServer.REMOVE_ABSENT_PLAYERS) &&
+  				!s.equals(GameServer.RESYNC_REQUESTED);
+  	}
+
+  	/**
+  	 * True for the updates that show the hands still in to everyone.
+  	 */
+  	private boolean revealsHands(String s) {
+  		return s.equals(GameView.GENERATE_GUI_ALL_IN) ||
+  				s.equals(GameView.GENERATE_GUI_SHOWDOWN);
   	}
 
 	// Lock should be held before calling this
 	@Override
 	public void propertyChange(PropertyChangeEvent evt) {
-		workersLock.lock();
 		if (isGameModelMessage(evt.getPropertyName())) {
-			for (GameClientWorker gcw : workers) {
-				gcw.sendChange(evt);
+			broadcast(evt);
+			return;
+		}
+		if (evt.getPropertyName().equals(GameServer.RESYNC_REQUESTED)) {
+			resync((GameClientWorker) evt.getSource());
+			return;
+		}
+		workersLock.lock();
+		try {
+			if (evt.getPropertyName().equals(GameServer.PLAYER_QUIT)) {
+				removePlayer(evt);
+			} else if (evt.getPropertyName().equals(
+					GameServer.REMOVE_ABSENT_PLAYERS)) {
+				removeAbsentPlayers(evt);
 			}
-		} else if (evt.getPropertyName().equals(GameServer.PLAYER_QUIT)) {
-			removePlayer(evt);
-		} else if (evt.getPropertyName().equals(GameServer.REMOVE_ABSENT_PLAYERS)) {
-			removeAbsentPlayers(evt);
+		} finally {
+			workersLock.unlock();
+		}
+		if (host != null) {
+			// Not under workersLock, which the host takes after its own.
+			host.closeIfEmpty(this);
 		}
-		workersLock.unlock();
+	}
+
+	/**
+	 * Sends an event to every client. It is encoded once for all the clients
+	 * who see the same thing, and they share the bytes.
+	 * 
+	 * @param evt event to send
+	 */
+	private void broadcast(PropertyChangeEvent evt) {
+		try {
+			if (evt.getNewValue() instanceof GameState) {
+				broadcastState(evt.getPropertyName(),
+						(GameState) evt.getNewValue());
+				return;
+			}
+			ByteBuffer frame = Protocol.encodeEvent(evt);
+			OutboundQueue.Kind kind =
+					evt.getPropertyName().equals(GameView.UPDATE_CHAT) ?
+					OutboundQueue.Kind.CHAT : OutboundQueue.Kind.EVENT;
+			for (GameClientWorker gcw : copyWorkers()) {
+				gcw.sendFrame(frame, kind);
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println("Could not encode " + evt.getPropertyName()
+					+ ": " + e.getMessage());
+		}
+	}
+
+	private ArrayList<GameClientWorker> copyWorkers() {
+		workersLock.lock();
+		try {
+			return new ArrayList<GameClientWorker>(workers);
+		} finally {
+			workersLock.unlock();
+		}
+	}
+
+	/**
+	 * Numbers a game state and sends each client the changes from the last
+	 * state it was sent, or the whole state if it has none to build on or
+	 * its queue had no room for the changes. The
+	 * clients who see the public state and were all sent the last one share
+	 * one encoding of the changes; a player holding cards only they can see
+	 * gets their own.
+	 * 
+	 * @param update the GUI update the state is for
+	 * @param state state to send, with nothing hidden
+	 */
+	private void broadcastState(String update, GameState state) {
+		stateLock.lock();
+		try {
+			ArrayList<GameClientWorker> audience = copyWorkers();
+			boolean showdown = revealsHands(update);
+			GameState lastPublic = latestPublicState;
+			stateSequence++;
+			latestState = state;
+			latestUpdate = update;
+			latestPublicState = state.forAudience(GameState.NO_SEAT,
+					showdown);
+			ByteBuffer publicDelta = null;
+			boolean publicDeltaTaken = false;
+			ByteBuffer publicState = null;
+			for (GameClientWorker gcw : audience) {
+				GameState view = viewFor(gcw, state, showdown);
+				GameState last = gcw.getLastState();
+				boolean isPublic = view == latestPublicState;
+				ByteBuffer delta = null;
+				if (last != null) {
+					if (isPublic && last == lastPublic) {
+						if (!publicDeltaTaken) {
+							publicDelta = Protocol.encodeDelta(update,
+									stateSequence, last, view);
+							publicDeltaTaken = true;
+						}
+						delta = publicDelta;
+					} else {
+						delta = Protocol.encodeDelta(update, stateSequence,
+								last, view);
+					}
+				}
+				if (delta != null) {
+					gcw.sendFrame(delta, OutboundQueue.Kind.DELTA);
+					// A delta that didn't fit is sent again as the whole
+					// state, which takes the place of the ones queued.
+					if (!gcw.getQueue().takeStateLost()) {
+						gcw.setLastState(view);
+						continue;
+					}
+				}
+				if (isPublic) {
+					if (publicState == null) {
+						publicState = Protocol.encodeState(update,
+								stateSequence, view);
+					}
+					gcw.sendFrame(publicState, OutboundQueue.Kind.STATE);
+				} else {
+					gcw.sendFrame(Protocol.encodeState(update, stateSequence,
+							view), OutboundQueue.Kind.STATE);
+				}
+				gcw.setLastState(view);
+			}
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends a client the whole of the latest game state, for a client that
+	 * just joined or missed a delta.
+	 * 
+	 * @param gcw worker of the client
+	 */
+	private void resync(GameClientWorker gcw) {
+		stateLock.lock();
+		try {
+			if (latestState == null) {
+				return;
+			}
+			GameState view = viewFor(gcw, latestState,
+					revealsHands(latestUpdate));
+			gcw.sendFrame(Protocol.encodeState(latestUpdate, stateSequence,
+					view), OutboundQueue.Kind.STATE);
+			gcw.setLastState(view);
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a state as one client may see it: with its own cards, unless
+	 * the hands still in are shown to everyone anyway.
+	 */
+	private GameState viewFor(GameClientWorker gcw, GameState state,
+			boolean showdown) {
+		int seat = state.getSeatIndex(gcw.getPlayer());
+		if (!showdown && seat != GameState.NO_SEAT && state.hasCards(seat)) {
+			return state.forAudience(seat, false);
+		}
+		if (state == latestState) {
+			return latestPublicState;
+		}
+		return state.forAudience(GameState.NO_SEAT, showdown);
 	}
 
 	// Lock should be held before calling this
@@ -215,7 +464,8 @@ public class GameServer implements PropertyChangeListener, Runnable {
 		for (int i = 0; i < workers.size(); i++) {
 			GameClientWorker gcw = workers.get(i);
 			Player gcwPlayer = gcw.getPlayer();
-			if (gcwPlayer.equals((Player) evt.getNewValue())) {
+			// The worker's own player: Player.equals compares names.
+			if (gcwPlayer == evt.getNewValue()) {
 				model.sitOutPlayer(gcwPlayer);
 				// TODO - verify that these last two steps are okay.
 				gcw.setPlaying(false);
@@ -233,9 +483,12 @@ public class GameServer implements PropertyChangeListener, Runnable {
 		Iterator<GameClientWorker> workerIter = workers.iterator();
 		while (workerIter.hasNext()) {
 			GameClientWorker worker = workerIter.next();
-			if (absentPlayers.contains(worker.getPlayer())) {
-				worker.setPlaying(false);
-				workerIter.remove();
+			for (Player p : absentPlayers) {
+				if (p == worker.getPlayer()) {
+					worker.setPlaying(false);
+					workerIter.remove();
+					break;
+				}
 			}
 		}
 		model.notifyPlayersRemoved();
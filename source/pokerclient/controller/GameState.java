@@ -1,19 +1,23 @@
 package pokerclient.controller;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 
 import pokerclient.model.Board;
+import pokerclient.model.Card;
 import pokerclient.model.Player;
 import pokerclient.model.Pot;
 
 
 /**
  * Contains information about the state of the game. This is used to update the
- * view with information from the model. 
+ * view with information from the model. Only flat snapshots (seats, pot sizes
+ * and the board) are kept so that the state is cheap to encode.
  */
-public class GameState implements Serializable {
+public class GameState implements Cloneable, Serializable {
 	
 	/**
 	 * Automatically generated serial ID.
@@ -21,14 +25,14 @@ public class GameState implements Serializable {
 	private static final long serialVersionUID = -4184116839027614077L;
 
 	/**
-	 * All the players in the game.
+	 * Snapshots of all the seats in the game.
 	 */
-	private ArrayList<Player> allPlayers;
+	private ArrayList<SeatState> seats;
 	
 	/**
-	 * Pots in the active hand.
+	 * Sizes of the pots in the active hand, main pot first.
 	 */
-	private ArrayList<Pot> pots;
+	private int[] potSizes;
 	
 	/**
 	 * Currently acting player.
@@ -52,41 +56,317 @@ public class GameState implements Serializable {
 	private int stack;
 	private boolean canRaise;
 	private int stableIndex;
-	private ArrayList<Boolean> foldedStatuses; 
+	
+	/**
+	 * Equity of each seat when everyone is all in, indexed by seat. Seats
+	 * out of the hand hold NO_EQUITY. Null when no equities were computed.
+	 */
+	private double[] equities;
+	
+	/**
+	 * Equity of a seat that isn't in the hand.
+	 */
+	public static final double NO_EQUITY = -1;
+	
+	/**
+	 * Seat of a client who isn't playing at the table.
+	 */
+	public static final int NO_SEAT = -1;
+	
+	/**
+	 * Bits of the flags byte on the wire.
+	 */
+	private static final int HAS_ACTIVE = 1;
+	private static final int CHECKABLE = 2;
+	private static final int BETTABLE = 4;
+	private static final int CAN_RAISE = 8;
+	private static final int HAS_EQUITIES = 16;
+	
+	/**
+	 * Creates an empty state for read to fill in.
+	 */
+	private GameState() {
+	}
+	
+	/**
+	 * Creates a state with no active player from its parts, as a delta
+	 * rebuilds it.
+	 */
+	GameState(ArrayList<SeatState> seats, int[] potSizes, Board board,
+			double[] equities) {
+		nullActive = true;
+		this.seats = seats;
+		this.potSizes = potSizes;
+		this.board = board;
+		this.equities = equities;
+	}
+	
+	/**
+	 * Makes the player in a seat the active one. The name and stack are
+	 * taken from the seat.
+	 */
+	void setActive(int seat, int minBet, int maxBet, int toCall,
+			boolean checkable, boolean bettable, boolean canRaise) {
+		nullActive = false;
+		stableIndex = seat;
+		activePlayerName = seats.get(seat).getName();
+		stack = seats.get(seat).getStack();
+		this.minBet = minBet;
+		this.maxBet = maxBet;
+		this.toCall = toCall;
+		this.checkable = checkable;
+		this.bettable = bettable;
+		this.canRaise = canRaise;
+	}
+	
+	int getSeatCount() {
+		return seats.size();
+	}
+	
+	SeatState getSeat(int index) {
+		return seats.get(index);
+	}
+	
+	/**
+	 * Returns a copy of the list of seats, sharing the snapshots.
+	 */
+	ArrayList<SeatState> copySeats() {
+		return new ArrayList<SeatState>(seats);
+	}
+	
+	double[] getEquities() {
+		return equities;
+	}
 	
 	/**
 	 * Creates a new GameState with appropriate parameters.
 	 * 
-	 * @param allPlayers all the players in the game. This should be passed in
-	 * a consistent order in order to keep the players at the same seats each 
-	 * hand.
-	 * @param activePlayer currently active player.
+	 * @param seats snapshots of all the seats in the game. These should be
+	 * passed in a consistent order in order to keep the players at the same
+	 * seats each hand.
 	 * @param pots all the pots the game model has.
 	 * @param board the current board the game model is using.
 	 */
-	public GameState(ArrayList<Player> allPlayers, ArrayList<Pot> pots, Board board) {
+	public GameState(ArrayList<SeatState> seats, ArrayList<Pot> pots,
+			Board board) {
 		nullActive = true;
-		this.allPlayers = new ArrayList<Player>();
-		foldedStatuses = new ArrayList<Boolean>();
-		for (Player p : allPlayers) {
-			Player player = (Player) p.clone();
-			foldedStatuses.add(player.getHand().isFolded());
-			this.allPlayers.add(player);
-		}
-		this.pots = new ArrayList<Pot>();
-		for (Pot p : pots) {
-			this.pots.add((Pot) p.clone());
+		this.seats = seats;
+		potSizes = new int[pots.size()];
+		for (int i = 0; i < potSizes.length; i++) {
+			potSizes[i] = pots.get(i).getSize();
 		}
 		this.board = (Board) board.clone();
 	}
 	
+	/**
+	 * Creates a new GameState for an all in, carrying the equity of each seat.
+	 * 
+	 * @param seats snapshots of all the seats in the game
+	 * @param pots all the pots the game model has
+	 * @param board the current board the game model is using
+	 * @param equities equity of each seat, or NO_EQUITY for seats out of the
+	 * hand
+	 */
+	public GameState(ArrayList<SeatState> seats, ArrayList<Pot> pots,
+			Board board, double[] equities) {
+		this(seats, pots, board);
+		this.equities = equities;
+	}
+	
 	public boolean getFoldedStatus(int index) {
-		return foldedStatuses.get(index);
+		return seats.get(index).isFolded();
+	}
+	
+	/**
+	 * Returns the index of the seat a player sits in.
+	 * 
+	 * @param name name of the player
+	 * @return index of the seat, or NO_SEAT
+	 */
+	public int getSeatIndex(String name) {
+		for (int i = 0; i < seats.size(); i++) {
+			if (seats.get(i).getName().equals(name)) {
+				return i;
+			}
+		}
+		return NO_SEAT;
+	}
+	
+	/**
+	 * Returns the index of the seat of the very player given, for the
+	 * server. States read off the wire don't know their players, so this
+	 * finds no seat in them.
+	 * 
+	 * @param player player at the table
+	 * @return index of the seat, or NO_SEAT
+	 */
+	public int getSeatIndex(Player player) {
+		for (int i = 0; i < seats.size(); i++) {
+			if (player != null && seats.get(i).getPlayer() == player) {
+				return i;
+			}
+		}
+		return NO_SEAT;
 	}
 	
-	public GameState(ArrayList<Player> allPlayers, Player activePlayer,
+	/**
+	 * True if a seat's hole cards are in this state.
+	 * 
+	 * @param index index of the seat
+	 * @return true if the seat's cards are known
+	 */
+	public boolean hasCards(int index) {
+		return seats.get(index).hasCards();
+	}
+	
+	/**
+	 * Returns the state as one client may see it. A client sees its own
+	 * cards, and at a showdown the cards of everyone still in the hand; every
+	 * other hand is turned face down.
+	 * 
+	 * @param viewerSeat seat of the client, or NO_SEAT for a spectator
+	 * @param showdown true if the hands still in are shown to everyone
+	 * @return this state if the client may see all of it, or else a copy
+	 */
+	public GameState forAudience(int viewerSeat, boolean showdown) {
+		ArrayList<SeatState> visible = null;
+		for (int i = 0; i < seats.size(); i++) {
+			SeatState seat = seats.get(i);
+			boolean shown = i == viewerSeat || (showdown && seat.isInHand());
+			if (shown || !seat.hasCards()) {
+				continue;
+			}
+			if (visible == null) {
+				visible = new ArrayList<SeatState>(seats);
+			}
+			visible.set(i, seat.hideHand());
+		}
+		if (visible == null) {
+			return this;
+		}
+		GameState copy = (GameState) clone();
+		copy.seats = visible;
+		return copy;
+	}
+	
+	/**
+	 * Makes a shallow copy of the state.
+	 */
+	public Object clone() {
+		try {
+			return super.clone();
+		} catch (CloneNotSupportedException e) {
+			// Won't occur because this class is Cloneable
+			throw new AssertionError(e);
+		}
+	}
+	
+	/**
+	 * Reads a state written by write.
+	 * 
+	 * @param in buffer positioned at the state
+	 * @return the state
+	 * @throws IOException if the bytes aren't a state
+	 */
+	static GameState read(ByteBuffer in) throws IOException {
+		GameState state = new GameState();
+		int flags = in.get();
+		state.nullActive = (flags & HAS_ACTIVE) == 0;
+		state.checkable = (flags & CHECKABLE) != 0;
+		state.bettable = (flags & BETTABLE) != 0;
+		state.canRaise = (flags & CAN_RAISE) != 0;
+		int seatCount = Protocol.getCount(in);
+		state.seats = new ArrayList<SeatState>(seatCount);
+		for (int i = 0; i < seatCount; i++) {
+			state.seats.add(SeatState.read(in));
+		}
+		state.potSizes = new int[Protocol.getCount(in)];
+		for (int i = 0; i < state.potSizes.length; i++) {
+			state.potSizes[i] = in.getInt();
+		}
+		state.board = new Board();
+		int cardCount = Protocol.getCount(in);
+		for (int i = 0; i < cardCount; i++) {
+			state.board.addCard(Protocol.getCard(in));
+		}
+		if (!state.nullActive) {
+			state.activePlayerName = Protocol.getString(in);
+			state.minBet = in.getInt();
+			state.maxBet = in.getInt();
+			state.toCall = in.getInt();
+			state.stack = in.getInt();
+			state.stableIndex = in.getInt();
+		}
+		if ((flags & HAS_EQUITIES) != 0) {
+			state.equities = new double[Protocol.getCount(in)];
+			for (int i = 0; i < state.equities.length; i++) {
+				state.equities[i] = in.getDouble();
+			}
+		}
+		return state;
+	}
+	
+	/**
+	 * Returns the bytes write takes.
+	 * 
+	 * @return size of the state on the wire
+	 */
+	int wireSize() {
+		int size = 1 + 1 + 1 + 4 * potSizes.length + 1
+				+ board.getCardCount();
+		for (SeatState seat : seats) {
+			size += seat.wireSize();
+		}
+		if (!nullActive) {
+			size += Protocol.sizeOf(activePlayerName) + 5 * 4;
+		}
+		if (equities != null) {
+			size += 1 + 8 * equities.length;
+		}
+		return size;
+	}
+	
+	/**
+	 * Writes the state for the wire.
+	 * 
+	 * @param out buffer to write to
+	 */
+	void write(ByteBuffer out) {
+		out.put((byte) ((nullActive ? 0 : HAS_ACTIVE)
+				| (checkable ? CHECKABLE : 0) | (bettable ? BETTABLE : 0)
+				| (canRaise ? CAN_RAISE : 0)
+				| (equities != null ? HAS_EQUITIES : 0)));
+		Protocol.putCount(out, seats.size());
+		for (SeatState seat : seats) {
+			seat.write(out);
+		}
+		Protocol.putCount(out, potSizes.length);
+		for (int size : potSizes) {
+			out.putInt(size);
+		}
+		Protocol.putCount(out, board.getCardCount());
+		for (Card card : board) {
+			Protocol.putCard(out, card);
+		}
+		if (!nullActive) {
+			Protocol.putString(out, activePlayerName);
+			out.putInt(minBet);
+			out.putInt(maxBet);
+			out.putInt(toCall);
+			out.putInt(stack);
+			out.putInt(stableIndex);
+		}
+		if (equities != null) {
+			Protocol.putCount(out, equities.length);
+			for (double equity : equities) {
+				out.putDouble(equity);
+			}
+		}
+	}
+	
+	public GameState(ArrayList<SeatState> seats, Player activePlayer,
 			ArrayList<Pot> pots, Board board, int stableIndex) {
-		this(allPlayers, pots, board);
+		this(seats, pots, board);
 		this.stableIndex = stableIndex;
 		nullActive = false;
 		this.activePlayerName = activePlayer.getName();
@@ -150,25 +430,41 @@ public class GameState implements Serializable {
 	}
 	
 	/**
-	 * Returns all the players at the table.
+	 * Returns all the seats at the table.
 	 *  
-	 * @return all the players at the table.
+	 * @return all the seats at the table.
 	 */
-	public Iterator<Player> getAllPlayers() {
-		return allPlayers.iterator();
+	public Iterator<SeatState> getAllPlayers() {
+		return seats.iterator();
 	}
 	
 	/**
-	 * Returns all the pots.
+	 * Returns the sizes of all the pots, main pot first.
 	 * 
-	 * @return all the pots
+	 * @return sizes of all the pots
 	 */
-	public Iterator<Pot> getPots() {
-		return pots.iterator();
+	public int[] getPotSizes() {
+		return potSizes;
 	}
 	
-	public ArrayList<Pot> getPotList() {
-		return pots;
+	/**
+	 * Returns true if the state carries an equity for a seat.
+	 * 
+	 * @param index index of the seat
+	 * @return whether the seat has an equity
+	 */
+	public boolean hasEquity(int index) {
+		return equities != null && equities[index] != NO_EQUITY;
+	}
+	
+	/**
+	 * Returns the share of the pots a seat can expect from the runout.
+	 * 
+	 * @param index index of the seat
+	 * @return equity of the seat, from 0 to 1
+	 */
+	public double getEquity(int index) {
+		return equities[index];
 	}
 	
 	/**
@@ -1,5 +1,6 @@
 package pokerclient.controller;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 public class JoinSettings implements Serializable {
@@ -8,12 +9,31 @@ public class JoinSettings implements Serializable {
 	 * Automatically generated serial ID.
 	 */
 	private static final long serialVersionUID = 8346477677754029096L;
+	
+	/**
+	 * Table joined when the client doesn't name one. A server with a single
+	 * table seats everyone there whatever they name.
+	 */
+	public static final int DEFAULT_TABLE = 0;
+	
+	/**
+	 * Longest name a player may take, in characters. Names go into chat
+	 * lines and error frames, so they are kept short.
+	 */
+	public static final int MAX_NAME_LENGTH = 32;
+	
 	public String name;
 	public String avatarPath;
+	public int tableId;
 	
 	public JoinSettings(String name, String avatarPath) {
+		this(name, avatarPath, DEFAULT_TABLE);
+	}
+	
+	public JoinSettings(String name, String avatarPath, int tableId) {
 		this.name = name;
 		this.avatarPath = avatarPath;
+		this.tableId = tableId;
 	}
 
 	public String getName() {
@@ -24,4 +44,46 @@ public class JoinSettings implements Serializable {
 		return avatarPath;
 	}
 	
+	public int getTableId() {
+		return tableId;
+	}
+	
+	/**
+	 * Checks that a name can be shown at a table: 1 to MAX_NAME_LENGTH
+	 * printable characters.
+	 * 
+	 * @param name name a client asked for
+	 * @throws IOException if the name can't be used
+	 */
+	public static void checkName(String name) throws IOException {
+		int length = name.codePointCount(0, name.length());
+		if (length == 0 || length > MAX_NAME_LENGTH) {
+			throw new IOException("Names are 1 to " + MAX_NAME_LENGTH
+					+ " characters long");
+		}
+		for (int i = 0; i < name.length(); ) {
+			int c = name.codePointAt(i);
+			if (!isPrintable(c)) {
+				throw new IOException(String.format(
+						"Names can't contain U+%04X", c));
+			}
+			i += Character.charCount(c);
+		}
+	}
+	
+	private static boolean isPrintable(int c) {
+		switch (Character.getType(c)) {
+		case Character.CONTROL:
+		case Character.FORMAT:
+		case Character.LINE_SEPARATOR:
+		case Character.PARAGRAPH_SEPARATOR:
+		case Character.SURROGATE:
+		case Character.PRIVATE_USE:
+		case Character.UNASSIGNED:
+			return false;
+		default:
+			return true;
+		}
+	}
+	
 }
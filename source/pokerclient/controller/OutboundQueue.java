@@ -0,0 +1,256 @@
+package pokerclient.controller;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Bounded queue of frames waiting to be written to one client. The tables
+ * add frames and the selector thread writes them, so neither ever waits on
+ * the other's socket. When the queue is full its OverflowPolicy decides
+ * what gives way.
+ *
+ * The queue also keeps the numbers that show how far behind a client is.
+ */
+public class OutboundQueue {
+
+	/**
+	 * What a frame carries, which decides whether it may be dropped.
+	 */
+	public enum Kind {
+		/**
+		 * A full game state. A newer one makes it useless.
+		 */
+		STATE,
+		/**
+		 * Changes to the last game state. Useless once a newer full state is
+		 * queued, and useless to the client if any delta before it is lost.
+		 */
+		DELTA,
+		/**
+		 * A chat line. Losing one costs the client a line of text.
+		 */
+		CHAT,
+		/**
+		 * Anything else; never dropped.
+		 */
+		EVENT;
+	}
+
+	private final int capacity;
+
+	private final OverflowPolicy policy;
+
+	private final ArrayDeque<Entry> entries;
+
+	/**
+	 * Bytes in the queue, counting partly written frames in full.
+	 */
+	private long bytes;
+
+	/**
+	 * Most frames the queue has held at once.
+	 */
+	private int maxDepth;
+
+	/**
+	 * Chat frames dropped to make room.
+	 */
+	private long dropped;
+
+	/**
+	 * Game states and deltas replaced by newer ones to make room.
+	 */
+	private long coalesced;
+
+	/**
+	 * True if a delta was dropped since takeStateLost was last called, so
+	 * the client can't follow the deltas queued after it.
+	 */
+	private boolean stateLost;
+
+	/**
+	 * Creates an empty queue.
+	 *
+	 * @param capacity most frames the queue holds
+	 * @param policy what to do when the queue is full
+	 */
+	public OutboundQueue(int capacity, OverflowPolicy policy) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.policy = policy;
+		entries = new ArrayDeque<Entry>();
+	}
+
+	/**
+	 * Adds a frame, making room as the policy allows if the queue is full.
+	 * An incoming chat frame may itself be dropped. So may an incoming delta
+	 * under COALESCE, along with the queued ones; the state is then lost, and
+	 * the client needs a full state next.
+	 *
+	 * @param frame frame to add; not changed by the queue
+	 * @param kind what the frame carries
+	 * @return false if there was no room, so the client must be disconnected
+	 */
+	public synchronized boolean offer(ByteBuffer frame, Kind kind) {
+		if (entries.size() >= capacity) {
+			if (policy == OverflowPolicy.DISCONNECT) {
+				return false;
+			}
+			if (policy == OverflowPolicy.COALESCE && kind == Kind.STATE) {
+				coalesced += removeStates();
+			}
+			if (entries.size() >= capacity) {
+				dropped += removeAll(Kind.CHAT, 1);
+			}
+			if (entries.size() >= capacity) {
+				if (policy == OverflowPolicy.COALESCE && kind == Kind.DELTA) {
+					coalesced += removeStates() + 1;
+					stateLost = true;
+					return true;
+				}
+				if (kind != Kind.CHAT) {
+					return false;
+				}
+				dropped++;
+				return true;
+			}
+		}
+		entries.add(new Entry(frame, kind));
+		bytes += frame.remaining();
+		maxDepth = Math.max(maxDepth, entries.size());
+		return true;
+	}
+
+	/**
+	 * Removes up to a number of queued frames of a kind, oldest first. The
+	 * head is never removed: the selector thread may be writing it.
+	 *
+	 * @return number of frames removed
+	 */
+	private int removeAll(Kind kind, int limit) {
+		int removed = 0;
+		Iterator<Entry> iter = entries.iterator();
+		if (iter.hasNext()) {
+			iter.next();
+		}
+		while (removed < limit && iter.hasNext()) {
+			Entry entry = iter.next();
+			if (entry.kind == kind) {
+				iter.remove();
+				bytes -= entry.size;
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes every queued full state and delta but the head.
+	 *
+	 * @return number of frames removed
+	 */
+	private int removeStates() {
+		return removeAll(Kind.STATE, Integer.MAX_VALUE)
+				+ removeAll(Kind.DELTA, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Tells whether a delta was dropped since the last call, and forgets it.
+	 *
+	 * @return true if the client needs a full state before any more deltas
+	 */
+	public synchronized boolean takeStateLost() {
+		boolean lost = stateLost;
+		stateLost = false;
+		return lost;
+	}
+
+	/**
+	 * Returns the frame to write next without removing it. Only the selector
+	 * thread writes, and it calls remove once the frame is out.
+	 *
+	 * @return oldest frame, or null if the queue is empty
+	 */
+	public synchronized ByteBuffer peek() {
+		Entry head = entries.peek();
+		return head == null ? null : head.frame;
+	}
+
+	/**
+	 * Removes the oldest frame once it has been written.
+	 */
+	public synchronized void remove() {
+		bytes -= entries.remove().size;
+	}
+
+	/**
+	 * Drops every queued frame.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Returns the number of frames waiting.
+	 *
+	 * @return frames in the queue
+	 */
+	public synchronized int getDepth() {
+		return entries.size();
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	public synchronized long getCoalesced() {
+		return coalesced;
+	}
+
+	public synchronized String toString() {
+		return entries.size() + "/" + capacity + " frames, " + bytes
+				+ " bytes, max " + maxDepth + ", dropped " + dropped
+				+ ", coalesced " + coalesced;
+	}
+
+	private static class Entry {
+
+		/**
+		 * The queue's own view of the frame, so that writing it moves no one
+		 * else's position.
+		 */
+		private final ByteBuffer frame;
+
+		private final Kind kind;
+
+		private final int size;
+
+		public Entry(ByteBuffer frame, Kind kind) {
+			this.frame = frame.duplicate();
+			this.kind = kind;
+			this.size = frame.remaining();
+		}
+
+	}
+
+}
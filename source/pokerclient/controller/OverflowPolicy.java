@@ -0,0 +1,29 @@
+package pokerclient.controller;
+
+/**
+ * What a connection's OutboundQueue does when a frame arrives and the queue
+ * is full. Each policy tries everything the one below it does before giving
+ * up on the client.
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * Drops queued game states and deltas that a newer state replaces, then
+	 * chat, and disconnects the client if that isn't enough. A delta that
+	 * doesn't fit is dropped along with the queued ones, and the client is
+	 * sent a full state next.
+	 */
+	COALESCE,
+
+	/**
+	 * Drops chat, oldest first, and disconnects the client if that isn't
+	 * enough.
+	 */
+	DROP,
+
+	/**
+	 * Disconnects the client as soon as its queue is full.
+	 */
+	DISCONNECT;
+
+}
@@ -0,0 +1,616 @@
+package pokerclient.controller;
+
+import java.beans.PropertyChangeEvent;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import pokerclient.gui.GameView;
+import pokerclient.model.Action;
+import pokerclient.model.Card;
+import pokerclient.model.CardSet;
+
+/**
+ * Messages exchanged by GameClient and GameServer, and their binary form.
+ * Every payload starts with the protocol version and the message type, and
+ * the body is written field by field, so a message costs a few bytes per
+ * value and no class descriptors. Nothing is remembered from one message to
+ * the next, so a connection's cost doesn't grow over its life.
+ *
+ * Strings are written as an unsigned two byte length followed by modified
+ * UTF-8, as DataOutput.writeUTF does. Counts are one unsigned byte, and the
+ * other numbers are big-endian ints.
+ */
+public final class Protocol {
+
+	/**
+	 * Version written at the start of every payload. It must change whenever
+	 * a message's layout does, including the order of the enums below.
+	 */
+	public static final int VERSION = 4;
+
+	/**
+	 * The kinds of message, written as their ordinal.
+	 */
+	public enum Type {
+		/**
+		 * A client's name and avatar and the table it joins; the first
+		 * message on a connection.
+		 */
+		JOIN,
+		/**
+		 * An action. A client sends the one it takes; the server sends each
+		 * one taken so the clients can play its sound.
+		 */
+		ACTION,
+		/**
+		 * A full GameState, with its sequence number and the GUI update it
+		 * is for.
+		 */
+		STATE,
+		/**
+		 * A line of hand history for the chat box.
+		 */
+		CHAT,
+		/**
+		 * The seat the button moved to.
+		 */
+		BUTTON,
+		/**
+		 * Milliseconds the acting player has left.
+		 */
+		TIMER,
+		/**
+		 * Changes to the last GameState sent, with the sequence number of
+		 * the state they lead to and the GUI update it is for.
+		 */
+		DELTA,
+		/**
+		 * A client asking for a full state, after it missed a delta.
+		 */
+		RESYNC,
+		/**
+		 * Why the server turned a client away; the last message on the
+		 * connection.
+		 */
+		ERROR;
+	}
+
+	/**
+	 * Bytes of the version and type that start every payload.
+	 */
+	public static final int PAYLOAD_HEADER_SIZE = 2;
+
+	/**
+	 * The GUI updates a STATE message can be for, written as their index.
+	 */
+	private static final String[] STATE_UPDATES = {
+		GameView.GENERATE_GUI_START_OF_TURN,
+		GameView.GENERATE_GUI_START_OF_STREET,
+		GameView.GENERATE_GUI_SHOWDOWN,
+		GameView.GENERATE_GUI_END_OF_HAND,
+		GameView.GENERATE_GUI_ALL_IN,
+		GameView.GENERATE_GUI_PLAYER_JOINED
+	};
+
+	/**
+	 * The events telling clients an action was taken, indexed by the
+	 * ordinal of the action's type.
+	 */
+	private static final String[] ACTIONS_MADE = {
+		GameView.FOLD_MADE,
+		GameView.CHECK_MADE,
+		GameView.CALL_MADE,
+		GameView.BET_MADE,
+		GameView.RAISE_MADE
+	};
+
+	/**
+	 * Largest count written in one byte.
+	 */
+	private static final int MAX_COUNT = 0xFF;
+
+	/**
+	 * Largest string written, in bytes of modified UTF-8.
+	 */
+	private static final int MAX_STRING_SIZE = 0xFFFF;
+
+	/**
+	 * Bytes a string takes besides its characters.
+	 */
+	private static final int STRING_HEADER_SIZE = 2;
+
+	/**
+	 * Card index written for a card with no value, such as a hidden one.
+	 */
+	private static final int NO_CARD = 0x3F;
+
+	private static final int STATUS_SHIFT = 6;
+
+	// values() copies its array on every call, so the decoders use these.
+	private static final Type[] TYPES = Type.values();
+	private static final Action.ActionType[] ACTION_TYPES =
+			Action.ActionType.values();
+	private static final Card.Status[] STATUSES = Card.Status.values();
+
+	private Protocol() {
+	}
+
+	/**
+	 * Encodes a client joining.
+	 *
+	 * @param settings name and avatar of the client and its table
+	 * @return frame, length prefix included
+	 */
+	public static ByteBuffer encodeJoin(JoinSettings settings) {
+		ByteBuffer out = begin(Type.JOIN, sizeOf(settings.getName())
+				+ sizeOf(settings.getAvatarPath()) + 4);
+		putString(out, settings.getName());
+		putString(out, settings.getAvatarPath());
+		out.putInt(settings.getTableId());
+		return finish(out);
+	}
+
+	/**
+	 * Encodes an action a client takes. The player's name isn't sent: the
+	 * server knows who is on each connection.
+	 *
+	 * @param action action to send
+	 * @return frame, length prefix included
+	 */
+	public static ByteBuffer encodeAction(Action action) {
+		Action.ActionType type = action.getAction();
+		boolean sized = type == Action.ActionType.BET
+				|| type == Action.ActionType.RAISE;
+		return encodeAction(type, sized ? action.getSize() : 0);
+	}
+
+	private static ByteBuffer encodeAction(Action.ActionType type, int size) {
+		ByteBuffer out = begin(Type.ACTION, 1 + 4);
+		out.put((byte) type.ordinal());
+		out.putInt(size);
+		return finish(out);
+	}
+
+	/**
+	 * Encodes a full game state for one GUI update.
+	 *
+	 * @param update name of the update, one of the GENERATE_GUI events
+	 * @param seq sequence number of the state
+	 * @param state state to send, as the receiving clients may see it
+	 * @return frame, length prefix included
+	 */
+	public static ByteBuffer encodeState(String update, int seq,
+			GameState state) {
+		ByteBuffer out = begin(Type.STATE, 4 + 1 + state.wireSize());
+		out.putInt(seq);
+		out.put((byte) indexOf(STATE_UPDATES, update));
+		state.write(out);
+		return finish(out);
+	}
+
+	/**
+	 * Encodes a game state as changes to the one the clients had.
+	 *
+	 * @param update name of the update, one of the GENERATE_GUI events
+	 * @param seq sequence number of the new state; the clients must have
+	 * the state numbered one less
+	 * @param previous state the clients had, as they saw it
+	 * @param next state to send, as the clients may see it
+	 * @return frame, length prefix included, or null if the players or
+	 * seats changed and the whole state must be sent
+	 */
+	public static ByteBuffer encodeDelta(String update, int seq,
+			GameState previous, GameState next) {
+		StateDelta delta = StateDelta.between(previous, next);
+		if (delta == null) {
+			return null;
+		}
+		ByteBuffer out = begin(Type.DELTA, 4 + 1 + delta.wireSize());
+		out.putInt(seq);
+		out.put((byte) indexOf(STATE_UPDATES, update));
+		delta.write(out);
+		return finish(out);
+	}
+
+	/**
+	 * Encodes a client asking for a full state.
+	 *
+	 * @return frame, length prefix included
+	 */
+	public static ByteBuffer encodeResync() {
+		return finish(begin(Type.RESYNC, 0));
+	}
+
+	/**
+	 * Encodes why the server turned a client away.
+	 *
+	 * @param reason what to tell the client
+	 * @return frame, length prefix included
+	 */
+	public static ByteBuffer encodeError(String reason) {
+		ByteBuffer out = begin(Type.ERROR, sizeOf(reason));
+		putString(out, reason);
+		return finish(out);
+	}
+
+	/**
+	 * Encodes a line of hand history.
+	 *
+	 * @param line line to send
+	 * @return frame, length prefix included
+	 */
+	public static ByteBuffer encodeChat(String line) {
+		ByteBuffer out = begin(Type.CHAT, sizeOf(line));
+		putString(out, line);
+		return finish(out);
+	}
+
+	/**
+	 * Encodes the button moving.
+	 *
+	 * @param seat seat the button moved to
+	 * @return frame, length prefix included
+	 */
+	public static ByteBuffer encodeButton(int seat) {
+		ByteBuffer out = begin(Type.BUTTON, 1);
+		putCount(out, seat);
+		return finish(out);
+	}
+
+	/**
+	 * Encodes the time the acting player has left.
+	 *
+	 * @param millis milliseconds left
+	 * @return frame, length prefix included
+	 */
+	public static ByteBuffer encodeTimer(int millis) {
+		ByteBuffer out = begin(Type.TIMER, 4);
+		out.putInt(millis);
+		return finish(out);
+	}
+
+	/**
+	 * Encodes an event the model fired for the clients. Game states are
+	 * numbered, so they go through encodeState or encodeDelta instead.
+	 *
+	 * @param evt event to send
+	 * @return frame, length prefix included
+	 * @throws IllegalArgumentException if no message carries the event
+	 */
+	public static ByteBuffer encodeEvent(PropertyChangeEvent evt) {
+		String name = evt.getPropertyName();
+		Object value = evt.getNewValue();
+		if (name.equals(GameView.UPDATE_CHAT)) {
+			return encodeChat((String) value);
+		} else if (name.equals(GameView.UPDATE_BTN)) {
+			return encodeButton(((Integer) value).intValue());
+		} else if (name.equals(GameView.UPDATE_TIMER)) {
+			return encodeTimer(((Integer) value).intValue());
+		}
+		int action = indexOf(ACTIONS_MADE, name);
+		return encodeAction(ACTION_TYPES[action], 0);
+	}
+
+	/**
+	 * Reads the version and type at the start of a payload.
+	 *
+	 * @param payload payload, positioned at its start; left after the type
+	 * @return type of the message
+	 * @throws IOException if the payload isn't of this version
+	 */
+	public static Type readType(ByteBuffer payload) throws IOException {
+		try {
+			int version = payload.get() & 0xFF;
+			if (version != VERSION) {
+				throw new IOException("Unsupported protocol version "
+						+ version);
+			}
+			int type = payload.get() & 0xFF;
+			if (type >= TYPES.length) {
+				throw new IOException("Unknown message type " + type);
+			}
+			return TYPES[type];
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated message", e);
+		}
+	}
+
+	/**
+	 * Decodes the body of a JOIN message.
+	 *
+	 * @param payload payload, positioned after the type
+	 * @return name and avatar of the client and its table
+	 * @throws IOException if the body is malformed
+	 */
+	public static JoinSettings decodeJoin(ByteBuffer payload)
+			throws IOException {
+		try {
+			String name = getString(payload);
+			String avatarPath = getString(payload);
+			return new JoinSettings(name, avatarPath, payload.getInt());
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated message", e);
+		}
+	}
+
+	/**
+	 * Decodes the body of an ACTION message from a client.
+	 *
+	 * @param payload payload, positioned after the type
+	 * @param playerName name of the player on the connection
+	 * @return the action
+	 * @throws IOException if the body is malformed
+	 */
+	public static Action decodeAction(ByteBuffer payload, String playerName)
+			throws IOException {
+		try {
+			return new Action(playerName, getActionType(payload),
+					payload.getInt());
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated message", e);
+		}
+	}
+
+	/**
+	 * Decodes a message from the server as the event the view handles.
+	 *
+	 * @param payload payload, positioned at its start
+	 * @param source source of the event
+	 * @param states states the client has been sent, which full states and
+	 * deltas update
+	 * @return the event, or null for a delta that doesn't follow on from the
+	 * states so far
+	 * @throws IOException if the payload is malformed or not from a server,
+	 * or the server turned the client away
+	 */
+	public static PropertyChangeEvent decodeEvent(ByteBuffer payload,
+			Object source, StateStream states) throws IOException {
+		Type type = readType(payload);
+		try {
+			switch (type) {
+			case ACTION:
+				String made = ACTIONS_MADE[getActionType(payload).ordinal()];
+				payload.getInt();
+				return new PropertyChangeEvent(source, made, "", "");
+			case STATE:
+			case DELTA:
+				int seq = payload.getInt();
+				int update = payload.get() & 0xFF;
+				if (update >= STATE_UPDATES.length) {
+					throw new IOException("Unknown update " + update);
+				}
+				GameState state = type == Type.STATE ?
+						states.snapshot(seq, GameState.read(payload)) :
+						states.delta(seq, payload);
+				if (state == null) {
+					return null;
+				}
+				return new PropertyChangeEvent(source, STATE_UPDATES[update],
+						null, state);
+			case CHAT:
+				return new PropertyChangeEvent(source, GameView.UPDATE_CHAT,
+						"", getString(payload));
+			case BUTTON:
+				return new PropertyChangeEvent(source, GameView.UPDATE_BTN,
+						"", Integer.valueOf(payload.get() & 0xFF));
+			case TIMER:
+				return new PropertyChangeEvent(source, GameView.UPDATE_TIMER,
+						null, Integer.valueOf(payload.getInt()));
+			case ERROR:
+				throw new IOException("Turned away by the server: "
+						+ getString(payload));
+			default:
+				throw new IOException("Unexpected " + type + " message");
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated message", e);
+		}
+	}
+
+	private static Action.ActionType getActionType(ByteBuffer payload)
+			throws IOException {
+		int type = payload.get() & 0xFF;
+		if (type >= ACTION_TYPES.length) {
+			throw new IOException("Unknown action " + type);
+		}
+		return ACTION_TYPES[type];
+	}
+
+	private static int indexOf(String[] names, String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("No message for " + name);
+	}
+
+	/**
+	 * Allocates a frame of exactly the right size and writes the length
+	 * prefix, version and type.
+	 */
+	private static ByteBuffer begin(Type type, int bodySize) {
+		int length = PAYLOAD_HEADER_SIZE + bodySize;
+		ByteBuffer out = ByteBuffer.allocate(Frames.HEADER_SIZE + length);
+		out.putInt(length);
+		out.put((byte) VERSION);
+		out.put((byte) type.ordinal());
+		return out;
+	}
+
+	private static ByteBuffer finish(ByteBuffer out) {
+		assert !out.hasRemaining() : "Frame size miscounted";
+		out.flip();
+		return out;
+	}
+
+	/**
+	 * Writes a count in one byte.
+	 *
+	 * @throws IllegalArgumentException if the count doesn't fit
+	 */
+	static void putCount(ByteBuffer out, int count) {
+		if (count < 0 || count > MAX_COUNT) {
+			throw new IllegalArgumentException("Count out of range: " + count);
+		}
+		out.put((byte) count);
+	}
+
+	static int getCount(ByteBuffer in) {
+		return in.get() & 0xFF;
+	}
+
+	/**
+	 * Returns the bytes a string takes on the wire.
+	 *
+	 * @throws IllegalArgumentException if the string is too long
+	 */
+	static int sizeOf(String s) {
+		int size = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x01 && c <= 0x7F) {
+				size++;
+			} else if (c <= 0x7FF) {
+				size += 2;
+			} else {
+				size += 3;
+			}
+		}
+		if (size > MAX_STRING_SIZE) {
+			throw new IllegalArgumentException("String too long: " + size
+					+ " bytes");
+		}
+		return STRING_HEADER_SIZE + size;
+	}
+
+	/**
+	 * Writes a string. Its size must have been checked with sizeOf, and the
+	 * buffer must be one that begin allocated; the characters go straight
+	 * into its array.
+	 */
+	static void putString(ByteBuffer out, String s) {
+		byte[] bytes = out.array();
+		int start = out.arrayOffset() + out.position();
+		int pos = start + STRING_HEADER_SIZE;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x01 && c <= 0x7F) {
+				bytes[pos++] = (byte) c;
+			} else if (c <= 0x7FF) {
+				bytes[pos++] = (byte) (0xC0 | (c >> 6));
+				bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else {
+				bytes[pos++] = (byte) (0xE0 | (c >> 12));
+				bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		int size = pos - start - STRING_HEADER_SIZE;
+		bytes[start] = (byte) (size >> 8);
+		bytes[start + 1] = (byte) size;
+		out.position(pos - out.arrayOffset());
+	}
+
+	/**
+	 * Reads a string.
+	 *
+	 * @throws IOException if the bytes aren't modified UTF-8
+	 */
+	static String getString(ByteBuffer in) throws IOException {
+		int size = in.getShort() & 0xFFFF;
+		if (size > in.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		if (in.hasArray() && isAscii(in, size)) {
+			String s = new String(in.array(), in.arrayOffset()
+					+ in.position(), size, StandardCharsets.US_ASCII);
+			in.position(in.position() + size);
+			return s;
+		}
+		char[] chars = new char[size];
+		int count = 0;
+		int end = in.position() + size;
+		while (in.position() < end) {
+			int b = in.get() & 0xFF;
+			if (b < 0x80) {
+				chars[count++] = (char) b;
+			} else if ((b & 0xE0) == 0xC0 && in.position() < end) {
+				chars[count++] = (char) (((b & 0x1F) << 6)
+						| continuation(in));
+			} else if ((b & 0xF0) == 0xE0 && in.position() + 1 < end) {
+				int high = continuation(in);
+				chars[count++] = (char) (((b & 0x0F) << 12) | (high << 6)
+						| continuation(in));
+			} else {
+				throw new IOException("Malformed string");
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	private static boolean isAscii(ByteBuffer in, int size) {
+		byte[] bytes = in.array();
+		int start = in.arrayOffset() + in.position();
+		for (int i = start; i < start + size; i++) {
+			if (bytes[i] <= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int continuation(ByteBuffer in) throws IOException {
+		int b = in.get() & 0xFF;
+		if ((b & 0xC0) != 0x80) {
+			throw new IOException("Malformed string");
+		}
+		return b & 0x3F;
+	}
+
+	/**
+	 * Writes a card in one byte: its status in the top two bits and its
+	 * index, or NO_CARD, in the rest.
+	 */
+	static void putCard(ByteBuffer out, Card card) {
+		out.put((byte) cardByte(card));
+	}
+
+	/**
+	 * Returns the byte putCard writes for a card, which is equal for two
+	 * cards exactly when they look the same to a client.
+	 */
+	static int cardByte(Card card) {
+		int index = card.getValue() == null ? NO_CARD : card.getIndex();
+		Card.Status status = card.isFolded() ? Card.Status.FOLDED
+				: card.isHidden() ? Card.Status.HIDDEN : Card.Status.VISIBLE;
+		return (status.ordinal() << STATUS_SHIFT) | index;
+	}
+
+	static Card getCard(ByteBuffer in) throws IOException {
+		int b = in.get() & 0xFF;
+		int status = b >>> STATUS_SHIFT;
+		int index = b & NO_CARD;
+		if (status >= STATUSES.length
+				|| (index != NO_CARD && index >= CardSet.NUM_CARDS)) {
+			throw new IOException("Bad card " + b);
+		}
+		Card.Status cardStatus = STATUSES[status];
+		if (index == NO_CARD) {
+			if (cardStatus == Card.Status.VISIBLE) {
+				throw new IOException("Visible card without a value");
+			}
+			return new Card(cardStatus);
+		}
+		Card card = new Card(index);
+		if (cardStatus == Card.Status.FOLDED) {
+			card.fold();
+		} else if (cardStatus == Card.Status.HIDDEN) {
+			card.hide();
+		}
+		return card;
+	}
+
+}
@@ -0,0 +1,376 @@
+package pokerclient.controller;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import pokerclient.model.Card;
+import pokerclient.model.CardSet;
+import pokerclient.model.Hand;
+import pokerclient.model.Player;
+
+/**
+ * Immutable snapshot of a single seat at the table. This holds only what the
+ * view needs to draw a player box, so broadcasting a GameState never drags a
+ * live Player (and, through its listener, the whole model) onto the wire.
+ */
+public class SeatState implements Serializable {
+
+	/**
+	 * Automatically generated serial ID.
+	 */
+	private static final long serialVersionUID = 2630431871253086614L;
+
+	/**
+	 * Index of the seat in the model's list of players.
+	 */
+	private final int seatIndex;
+
+	private final String name;
+
+	private final String avatarPath;
+
+	private final int stack;
+
+	private final int putInPotOnStreet;
+
+	private final int totalPutInPot;
+
+	/**
+	 * Copy of the hole cards. The cards are copied so that later changes to
+	 * the model's cards (e.g. folding) don't leak into an earlier snapshot.
+	 */
+	private final Hand hand;
+
+	private final boolean inHand;
+
+	private final boolean folded;
+
+	private final boolean active;
+
+	/**
+	 * Player the snapshot was taken of, so the server can tell whose seat
+	 * it is. It isn't sent, so it is null in snapshots read off the wire.
+	 */
+	private final transient Player player;
+
+	/**
+	 * Bits of the flags byte on the wire.
+	 */
+	private static final int IN_HAND = 1;
+	private static final int FOLDED = 2;
+	private static final int ACTIVE = 4;
+
+	/**
+	 * Bits telling which fields a delta of the seat carries.
+	 */
+	static final int STACK_CHANGED = 1;
+	static final int STREET_CHANGED = 2;
+	static final int TOTAL_CHANGED = 4;
+	static final int HAND_CHANGED = 8;
+	static final int FLAGS_CHANGED = 16;
+
+	/**
+	 * Takes a snapshot of a player.
+	 *
+	 * @param seatIndex index of the player's seat
+	 * @param player player to copy
+	 */
+	public SeatState(int seatIndex, Player player) {
+		this.seatIndex = seatIndex;
+		this.name = player.getName();
+		this.avatarPath = player.getAvatarPath();
+		this.stack = player.getStack();
+		this.putInPotOnStreet = player.getPutInPotOnStreet();
+		this.totalPutInPot = player.getTotalPutInPot();
+		this.hand = copyHand(player.getHand());
+		this.inHand = player.isInHand();
+		this.folded = player.getHand().isFolded();
+		this.active = player.isActive();
+		this.player = player;
+	}
+
+	/**
+	 * Copies a snapshot with a different hand.
+	 */
+	private SeatState(SeatState seat, Hand hand) {
+		this.seatIndex = seat.seatIndex;
+		this.name = seat.name;
+		this.avatarPath = seat.avatarPath;
+		this.stack = seat.stack;
+		this.putInPotOnStreet = seat.putInPotOnStreet;
+		this.totalPutInPot = seat.totalPutInPot;
+		this.hand = hand;
+		this.inHand = seat.inHand;
+		this.folded = seat.folded;
+		this.active = seat.active;
+		this.player = seat.player;
+	}
+
+	/**
+	 * Reads a snapshot written by write.
+	 *
+	 * @param in buffer positioned at the snapshot
+	 * @return the snapshot
+	 * @throws IOException if the bytes aren't a snapshot
+	 */
+	static SeatState read(ByteBuffer in) throws IOException {
+		return new SeatState(in);
+	}
+
+	private SeatState(ByteBuffer in) throws IOException {
+		seatIndex = Protocol.getCount(in);
+		name = Protocol.getString(in);
+		avatarPath = Protocol.getString(in);
+		stack = in.getInt();
+		putInPotOnStreet = in.getInt();
+		totalPutInPot = in.getInt();
+		hand = new Hand();
+		hand.setCard(0, Protocol.getCard(in));
+		hand.setCard(1, Protocol.getCard(in));
+		int flags = in.get();
+		inHand = (flags & IN_HAND) != 0;
+		folded = (flags & FOLDED) != 0;
+		active = (flags & ACTIVE) != 0;
+		player = null;
+	}
+
+	/**
+	 * Returns the bytes write takes.
+	 *
+	 * @return size of the snapshot on the wire
+	 */
+	int wireSize() {
+		return 1 + Protocol.sizeOf(name) + Protocol.sizeOf(avatarPath) + 3 * 4
+				+ 2 + 1;
+	}
+
+	/**
+	 * Writes the snapshot for the wire.
+	 *
+	 * @param out buffer to write to
+	 */
+	void write(ByteBuffer out) {
+		Protocol.putCount(out, seatIndex);
+		Protocol.putString(out, name);
+		Protocol.putString(out, avatarPath);
+		out.putInt(stack);
+		out.putInt(putInPotOnStreet);
+		out.putInt(totalPutInPot);
+		Protocol.putCard(out, hand.getFirst());
+		Protocol.putCard(out, hand.getSecond());
+		out.put((byte) flags());
+	}
+
+	private SeatState(SeatState seat, int stack, int putInPotOnStreet,
+			int totalPutInPot, Hand hand, int flags) {
+		this.seatIndex = seat.seatIndex;
+		this.name = seat.name;
+		this.avatarPath = seat.avatarPath;
+		this.stack = stack;
+		this.putInPotOnStreet = putInPotOnStreet;
+		this.totalPutInPot = totalPutInPot;
+		this.hand = hand;
+		this.inHand = (flags & IN_HAND) != 0;
+		this.folded = (flags & FOLDED) != 0;
+		this.active = (flags & ACTIVE) != 0;
+		this.player = seat.player;
+	}
+
+	/**
+	 * Returns the player the snapshot was taken of, or null if it was read
+	 * off the wire.
+	 */
+	Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * True if two snapshots are of the same player in the same seat, so one
+	 * can be sent as changes to the other.
+	 *
+	 * @param other snapshot to compare with
+	 * @return true if the seat, name and avatar match
+	 */
+	boolean isSameSeat(SeatState other) {
+		return seatIndex == other.seatIndex && name.equals(other.name)
+				&& avatarPath.equals(other.avatarPath);
+	}
+
+	/**
+	 * Finds the fields that differ from an earlier snapshot of the seat.
+	 *
+	 * @param previous earlier snapshot of the same seat
+	 * @return the _CHANGED bits of the fields that differ, 0 if none do
+	 */
+	int changesFrom(SeatState previous) {
+		int changes = 0;
+		if (stack != previous.stack) {
+			changes |= STACK_CHANGED;
+		}
+		if (putInPotOnStreet != previous.putInPotOnStreet) {
+			changes |= STREET_CHANGED;
+		}
+		if (totalPutInPot != previous.totalPutInPot) {
+			changes |= TOTAL_CHANGED;
+		}
+		if (Protocol.cardByte(hand.getFirst())
+				!= Protocol.cardByte(previous.hand.getFirst())
+				|| Protocol.cardByte(hand.getSecond())
+				!= Protocol.cardByte(previous.hand.getSecond())) {
+			changes |= HAND_CHANGED;
+		}
+		if (flags() != previous.flags()) {
+			changes |= FLAGS_CHANGED;
+		}
+		return changes;
+	}
+
+	/**
+	 * Returns the bytes writeDelta takes.
+	 *
+	 * @param changes fields to write
+	 * @return size of the changes on the wire
+	 */
+	int deltaSize(int changes) {
+		int size = 0;
+		size += (changes & STACK_CHANGED) != 0 ? 4 : 0;
+		size += (changes & STREET_CHANGED) != 0 ? 4 : 0;
+		size += (changes & TOTAL_CHANGED) != 0 ? 4 : 0;
+		size += (changes & HAND_CHANGED) != 0 ? 2 : 0;
+		size += (changes & FLAGS_CHANGED) != 0 ? 1 : 0;
+		return size;
+	}
+
+	/**
+	 * Writes some of the fields for the wire.
+	 *
+	 * @param changes fields to write
+	 * @param out buffer to write to
+	 */
+	void writeDelta(int changes, ByteBuffer out) {
+		if ((changes & STACK_CHANGED) != 0) {
+			out.putInt(stack);
+		}
+		if ((changes & STREET_CHANGED) != 0) {
+			out.putInt(putInPotOnStreet);
+		}
+		if ((changes & TOTAL_CHANGED) != 0) {
+			out.putInt(totalPutInPot);
+		}
+		if ((changes & HAND_CHANGED) != 0) {
+			Protocol.putCard(out, hand.getFirst());
+			Protocol.putCard(out, hand.getSecond());
+		}
+		if ((changes & FLAGS_CHANGED) != 0) {
+			out.put((byte) flags());
+		}
+	}
+
+	/**
+	 * Reads fields written by writeDelta over this snapshot's.
+	 *
+	 * @param changes fields to read
+	 * @param in buffer positioned at the fields
+	 * @return new snapshot of the seat
+	 * @throws IOException if the bytes aren't valid fields
+	 */
+	SeatState applyDelta(int changes, ByteBuffer in) throws IOException {
+		int newStack = (changes & STACK_CHANGED) != 0 ? in.getInt() : stack;
+		int newStreet = (changes & STREET_CHANGED) != 0 ? in.getInt()
+				: putInPotOnStreet;
+		int newTotal = (changes & TOTAL_CHANGED) != 0 ? in.getInt()
+				: totalPutInPot;
+		Hand newHand = hand;
+		if ((changes & HAND_CHANGED) != 0) {
+			newHand = new Hand();
+			newHand.setCard(0, Protocol.getCard(in));
+			newHand.setCard(1, Protocol.getCard(in));
+		}
+		int newFlags = (changes & FLAGS_CHANGED) != 0 ? in.get() : flags();
+		return new SeatState(this, newStack, newStreet, newTotal, newHand,
+				newFlags);
+	}
+
+	private int flags() {
+		return (inHand ? IN_HAND : 0) | (folded ? FOLDED : 0)
+				| (active ? ACTIVE : 0);
+	}
+
+	private static Hand copyHand(Hand original) {
+		Hand copy = new Hand();
+		Card[] cards = original.getHand();
+		for (int i = 0; i < cards.length; i++) {
+			copy.setCard(i, (Card) cards[i].clone());
+		}
+		return copy;
+	}
+
+	public int getSeatIndex() {
+		return seatIndex;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getAvatarPath() {
+		return avatarPath;
+	}
+
+	public int getStack() {
+		return stack;
+	}
+
+	public int getPutInPotOnStreet() {
+		return putInPotOnStreet;
+	}
+
+	public int getTotalPutInPot() {
+		return totalPutInPot;
+	}
+
+	public Hand getHand() {
+		return hand;
+	}
+
+	/**
+	 * True if the snapshot holds the values of the hole cards, folded or not.
+	 *
+	 * @return true if there are cards to hide
+	 */
+	public boolean hasCards() {
+		return hand.getCardSet() != CardSet.EMPTY;
+	}
+
+	/**
+	 * Returns a copy of the snapshot with the hole cards face down, for
+	 * clients who mustn't see them.
+	 *
+	 * @return snapshot without the card values
+	 */
+	public SeatState hideHand() {
+		if (!hasCards()) {
+			return this;
+		}
+		return new SeatState(this, new Hand(folded ? Card.Status.FOLDED
+				: Card.Status.HIDDEN));
+	}
+
+	public boolean isInHand() {
+		return inHand;
+	}
+
+	public boolean isFolded() {
+		return folded;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public boolean isAllIn() {
+		return stack == 0;
+	}
+
+}
@@ -0,0 +1,178 @@
+package pokerclient.controller;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Serves every connection of a GameServer, or of all the tables of a
+ * TableHost, from one thread. Sockets are non-blocking and registered with
+ * a single selector; a connection only costs its GameClientWorker and
+ * buffers, never a thread.
+ *
+ * Only the selector thread touches the channels. Other threads (the tables
+ * firing events) queue frames on a worker and call requestWrite, which hands
+ * the worker to the selector thread to start writing.
+ */
+public class SelectorServer implements Runnable {
+
+	/**
+	 * Connections the kernel holds before they are accepted. The default of
+	 * 50 turns clients away when thousands connect to a host at once.
+	 */
+	static final int BACKLOG = 1024;
+
+	private final Selector selector;
+
+	private final ServerSocketChannel serverChannel;
+
+	private final TableRouter router;
+
+	/**
+	 * Workers with frames queued since their last write request was seen.
+	 */
+	private final ConcurrentLinkedQueue<GameClientWorker> pendingWrites;
+
+	/**
+	 * Opens the listening socket.
+	 *
+	 * @param port port to listen on
+	 * @param router makes a worker for each connection and seats it
+	 * @throws IOException if the socket can't be opened
+	 */
+	SelectorServer(int port, TableRouter router) throws IOException {
+		this.router = router;
+		pendingWrites = new ConcurrentLinkedQueue<GameClientWorker>();
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.socket().bind(new InetSocketAddress(port), BACKLOG);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Runs the selector until the server is closed.
+	 */
+	public void run() {
+		System.out.println("server accepting");
+		while (serverChannel.isOpen()) {
+			try {
+				selector.select();
+				registerWrites();
+				Iterator<SelectionKey> keys =
+						selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						serve(key);
+					}
+				}
+			} catch (ClosedSelectorException e) {
+				// Closed from another thread.
+				return;
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (RuntimeException e) {
+				// Accepting one connection failed; the others go on.
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		GameClientWorker worker = router.newWorker(channel);
+		worker.setKey(channel.register(selector, SelectionKey.OP_READ, worker));
+	}
+
+	private void serve(SelectionKey key) {
+		GameClientWorker worker = (GameClientWorker) key.attachment();
+		try {
+			if (key.isReadable()) {
+				worker.readFrames();
+			}
+			if (key.isValid() && key.isWritable() && worker.writeFrames()) {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		} catch (IOException e) {
+			key.cancel();
+			worker.close();
+		} catch (RuntimeException e) {
+			// A bug handling one connection mustn't stop the thread that
+			// serves every other.
+			System.err.println("Dropped a connection after an error: " + e);
+			e.printStackTrace();
+			key.cancel();
+			worker.close();
+		}
+	}
+
+	/**
+	 * Starts writing for the workers that asked since the last select, and
+	 * closes those whose queues overflowed.
+	 */
+	private void registerWrites() {
+		GameClientWorker worker;
+		while ((worker = pendingWrites.poll()) != null) {
+			// Cleared before the interest is set, so that a frame queued from
+			// here on asks again rather than being left behind.
+			worker.clearWriteRequest();
+			SelectionKey key = worker.getKey();
+			if (key == null || !key.isValid()) {
+				continue;
+			}
+			if (worker.isOverflowed()) {
+				key.cancel();
+				worker.close();
+			} else {
+				key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+			}
+		}
+	}
+
+	/**
+	 * Asks the selector thread to write a worker's queued frames, or to close
+	 * it if its queue overflowed. Safe to call from any thread.
+	 *
+	 * @param worker worker with frames to write
+	 */
+	void requestWrite(GameClientWorker worker) {
+		pendingWrites.add(worker);
+		selector.wakeup();
+	}
+
+	/**
+	 * Returns the port listened on, chosen by the system if 0 was asked for.
+	 */
+	int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Stops listening and closes the selector.
+	 *
+	 * @throws IOException if closing fails
+	 */
+	public void close() throws IOException {
+		serverChannel.close();
+		selector.close();
+	}
+
+}
@@ -0,0 +1,327 @@
+package pokerclient.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log of a server. Lines printed to the log's streams are queued whole,
+ * with the time and thread they came from, and written in batches to the
+ * log's output by a thread of its own, so printing never waits on the
+ * output or on a viewer. The queue holds at most a set number of lines and
+ * a line at most MAX_LINE characters; lines printed while it is full are
+ * dropped, and counted in the next batch written.
+ *
+ * Each line written reads "time level [thread] message", with level INFO
+ * for System.out and ERROR for System.err.
+ */
+public class ServerLog {
+
+	/**
+	 * Most lines queued unless told otherwise.
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/**
+	 * Most characters kept of one line.
+	 */
+	public static final int MAX_LINE = 4096;
+
+	/**
+	 * Most lines written in one batch.
+	 */
+	static final int MAX_BATCH = 512;
+
+	public static final String INFO = "INFO";
+	public static final String ERROR = "ERROR";
+
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	/**
+	 * Log the system streams print to, or null before one is installed.
+	 */
+	private static ServerLog installed;
+
+	/**
+	 * Sees every batch the log writes.
+	 */
+	public interface Tail {
+
+		/**
+		 * Called on the log's thread with the lines of a batch, each ended
+		 * by a line separator.
+		 *
+		 * @param lines the batch
+		 */
+		void append(String lines);
+
+	}
+
+	private final ArrayBlockingQueue<Entry> queue;
+
+	private final OutputStream output;
+
+	private final Thread writer;
+
+	private final CopyOnWriteArrayList<Tail> tails =
+			new CopyOnWriteArrayList<Tail>();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final SimpleDateFormat timeFormat =
+			new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+	private volatile boolean closed;
+
+	/**
+	 * Queued by close after the last line.
+	 */
+	private static final Entry END = new Entry(0, null, null, null);
+
+	/**
+	 * Starts a log writing to output.
+	 *
+	 * @param output where lines are written
+	 * @param capacity most lines queued
+	 */
+	public ServerLog(OutputStream output, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.output = output;
+		queue = new ArrayBlockingQueue<Entry>(capacity);
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeBatches();
+			}
+		}, "ServerLog");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Makes System.out and System.err print to a new log writing to output,
+	 * unless a log is installed already.
+	 *
+	 * @param output where lines are written
+	 * @return the installed log
+	 */
+	public static synchronized ServerLog install(OutputStream output) {
+		if (installed == null) {
+			installed = new ServerLog(output, DEFAULT_CAPACITY);
+			System.setOut(installed.newPrintStream(INFO));
+			System.setErr(installed.newPrintStream(ERROR));
+		}
+		return installed;
+	}
+
+	/**
+	 * Returns the installed log, installing one writing to System.out if
+	 * there is none.
+	 *
+	 * @return the installed log
+	 */
+	public static ServerLog getInstalled() {
+		return install(System.out);
+	}
+
+	/**
+	 * Queues a line, or drops it if the queue is full.
+	 *
+	 * @param level level of the line
+	 * @param message the line, without a line separator
+	 * @return false if the line was dropped
+	 */
+	public boolean log(String level, String message) {
+		if (message.length() > MAX_LINE) {
+			message = message.substring(0, MAX_LINE);
+		}
+		if (closed || !queue.offer(new Entry(System.currentTimeMillis(),
+				Thread.currentThread().getName(), level, message))) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Makes a stream whose lines are queued at a level. Bytes are held
+	 * until a line separator, or until MAX_LINE of them are.
+	 *
+	 * @param level level of the stream's lines
+	 * @return new stream
+	 */
+	public PrintStream newPrintStream(String level) {
+		return new PrintStream(new LineStream(level), true);
+	}
+
+	/**
+	 * Adds a tail sent every batch from now on.
+	 *
+	 * @param tail the tail
+	 */
+	public void addTail(Tail tail) {
+		tails.add(tail);
+	}
+
+	public void removeTail(Tail tail) {
+		tails.remove(tail);
+	}
+
+	/**
+	 * Returns the number of lines dropped so far.
+	 *
+	 * @return dropped lines
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Writes the lines queued and stops the log, waiting for room in the
+	 * queue if it is full. Lines logged afterwards are dropped.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		queue.put(END);
+		writer.join();
+	}
+
+	private void writeBatches() {
+		ArrayList<Entry> batch = new ArrayList<Entry>(MAX_BATCH);
+		StringBuilder text = new StringBuilder();
+		long reported = 0;
+		boolean ended = false;
+		while (!ended) {
+			try {
+				Entry first = queue.poll(1, TimeUnit.SECONDS);
+				if (first != null) {
+					batch.add(first);
+				}
+			} catch (InterruptedException e) {
+				continue;
+			}
+			queue.drainTo(batch, MAX_BATCH - batch.size());
+			if (batch.remove(END)) {
+				ended = true;
+			}
+			long droppedNow = dropped.get();
+			if (droppedNow > reported) {
+				batch.add(new Entry(System.currentTimeMillis(),
+						writer.getName(), ERROR, (droppedNow - reported)
+								+ " lines dropped"));
+				reported = droppedNow;
+			}
+			if (!batch.isEmpty()) {
+				write(batch, text);
+				batch.clear();
+			}
+		}
+	}
+
+	private void write(ArrayList<Entry> batch, StringBuilder text) {
+		text.setLength(0);
+		for (Entry e : batch) {
+			text.append(timeFormat.format(new Date(e.time))).append(' ')
+					.append(e.level).append(" [").append(e.thread)
+					.append("] ").append(e.message).append(NEWLINE);
+		}
+		String lines = text.toString();
+		try {
+			output.write(lines.getBytes());
+			output.flush();
+		} catch (IOException e) {
+			// Nowhere left to report it; the tails still see the lines.
+		}
+		for (Tail t : tails) {
+			try {
+				t.append(lines);
+			} catch (RuntimeException e) {
+				// A broken viewer mustn't stop the log.
+			}
+		}
+	}
+
+	/**
+	 * A line waiting to be written.
+	 */
+	private static class Entry {
+
+		private final long time;
+		private final String thread;
+		private final String level;
+		private final String message;
+
+		private Entry(long time, String thread, String level, String message) {
+			this.time = time;
+			this.thread = thread;
+			this.level = level;
+			this.message = message;
+		}
+
+	}
+
+	/**
+	 * Collects bytes into lines and queues them. PrintStream holds its own
+	 * lock while it writes, so the lines of one println aren't split.
+	 */
+	private class LineStream extends OutputStream {
+
+		private final String level;
+
+		private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+		private LineStream(String level) {
+			this.level = level;
+		}
+
+		@Override
+		public synchronized void write(int b) {
+			if (b == '\n') {
+				endLine();
+				return;
+			}
+			line.write(b);
+			if (line.size() >= MAX_LINE) {
+				endLine();
+			}
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			int end = off + len;
+			int start = off;
+			for (int i = off; i < end; i++) {
+				if (b[i] == '\n' || line.size() + i - start >= MAX_LINE) {
+					line.write(b, start, i - start);
+					start = b[i] == '\n' ? i + 1 : i;
+					endLine();
+				}
+			}
+			line.write(b, start, end - start);
+		}
+
+		private void endLine() {
+			String text = new String(line.toByteArray(),
+					Charset.defaultCharset());
+			line.reset();
+			if (text.endsWith("\r")) {
+				text = text.substring(0, text.length() - 1);
+			}
+			log(level, text);
+		}
+
+	}
+
+}
@@ -0,0 +1,266 @@
+package pokerclient.controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import pokerclient.model.Board;
+
+/**
+ * The changes from one GameState to the next, as sent to a client that has
+ * the first. Only the seat fields that changed are written, along with the
+ * pots and board if they changed and the active player's bets, so most
+ * updates take a few dozen bytes rather than a whole table.
+ *
+ * A delta can only be taken between states with the same players in the
+ * same seats; anything else needs a full state.
+ */
+final class StateDelta {
+
+	/**
+	 * Bits of the flags byte on the wire.
+	 */
+	private static final int HAS_ACTIVE = 1;
+	private static final int CHECKABLE = 2;
+	private static final int BETTABLE = 4;
+	private static final int CAN_RAISE = 8;
+	private static final int HAS_EQUITIES = 16;
+	private static final int POTS_CHANGED = 32;
+	private static final int BOARD_CHANGED = 64;
+
+	private final GameState next;
+
+	/**
+	 * Indices of the seats that changed, and which fields of each.
+	 */
+	private final int[] seats;
+	private final int[] changes;
+	private int changedSeats;
+
+	private boolean potsChanged;
+
+	/**
+	 * Cards at the start of the board that the client already has.
+	 */
+	private int keptCards;
+
+	private boolean boardChanged;
+
+	private StateDelta(GameState next) {
+		this.next = next;
+		seats = new int[next.getSeatCount()];
+		changes = new int[next.getSeatCount()];
+	}
+
+	/**
+	 * Finds the changes from one state to the next.
+	 *
+	 * @param previous state the client has
+	 * @param next state to send
+	 * @return the changes, or null if the client must be sent all of next
+	 */
+	static StateDelta between(GameState previous, GameState next) {
+		if (previous.getSeatCount() != next.getSeatCount()) {
+			return null;
+		}
+		StateDelta delta = new StateDelta(next);
+		for (int i = 0; i < next.getSeatCount(); i++) {
+			SeatState before = previous.getSeat(i);
+			SeatState after = next.getSeat(i);
+			if (before == after) {
+				continue;
+			}
+			if (!after.isSameSeat(before)) {
+				return null;
+			}
+			int changed = after.changesFrom(before);
+			if (changed != 0) {
+				delta.seats[delta.changedSeats] = i;
+				delta.changes[delta.changedSeats] = changed;
+				delta.changedSeats++;
+			}
+		}
+		if (!next.activeIsNull() && !isActiveSeat(next)) {
+			return null;
+		}
+		delta.potsChanged = !Arrays.equals(previous.getPotSizes(),
+				next.getPotSizes());
+		Board before = previous.getBoard();
+		Board after = next.getBoard();
+		int common = Math.min(before.getCardCount(), after.getCardCount());
+		while (delta.keptCards < common
+				&& Protocol.cardByte(before.get(delta.keptCards))
+				== Protocol.cardByte(after.get(delta.keptCards))) {
+			delta.keptCards++;
+		}
+		delta.boardChanged = delta.keptCards != before.getCardCount()
+				|| delta.keptCards != after.getCardCount();
+		return delta;
+	}
+
+	/**
+	 * True if the active player's name and stack can be taken from the seat
+	 * at the state's stable index, as setActive does.
+	 */
+	private static boolean isActiveSeat(GameState state) {
+		int seat = state.getStableIndex();
+		return seat >= 0 && seat < state.getSeatCount()
+				&& state.getSeat(seat).getName().equals(state.getActiveName())
+				&& state.getSeat(seat).getStack() == state.getPlayerStack();
+	}
+
+	/**
+	 * Returns the bytes write takes.
+	 *
+	 * @return size of the delta on the wire
+	 */
+	int wireSize() {
+		int size = 1 + 1;
+		for (int i = 0; i < changedSeats; i++) {
+			size += 2 + next.getSeat(seats[i]).deltaSize(changes[i]);
+		}
+		if (potsChanged) {
+			size += 1 + 4 * next.getPotSizes().length;
+		}
+		if (boardChanged) {
+			size += 2 + next.getBoard().getCardCount() - keptCards;
+		}
+		if (!next.activeIsNull()) {
+			size += 1 + 3 * 4;
+		}
+		if (next.getEquities() != null) {
+			size += 1 + 8 * next.getEquities().length;
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the delta for the wire.
+	 *
+	 * @param out buffer to write to
+	 */
+	void write(ByteBuffer out) {
+		boolean active = !next.activeIsNull();
+		double[] equities = next.getEquities();
+		out.put((byte) ((active ? HAS_ACTIVE : 0)
+				| (active && next.isCheckable() ? CHECKABLE : 0)
+				| (active && next.isBettable() ? BETTABLE : 0)
+				| (active && next.getCanRaise() ? CAN_RAISE : 0)
+				| (equities != null ? HAS_EQUITIES : 0)
+				| (potsChanged ? POTS_CHANGED : 0)
+				| (boardChanged ? BOARD_CHANGED : 0)));
+		Protocol.putCount(out, changedSeats);
+		for (int i = 0; i < changedSeats; i++) {
+			Protocol.putCount(out, seats[i]);
+			Protocol.putCount(out, changes[i]);
+			next.getSeat(seats[i]).writeDelta(changes[i], out);
+		}
+		if (potsChanged) {
+			int[] potSizes = next.getPotSizes();
+			Protocol.putCount(out, potSizes.length);
+			for (int size : potSizes) {
+				out.putInt(size);
+			}
+		}
+		if (boardChanged) {
+			Board board = next.getBoard();
+			Protocol.putCount(out, keptCards);
+			Protocol.putCount(out, board.getCardCount() - keptCards);
+			for (int i = keptCards; i < board.getCardCount(); i++) {
+				Protocol.putCard(out, board.get(i));
+			}
+		}
+		if (active) {
+			Protocol.putCount(out, next.getStableIndex());
+			out.putInt(next.getMinBet());
+			out.putInt(next.getMaxBet());
+			out.putInt(next.getToCall());
+		}
+		if (equities != null) {
+			Protocol.putCount(out, equities.length);
+			for (double equity : equities) {
+				out.putDouble(equity);
+			}
+		}
+	}
+
+	/**
+	 * Reads a delta written by write and applies it to the state it was
+	 * taken from. The previous state isn't changed; unchanged seats, pots
+	 * and boards are shared with it.
+	 *
+	 * @param previous state the delta was taken from
+	 * @param in buffer positioned at the delta
+	 * @return the next state
+	 * @throws IOException if the bytes aren't a delta of the state
+	 */
+	static GameState apply(GameState previous, ByteBuffer in)
+			throws IOException {
+		int flags = in.get();
+		ArrayList<SeatState> seats = previous.copySeats();
+		int changedSeats = Protocol.getCount(in);
+		for (int i = 0; i < changedSeats; i++) {
+			int seat = checkSeat(Protocol.getCount(in), seats);
+			int changed = Protocol.getCount(in);
+			seats.set(seat, seats.get(seat).applyDelta(changed, in));
+		}
+		int[] potSizes = previous.getPotSizes();
+		if ((flags & POTS_CHANGED) != 0) {
+			potSizes = new int[Protocol.getCount(in)];
+			for (int i = 0; i < potSizes.length; i++) {
+				potSizes[i] = in.getInt();
+			}
+		}
+		Board board = previous.getBoard();
+		if ((flags & BOARD_CHANGED) != 0) {
+			int kept = Protocol.getCount(in);
+			if (kept > board.getCardCount()) {
+				throw new IOException("Delta keeps " + kept + " of "
+						+ board.getCardCount() + " cards");
+			}
+			Board changed = new Board();
+			for (int i = 0; i < kept; i++) {
+				changed.addCard(board.get(i));
+			}
+			int added = Protocol.getCount(in);
+			for (int i = 0; i < added; i++) {
+				changed.addCard(Protocol.getCard(in));
+			}
+			board = changed;
+		}
+		int activeSeat = -1;
+		int minBet = 0;
+		int maxBet = 0;
+		int toCall = 0;
+		if ((flags & HAS_ACTIVE) != 0) {
+			activeSeat = checkSeat(Protocol.getCount(in), seats);
+			minBet = in.getInt();
+			maxBet = in.getInt();
+			toCall = in.getInt();
+		}
+		double[] equities = null;
+		if ((flags & HAS_EQUITIES) != 0) {
+			equities = new double[Protocol.getCount(in)];
+			for (int i = 0; i < equities.length; i++) {
+				equities[i] = in.getDouble();
+			}
+		}
+		GameState state = new GameState(seats, potSizes, board, equities);
+		if (activeSeat >= 0) {
+			state.setActive(activeSeat, minBet, maxBet, toCall,
+					(flags & CHECKABLE) != 0, (flags & BETTABLE) != 0,
+					(flags & CAN_RAISE) != 0);
+		}
+		return state;
+	}
+
+	private static int checkSeat(int seat, ArrayList<SeatState> seats)
+			throws IOException {
+		if (seat >= seats.size()) {
+			throw new IOException("No seat " + seat);
+		}
+		return seat;
+	}
+
+}
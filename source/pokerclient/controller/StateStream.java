@@ -0,0 +1,99 @@
+package pokerclient.controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The game states a client has been sent: the last full state, brought up
+ * to date by the deltas after it. Every state the server sends is numbered,
+ * so a missing delta shows up as a gap, after which deltas are ignored
+ * until the full state asked for with a RESYNC message arrives.
+ */
+public class StateStream {
+
+	/**
+	 * Latest state, or null before the first full state.
+	 */
+	private GameState current;
+
+	/**
+	 * Sequence number of the latest state.
+	 */
+	private int sequence;
+
+	/**
+	 * True from noticing a gap until the next full state arrives.
+	 */
+	private boolean awaitingState;
+
+	/**
+	 * True if a resync is to be asked for and hasn't been yet.
+	 */
+	private boolean resyncWanted;
+
+	/**
+	 * Takes a full state, which replaces whatever came before.
+	 *
+	 * @param seq sequence number of the state
+	 * @param state the state
+	 * @return the state
+	 */
+	GameState snapshot(int seq, GameState state) {
+		current = state;
+		sequence = seq;
+		awaitingState = false;
+		return state;
+	}
+
+	/**
+	 * Applies a delta to the latest state.
+	 *
+	 * @param seq sequence number of the state the delta leads to
+	 * @param in buffer positioned at the delta
+	 * @return the new state, or null if the delta doesn't follow on from the
+	 * latest one and was ignored
+	 * @throws IOException if the delta is malformed
+	 */
+	GameState delta(int seq, ByteBuffer in) throws IOException {
+		if (current == null || awaitingState || seq != sequence + 1) {
+			if (!awaitingState) {
+				awaitingState = true;
+				resyncWanted = true;
+			}
+			return null;
+		}
+		current = StateDelta.apply(current, in);
+		sequence = seq;
+		return current;
+	}
+
+	/**
+	 * Tells whether a full state must be asked for, and forgets it.
+	 *
+	 * @return true if a RESYNC message should be sent
+	 */
+	public boolean takeResyncRequest() {
+		boolean wanted = resyncWanted;
+		resyncWanted = false;
+		return wanted;
+	}
+
+	/**
+	 * Returns the latest state.
+	 *
+	 * @return latest state, or null if there hasn't been a full one yet
+	 */
+	public GameState getState() {
+		return current;
+	}
+
+	/**
+	 * Returns the sequence number of the latest state.
+	 *
+	 * @return sequence number
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+}
@@ -0,0 +1,191 @@
+package pokerclient.controller;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import pokerclient.model.GameModel;
+import pokerclient.model.GameSettings;
+import pokerclient.model.HandHistorySink;
+import pokerclient.model.TableExecutor;
+
+/**
+ * Hosts many tables in one process behind a single port. Every connection
+ * is served by the one selector thread; its first frame names the table it
+ * joins, which is started then if it isn't running. A table is closed once
+ * its last client has gone, and a later join to its id starts it afresh.
+ *
+ * The tables share the host's TableExecutor for their events and its
+ * HandHistorySink for their hands, and the hand evaluators are shared by
+ * the whole process, so a table costs its model and clients but no thread.
+ */
+public class TableHost implements TableRouter, Runnable {
+
+	/**
+	 * Most tables a host runs unless told otherwise.
+	 */
+	public static final int DEFAULT_MAX_TABLES = 1000;
+
+	private final SelectorServer server;
+
+	private final TableExecutor executor;
+
+	private final HandHistorySink historySink;
+
+	private final GameSettings settings;
+
+	private final int maxTables;
+
+	/**
+	 * Running tables, by id. Guarded by lock.
+	 */
+	private final HashMap<Integer, GameServer> tables =
+			new HashMap<Integer, GameServer>();
+
+	/**
+	 * The host's lock, taken before a table's own locks and never after.
+	 * Table threads take it, and may be virtual, so it isn't a monitor.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Opens the port. Call run to start serving.
+	 *
+	 * @param port port to listen on
+	 * @param maxTables most tables to run at once
+	 * @param settings settings every table is made with
+	 * @param executor runs the tables' events
+	 * @param historySink writes the tables' hands
+	 * @throws IOException if the port can't be opened
+	 */
+	public TableHost(int port, int maxTables, GameSettings settings,
+			TableExecutor executor, HandHistorySink historySink)
+			throws IOException {
+		if (maxTables < 1) {
+			throw new IllegalArgumentException("At least one table is needed.");
+		}
+		this.maxTables = maxTables;
+		this.settings = settings;
+		this.executor = executor;
+		this.historySink = historySink;
+		server = new SelectorServer(port, this);
+	}
+
+	/**
+	 * Opens the port with the default settings, executor and sink.
+	 *
+	 * @param port port to listen on
+	 * @param maxTables most tables to run at once
+	 * @throws IOException if the port can't be opened
+	 */
+	public TableHost(int port, int maxTables) throws IOException {
+		this(port, maxTables, GameServer.defaultSettings(),
+				TableExecutor.getDefault(), HandHistorySink.getDefault());
+	}
+
+	/**
+	 * Serves the connections on this thread until the host is closed.
+	 */
+	@Override
+	public void run() {
+		server.run();
+	}
+
+	@Override
+	public GameClientWorker newWorker(SocketChannel channel) {
+		return new GameClientWorker(channel, server, this,
+				GameServer.newOutboundQueue());
+	}
+
+	/**
+	 * Seats a client at the table it named, starting the table if it isn't
+	 * running and the host has room for it.
+	 */
+	@Override
+	public void join(GameClientWorker worker, JoinSettings settings)
+			throws IOException {
+		lock.lock();
+		try {
+			GameServer table = tables.get(settings.getTableId());
+			if (table == null) {
+				if (tables.size() >= maxTables) {
+					throw new IOException("No room at table "
+							+ settings.getTableId() + ", " + tables.size()
+							+ " tables are running");
+				}
+				table = startTable(settings.getTableId());
+			}
+			table.seat(worker, settings);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private GameServer startTable(int tableId) {
+		GameModel model = new GameModel(settings, tableId,
+				executor.newScheduler(tableId), historySink);
+		GameServer table = new GameServer(this, tableId, model);
+		tables.put(tableId, table);
+		model.start();
+		System.out.println("Table " + tableId + " started, " + tables.size()
+				+ " running");
+		return table;
+	}
+
+	/**
+	 * Closes a table if its last client has gone. Called by the table after
+	 * it removes clients.
+	 *
+	 * @param table table that lost clients
+	 */
+	void closeIfEmpty(GameServer table) {
+		lock.lock();
+		try {
+			if (tables.get(table.getTableId()) != table
+					|| table.getWorkerCount() > 0) {
+				return;
+			}
+			tables.remove(table.getTableId());
+			// The model holds no thread while it waits for players, so once
+			// no client can reach it there is nothing more to stop.
+			System.out.println("Table " + table.getTableId() + " closed, "
+					+ tables.size() + " running");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of tables running.
+	 *
+	 * @return running tables
+	 */
+	public int getTableCount() {
+		lock.lock();
+		try {
+			return tables.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the port the host listens on.
+	 *
+	 * @return port, chosen by the system if 0 was asked for
+	 */
+	public int getPort() {
+		return server.getPort();
+	}
+
+	/**
+	 * Stops serving: closes the port and the selector.
+	 *
+	 * @throws IOException if closing fails
+	 */
+	public void close() throws IOException {
+		server.close();
+	}
+
+}
@@ -0,0 +1,32 @@
+package pokerclient.controller;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * What a SelectorServer serves: a single GameServer, or a TableHost with
+ * many tables behind one port. Both methods are called on the selector
+ * thread.
+ */
+interface TableRouter {
+
+	/**
+	 * Makes the worker for a new connection.
+	 *
+	 * @param channel the connection
+	 * @return worker for the connection
+	 */
+	GameClientWorker newWorker(SocketChannel channel);
+
+	/**
+	 * Seats a client at the table it asked for, through
+	 * GameClientWorker.seat.
+	 *
+	 * @param worker worker of the client
+	 * @param settings who the client is and the table it asked for
+	 * @throws IOException if the client was turned away, saying why
+	 */
+	void join(GameClientWorker worker, JoinSettings settings)
+			throws IOException;
+
+}
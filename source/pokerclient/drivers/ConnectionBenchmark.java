@@ -0,0 +1,235 @@
+package pokerclient.drivers;
+
+import java.beans.PropertyChangeEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pokerclient.controller.Frames;
+import pokerclient.controller.GameServer;
+import pokerclient.controller.GameState;
+import pokerclient.controller.JoinSettings;
+import pokerclient.controller.Protocol;
+import pokerclient.controller.StateStream;
+import pokerclient.controller.TableHost;
+import pokerclient.gui.GameView;
+import pokerclient.model.Action;
+import pokerclient.model.HandHistorySink;
+import pokerclient.model.TableExecutor;
+import pokerclient.model.ThreadMode;
+
+/**
+ * Serves simulated connections from a TableHost in this process, two to a
+ * table, and reports how long they took to be seated, the actions the
+ * tables took per second and what the process used for them. Each
+ * connection is a blocking client on a thread of its own, made in the same
+ * mode as the tables' threads, so the modes can be compared side by side.
+ * Clients check or call as soon as it is their turn; the tables' pauses
+ * are real. Both ends of every connection are in this process, and each
+ * table's hand history keeps a segment and an index open, so it needs about
+ * three file descriptors per connection.
+ */
+public class ConnectionBenchmark {
+
+	private static final String USAGE = "java ConnectionBenchmark"
+			+ " [-seconds n] [-port n] platform|virtual|both connections";
+
+	private static final int DEFAULT_SECONDS = 30;
+
+	private static final int DEFAULT_PORT = 7790;
+
+	/**
+	 * Longest wait for every connection to be seated.
+	 */
+	private static final int SEAT_TIMEOUT_SECONDS = 120;
+
+	public static void main(String[] args) {
+		int seconds = DEFAULT_SECONDS;
+		int port = DEFAULT_PORT;
+		int first = 0;
+		while (args.length - first > 2) {
+			if (args[first].equals("-seconds")) {
+				seconds = Integer.parseInt(args[first + 1]);
+			} else if (args[first].equals("-port")) {
+				port = Integer.parseInt(args[first + 1]);
+			} else {
+				break;
+			}
+			first += 2;
+		}
+		if (args.length - first != 2) {
+			System.err.println(USAGE);
+			return;
+		}
+		ThreadMode[] modes = args[first].equals("both") ? ThreadMode.values()
+				: new ThreadMode[] { ThreadMode.valueOf(
+						args[first].toUpperCase()) };
+		int connections = Integer.parseInt(args[first + 1]);
+
+		for (ThreadMode mode : modes) {
+			if (!mode.isAvailable()) {
+				System.out.println(mode + ": not available on this JVM, "
+						+ System.getProperty("java.version"));
+				continue;
+			}
+			try {
+				run(mode, connections, seconds, port++);
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+		System.exit(0);
+	}
+
+	private static void run(ThreadMode mode, int connections, int seconds,
+			int port) throws IOException, InterruptedException {
+		File directory = Files.createTempDirectory("bench").toFile();
+		HandHistorySink sink = new HandHistorySink(directory,
+				HandHistorySink.DEFAULT_MAX_BYTES,
+				HandHistorySink.DEFAULT_MAX_AGE,
+				HandHistorySink.DEFAULT_CAPACITY);
+		TableExecutor executor = new TableExecutor(
+				Runtime.getRuntime().availableProcessors(), mode);
+		TableHost host = new TableHost(port, (connections + 1) / 2,
+				GameServer.defaultSettings(), executor, sink);
+		Thread selector = new Thread(host, "selector");
+		selector.setDaemon(true);
+		selector.start();
+
+		Counts counts = new Counts(connections);
+		long start = System.nanoTime();
+		for (int i = 0; i < connections; i++) {
+			mode.newThread(new SimulatedClient(port, i, counts), "client-" + i)
+					.start();
+		}
+		boolean seated = counts.seated.await(SEAT_TIMEOUT_SECONDS,
+				TimeUnit.SECONDS);
+		double seatSeconds = (System.nanoTime() - start) / 1e9;
+		int platformThreads = ManagementFactory.getThreadMXBean()
+				.getThreadCount();
+
+		long actionsBefore = counts.actions.get();
+		long timed = System.nanoTime();
+		Thread.sleep(seconds * 1000L);
+		double actionSeconds = (System.nanoTime() - timed) / 1e9;
+		long actions = counts.actions.get() - actionsBefore;
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		long heap = runtime.totalMemory() - runtime.freeMemory();
+
+		System.out.printf("%s: %d connections %s in %.2f s, %d tables,"
+				+ " %.0f actions/s, %d platform threads, %d MB heap,"
+				+ " %d errors%n", mode, connections,
+				seated ? "seated" : "not all seated", seatSeconds,
+				host.getTableCount(), actions / actionSeconds,
+				platformThreads, heap >> 20, counts.errors.get());
+
+		host.close();
+		executor.shutdown();
+		sink.close();
+		for (File f : directory.listFiles()) {
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * What the clients of one run have done.
+	 */
+	private static class Counts {
+
+		private final CountDownLatch seated;
+
+		private final AtomicLong actions = new AtomicLong();
+
+		private final AtomicLong errors = new AtomicLong();
+
+		private Counts(int connections) {
+			seated = new CountDownLatch(connections);
+		}
+
+	}
+
+	/**
+	 * A client that joins table number / 2 and plays passively until the
+	 * host closes its connection.
+	 */
+	private static class SimulatedClient implements Runnable {
+
+		private final int port;
+
+		private final String name;
+
+		private final int tableId;
+
+		private final Counts counts;
+
+		private SimulatedClient(int port, int number, Counts counts) {
+			this.port = port;
+			this.name = "Bot " + number;
+			this.tableId = number / 2;
+			this.counts = counts;
+		}
+
+		@Override
+		public void run() {
+			boolean seated = false;
+			try {
+				Socket socket = new Socket("localhost", port);
+				OutputStream out = new BufferedOutputStream(
+						socket.getOutputStream());
+				DataInputStream in = new DataInputStream(
+						new BufferedInputStream(socket.getInputStream()));
+				Frames.write(out, Protocol.encodeJoin(
+						new JoinSettings(name, "", tableId)));
+				StateStream states = new StateStream();
+				while (true) {
+					PropertyChangeEvent evt = Protocol.decodeEvent(
+							Frames.read(in), name, states);
+					if (!seated) {
+						seated = true;
+						counts.seated.countDown();
+					}
+					if (states.takeResyncRequest()) {
+						Frames.write(out, Protocol.encodeResync());
+					}
+					if (evt != null && evt.getPropertyName().equals(
+							GameView.GENERATE_GUI_START_OF_TURN)) {
+						act((GameState) evt.getNewValue(), out);
+					}
+				}
+			} catch (IOException e) {
+				// The host closing the connection ends the client; anything
+				// before it is seated is an error.
+				if (!seated) {
+					counts.errors.incrementAndGet();
+					counts.seated.countDown();
+				}
+			}
+		}
+
+		private void act(GameState state, OutputStream out)
+				throws IOException {
+			if (!name.equals(state.getActiveName())) {
+				return;
+			}
+			Frames.write(out, Protocol.encodeAction(new Action(name,
+					state.isCheckable() ? Action.ActionType.CHECK
+							: Action.ActionType.CALL)));
+			counts.actions.incrementAndGet();
+		}
+
+	}
+
+}
@@ -0,0 +1,68 @@
+package pokerclient.drivers;
+
+import java.io.File;
+import java.io.IOException;
+
+import pokerclient.model.HandHistoryStore;
+import pokerclient.model.HandHistoryText;
+import pokerclient.model.HandRecord;
+
+/**
+ * Prints hands from the hand histories by table id and hand number, or
+ * rebuilds tables' indexes from their segments.
+ */
+public class HandHistoryDump {
+
+	private static final String USAGE =
+			"java HandHistoryDump directory table hand...\n"
+			+ "java HandHistoryDump -rebuild directory table...";
+
+	public static void main(String[] args) {
+		try {
+			if (args.length >= 3 && args[0].equals("-rebuild")) {
+				rebuild(new File(args[1]), args);
+			} else if (args.length >= 3) {
+				dump(new File(args[0]), args);
+			} else {
+				System.err.println(USAGE);
+			}
+		} catch (NumberFormatException e) {
+			System.err.println(USAGE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void dump(File directory, String[] args)
+			throws IOException {
+		int tableId = Integer.parseInt(args[1]);
+		HandHistoryStore store = new HandHistoryStore(directory);
+		if (!HandHistoryStore.indexFile(directory, tableId).exists()) {
+			System.err.println("No index for table " + tableId
+					+ ", rebuilding it");
+			store.rebuild(tableId);
+		}
+		HandRecord record = new HandRecord();
+		for (int i = 2; i < args.length; i++) {
+			int hand = Integer.parseInt(args[i]);
+			if (store.read(tableId, hand, record)) {
+				System.out.print(HandHistoryText.render(record));
+			} else {
+				System.err.println("No hand #" + hand + " at table "
+						+ tableId);
+			}
+		}
+		System.out.flush();
+	}
+
+	private static void rebuild(File directory, String[] args)
+			throws IOException {
+		HandHistoryStore store = new HandHistoryStore(directory);
+		for (int i = 2; i < args.length; i++) {
+			int tableId = Integer.parseInt(args[i]);
+			System.out.println("Table " + tableId + ": "
+					+ store.rebuild(tableId) + " hands");
+		}
+	}
+
+}
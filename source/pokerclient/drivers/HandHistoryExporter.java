@@ -0,0 +1,42 @@
+package pokerclient.drivers;
+
+import java.io.File;
+import java.io.IOException;
+
+import pokerclient.model.HandHistoryText;
+import pokerclient.model.HandRecord;
+import pokerclient.model.HandSegmentReader;
+
+/**
+ * Prints the hands in hand history segments as the text hand history.
+ */
+public class HandHistoryExporter {
+
+	private static final String USAGE =
+			"java HandHistoryExporter segment...";
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println(USAGE);
+			return;
+		}
+		HandRecord record = new HandRecord();
+		StringBuilder text = new StringBuilder(4096);
+		for (String name : args) {
+			try {
+				HandSegmentReader segment = new HandSegmentReader(
+						new File(name));
+				for (int i = 0; i < segment.getRecordCount(); i++) {
+					segment.read(i, record);
+					HandHistoryText.render(record, text);
+					System.out.print(text);
+					text.setLength(0);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		System.out.flush();
+	}
+
+}
@@ -0,0 +1,67 @@
+package pokerclient.drivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import pokerclient.model.HandHistorySink;
+import pokerclient.model.PlayerStats;
+import pokerclient.model.PlayerStatsTask;
+
+/**
+ * Counts player stats over hand history segments, using every core unless
+ * told otherwise, and writes them to a stats file for the HUD.
+ */
+public class PlayerStatsDriver {
+
+	private static final String USAGE =
+			"java PlayerStatsDriver [-threads n] output segment-or-directory...";
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int first = 0;
+		if (args.length > 1 && args[0].equals("-threads")) {
+			threads = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		if (args.length - first < 2 || threads < 1) {
+			System.err.println(USAGE);
+			return;
+		}
+		File output = new File(args[first]);
+		ArrayList<File> segments = new ArrayList<File>();
+		for (int i = first + 1; i < args.length; i++) {
+			File input = new File(args[i]);
+			File[] files = input.isDirectory() ? input.listFiles()
+					: new File[] { input };
+			for (File f : files) {
+				if (f.getName().endsWith(HandHistorySink.SEGMENT_SUFFIX)) {
+					segments.add(f);
+				}
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		PlayerStats stats = pool.invoke(new PlayerStatsTask(
+				segments.toArray(new File[segments.size()])));
+		double seconds = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+		System.out.printf("%d hands from %d segments on %d threads in %.2f s:"
+				+ " %.0f hands/s%n", stats.getHandCount(), segments.size(),
+				threads, seconds, stats.getHandCount() / seconds);
+		if (stats.getDamagedRecords() > 0) {
+			System.out.println(stats.getDamagedRecords()
+					+ " damaged records left out");
+		}
+		try {
+			stats.write(output);
+			System.out.println(stats.getRowCount() + " players written to "
+					+ output);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+package pokerclient.drivers;
+
+import java.io.File;
+import java.io.IOException;
+
+import pokerclient.model.EquityCalculator;
+import pokerclient.model.PreflopEquityTable;
+
+/**
+ * Builds the preflop equity table file. Running it again on a partly built
+ * file carries on from the last finished row.
+ */
+public class PreflopTableGenerator {
+
+	private static final String USAGE =
+			"java PreflopTableGenerator file [maxRows]";
+
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println(USAGE);
+			return;
+		}
+		int maxRows = args.length == 2 ? Integer.parseInt(args[1]) : 0;
+		try {
+			boolean finished = PreflopEquityTable.generate(new File(args[0]),
+					maxRows, new EquityCalculator(), System.out);
+			System.out.println(finished ? "Table finished."
+					: "Table unfinished; run again to continue.");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
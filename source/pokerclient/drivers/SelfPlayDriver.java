@@ -0,0 +1,188 @@
+package pokerclient.drivers;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import pokerclient.model.Action;
+import pokerclient.model.CardSet;
+import pokerclient.model.DecisionContext;
+import pokerclient.model.GameSettings;
+import pokerclient.model.PlayerAgent;
+import pokerclient.model.SelfPlayResult;
+import pokerclient.model.SelfPlayTask;
+
+/**
+ * Plays built in agents against each other over many hands, using every
+ * core unless told otherwise, and reports each agent's win rate with its
+ * 95% confidence interval.
+ */
+public class SelfPlayDriver {
+
+	private static final String USAGE = "java SelfPlayDriver [-threads n]"
+			+ " hands random|calling|raising|tight...";
+
+	private static final int STACK = 1000;
+
+	private static final int BIG_BLIND = 10;
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int first = 0;
+		if (args.length > 1 && args[0].equals("-threads")) {
+			threads = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		if (args.length - first < 3 || threads < 1) {
+			System.err.println(USAGE);
+			return;
+		}
+		long hands = Long.parseLong(args[first]);
+		int players = args.length - first - 1;
+		String[] names = new String[players];
+		SelfPlayTask.AgentFactory[] agents =
+				new SelfPlayTask.AgentFactory[players];
+		for (int i = 0; i < players; i++) {
+			String kind = args[first + 1 + i];
+			names[i] = kind + " " + i;
+			agents[i] = factory(kind);
+			if (agents[i] == null) {
+				System.err.println(USAGE);
+				return;
+			}
+		}
+
+		GameSettings settings = new GameSettings(STACK, BIG_BLIND,
+				BIG_BLIND / 2, 0, 0, players, true);
+		SelfPlayTask task;
+		try {
+			task = new SelfPlayTask(settings, names, agents, hands);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		SelfPlayResult result = pool.invoke(task);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+		System.out.println(result);
+		System.out.printf("%.2f s on %d threads: %.0f hands/s%n", seconds,
+				threads, result.getHandCount() / seconds);
+	}
+
+	private static SelfPlayTask.AgentFactory factory(String kind) {
+		if (kind.equals("random")) {
+			return new SelfPlayTask.AgentFactory() {
+				public PlayerAgent newAgent() {
+					return new RandomAgent(new Random());
+				}
+			};
+		} else if (kind.equals("calling")) {
+			return new SelfPlayTask.AgentFactory() {
+				public PlayerAgent newAgent() {
+					return new CallingAgent();
+				}
+			};
+		} else if (kind.equals("raising")) {
+			return new SelfPlayTask.AgentFactory() {
+				public PlayerAgent newAgent() {
+					return new RaisingAgent();
+				}
+			};
+		} else if (kind.equals("tight")) {
+			return new SelfPlayTask.AgentFactory() {
+				public PlayerAgent newAgent() {
+					return new TightAgent();
+				}
+			};
+		}
+		return null;
+	}
+
+	/**
+	 * Folds, checks or calls, and raises at random, sizing raises at either
+	 * the minimum or all in.
+	 */
+	private static class RandomAgent implements PlayerAgent {
+
+		private final Random random;
+
+		public RandomAgent(Random random) {
+			this.random = random;
+		}
+
+		@Override
+		public Action decide(DecisionContext context) {
+			int roll = random.nextInt(100);
+			if (roll < 15) {
+				return context.checkOrFold();
+			}
+			if (roll < 75) {
+				return context.checkOrCall();
+			}
+			return context.betOrRaise(roll < 95 ? context.getMinBet()
+					: context.getMaxBet());
+		}
+
+	}
+
+	/**
+	 * Checks or calls every time.
+	 */
+	private static class CallingAgent implements PlayerAgent {
+
+		@Override
+		public Action decide(DecisionContext context) {
+			return context.checkOrCall();
+		}
+
+	}
+
+	/**
+	 * Bets or raises the minimum every time it can, and calls otherwise.
+	 */
+	private static class RaisingAgent implements PlayerAgent {
+
+		@Override
+		public Action decide(DecisionContext context) {
+			return context.betOrRaise(context.getMinBet());
+		}
+
+	}
+
+	/**
+	 * Plays only pairs and hands with an ace or two cards ten or better,
+	 * raising them to three big blinds before the flop and betting half the
+	 * pot after it.
+	 */
+	private static class TightAgent implements PlayerAgent {
+
+		private static final int TEN = 8;
+
+		private static final int ACE = 12;
+
+		@Override
+		public Action decide(DecisionContext context) {
+			int[] cards = CardSet.toIndices(context.getHoleCards());
+			int high = Math.max(rank(cards[0]), rank(cards[1]));
+			int low = Math.min(rank(cards[0]), rank(cards[1]));
+			if (high != low && high != ACE && low < TEN) {
+				return context.checkOrFold();
+			}
+			if (context.getBoard() == CardSet.EMPTY) {
+				return context.getToCall() > context.getBigBlind() ?
+						context.checkOrCall() :
+						context.betOrRaise(3 * context.getBigBlind());
+			}
+			return context.getToCall() == 0 ?
+					context.betOrRaise(context.getPot() / 2) :
+					context.checkOrCall();
+		}
+
+		private static int rank(int card) {
+			return card % 13;
+		}
+
+	}
+
+}
@@ -1,15 +1,75 @@
 package pokerclient.drivers;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
 import pokerclient.controller.GameServer;
+import pokerclient.controller.ServerLog;
+import pokerclient.controller.TableHost;
+import pokerclient.model.ThreadMode;
 
 public class ServerDriver {
-	
-	private static final String USAGE = "java GameServer port [frameName]";
+
+	private static final String OPTIONS =
+			"[-log file] [-threads platform|virtual] ";
+
+	private static final String USAGE =
+			"java GameServer " + OPTIONS + "port [frameName]\n"
+			+ "java GameServer " + OPTIONS + "-headless port\n"
+			+ "java GameServer " + OPTIONS + "-tables port [maxTables]";
 
 	public static void main(String[] args) {
-		if (args.length == 1) {
+		OutputStream logOutput = System.out;
+		int first = 0;
+		while (args.length - first >= 2) {
+			if (args[first].equals("-log")) {
+				try {
+					logOutput = new FileOutputStream(args[first + 1], true);
+				} catch (IOException e) {
+					e.printStackTrace();
+					System.exit(1);
+				}
+			} else if (args[first].equals("-threads")) {
+				// Read by the table executor when the first table starts.
+				System.setProperty(ThreadMode.PROPERTY, args[first + 1]);
+			} else {
+				break;
+			}
+			first += 2;
+		}
+		String[] rest = new String[args.length - first];
+		System.arraycopy(args, first, rest, 0, rest.length);
+		args = rest;
+		try {
+			ThreadMode mode = ThreadMode.getConfigured();
+			if (!mode.isAvailable()) {
+				System.err.println(mode + " threads need a newer JVM.");
+				System.exit(1);
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(USAGE);
+			return;
+		}
+
+		if (args.length >= 2 && args.length <= 3 && args[0].equals("-tables")) {
+			ServerLog.install(logOutput);
+			int maxTables = args.length == 3 ? Integer.parseInt(args[2])
+					: TableHost.DEFAULT_MAX_TABLES;
+			try {
+				new TableHost(Integer.parseInt(args[1]), maxTables).run();
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		} else if (args.length == 2 && args[0].equals("-headless")) {
+			ServerLog.install(logOutput);
+			new GameServer(Integer.parseInt(args[1]), null);
+		} else if (args.length == 1) {
+			ServerLog.install(logOutput);
 			new GameServer(Integer.parseInt(args[0]));
 		} else if (args.length == 2) {
+			ServerLog.install(logOutput);
 			new GameServer(Integer.parseInt(args[0]), args[1]);
 		} else {
 			System.err.println(USAGE);
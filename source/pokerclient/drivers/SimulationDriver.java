@@ -0,0 +1,82 @@
+package pokerclient.drivers;
+
+import java.util.Random;
+
+import pokerclient.model.Action;
+import pokerclient.model.DecisionContext;
+import pokerclient.model.GameModel;
+import pokerclient.model.GameSettings;
+import pokerclient.model.Player;
+import pokerclient.model.PlayerAgent;
+
+/**
+ * Plays hands between random agents on a simulated table and reports how
+ * many hands per second the model manages.
+ */
+public class SimulationDriver {
+
+	private static final String USAGE =
+			"java SimulationDriver hands [players]";
+
+	private static final int DEFAULT_PLAYERS = 6;
+
+	private static final int STACK = 1000;
+
+	private static final int BIG_BLIND = 10;
+
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println(USAGE);
+			return;
+		}
+		int hands = Integer.parseInt(args[0]);
+		int players = args.length == 2 ? Integer.parseInt(args[1])
+				: DEFAULT_PLAYERS;
+
+		GameSettings settings = new GameSettings(STACK, BIG_BLIND,
+				BIG_BLIND / 2, 0, 0, players, true);
+		GameModel model = new GameModel(settings, 0, true);
+		Random random = new Random();
+		for (int i = 0; i < players; i++) {
+			Player p = new Player("Bot " + i, "", settings, model);
+			p.setAgent(new RandomAgent(random));
+			model.addPlayer(p);
+		}
+
+		// Warm up first so that the timed run is compiled code.
+		model.playHands(Math.min(hands, 20000));
+		long start = System.nanoTime();
+		model.playHands(hands);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d hands in %.2f s: %.0f hands/s%n", hands,
+				seconds, hands / seconds);
+	}
+
+	/**
+	 * Folds, checks or calls, and raises at random, sizing raises at either
+	 * the minimum or all in.
+	 */
+	private static class RandomAgent implements PlayerAgent {
+
+		private final Random random;
+
+		public RandomAgent(Random random) {
+			this.random = random;
+		}
+
+		@Override
+		public Action decide(DecisionContext context) {
+			int roll = random.nextInt(100);
+			if (roll < 15) {
+				return context.checkOrFold();
+			}
+			if (roll < 75) {
+				return context.checkOrCall();
+			}
+			return context.betOrRaise(roll < 95 ? context.getMinBet()
+					: context.getMaxBet());
+		}
+
+	}
+
+}
@@ -80,9 +80,19 @@ public class BankTimer extends Timer implements Cloneable {
 	 */
 	public BankTimer(int totalDelay, PropertyChangeListener listener) {
 		super(DELAY, null);
+		setTotalDelay(totalDelay);
+		addTickListener(listener);
+	}
+	
+	/**
+	 * Sets the total time the timer runs for. Takes effect on the turn
+	 * running, if there is one.
+	 * 
+	 * @param totalDelay total time in milliseconds
+	 */
+	public void setTotalDelay(int totalDelay) {
 		maxTicks = totalDelay / DELAY;
 		alertTickCount = totalDelay / (DELAY * ALERT_PROPORTION);
-		addTickListener(listener);
 	}
 	
 	/**
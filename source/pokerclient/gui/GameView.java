@@ -34,11 +34,10 @@ import javax.swing.JSlider;
 import javax.swing.JTextArea;
 
 import pokerclient.controller.GameState;
+import pokerclient.controller.SeatState;
 import pokerclient.model.Board;
 import pokerclient.model.Card;
 import pokerclient.model.GameModel;
-import pokerclient.model.Player;
-import pokerclient.model.Pot;
 
 /**
  * View of the game of poker.
@@ -340,6 +339,11 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 	 */
 	public static final String UPDATE_CHAT = "UpdateChat";
 	
+	/**
+	 * Tells the view how long the acting player has left, in milliseconds.
+	 */
+	public static final String UPDATE_TIMER = "UpdateTimer";
+	
 	/**
 	 * Physical representation of the button.
 	 */
@@ -573,7 +577,7 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 		if (updateType.equals(GameView.GENERATE_GUI_START_OF_TURN)) {
 			isActive = gs.getActiveName().equals(this.playerName);
 			generateBoxes(gs.getAllPlayers(), gs);
-			updatePotDisplay(gs.getPots());
+			updatePotDisplay(gs.getPotSizes());
 			updateActionLabel(gs);
 			timer.setBar(boxes.get(gs.getStableIndex()).getBar(), isActive);
 			timer.start();
@@ -584,15 +588,19 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 			//generateRaiseSizes(gs); //won't do anything because the put in pot for this street is 0
 			if (!cardsFlipped) {
 				generateBoxes(gs.getAllPlayers(), gs);
-				updatePotDisplay(gs.getPots());
+				updatePotDisplay(gs.getPotSizes());
 				showdownGUI(gs);
 				cardsFlipped = true;
 			}
+			showEquities(gs);
 		} else if (updateType.equals(GameView.GENERATE_GUI_START_OF_STREET)) {
 			updateBoard(gs.getBoard());
-			updatePotDisplay(gs.getPots());
+			updatePotDisplay(gs.getPotSizes());
 			if (!cardsFlipped) {
 				generateBoxes(gs.getAllPlayers(), gs);
+			} else {
+				// clears the equities shown before the street was dealt
+				generateRaiseSizes(gs);
 			}
 		} else if (updateType.equals(GameView.GENERATE_GUI_SHOWDOWN)) {
 			if (!cardsFlipped) {
@@ -600,21 +608,21 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 			}
 		} else if (updateType.equals(GameView.GENERATE_GUI_END_OF_HAND)) {
 			generateBoxes(gs.getAllPlayers(), gs);
-			updatePotDisplay(gs.getPots());
+			updatePotDisplay(gs.getPotSizes());
 			boardPanel.reset();
 			cardsFlipped = false;
 		}  else if (updateType.equals(GameView.GENERATE_GUI_PLAYER_JOINED)) {
 			generateBoxes(gs.getAllPlayers(), gs);
-			updatePotDisplay(gs.getPots());
+			updatePotDisplay(gs.getPotSizes());
 		}
 		displayFrame.repaint();
 	}
 	
 	private void showdownGUI(GameState gs) {
 		int index = 0;
-		Iterator<Player> iter = gs.getAllPlayers();
+		Iterator<SeatState> iter = gs.getAllPlayers();
 		while (iter.hasNext()) {
-			Player p = iter.next();
+			SeatState p = iter.next();
 			if (p.isInHand()) {
 				boxes.get(index).setHand(p.getHand(), true, gs.getFoldedStatus(index));
 			}
@@ -731,25 +739,15 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 	/**
 	 * Updates the pot display when the information about the pots have changed.
 	 * 
-	 * @param pots all the pots of the model
-	 */
-	private void updatePotDisplay(Iterator<Pot> pots) {
-        if (pots.hasNext()) {
-			Pot pot = pots.next();
-			String potInfo = "<HTML>Main pot: " + pot;
-			/*for (Player player : pot) {
-				potInfo += "\t" + player.getName();
-			}*/
+	 * @param potSizes sizes of all the pots of the model, main pot first
+	 */
+	private void updatePotDisplay(int[] potSizes) {
+        if (potSizes.length > 0) {
+			String potInfo = "<HTML>Main pot: " + potSizes[0];
 			potInfo += "<br>";
-			int potCount = 1;
-			while (pots.hasNext()) {
-				Pot p = pots.next();
-				potInfo += "Side pot " + potCount + ": " + p;
-				/*for (Player player : p) {
-					potInfo += "\t" + player.getName();
-				}*/
+			for (int potCount = 1; potCount < potSizes.length; potCount++) {
+				potInfo += "Side pot " + potCount + ": " + potSizes[potCount];
 				potInfo += "<br>";
-				potCount++;
 			}
 			potInfo += "</HTML>";
 			potLabel.setText(potInfo);
@@ -846,10 +844,10 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 	 * 
 	 * @param players for whom to make boxes. 
 	 */
-	private void generateBoxes(Iterator<Player> players, GameState gs) {
+	private void generateBoxes(Iterator<SeatState> players, GameState gs) {
 		for (int i = 0; i < boxes.size(); i++) {
 			if (players.hasNext()) {
-				Player tempPlayer = players.next();
+				SeatState tempPlayer = players.next();
 				updateBox(tempPlayer, i, gs);
 				updateRaiseSize(tempPlayer, i, false);
 			} else {
@@ -858,7 +856,7 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 			}
 		}
 		while(players.hasNext()) {
-			Player tempPlayer = players.next();
+			SeatState tempPlayer = players.next();
 			int index = boxes.size();
 			generateRaiseSizeLabel(tempPlayer, index, false);
 			generateBox(((PokerLayoutManager) (boxPanel.getLayout())).getCoords(index), 
@@ -871,7 +869,7 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 	}
 	
 	private void generateTotalRaiseSizes(GameState gs) {
-		Iterator<Player> players = gs.getAllPlayers();
+		Iterator<SeatState> players = gs.getAllPlayers();
 		for (int i = 0; i < boxes.size(); i++) {
 			if (players.hasNext()) {
 				updateRaiseSize(players.next(), i, true);
@@ -885,7 +883,7 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 	}
 	
 	private void generateRaiseSizes(GameState gs) {
-		Iterator<Player> players = gs.getAllPlayers();
+		Iterator<SeatState> players = gs.getAllPlayers();
 		for (int i = 0; i < boxes.size(); i++) {
 			if (players.hasNext()) {
 				updateRaiseSize(players.next(), i, false);
@@ -898,13 +896,27 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 		}
 	}
 	
+	/**
+	 * Shows each all in player's equity where the raise size would go.
+	 * 
+	 * @param gs GameState carrying the equities
+	 */
+	private void showEquities(GameState gs) {
+		for (int i = 0; i < raiseSizes.size(); i++) {
+			if (gs.hasEquity(i)) {
+				raiseSizes.get(i).setText(String.format("%.1f%%",
+						gs.getEquity(i) * 100));
+			}
+		}
+	}
+	
 	/**
 	 * updates the raise sizes labels.
 	 * 
-	 * @param p player with the relevant raise size.
+	 * @param p seat with the relevant raise size.
 	 * @param i index of the label.
 	 */
-	private void updateRaiseSize(Player p, int i, boolean total) {
+	private void updateRaiseSize(SeatState p, int i, boolean total) {
 		//GUI.remove(raiseSizes.get(i));
 		raiseSizePanel.remove(raiseSizes.get(i));
 		raiseSizes.set(i, new JLabel());
@@ -929,20 +941,20 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 	
 	/**
 	 * Makes new raise size labels.
-	 * @param p player with the relevant raise size.
+	 * @param p seat with the relevant raise size.
 	 * @param i index of the label.
 	 */
-	private void generateRaiseSizeLabel(Player p, int i, boolean total) {
+	private void generateRaiseSizeLabel(SeatState p, int i, boolean total) {
 		raiseSizes.add(new JLabel());
 		updateRaiseSize(p, i, total);
 	}
 	
 	/**
-	 * Updates a player box component with necessary information from the player.
-	 * @param p player to use for box
+	 * Updates a player box component with necessary information from the seat.
+	 * @param p seat to use for box
 	 * @param i index of box
 	 */
-	private void updateBox(Player p, int i, GameState gs) {
+	private void updateBox(SeatState p, int i, GameState gs) {
 		boxes.get(i).setAvatar(p.getAvatarPath());
 		//boxes.get(i).setCoords(coords[i]);
 		boxes.get(i).setPlayerName(p.getName());
@@ -963,7 +975,7 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
 	 * @param isActive true if player is making a decision
 	 * @return
 	 */
-	private void generateBox(int[] xy, Player p, int index, String activeName, 
+	private void generateBox(int[] xy, SeatState p, int index, String activeName, 
 			boolean folded) {
 		boxes.add(new PlayerBoxComponent(xy[0], xy[1], p.getAvatarPath(), 
 				p.getHand(), p.getName(), p.getName().equals(activeName),
@@ -1003,10 +1015,10 @@ public class GameView extends AbstractView<GameModel> implements Runnable {
         } else if (eventName.equals(GameView.FOLD_MADE)) {
         	foldSound.play();
         } else if (eventName.equals(GameView.TIMER_EXPIRED)) {
-        	if (isActive) {
-        		fold.doClick();
-        	}
-        	//TODO: sometimes it is the other player's turn for a split second, i think
+        	// The server keeps the clock and acts for the player when it
+        	// runs out, checking where it can.
+        } else if (eventName.equals(GameView.UPDATE_TIMER)) {
+        	timer.setTotalDelay(((Integer) event.getNewValue()).intValue());
         } else if (eventName.equals(GameView.TIMER_NOTIFICATION)) {
     		timerNotificationSound.play();
         } else if (eventName.equals(GameView.UPDATE_BTN)) {
@@ -116,7 +116,8 @@ public class Lobby {
             		});
                     frame.dispose();
 				} catch (NumberFormatException e) {
-					ErrorPrinter.printError("Port IDs are numbers.");
+					ErrorPrinter.printError("Port IDs are numbers, with a table"
+							+ " number after a colon for a table host.");
 				}
 			}
 		});
@@ -0,0 +1,162 @@
+package pokerclient.gui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.BorderFactory;
+import javax.swing.JFrame;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+
+import pokerclient.controller.ServerLog;
+
+/**
+ * Frame showing the tail of a server's log. Batches that arrive while the
+ * event thread hasn't shown the last are joined, so the event thread gets
+ * at most one update waiting, and only the last MAX_CHARS characters are
+ * kept on screen or waiting.
+ */
+public class ServerConsole implements ServerLog.Tail {
+
+	public static final int DEFAULT_FRAME_WIDTH = 400;
+	public static final int DEFAULT_FRAME_HEIGHT = 400;
+
+	/**
+	 * Most characters of the log shown.
+	 */
+	public static final int MAX_CHARS = 1 << 18;
+
+	private final ServerLog log;
+
+	private JTextArea messageDisplay;
+	private boolean shouldScroll = true;
+
+	/**
+	 * Text not yet shown, or null if no update is waiting. Guarded by the
+	 * console's lock.
+	 */
+	private StringBuilder pending;
+
+	/**
+	 * Opens a console tailing a log.
+	 *
+	 * @param log the log
+	 * @param serverName shown in the frame's title
+	 * @param exitOnClose whether closing the frame ends the process
+	 */
+	public ServerConsole(final ServerLog log, final String serverName,
+			final boolean exitOnClose) {
+		this.log = log;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				initGUI(serverName, exitOnClose);
+				log.addTail(ServerConsole.this);
+			}
+		});
+	}
+
+	private void initGUI(String serverName, boolean exitOnClose) {
+		JFrame displayFrame = new JFrame("Server" + " - " + serverName);
+		if (exitOnClose) {
+			displayFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		} else {
+			displayFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		}
+		displayFrame.addWindowListener(new WindowAdapter() {
+			public void windowClosed(WindowEvent e) {
+				log.removeTail(ServerConsole.this);
+			}
+		});
+		displayFrame.getContentPane().add(makeScrollPane());
+		displayFrame.setPreferredSize(
+				new Dimension(DEFAULT_FRAME_WIDTH, DEFAULT_FRAME_HEIGHT));
+		displayFrame.pack();
+		displayFrame.setVisible(true);
+	}
+
+	private JScrollPane makeScrollPane() {
+		messageDisplay = new JTextArea();
+		messageDisplay.setEditable(false);
+		messageDisplay.setLineWrap(true);
+		messageDisplay.setWrapStyleWord(true);
+
+		JScrollPane chatScrollPane = new JScrollPane(messageDisplay);
+		chatScrollPane.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+		controlScrolling(chatScrollPane);
+		return chatScrollPane;
+	}
+
+	/**
+	 * Avoids scrolling down when reading the logs.
+	 * @param chatScrollPane the pane for which scrolling should be limited.
+	 */
+	private void controlScrolling(JScrollPane chatScrollPane) {
+		MouseAdapter hover = new MouseAdapter() {
+			public void mouseEntered(MouseEvent evt) {
+				shouldScroll = false;
+			}
+			public void mouseExited(MouseEvent evt) {
+				shouldScroll = true;
+			}
+		};
+		messageDisplay.addMouseListener(hover);
+		chatScrollPane.getVerticalScrollBar().addMouseListener(hover);
+		chatScrollPane.getVerticalScrollBar().addAdjustmentListener(
+			new AdjustmentListener() {
+				public void adjustmentValueChanged(AdjustmentEvent e) {
+					if (shouldScroll) {
+						e.getAdjustable().setValue(e.getAdjustable().getMaximum());
+					}
+				}
+		});
+	}
+
+	/**
+	 * Queues a batch to be shown, scheduling an update unless one is
+	 * waiting already. Called on the log's thread.
+	 */
+	@Override
+	public void append(String lines) {
+		synchronized (this) {
+			if (pending != null) {
+				pending.append(lines);
+				trim(pending);
+				return;
+			}
+			pending = new StringBuilder(lines);
+			trim(pending);
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				show();
+			}
+		});
+	}
+
+	private static void trim(StringBuilder text) {
+		if (text.length() > MAX_CHARS) {
+			text.delete(0, text.length() - MAX_CHARS);
+		}
+	}
+
+	private void show() {
+		String text;
+		synchronized (this) {
+			text = pending.toString();
+			pending = null;
+		}
+		messageDisplay.append(text);
+		int excess = messageDisplay.getDocument().getLength() - MAX_CHARS;
+		if (excess > 0) {
+			messageDisplay.replaceRange("", 0, excess);
+		}
+	}
+
+}
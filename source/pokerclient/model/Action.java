@@ -102,6 +102,16 @@ public class Action implements Serializable {
 		return this.size;
 	}
 	
+	/**
+	 * Describes the action for a log: its type, and its size for a bet or
+	 * raise.
+	 * 
+	 * @return description of the action
+	 */
+	public String describe() {
+		return hasRaiseSize() ? actionType + " " + size : actionType.toString();
+	}
+	
 	@Override
 	public String toString() {
 		return actionType.toString();
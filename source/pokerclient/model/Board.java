@@ -73,6 +73,19 @@ public class Board implements Iterable<Card>, Serializable, Cloneable {
 		return cards.size();
 	}
 
+	/**
+	 * Returns the cards on the board as a CardSet.
+	 * 
+	 * @return set of the cards on the board
+	 */
+	public long getCardSet() {
+		long set = CardSet.EMPTY;
+		for (Card c : cards) {
+			set |= CardSet.of(c.getIndex());
+		}
+		return set;
+	}
+
 	@Override
 	public Iterator<Card> iterator() {
 		return cards.iterator();
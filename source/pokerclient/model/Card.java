@@ -26,6 +26,10 @@ public class Card implements Serializable, Cloneable {
 	public enum Value { TWO, THREE, FOUR, FIVE, SIX, SEVEN, EIGHT, NINE, TEN,
 		JACK, QUEEN, KING, ACE }
 	
+	// values() copies its array on every call.
+	private static final Suit[] SUITS = Suit.values();
+	private static final Value[] VALUES = Value.values();
+	
 	/**
 	 * Suit of this particular card.
 	 */
@@ -71,6 +75,15 @@ public class Card implements Serializable, Cloneable {
 		this(value, suit, Status.VISIBLE);
 	}
 	
+	/**
+	 * Creates a visible card from its index.
+	 * 
+	 * @param index index of the card, as used by CardSet
+	 */
+	public Card(int index) {
+		this(VALUES[EvalCard.getRank(index)], SUITS[EvalCard.getSuit(index)]);
+	}
+	
 	/**
 	 * Creates a folded or hidden card. This can be used to store a reference
 	 * to a hidden or folded card so that these cards do not constantly need to
@@ -101,6 +114,16 @@ public class Card implements Serializable, Cloneable {
 		return value;
 	}
 	
+	/**
+	 * Returns the index of the card from 0 to 51, as used by CardSet.
+	 * 
+	 * @precondition the card has a suit and value
+	 * @return index of the card
+	 */
+	public int getIndex() {
+		return CardSet.index(value.ordinal(), suit.ordinal());
+	}
+	
 	/**
 	 * Determines if two cards have the same suit and value.
 	 */
@@ -219,6 +242,14 @@ public class Card implements Serializable, Cloneable {
 		this.status = Status.HIDDEN;
 	}
 	
+	/**
+	 * Turns the card face up again, e.g. when the deck reuses it for a new
+	 * hand.
+	 */
+	public void show() {
+		this.status = Status.VISIBLE;
+	}
+	
 	@Override
 	public Object clone() {
 		return new Card(this.value, this.suit, this.status);
@@ -0,0 +1,115 @@
+package pokerclient.model;
+
+/**
+ * Operations on sets of cards packed into a long. Each card has an index from
+ * 0 to 51 (13 * suit + rank, the same numbering EvalCard uses) and a set has
+ * bit i set when it holds the card with index i. Card, Hand, Board, Deck and
+ * EvalHand all convert to and from this form, so set operations such as
+ * removing dead cards or checking for overlap are single instructions.
+ */
+public final class CardSet {
+
+	/**
+	 * Number of cards in a deck.
+	 */
+	public static final int NUM_CARDS = EvalCard.NUM_CARDS;
+
+	/**
+	 * Set with no cards.
+	 */
+	public static final long EMPTY = 0L;
+
+	/**
+	 * Set with every card in the deck.
+	 */
+	public static final long FULL_DECK = (1L << NUM_CARDS) - 1;
+
+	private CardSet() {
+	}
+
+	/**
+	 * Returns the index of the card with the given rank and suit.
+	 *
+	 * @param rank rank of the card, 0 (two) to 12 (ace)
+	 * @param suit suit of the card, 0 (clubs) to 3 (spades)
+	 * @return index of the card
+	 */
+	public static int index(int rank, int suit) {
+		return EvalCard.toIndex(rank, suit);
+	}
+
+	/**
+	 * Returns the set holding just one card.
+	 *
+	 * @param index index of the card
+	 * @return set holding the card
+	 */
+	public static long of(int index) {
+		return 1L << index;
+	}
+
+	public static long add(long set, int index) {
+		return set | (1L << index);
+	}
+
+	public static long remove(long set, int index) {
+		return set & ~(1L << index);
+	}
+
+	public static boolean contains(long set, int index) {
+		return (set & (1L << index)) != 0L;
+	}
+
+	/**
+	 * True if the two sets share a card.
+	 */
+	public static boolean overlaps(long first, long second) {
+		return (first & second) != 0L;
+	}
+
+	public static int size(long set) {
+		return Long.bitCount(set);
+	}
+
+	/**
+	 * Returns the lowest card index in a set.
+	 *
+	 * @precondition the set is not empty
+	 * @param set set of cards
+	 * @return lowest card index in the set
+	 */
+	public static int first(long set) {
+		return Long.numberOfTrailingZeros(set);
+	}
+
+	/**
+	 * Returns the cards of a set as indices, lowest first.
+	 *
+	 * @param set set of cards
+	 * @return card indices
+	 */
+	public static int[] toIndices(long set) {
+		int[] indices = new int[size(set)];
+		for (int i = 0; set != 0L; i++) {
+			indices[i] = first(set);
+			set &= set - 1;
+		}
+		return indices;
+	}
+
+	/**
+	 * Returns a String representation of the set, e.g. "2c Ah".
+	 */
+	public static String toString(long set) {
+		StringBuilder s = new StringBuilder();
+		while (set != 0L) {
+			if (s.length() > 0) {
+				s.append(' ');
+			}
+			s.append(new EvalCard(first(set)).toString());
+			set &= set - 1;
+		}
+		return s.toString();
+	}
+
+}
@@ -0,0 +1,205 @@
+package pokerclient.model;
+
+/**
+ * What an agent sees when it is its player's turn: the legal actions, the
+ * sizing, the pot and the cards. The table fills in one context and hands
+ * it to each agent in turn, so an agent must read what it needs during
+ * decide and not keep the context.
+ *
+ * Cards are card sets, as CardSet describes; sizes are in chips, and bets
+ * and raises are sized by the total the player puts in on the street, as
+ * Action's are.
+ */
+public class DecisionContext {
+
+	private String name;
+
+	private int seat;
+
+	private int buttonSeat;
+
+	private int players;
+
+	private int stack;
+
+	private int toCall;
+
+	private int minBet;
+
+	private int maxBet;
+
+	private int pot;
+
+	private int bigBlind;
+
+	private long holeCards;
+
+	private long board;
+
+	/**
+	 * Legal actions, bit i set when the action type with ordinal i is legal.
+	 */
+	private int legal;
+
+	/**
+	 * Fills in the context for a player whose sizing is up to date.
+	 */
+	void update(Player player, int seat, int buttonSeat, int players,
+			long board, int pot, int bigBlind) {
+		this.name = player.getName();
+		this.seat = seat;
+		this.buttonSeat = buttonSeat;
+		this.players = players;
+		this.stack = player.getStack();
+		this.toCall = player.getToCall();
+		this.minBet = player.getMinBet();
+		this.maxBet = player.getMaxBet();
+		this.pot = pot;
+		this.bigBlind = bigBlind;
+		this.holeCards = player.getHand().getCardSet();
+		this.board = board;
+
+		legal = bit(Action.ActionType.FOLD);
+		legal |= player.isCheckable() ? bit(Action.ActionType.CHECK)
+				: bit(Action.ActionType.CALL);
+		if (player.canRaise()) {
+			legal |= player.isBettable() ? bit(Action.ActionType.BET)
+					: bit(Action.ActionType.RAISE);
+		}
+	}
+
+	private static int bit(Action.ActionType type) {
+		return 1 << type.ordinal();
+	}
+
+	/**
+	 * Says whether the player may take an action of a type now.
+	 *
+	 * @param type type of action
+	 * @return true if it is legal
+	 */
+	public boolean isLegal(Action.ActionType type) {
+		return (legal & bit(type)) != 0;
+	}
+
+	/**
+	 * Says whether an action is legal now, including the size of a bet or
+	 * raise.
+	 *
+	 * @param action action of this context's player
+	 * @return true if the table would accept it
+	 */
+	public boolean isLegal(Action action) {
+		Action.ActionType type = action.getAction();
+		if (!isLegal(type)) {
+			return false;
+		}
+		if (type == Action.ActionType.BET || type == Action.ActionType.RAISE) {
+			return action.getSize() >= minBet && action.getSize() <= maxBet;
+		}
+		return true;
+	}
+
+	public Action fold() {
+		return new Action(name, Action.ActionType.FOLD);
+	}
+
+	/**
+	 * Returns a check if it is legal, else a call.
+	 */
+	public Action checkOrCall() {
+		return new Action(name, isLegal(Action.ActionType.CHECK) ?
+				Action.ActionType.CHECK : Action.ActionType.CALL);
+	}
+
+	/**
+	 * Returns a check if it is legal, else a fold.
+	 */
+	public Action checkOrFold() {
+		return new Action(name, isLegal(Action.ActionType.CHECK) ?
+				Action.ActionType.CHECK : Action.ActionType.FOLD);
+	}
+
+	/**
+	 * Returns a bet or raise to a size, moved into the legal range, or a
+	 * check or call if the player can't bet or raise.
+	 *
+	 * @param size total the player would put in on the street
+	 * @return legal action
+	 */
+	public Action betOrRaise(int size) {
+		size = Math.max(minBet, Math.min(maxBet, size));
+		if (isLegal(Action.ActionType.BET)) {
+			return new Action(name, Action.ActionType.BET, size);
+		}
+		if (isLegal(Action.ActionType.RAISE)) {
+			return new Action(name, Action.ActionType.RAISE, size);
+		}
+		return checkOrCall();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the player's seat, counted from 0 in the order players sat.
+	 */
+	public int getSeat() {
+		return seat;
+	}
+
+	public int getButtonSeat() {
+		return buttonSeat;
+	}
+
+	/**
+	 * Returns the number of players seated, in the hand or not.
+	 */
+	public int getPlayerCount() {
+		return players;
+	}
+
+	public int getStack() {
+		return stack;
+	}
+
+	public int getToCall() {
+		return toCall;
+	}
+
+	/**
+	 * Returns the smallest legal bet or raise, which is all in if the player
+	 * has less.
+	 */
+	public int getMinBet() {
+		return minBet;
+	}
+
+	/**
+	 * Returns the largest legal bet or raise, all in.
+	 */
+	public int getMaxBet() {
+		return maxBet;
+	}
+
+	/**
+	 * Returns the chips in the pots, including the bets on this street.
+	 */
+	public int getPot() {
+		return pot;
+	}
+
+	public int getBigBlind() {
+		return bigBlind;
+	}
+
+	public long getHoleCards() {
+		return holeCards;
+	}
+
+	public long getBoard() {
+		return board;
+	}
+
+}
@@ -1,123 +1,209 @@
 package pokerclient.model;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Random;
 
 /**
- * Deck of cards.
+ * Deck of cards. The cards are kept in an array with the top card at index
+ * top, so dealing never shifts the rest of the deck. The same 52 cards are
+ * reused every hand.
  */
 public class Deck implements Serializable {
-	
+
 	/**
 	 * Automatically generated serial ID.
 	 */
 	private static final long serialVersionUID = -4288730322351067084L;
 
 	/**
-	 * Cards in the deck.
+	 * Cards in the deck, from index top up to size.
 	 */
-	private ArrayList<Card> cards;
-	
+	private Card[] cards;
+
 	/**
 	 * Index of the top card.
 	 */
-	private final static int TOP = 0;
-	
+	private int top;
+
+	/**
+	 * Index one past the bottom card.
+	 */
+	private int size;
+
+	/**
+	 * One of each card, made the first time the deck is initialized and
+	 * reused by every hand after that.
+	 */
+	private Card[] fullDeck;
+
+	/**
+	 * Shuffles this deck. Each deck has its own so that tables don't contend
+	 * for a shared generator.
+	 */
+	private Random random;
+
 	/**
 	 * Default size of deck.
 	 */
 	private final static int DEFAULT_DECK_SIZE = 52;
-	
-	
+
+
 	/**
 	 * Constructs an empty deck of cards.
 	 */
 	public Deck() {
-		cards = new ArrayList<Card>(DEFAULT_DECK_SIZE);
+		cards = new Card[DEFAULT_DECK_SIZE];
+		random = new Random();
 	}
-	
+
 	/**
 	 * Adds a single card to the deck. This method does not check if the card
 	 * is already in the deck - thus, the user is responsible for checking if
 	 * duplicates exist using the isInDeck method.
-	 * 
+	 *
 	 * @precondition the card is not already in the deck
 	 * @param card Card to add.
 	 */
 	public void addCard(Card card) {
 		assert !isInDeck(card);
-		cards.add(card);
+		if (size == cards.length) {
+			compact();
+		}
+		cards[size++] = card;
 	}
-	
+
 	/**
 	 * True if the card is already in the deck.
-	 * 
+	 *
 	 * @param card card to check against the deck.
 	 * @return true if the card is in the deck already
 	 */
 	public boolean isInDeck(Card card) {
-		return cards.contains(card);
+		return indexOf(card) >= 0;
 	}
-	
+
+	private int indexOf(Card card) {
+		for (int i = top; i < size; i++) {
+			if (cards[i].equals(card)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves the remaining cards to the front of the array.
+	 */
+	private void compact() {
+		System.arraycopy(cards, top, cards, 0, size - top);
+		size -= top;
+		top = 0;
+	}
+
 	/**
 	 * Removes a card from the deck.
-	 * 
+	 *
 	 * @param card card to remove
 	 * @return removed card
 	 */
 	public void removeCard(Card card) {
-		assert cards.contains(card);
-		cards.remove(card);
+		int index = indexOf(card);
+		assert index >= 0;
+		System.arraycopy(cards, index + 1, cards, index, size - index - 1);
+		size--;
+	}
+
+	/**
+	 * Removes every card in a set from the deck. Cards that aren't in the
+	 * deck are ignored.
+	 *
+	 * @param dead set of cards to remove
+	 */
+	public void removeCards(long dead) {
+		int kept = top;
+		for (int i = top; i < size; i++) {
+			if (!CardSet.contains(dead, cards[i].getIndex())) {
+				cards[kept++] = cards[i];
+			}
+		}
+		size = kept;
+	}
+
+	/**
+	 * Returns the cards left in the deck as a CardSet.
+	 *
+	 * @return set of the cards in the deck
+	 */
+	public long getCardSet() {
+		long set = CardSet.EMPTY;
+		for (int i = top; i < size; i++) {
+			set |= CardSet.of(cards[i].getIndex());
+		}
+		return set;
 	}
-	
+
 	/**
 	 * Shuffles all the cards in the deck.
 	 */
 	public void shuffle() {
-		Collections.shuffle(cards);
+		for (int i = size - 1; i > top; i--) {
+			int j = top + random.nextInt(i - top + 1);
+			Card temp = cards[i];
+			cards[i] = cards[j];
+			cards[j] = temp;
+		}
 	}
-	
+
 	/**
 	 * Looks at top card without removing it.
-	 * 
+	 *
 	 * @return top card
 	 */
 	public Card peek() {
-		return cards.get(TOP);
+		return cards[top];
 	}
-	
+
 	/**
 	 * Removes the next card and returns it.
-	 * 
+	 *
 	 * @return top card
 	 */
 	public Card nextCard() {
-		return cards.remove(TOP);
+		assert top < size;
+		return cards[top++];
 	}
-	
+
 	/**
 	 * Recreates the deck with all cards.
 	 */
 	public void init() {
-		cards.clear();
-		for (Card.Suit s : Card.Suit.values()) {
-			for (Card.Value v : Card.Value.values()) {
-				cards.add(new Card(v, s));
+		if (fullDeck == null) {
+			fullDeck = new Card[DEFAULT_DECK_SIZE];
+			int i = 0;
+			for (Card.Suit s : Card.Suit.values()) {
+				for (Card.Value v : Card.Value.values()) {
+					fullDeck[i++] = new Card(v, s);
+				}
 			}
 		}
+		for (Card c : fullDeck) {
+			c.show();
+		}
+		System.arraycopy(fullDeck, 0, cards, 0, DEFAULT_DECK_SIZE);
+		top = 0;
+		size = DEFAULT_DECK_SIZE;
 		shuffle();
 	}
-	
+
 	/**
 	 * String representation of the deck.
 	 */
 	public String toString() {
 		String s = "";
-		for (Card c : cards) {
-			s += c.toString() + "\n";
+		for (int i = top; i < size; i++) {
+			s += cards[i].toString() + "\n";
 		}
 		return s;
-	}	
+	}
 
 }
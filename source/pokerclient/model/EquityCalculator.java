@@ -0,0 +1,481 @@
+package pokerclient.model;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Estimates how often each of several hands wins by dealing out random
+ * runouts. Hands may be partial or unknown; their missing cards are dealt
+ * along with the board for every runout.
+ *
+ * The work is split across a fork-join pool. Every worker owns its deck (a
+ * plain array of the live card indices, dealt with a partial shuffle) and its
+ * random number generator, so nothing is shared or locked while sampling. A
+ * synchronized EvalDeck per runout would serialize the workers.
+ *
+ * When every hand is known, enumerate counts every possible board instead.
+ * That work is partitioned by the first board card dealt (the lowest card of
+ * the completion), one task per card.
+ */
+public class EquityCalculator {
+
+	/**
+	 * Number of cards on a complete board.
+	 */
+	public static final int BOARD_SIZE = 5;
+
+	/**
+	 * Number of cards in a complete hand.
+	 */
+	public static final int HAND_SIZE = 2;
+
+	/**
+	 * Number of runouts between checks of the deadline. Must be a power of
+	 * two.
+	 */
+	private static final int CHECK_INTERVAL = 1024;
+
+	/**
+	 * Number of tasks to make for each thread of the pool, so that a slow
+	 * thread doesn't hold up the rest.
+	 */
+	private static final int TASKS_PER_THREAD = 4;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a calculator that runs on the common fork-join pool.
+	 */
+	public EquityCalculator() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a calculator that runs on the given pool.
+	 *
+	 * @param pool pool to split the work across
+	 */
+	public EquityCalculator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Estimates equities by sampling runouts until either budget runs out.
+	 *
+	 * @param hands CardSet of each hand, holding up to two cards
+	 * @param board CardSet of the board, holding up to five cards
+	 * @param dead CardSet of cards that can't be dealt
+	 * @param maxSamples number of runouts to deal, or 0 for no limit
+	 * @param maxMillis time to spend in milliseconds, or 0 for no limit
+	 * @return estimated equities with confidence intervals
+	 */
+	public EquityResult simulate(long[] hands, long board, long dead,
+			long maxSamples, long maxMillis) {
+		if (maxSamples <= 0 && maxMillis <= 0) {
+			throw new IllegalArgumentException("No sample or time budget.");
+		}
+		long live = liveCards(hands, board, dead);
+		long samples = maxSamples > 0 ? maxSamples : Long.MAX_VALUE;
+		long deadline = maxMillis > 0 ?
+				System.nanoTime() + maxMillis * 1000000L : Long.MAX_VALUE;
+		int leaves = pool.getParallelism() * TASKS_PER_THREAD;
+		Tally tally = pool.invoke(new SampleTask(hands, board, live, samples,
+				leaves, deadline, new SplittableRandom()));
+		return tally.toResult(false);
+	}
+
+	/**
+	 * Estimates equities for hands and a board from the model.
+	 *
+	 * @param hands hands to compare; hidden cards are treated as unknown
+	 * @param board current board
+	 * @param dead CardSet of cards that can't be dealt
+	 * @param maxSamples number of runouts to deal, or 0 for no limit
+	 * @param maxMillis time to spend in milliseconds, or 0 for no limit
+	 * @return estimated equities with confidence intervals
+	 */
+	public EquityResult simulate(List<Hand> hands, Board board, long dead,
+			long maxSamples, long maxMillis) {
+		return simulate(toCardSets(hands), board.getCardSet(), dead,
+				maxSamples, maxMillis);
+	}
+
+	/**
+	 * Computes exact equities by counting every way to complete the board.
+	 *
+	 * @param hands CardSet of each hand, holding exactly two cards
+	 * @param board CardSet of the board, holding up to five cards
+	 * @param dead CardSet of cards that can't be dealt
+	 * @return exact equities
+	 */
+	public EquityResult enumerate(long[] hands, long board, long dead) {
+		long live = enumerableCards(hands, board, dead);
+		int[] deck = CardSet.toIndices(live);
+		int missing = BOARD_SIZE - CardSet.size(board);
+		Tally tally;
+		if (missing == 0) {
+			tally = new Tally(hands.length);
+			score(hands, board, new int[hands.length], tally);
+		} else {
+			tally = pool.invoke(new EnumerateTask(hands, board, deck, missing,
+					0, deck.length - missing + 1));
+		}
+		return tally.toResult(true);
+	}
+
+	/**
+	 * Computes exact equities on the calculator's pool without waiting for
+	 * them, for a caller whose thread mustn't be held up.
+	 *
+	 * @param hands CardSet of each hand, holding exactly two cards
+	 * @param board CardSet of the board, holding up to five cards
+	 * @param dead CardSet of cards that can't be dealt
+	 * @param listener told the exact equities, on a thread of the pool
+	 * @throws IllegalArgumentException straight away if the cards can't be
+	 * enumerated
+	 */
+	public void enumerateLater(final long[] hands, final long board,
+			final long dead, final Listener listener) {
+		enumerableCards(hands, board, dead);
+		pool.execute(new Runnable() {
+			public void run() {
+				listener.equitiesReady(enumerate(hands, board, dead));
+			}
+		});
+	}
+
+	/**
+	 * Told the result of enumerateLater.
+	 */
+	public interface Listener {
+
+		/**
+		 * Receives exact equities. Called on a thread of the calculator's
+		 * pool.
+		 *
+		 * @param result the equities
+		 */
+		void equitiesReady(EquityResult result);
+
+	}
+
+	/**
+	 * Checks that every hand is known and returns the cards that can still
+	 * be dealt.
+	 */
+	private static long enumerableCards(long[] hands, long board, long dead) {
+		long live = liveCards(hands, board, dead);
+		for (long hand : hands) {
+			if (CardSet.size(hand) != HAND_SIZE) {
+				throw new IllegalArgumentException(
+						"Can't enumerate runouts for unknown cards.");
+			}
+		}
+		return live;
+	}
+
+	/**
+	 * Computes exact equities for hands and a board from the model.
+	 *
+	 * @param hands hands to compare; every card must be known
+	 * @param board current board
+	 * @param dead CardSet of cards that can't be dealt
+	 * @return exact equities
+	 */
+	public EquityResult enumerate(List<Hand> hands, Board board, long dead) {
+		return enumerate(toCardSets(hands), board.getCardSet(), dead);
+	}
+
+	/**
+	 * Ranks every hand on a complete board and counts the result.
+	 */
+	private static void score(long[] hands, long runout, int[] ranks,
+			Tally tally) {
+		int best = -1;
+		int winners = 0;
+		for (int i = 0; i < hands.length; i++) {
+			int rank = TableHandEvaluator.rankCards(hands[i] | runout);
+			ranks[i] = rank;
+			if (rank > best) {
+				best = rank;
+				winners = 1;
+			} else if (rank == best) {
+				winners++;
+			}
+		}
+		tally.add(ranks, best, winners);
+	}
+
+	static long[] toCardSets(List<Hand> hands) {
+		long[] sets = new long[hands.size()];
+		for (int i = 0; i < sets.length; i++) {
+			sets[i] = hands.get(i).getCardSet();
+		}
+		return sets;
+	}
+
+	/**
+	 * Checks that the known cards are consistent and returns the cards that
+	 * can still be dealt.
+	 */
+	static long liveCards(long[] hands, long board, long dead) {
+		if (hands.length == 0) {
+			throw new IllegalArgumentException("No hands to compare.");
+		}
+		if (CardSet.size(board) > BOARD_SIZE) {
+			throw new IllegalArgumentException("Too many board cards.");
+		}
+		long known = board;
+		int needed = BOARD_SIZE - CardSet.size(board);
+		for (long hand : hands) {
+			if (CardSet.size(hand) > HAND_SIZE) {
+				throw new IllegalArgumentException("Too many cards in a hand.");
+			}
+			if (CardSet.overlaps(known, hand)) {
+				throw new IllegalArgumentException("A card is used twice.");
+			}
+			known |= hand;
+			needed += HAND_SIZE - CardSet.size(hand);
+		}
+		long live = CardSet.FULL_DECK & ~known & ~dead;
+		if (CardSet.size(live) < needed) {
+			throw new IllegalArgumentException("Not enough cards to deal.");
+		}
+		return live;
+	}
+
+	/**
+	 * Running counts for each hand over a number of runouts.
+	 */
+	static class Tally {
+
+		private long samples;
+
+		private final long[] wins;
+
+		private final long[] ties;
+
+		private final double[] shares;
+
+		private final double[] squaredShares;
+
+		Tally(int hands) {
+			wins = new long[hands];
+			ties = new long[hands];
+			shares = new double[hands];
+			squaredShares = new double[hands];
+		}
+
+		/**
+		 * Counts one runout.
+		 *
+		 * @param ranks rank of each hand
+		 * @param best best rank
+		 * @param winners number of hands with the best rank
+		 */
+		void add(int[] ranks, int best, int winners) {
+			samples++;
+			double share = 1.0 / winners;
+			for (int i = 0; i < ranks.length; i++) {
+				if (ranks[i] == best) {
+					if (winners == 1) {
+						wins[i]++;
+					} else {
+						ties[i]++;
+					}
+					shares[i] += share;
+					squaredShares[i] += share * share;
+				}
+			}
+		}
+
+		Tally merge(Tally other) {
+			samples += other.samples;
+			for (int i = 0; i < wins.length; i++) {
+				wins[i] += other.wins[i];
+				ties[i] += other.ties[i];
+				shares[i] += other.shares[i];
+				squaredShares[i] += other.squaredShares[i];
+			}
+			return this;
+		}
+
+		EquityResult toResult(boolean exact) {
+			return new EquityResult(samples, exact, wins, ties, shares,
+					squaredShares);
+		}
+
+	}
+
+	/**
+	 * Counts every board completion whose lowest new card is in a range of
+	 * deck positions. A task covering more than one first card splits itself
+	 * in two.
+	 */
+	private static class EnumerateTask extends RecursiveTask<Tally> {
+
+		/**
+		 * Automatically generated serial ID.
+		 */
+		private static final long serialVersionUID = 4820671187139538472L;
+
+		private final long[] hands;
+
+		private final long board;
+
+		private final int[] deck;
+
+		private final int missing;
+
+		private final int from;
+
+		private final int to;
+
+		EnumerateTask(long[] hands, long board, int[] deck, int missing,
+				int from, int to) {
+			this.hands = hands;
+			this.board = board;
+			this.deck = deck;
+			this.missing = missing;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Tally compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				EnumerateTask left = new EnumerateTask(hands, board, deck,
+						missing, from, middle);
+				EnumerateTask right = new EnumerateTask(hands, board, deck,
+						missing, middle, to);
+				left.fork();
+				return right.compute().merge(left.join());
+			}
+			Tally tally = new Tally(hands.length);
+			count(board | CardSet.of(deck[from]), from + 1, missing - 1,
+					new int[hands.length], tally);
+			return tally;
+		}
+
+		/**
+		 * Adds every choice of the remaining cards from the deck positions
+		 * starting at next.
+		 */
+		private void count(long runout, int next, int left, int[] ranks,
+				Tally tally) {
+			if (left == 0) {
+				score(hands, runout, ranks, tally);
+				return;
+			}
+			for (int i = next; i <= deck.length - left; i++) {
+				count(runout | CardSet.of(deck[i]), i + 1, left - 1, ranks,
+						tally);
+			}
+		}
+
+	}
+
+	/**
+	 * Deals random runouts. A task with more than one leaf splits itself in
+	 * two, giving each half its share of the samples and its own generator.
+	 */
+	private static class SampleTask extends RecursiveTask<Tally> {
+
+		/**
+		 * Automatically generated serial ID.
+		 */
+		private static final long serialVersionUID = -2236185512307327446L;
+
+		private final long[] hands;
+
+		private final long board;
+
+		private final long live;
+
+		private final long samples;
+
+		private final int leaves;
+
+		private final long deadline;
+
+		private final SplittableRandom random;
+
+		SampleTask(long[] hands, long board, long live, long samples,
+				int leaves, long deadline, SplittableRandom random) {
+			this.hands = hands;
+			this.board = board;
+			this.live = live;
+			this.samples = samples;
+			this.leaves = leaves;
+			this.deadline = deadline;
+			this.random = random;
+		}
+
+		@Override
+		protected Tally compute() {
+			if (leaves > 1) {
+				int rightLeaves = leaves / 2;
+				long rightSamples = samples / leaves * rightLeaves;
+				SampleTask left = new SampleTask(hands, board, live,
+						samples - rightSamples, leaves - rightLeaves, deadline,
+						random.split());
+				SampleTask right = new SampleTask(hands, board, live,
+						rightSamples, rightLeaves, deadline, random.split());
+				left.fork();
+				return right.compute().merge(left.join());
+			}
+			return sample();
+		}
+
+		private Tally sample() {
+			int[] deck = CardSet.toIndices(live);
+			int[] ranks = new int[hands.length];
+			long[] dealtHands = new long[hands.length];
+			int[] missing = new int[hands.length];
+			for (int i = 0; i < hands.length; i++) {
+				missing[i] = HAND_SIZE - CardSet.size(hands[i]);
+			}
+			int boardMissing = BOARD_SIZE - CardSet.size(board);
+			Tally tally = new Tally(hands.length);
+
+			for (long n = 0; n < samples; n++) {
+				if ((n & (CHECK_INTERVAL - 1)) == 0
+						&& System.nanoTime() > deadline) {
+					break;
+				}
+				int dealt = 0;
+				long runout = board;
+				for (int i = 0; i < boardMissing; i++) {
+					runout |= CardSet.of(deal(deck, dealt++));
+				}
+				for (int i = 0; i < hands.length; i++) {
+					long cards = hands[i];
+					for (int j = 0; j < missing[i]; j++) {
+						cards |= CardSet.of(deal(deck, dealt++));
+					}
+					dealtHands[i] = cards;
+				}
+				score(dealtHands, runout, ranks, tally);
+			}
+			return tally;
+		}
+
+		/**
+		 * Deals the card at a position by swapping a random card from the
+		 * rest of the deck into it. The deck stays a permutation of the live
+		 * cards, so it never needs to be reset.
+		 */
+		private int deal(int[] deck, int position) {
+			int swap = position + random.nextInt(deck.length - position);
+			int card = deck[swap];
+			deck[swap] = deck[position];
+			deck[position] = card;
+			return card;
+		}
+
+	}
+
+}
@@ -0,0 +1,142 @@
+package pokerclient.model;
+
+import java.io.Serializable;
+
+/**
+ * Win, tie and equity figures for each hand in an equity calculation. The
+ * equity of a hand is its expected share of the pot: a win counts fully and a
+ * tie between k hands counts 1/k. Results estimated from samples also carry a
+ * standard error so that callers can tell how far to trust them.
+ */
+public class EquityResult implements Serializable {
+
+	/**
+	 * Automatically generated serial ID.
+	 */
+	private static final long serialVersionUID = 6157417001358549290L;
+
+	/**
+	 * Multiple of the standard error used for the 95% confidence interval.
+	 */
+	public static final double Z_95 = 1.96;
+
+	/**
+	 * Number of runouts the figures are based on.
+	 */
+	private final long samples;
+
+	/**
+	 * True if every possible runout was counted, so there is no sampling
+	 * error.
+	 */
+	private final boolean exact;
+
+	private final double[] win;
+
+	private final double[] tie;
+
+	private final double[] equity;
+
+	private final double[] standardError;
+
+	/**
+	 * Builds a result from raw per-hand counts.
+	 *
+	 * @param samples number of runouts counted
+	 * @param exact true if every possible runout was counted
+	 * @param wins number of runouts each hand won outright
+	 * @param ties number of runouts each hand tied for the best hand
+	 * @param shares sum over the runouts of each hand's share of the pot
+	 * @param squaredShares sum over the runouts of each squared share
+	 */
+	public EquityResult(long samples, boolean exact, long[] wins, long[] ties,
+			double[] shares, double[] squaredShares) {
+		this.samples = samples;
+		this.exact = exact;
+		int hands = wins.length;
+		win = new double[hands];
+		tie = new double[hands];
+		equity = new double[hands];
+		standardError = new double[hands];
+		if (samples == 0) {
+			return;
+		}
+		for (int i = 0; i < hands; i++) {
+			win[i] = (double) wins[i] / samples;
+			tie[i] = (double) ties[i] / samples;
+			equity[i] = shares[i] / samples;
+			if (!exact && samples > 1) {
+				double variance = (squaredShares[i] - shares[i] * equity[i])
+						/ (samples - 1);
+				standardError[i] = Math.sqrt(Math.max(variance, 0) / samples);
+			}
+		}
+	}
+
+	public int getHandCount() {
+		return equity.length;
+	}
+
+	public long getSamples() {
+		return samples;
+	}
+
+	public boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * Returns the probability that a hand wins outright.
+	 */
+	public double getWinProbability(int hand) {
+		return win[hand];
+	}
+
+	/**
+	 * Returns the probability that a hand ties for the best hand.
+	 */
+	public double getTieProbability(int hand) {
+		return tie[hand];
+	}
+
+	/**
+	 * Returns the expected share of the pot for a hand.
+	 */
+	public double getEquity(int hand) {
+		return equity[hand];
+	}
+
+	/**
+	 * Returns the standard error of the equity estimate. This is 0 for exact
+	 * results.
+	 */
+	public double getStandardError(int hand) {
+		return standardError[hand];
+	}
+
+	/**
+	 * Returns the lower end of the 95% confidence interval for the equity.
+	 */
+	public double getLowerBound(int hand) {
+		return Math.max(0, equity[hand] - Z_95 * standardError[hand]);
+	}
+
+	/**
+	 * Returns the upper end of the 95% confidence interval for the equity.
+	 */
+	public double getUpperBound(int hand) {
+		return Math.min(1, equity[hand] + Z_95 * standardError[hand]);
+	}
+
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < equity.length; i++) {
+			s.append(String.format("%d: %.4f [%.4f, %.4f]\n", i, equity[i],
+					getLowerBound(i), getUpperBound(i)));
+		}
+		s.append(exact ? "exact, " : "estimated, ").append(samples)
+				.append(" runouts");
+		return s.toString();
+	}
+
+}
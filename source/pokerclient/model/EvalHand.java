@@ -43,6 +43,18 @@ public class EvalHand {
       }     
    }
    
+   /**
+    * @param set a CardSet holding up to MAX_CARDS cards
+    */
+   public EvalHand(long set) {
+      cards = new int[MAX_CARDS + 1];
+      cards[0] = 0;
+      while (set != 0L && cards[0] < MAX_CARDS) {
+         addCard(CardSet.first(set));
+         set &= set - 1;
+      }
+   }
+   
    /**
     * Duplicate an existing hand.
     * @param h the hand to clone.
@@ -152,6 +164,17 @@ public class EvalHand {
       }
    }
    
+   /**
+    * Obtain the cards of this hand as a CardSet.
+    * @return set of the cards in the hand
+    */
+   public long getCardSet() {
+      long set = CardSet.EMPTY;
+      for (int i=1;i<=cards[0];i++)
+         set |= CardSet.of(cards[i]);
+      return set;
+   }
+   
    /**
     * Get a string representation of this Hand.
     */
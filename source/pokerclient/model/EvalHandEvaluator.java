@@ -82,6 +82,20 @@ public class EvalHandEvaluator implements Serializable {
       return name_hand(rankHand(h));
    }
 
+   /**
+    * Given a rank from rankHand, return a string naming the hand.
+    */
+   public static String nameRank(int rank) {
+      return name_hand(rank);
+   }
+
+   /**
+    * Given a rank from rankHand, return its type (HIGH, PAIR, etc.)
+    */
+   public static int typeOfRank(int rank) {
+      return rank / ID_GROUP_SIZE;
+   }
+
    /**
     * Compares two hands against each other.
     * 
@@ -3,22 +3,28 @@ package pokerclient.model;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.Serializable;
 
 import pokerclient.controller.GameServer;
 import pokerclient.controller.GameState;
+import pokerclient.controller.SeatState;
 import pokerclient.gui.GameView;
 
 /**
  * Class used to model a game of poker.
+ * 
+ * The table is a state machine. Nothing blocks: each call to step does the
+ * next piece of the hand and says whether to carry on, wait for a pause or
+ * wait for a player. Actions, players joining, the end of pauses and
+ * decision clocks running out are events run on the table's TableScheduler,
+ * so many tables can share a few threads.
  */
 public class GameModel extends AbstractModel implements PropertyChangeListener,
-		Serializable, Runnable {
+		Serializable {
 
 	/**
 	 * Automatically generated serial ID.
@@ -55,43 +61,124 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	public final static String CHAT_UPDATE = "Chat updated";
 	
 	private enum Notification {
-		START_OF_TURN, START_OF_STREET, SHOWDOWN, END_OF_HAND, ALL_IN,
-		PLAYER_JOINED;
+		START_OF_TURN, START_OF_STREET, SHOWDOWN, END_OF_HAND, PLAYER_JOINED;
 	};
+	
+	/**
+	 * Point the table has reached in the hand.
+	 */
+	private enum Phase {
+		/**
+		 * Between hands, seating and removing players.
+		 */
+		SEATING,
+		/**
+		 * Players are acting on the current street.
+		 */
+		BETTING,
+		/**
+		 * The last street is over; the next one starts.
+		 */
+		NEXT_STREET,
+		/**
+		 * The next street's cards are dealt.
+		 */
+		DEAL,
+		SHOWDOWN,
+		END_OF_HAND;
+	};
+	
+	/**
+	 * Returned by step when the table must wait for an event: a player's
+	 * action, or enough players to start a hand.
+	 */
+	private static final long AWAIT_EVENT = -1;
 
 	/**
-	 * Count of remaining active players.
+	 * Point the table has reached.
 	 */
-	private int remainingActiveCount;
+	private Phase phase = Phase.SEATING;
 
 	/**
-	 * Size of current raise.
+	 * Index in streets of the next street to deal.
 	 */
-	private int currentRaise;
+	private int streetIndex;
 
 	/**
-	 * Size of previous raise.
+	 * Order of play on the current street, or null when nobody is left to
+	 * act on it.
 	 */
-	private int oldRaise;
+	private transient Iterator<Player> turnOrder;
 
 	/**
-	 * Lock used to use conditions for receiving actions and updating the GUI.
+	 * Players in a row who had nothing to do on their turn.
 	 */
-	private ReentrantLock lock;
+	private int cannotPlayCount;
 
 	/**
-	 * Used to ensure a player action has been processed before proceeding.
+	 * Player whose action the table is waiting for, or null.
 	 */
-	private Condition actionReceived;
+	private Player actor;
+
+	/**
+	 * Cancels the actor's decision clock, or null if it has none.
+	 */
+	private transient TimerWheel.Timeout decisionClock;
+
+	/**
+	 * When the actor's clock started, in milliseconds.
+	 */
+	private long clockStart;
+
+	/**
+	 * Clocks started so far, so that one which fires after its turn is over
+	 * can tell.
+	 */
+	private int clockCount;
+
+	/**
+	 * True once the table has been started.
+	 */
+	private boolean started;
+
+	/**
+	 * True while the table sits in a pause. Other events don't move the hand
+	 * along until it is over.
+	 */
+	private boolean paused;
+
+	/**
+	 * Runs this table's events, or null for a simulation, which runs on the
+	 * calling thread.
+	 */
+	private transient TableScheduler scheduler;
+
+	/**
+	 * Ends a pause.
+	 */
+	private transient Runnable resume;
+
+	/**
+	 * Count of remaining active players.
+	 */
+	private int remainingActiveCount;
+
+	/**
+	 * Size of current raise.
+	 */
+	private int currentRaise;
+
+	/**
+	 * Size of previous raise.
+	 */
+	private int oldRaise;
 
-	private Condition playersRemoved;
-	
 	private Players allPlayers;
 
 	/**
 	 * Pots in the active hand.
 	 */
-	private ArrayList<Pot> pots;
+	private PotLedger pots;
 
 	/**
 	 * Index of main pot in the array of pots.
@@ -108,74 +195,264 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	 */
 	private Board board;
 
+	/**
+	 * What the acting player's agent is told, filled in for each decision.
+	 */
+	private transient DecisionContext decision = new DecisionContext();
+
+	/**
+	 * Works out equities when everyone is all in. Shared by every table.
+	 */
+	private static final EquityCalculator EQUITY_CALCULATOR =
+			new EquityCalculator();
+
 	/**
 	 * Number of hands that have been played.
 	 */
 	private int handCount;
 
 	/**
-	 * True when the player has notified the model of its action and his/her
-	 * action has been processed.
+	 * True when the acting player has notified the model of its action and
+	 * his/her action has been processed.
 	 */
 	private boolean playerNotified;
 
 	/**
-	 * Prints hand history to a text file.
+	 * Id of the table, which its hand records carry.
 	 */
-	private HHPrinter printer;
+	private int tableId;
+
+	/**
+	 * Record of the current hand, or null between hands and in simulations.
+	 */
+	private transient HandRecord record;
+
+	/**
+	 * Chips the last MONEY_PAID reported, which is what a call put in.
+	 */
+	private int lastPayment;
+
+	/**
+	 * Writes the finished hands to disk.
+	 */
+	private transient HandHistorySink historySink;
+
+	/**
+	 * Chat lines of the current step, sent to the view as one message when
+	 * the step ends or the table changes in front of the players.
+	 */
+	private final StringBuilder pendingChat = new StringBuilder();
 
 	private ArrayList<Player> toRemove;
 
 	private ArrayList<Player> toAdd;
 
-	private GameState currentState;
+	/**
+	 * Names of the players waiting to sit down or at the table, until they
+	 * are taken off it. Claimed by addPlayer on the caller's thread, so a
+	 * name is refused before the table has seen the first player with it.
+	 */
+	private final Set<String> names = ConcurrentHashMap.newKeySet();
 	
-	private final Street flop;
-	private final Street turn;
-	private final Street river;
+	/**
+	 * Flop, turn and river, in order.
+	 */
+	private final Street[] streets;
 
 	private GameSettings settings;
 	
+	/**
+	 * True when the table runs as a simulation: players are agents in this
+	 * process, and there are no pauses, view notifications, chat or hand
+	 * histories.
+	 */
+	private final boolean simulation;
+	
 	/**
 	 * Constructs the game and instantiates players, deck, board, and pots.
+	 * The table runs on the shared TableExecutor.
 	 * 
 	 * @param settings configuration params for the game
-	 * @param decisionTime decision time
+	 * @param id id of the table, used to name its hand history
 	 */
 	public GameModel(GameSettings settings, int id) {
+		this(settings, id, false);
+	}
+	
+	/**
+	 * Constructs the game, optionally as a simulation. A simulated table
+	 * plays as fast as its agents decide and reports nothing, so every
+	 * player must have a PlayerAgent.
+	 * 
+	 * @param settings configuration params for the game
+	 * @param id id of the table, used to name its hand history
+	 * @param simulation true to run without pauses or notifications
+	 */
+	public GameModel(GameSettings settings, int id, boolean simulation) {
+		this(settings, id, simulation,
+				simulation ? null
+						: TableExecutor.getDefault().newScheduler(id),
+				simulation ? null : HandHistorySink.getDefault());
+	}
+	
+	/**
+	 * Constructs the game on a given scheduler, for hosts that run their
+	 * tables on their own executor.
+	 * 
+	 * @param settings configuration params for the game
+	 * @param id id of the table, used to name its hand history
+	 * @param scheduler runs the table's events
+	 */
+	public GameModel(GameSettings settings, int id, TableScheduler scheduler) {
+		this(settings, id, false, scheduler, HandHistorySink.getDefault());
+	}
+	
+	/**
+	 * Constructs the game on a given scheduler, writing its hand history to
+	 * a given sink.
+	 * 
+	 * @param settings configuration params for the game
+	 * @param id id of the table, which its hand records carry
+	 * @param scheduler runs the table's events
+	 * @param historySink writes the table's hand records
+	 */
+	public GameModel(GameSettings settings, int id, TableScheduler scheduler,
+			HandHistorySink historySink) {
+		this(settings, id, false, scheduler, historySink);
+	}
+	
+	private GameModel(GameSettings settings, int id, boolean simulation,
+			TableScheduler scheduler, HandHistorySink historySink) {
 		this.settings = settings;
-		flop = this.new Street(3, "Flop", true);
-		turn = this.new Street(1, "Turn", false);
-		river = this.new Street(1, "River", false);
+		this.simulation = simulation;
+		this.scheduler = scheduler;
+		this.tableId = id;
+		this.historySink = historySink;
+		streets = new Street[] {
+				this.new Street(3, "Flop"),
+				this.new Street(1, "Turn"),
+				this.new Street(1, "River") };
 		allPlayers = new Players();
 		toRemove = new ArrayList<Player>();
 		toAdd = new ArrayList<Player>();
 		deck = new Deck();
 		board = new Board();
-		pots = new ArrayList<Pot>();
-		initLock();
-		initPrinter(id);
+		pots = new PotLedger();
+		resume = new Runnable() {
+			public void run() {
+				paused = false;
+				advance();
+			}
+		};
 	}
 
-	private void initPrinter(int id) {
-		printer = new HHPrinter(Integer.toString(id));
-		printer.add("******NEW SESSION*****" + "\t" + new Date().toString()
-				+ "\n");
+	/**
+	 * Starts the table. Hands are dealt as soon as two players are seated,
+	 * and carry on for as long as there are two. Hand numbers carry on from
+	 * the table's last hand in the history.
+	 */
+	public void start() {
+		onTable(new Runnable() {
+			public void run() {
+				if (historySink != null) {
+					handCount = historySink.getLastHandNumber(tableId);
+				}
+				started = true;
+				advance();
+			}
+		});
 	}
 
-	private void initLock() {
-		lock = new ReentrantLock();
-		actionReceived = lock.newCondition();
-		playersRemoved = lock.newCondition();
+	/**
+	 * Seats the waiting players and plays a number of hands in a row on the
+	 * calling thread. Meant for simulations, where every player has an agent;
+	 * it returns early if there are too few players or a player has to wait
+	 * for a client.
+	 * 
+	 * @param count number of hands to play
+	 */
+	public void playHands(int count) {
+		started = true;
+		int last = handCount + count;
+		while (phase != Phase.SEATING || handCount < last) {
+			if (step() == AWAIT_EVENT) {
+				return;
+			}
+		}
 	}
 
-	public void run() {
-		while (true) {
+	/**
+	 * Runs an event on the table's scheduler, or straight away for a
+	 * simulation.
+	 * 
+	 * @param event event to run
+	 */
+	private void onTable(Runnable event) {
+		if (scheduler == null) {
+			event.run();
+		} else {
+			scheduler.execute(event);
+		}
+	}
+
+	/**
+	 * Moves the hand along until it has to wait. A pause is handed to the
+	 * scheduler; anything else is waited for by returning.
+	 */
+	private void advance() {
+		if (!started || paused) {
+			flushChat();
+			return;
+		}
+		long delay;
+		do {
+			delay = step();
+		} while (delay == 0);
+		flushChat();
+		if (delay != AWAIT_EVENT) {
+			paused = true;
+			scheduler.schedule(resume, delay);
+		}
+	}
+
+	/**
+	 * Does the next piece of the hand.
+	 * 
+	 * @return 0 to go straight on, a pause in milliseconds before the next
+	 * step, or AWAIT_EVENT to wait for a player
+	 */
+	private long step() {
+		switch (phase) {
+		case SEATING:
 			updatePlayers();
-			while (allPlayers.size() < 2) {
-				updatePlayers();
+			if (allPlayers.size() < 2) {
+				return AWAIT_EVENT;
+			}
+			startHand();
+			phase = Phase.BETTING;
+			return 0;
+		case BETTING:
+			return playTurns();
+		case NEXT_STREET:
+			if (streetIndex == streets.length) {
+				phase = Phase.SHOWDOWN;
+				return 0;
 			}
-			playHand();
+			phase = Phase.DEAL;
+			return streets[streetIndex].announce();
+		case DEAL:
+			streets[streetIndex++].deal();
+			phase = Phase.BETTING;
+			return 0;
+		case SHOWDOWN:
+			phase = Phase.END_OF_HAND;
+			return showDown();
+		case END_OF_HAND:
+			endHand();
+			phase = Phase.SEATING;
+			return 0;
+		default:
+			throw new AssertionError("Not a legal phase.");
 		}
 	}
 
@@ -185,100 +462,168 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	}
 
 	/**
-	 * Adds a new player to the game.
+	 * Adds a new player to the game. The player is seated between hands.
+	 * Safe to call from any thread.
 	 * 
 	 * @param newPlayer player to add
+	 * @return false if a player with the same name is at the table or
+	 * waiting to sit down, in which case the new one isn't added
 	 */
-	public void addPlayer(Player newPlayer) {
-		if (!allPlayers.contains(newPlayer)) {
-			lock.lock();
-			toAdd.add(newPlayer);
-			lock.unlock();
-		} else {
-			System.err.println("Name " + newPlayer.getName() + " was already"
-					+ "taken. Seating was denied");
+	public boolean addPlayer(final Player newPlayer) {
+		if (!names.add(newPlayer.getName())) {
+			System.err.println("Name " + newPlayer.getName()
+					+ " was already taken. Seating was denied");
+			return false;
 		}
-		updateGUI(Notification.PLAYER_JOINED);
+		onTable(new Runnable() {
+			public void run() {
+				toAdd.add(newPlayer);
+				updateGUI(Notification.PLAYER_JOINED);
+				if (phase == Phase.SEATING) {
+					advance();
+				}
+			}
+		});
+		return true;
 	}
 
 	/**
 	 * Add players waiting to join the table.
 	 */
 	private void addWaitingPlayers() {
-		lock.lock();
 		for (Player p : toAdd) {
 			if (allPlayers.size() > settings.getMaxPlayers()) {
 				// TODO: notify player...
 				System.err.println("Table full. " + p.getName()
 						+ " was denied seating.");
-				lock.unlock();
 				return;
 			}
+			p.setAnnouncing(!simulation);
 			allPlayers.addPlayer(p);
 		}
-		lock.unlock();
 		toAdd.clear();
 	}
 
 	/**
-	 * Indicates that a player is sitting out and removes them from the game.
+	 * Indicates that a player is sitting out. The player folds now if it is
+	 * their turn and on their next turn otherwise, and leaves the table
+	 * between hands.
+	 * 
+	 * @param player player who left
 	 */
-	public void sitOutPlayer(Player player) {
-		assert allPlayers.contains(player);
-		
-		player.sitOut();
-		
-		allPlayers.remove(player);
-		
-//		toRemove.add(player);
+	public void sitOutPlayer(final Player player) {
+		onTable(new Runnable() {
+			public void run() {
+				player.sitOut();
+				if (toAdd.remove(player)) {
+					names.remove(player.getName());
+					return;
+				}
+				assert allPlayers.contains(player);
+				toRemove.add(player);
+				if (player == actor && !playerNotified) {
+					player.fold();
+					advance();
+				} else if (phase == Phase.SEATING) {
+					advance();
+				}
+			}
+		});
 	}
 
 	/**
-	 * Removes a player from the model after making sure that the listener makes
-	 * the necessary adjustments.
+	 * Removes the players who left, after letting the listener make the
+	 * necessary adjustments.
 	 * 
 	 * @precondition this shouldn't be called in the middle of a hand.
 	 */
 	private void removeAbsentPlayers() {
-		lock.lock();
-		firePropertyChange(GameServer.REMOVE_ABSENT_PLAYERS, "", toRemove);
-		try {
-			while (toRemove.size() > 0) {
-				playersRemoved.await();
-			}
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} finally {
-			lock.unlock();
+		if (toRemove.isEmpty()) {
+			return;
 		}
+		firePropertyChange(GameServer.REMOVE_ABSENT_PLAYERS, "", toRemove);
+		notifyPlayersRemoved();
 	}
 
+	/**
+	 * Takes the players who left off the table. The listener may call this
+	 * while handling REMOVE_ABSENT_PLAYERS; the table calls it itself
+	 * afterwards, so it does nothing the second time.
+	 */
 	public void notifyPlayersRemoved() {
-		lock.lock();
-		try {
-			for (Player p : toRemove) {
-				allPlayers.remove(p);
+		for (Player p : toRemove) {
+			allPlayers.remove(p);
+			names.remove(p.getName());
+		}
+		toRemove.clear();
+	}
+
+	/**
+	 * Hands a player's action to the table. It is taken on the table's
+	 * scheduler if it is still that player's turn, and dropped otherwise.
+	 * An illegal action, such as a raise out of range, is taken as a check
+	 * or a fold.
+	 * 
+	 * @param player player acting
+	 * @param action action to take
+	 */
+	public void submitAction(final Player player, final Action action) {
+		onTable(new Runnable() {
+			public void run() {
+				takeAction(player, action);
 			}
-			toRemove.clear();
-			playersRemoved.signalAll();
-		} finally {
-			lock.unlock();
+		});
+	}
+
+	/**
+	 * Takes a player's action if it is still their turn. Runs on the table.
+	 * An action the player may not take is taken as a check, or a fold if
+	 * the player can't check, as an agent's is.
+	 * 
+	 * @param player player acting
+	 * @param action action to take
+	 */
+	private void takeAction(Player player, Action action) {
+		if (player != actor || playerNotified
+				|| !player.getName().equals(action.getPlayerName())) {
+			return;
 		}
+		if (!decision.isLegal(action)) {
+			System.err.println(player.getName() + " sent an illegal action, "
+					+ action.describe());
+			action = decision.checkOrFold();
+		}
+		player.acceptAction(action);
+		advance();
 	}
 
 	/**
-	 * Runs the game indefinitely.
+	 * Starts a hand: posts the antes and blinds, deals, and sets up the
+	 * pre-flop betting.
 	 */
-	public void playHand() {
+	private void startHand() {
 		initHand();
-		runHand();
+		startRecord();
+		payAntes();
+		payBlinds();
+		updateStreetChat("Pre-flop", null);
+		dealPreFlop();
+		streetIndex = 0;
+		beginStreet(settings.getBigBlind(), true);
+	}
+
+	/**
+	 * Saves the hand and clears the table for the next one.
+	 */
+	private void endHand() {
+		exportHand();
+		settings.tick();
 		for (Player p : allPlayers) {
 			p.resetHand();
 		}
 		board.initBoard();
 		updateGUI(Notification.END_OF_HAND);
 	}
-
 	/**
 	 * Initializes the deck, increments positions, makes new pots, resets player
 	 * hands, and pays the ante.
@@ -286,8 +631,7 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	private void initHand() {
 		handCount++;
 		deck.init();
-		pots.clear();
-		pots.add(new Pot());
+		pots.reset();
 		for (Player p : allPlayers) {
 			p.resetHand();
 		}
@@ -296,12 +640,30 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	}
 
 	/**
-	 * Updates the chat box and HHPrinter.
+	 * Updates the chat box. The chat box gets the text with the rest of the
+	 * step's chat, when flushChat is next called.
 	 * @param s message to append
 	 */
 	public void updateChat(String s) {
-		firePropertyChange(GameView.UPDATE_CHAT, "", s);
-		printer.add(s);
+		if (simulation) {
+			return;
+		}
+		pendingChat.append(s);
+	}
+
+	/**
+	 * Sends the chat held back since the last flush as one message. The
+	 * table flushes at the end of every step, which ends after an action,
+	 * a street or a hand, and before every new game state, so the chat never
+	 * runs behind the table.
+	 */
+	private void flushChat() {
+		if (pendingChat.length() == 0) {
+			return;
+		}
+		String chat = pendingChat.toString();
+		pendingChat.setLength(0);
+		firePropertyChange(GameView.UPDATE_CHAT, "", chat);
 	}
 
 	public void updateButton() {
@@ -319,86 +681,125 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 		
 		private int numCards;
 		private String name;
-		private boolean isFlop;
 		
-		public Street(int numCards, String name, boolean isFlop) {
+		public Street(int numCards, String name) {
 			this.numCards = numCards;
 			this.name = name;
-			this.isFlop = isFlop;
 		}
 		
-		public void run() {
+		/**
+		 * Shows the equities when everyone is all in before the street is
+		 * dealt.
+		 * 
+		 * @return pause before the street is dealt
+		 */
+		public long announce() {
 			// TODO - skip showing everything if we're not in results oriented
 			// mode. Make sure we update the board in the case in which people
 			// are all in
 
-			if (isEveryoneAllIn()) {
-				updateGUI(Notification.ALL_IN);
-				if (isHandContested()) {
-					pause(GameSettings.ALL_IN_PAUSE -
-							GameSettings.END_OF_STREET_PAUSE);
-				}
+			if (!isEveryoneAllIn() || simulation) {
+				return 0;
+			}
+			if (!isHandContested()) {
+				updateAllIn(null);
+				return 0;
 			}
+			announceEquities();
+			return GameSettings.ALL_IN_PAUSE - GameSettings.END_OF_STREET_PAUSE;
+		}
+		
+		/**
+		 * Deals the street and sets up its betting.
+		 */
+		public void deal() {
 			dealStreet(numCards);
 			updateGUI(Notification.START_OF_STREET);
-			updateChat(streetToString(name));
-			playStreet(0, false, isFlop);
-			pause(GameSettings.END_OF_STREET_PAUSE);
+			updateStreetChat(name, null);
+			beginStreet(0, false);
 		}
 		
 	}
 
-	/**
-	 * Runs a single hand.
-	 */
-	public void runHand() {
-		payAntes();
-		payBlinds();
-		runPreflop();
-		flop.run();
-		turn.run();
-		river.run();
-		showDown();
-		exportHand();
-		settings.tick();
-	}
-
-	private void runPreflop() {
-		updateChat(streetToString("Pre-flop"));
-		dealPreFlop();
-		playStreet(settings.getBigBlind(), true, false);
-		pause(GameSettings.END_OF_STREET_PAUSE);
-	}
-	
 	private void payBlinds() {
-		allPlayers.getSB().paySmallBlind(settings.getSmallBlind());
-		allPlayers.getBB().payBigBlind(settings.getBigBlind());
+		Player sb = allPlayers.getSB();
+		recordAction(sb, HandRecord.SMALL_BLIND,
+				sb.paySmallBlind(settings.getSmallBlind()));
+		Player bb = allPlayers.getBB();
+		recordAction(bb, HandRecord.BIG_BLIND,
+				bb.payBigBlind(settings.getBigBlind()));
 	}
 
 	private void payAntes() {
 		for (Player p : allPlayers) {
-			p.payAnte(settings.getAnte());
+			int paid = p.payAnte(settings.getAnte());
+			if (paid > 0) {
+				recordAction(p, HandRecord.ANTE, paid);
+			}
+		}
+	}
+
+	/**
+	 * Starts the record of the hand with the seats as they stand before the
+	 * antes and blinds.
+	 */
+	private void startRecord() {
+		if (simulation) {
+			return;
+		}
+		record = new HandRecord();
+		record.start(tableId, handCount, System.currentTimeMillis(),
+				settings.getSmallBlind(), settings.getBigBlind(),
+				settings.getAnte(),
+				allPlayers.getButtonIndex() % allPlayers.size());
+		for (Player p : allPlayers) {
+			record.addSeat(p.getName(), p.getStack());
+		}
+	}
+
+	/**
+	 * Adds an action to the hand's record.
+	 * 
+	 * @param source player who acted
+	 * @param type one of the HandRecord action types
+	 * @param amount chips of the action
+	 */
+	private void recordAction(Object source, int type, int amount) {
+		if (record != null) {
+			record.addAction(allPlayers.indexOf((Player) source), type,
+					amount);
 		}
 	}
 
 	/**
-	 * Exports the hand history to text.
+	 * Hands the hand's record to the sink, which writes it in the
+	 * background.
 	 */
 	private void exportHand() {
-		printer.saveHand();
+		if (record == null) {
+			return;
+		}
+		for (Card c : board) {
+			record.addBoardCard(c.getIndex());
+		}
+		historySink.submit(record);
+		record = null;
 	}
 
 	/**
 	 * Deals hands to all of the players.
 	 */
 	private void dealPreFlop() {
-		deck.shuffle();
 		for (Player p : allPlayers.inHand()) {
 			Hand h = new Hand();
 			for (int i = 0; i < 2; i++) {
 				h.setCard(i, deck.nextCard());
 			}
 			p.setHand(h);
+			if (record != null) {
+				record.setHoleCards(allPlayers.indexOf(p),
+						h.getFirst().getIndex(), h.getSecond().getIndex());
+			}
 		}
 	}
 	
@@ -410,26 +811,34 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 
 	/**
 	 * Showdown determines winner.
+	 * 
+	 * @return pause before the hand ends
 	 */
-	public void showDown() {
+	private long showDown() {
 		if (allPlayers.inHandCount() > 1) {
 			updateGUI(Notification.SHOWDOWN);
-			updateChat(streetToString("Showdown"));
-			for (Pot pot : pots) {
-				ArrayList<Player> winners = HandRanker.findWinner(pot, board);
+			ShowdownResult showdown = HandRanker.rankShowdown(
+					allPlayers.inHand(), board);
+			updateStreetChat("Showdown", showdown);
+			for (Pot pot : pots.getPots()) {
+				ArrayList<Player> winners = showdown.findWinners(pot);
+				if (winners.isEmpty()) {
+					continue;
+				}
 				double split = 1.0 / winners.size();
 				for (Player player : winners) {
 					ship(player, pot, split);
 				}
 			}
-			pauseShowdown();
-		} else {
-			updateChat(streetToString("Showdown"));
-			// TODO - this can fail if everyone has quit.
-			assert allPlayers.inHandCount() == 1;
-			ship(allPlayers.inHandIterator(0).next(), pots.get(0), 1.0);
+			updateChat("\n-----\n");
+			return pauseShowdown();
 		}
+		updateStreetChat("Showdown", null);
+		// TODO - this can fail if everyone has quit.
+		assert allPlayers.inHandCount() == 1;
+		ship(allPlayers.inHandIterator(0).next(), pots.getMainPot(), 1.0);
 		updateChat("\n-----\n");
+		return 0;
 	}
 
 	/**
@@ -439,18 +848,23 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	 * @param pot pot to ship
 	 */
 	private void ship(Player player, Pot pot, double portion) {
-		player.addToStack((int) (pot.getSize() * portion));
-		updateChat(getResults(player.getName(), pot));
+		int won = (int) (pot.getSize() * portion);
+		player.addToStack(won);
+		if (!simulation) {
+			updateChat(getResults(player.getName(), pot));
+			record.addResult(allPlayers.indexOf(player), pot.getSize(), won);
+		}
 	}
 
 	/**
-	 * Plays a single street.
+	 * Sets up the betting on a street.
 	 * 
-	 * @param currentRaise inital raise players are facing - 0 on every street
+	 * @param raiseSize inital raise players are facing - 0 on every street
 	 * except pre.
-	 * @param flop true when the street is the flop
+	 * @param preFlop true when the street is the pre-flop
 	 */
-	private void playStreet(int raiseSize, boolean preFlop, boolean flop) {
+	private void beginStreet(int raiseSize, boolean preFlop) {
+		turnOrder = null;
 		if (allPlayers.inHandCount() < 2) {
 			return;
 		}
@@ -462,18 +876,105 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 			activeStartIndex += allPlayers.getBBOffset();
 		}
 		
-		int cannotPlayCount = 0;
+		cannotPlayCount = 0;
 		remainingActiveCount = allPlayers.inHandCount();
-		Iterator<Player> iter = allPlayers.inHandIterator(activeStartIndex);
-		while (actionUnclosed() && remainingActiveCount > 1 &&
-				cannotPlayCount < remainingActiveCount && iter.hasNext()) {
-			Player p = iter.next();
-			boolean played = takePlayerTurn(p, !othersActionUnclosed(p),
-					countOtherAllIns(p));
-			cannotPlayCount = played ? 0 : cannotPlayCount + 1;
+		turnOrder = allPlayers.inHandIterator(activeStartIndex);
+	}
+
+	/**
+	 * Gives players their turns until the street is over or someone has to
+	 * wait for a client. Called again once that player's action is in.
+	 * 
+	 * @return pause at the end of the street, or AWAIT_EVENT
+	 */
+	private long playTurns() {
+		if (turnOrder != null) {
+			if (!finishTurn()) {
+				return AWAIT_EVENT;
+			}
+			while (actionUnclosed() && remainingActiveCount > 1 &&
+					cannotPlayCount < remainingActiveCount) {
+				Player p = turnOrder.next();
+				boolean played = takePlayerTurn(p, !othersActionUnclosed(p),
+						countOtherAllIns(p));
+				cannotPlayCount = played ? 0 : cannotPlayCount + 1;
+				if (!finishTurn()) {
+					return AWAIT_EVENT;
+				}
+			}
+			for (Player p : allPlayers) {
+				p.resetStreet();
+			}
+			turnOrder = null;
 		}
-		for (Player p : allPlayers) {
-			p.resetStreet();
+		phase = Phase.NEXT_STREET;
+		return pause(GameSettings.END_OF_STREET_PAUSE);
+	}
+
+	/**
+	 * Ends the acting player's turn if their action is in.
+	 * 
+	 * @return false if the table is still waiting for the action
+	 */
+	private boolean finishTurn() {
+		if (actor == null) {
+			return true;
+		}
+		if (!playerNotified) {
+			return false;
+		}
+		playerNotified = false;
+		stopClock(actor);
+		actor.setActive(false);
+		actor = null;
+		return true;
+	}
+
+	/**
+	 * Starts the clock on a client's decision. The player has DECISION_TIME
+	 * and their time bank; when that runs out they check if they can and
+	 * fold otherwise, just as if their client had sent it.
+	 * 
+	 * @param p player to act
+	 */
+	private void startClock(final Player p) {
+		if (scheduler == null) {
+			return;
+		}
+		final int clock = ++clockCount;
+		int allowed = GameSettings.DECISION_TIME + p.getTimeBank();
+		clockStart = System.currentTimeMillis();
+		decisionClock = scheduler.scheduleTimeout(new Runnable() {
+			public void run() {
+				if (clock != clockCount || p != actor || playerNotified) {
+					return;
+				}
+				System.out.println(p.getName() + " ran out of time at table "
+						+ tableId);
+				takeAction(p, new Action(p.getName(), p.isCheckable() ?
+						Action.ActionType.CHECK : Action.ActionType.FOLD));
+			}
+		}, allowed);
+		firePropertyChange(GameView.UPDATE_TIMER, null,
+				Integer.valueOf(allowed));
+	}
+
+	/**
+	 * Stops the acting player's clock, charging their time bank with the
+	 * time they took over DECISION_TIME.
+	 * 
+	 * @param p player who acted
+	 */
+	private void stopClock(Player p) {
+		if (decisionClock == null) {
+			return;
+		}
+		decisionClock.cancel();
+		decisionClock = null;
+		long over = System.currentTimeMillis() - clockStart
+				- GameSettings.DECISION_TIME;
+		if (over > 0) {
+			p.setTimeBank((int) Math.max(0, p.getTimeBank() - over));
 		}
 	}
 
@@ -481,9 +982,11 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 		return othersActionUnclosed(null);
 	}
 	
+	// The checks below run for every turn, so they walk the seats directly
+	// rather than building the ordered list inHand returns.
 	private boolean othersActionUnclosed(Player p) {
-		for (Player pl : allPlayers.inHand()) {
-			if (p != null && pl.equals(p)) {
+		for (Player pl : allPlayers) {
+			if (!pl.isInHand() || pl == p) {
 				continue;
 			}
 			if (!pl.isActionClosed()) {
@@ -495,8 +998,8 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	
 	private int countOtherAllIns(Player p) {
 		int allIns = 0;
-		for (Player pl : allPlayers.inHand()) {
-			if (p != null && pl.equals(p)) {
+		for (Player pl : allPlayers) {
+			if (!pl.isInHand() || pl == p) {
 				continue;
 			}
 			if (pl.isAllIn()) {
@@ -511,11 +1014,7 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 			return false;
 		}
 		
-		playerAct(p, allCalled);
-		pots = Pot.generatePots(new HashSet<Player>(
-				allPlayers.getPlayersCopy()));
-		
-		return true;
+		return playerAct(p, allCalled);
 	}
 
 	private boolean playerCanAct(Player p, int allIns) {
@@ -526,46 +1025,53 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 				&& (multipleNotAllIn || (oneNotAllIn && mustMatchRaise));
 	}
 
-	private void playerAct(Player p, boolean allCalled) {
+	/**
+	 * Gives a player the turn. The turn lasts until the player's action comes
+	 * in, which for an agent is before act returns.
+	 * 
+	 * @return false if the player had nothing to respond to, so the turn
+	 * didn't move the street along
+	 */
+	private boolean playerAct(Player p, boolean allCalled) {
 		if (!allCalled || !p.hasActed()) {
-			p.setActive(true);
 			p.updateSizing(currentRaise, oldRaise);
+			if (!p.hasDecision()) {
+				// updateSizing closed the action without firing an action
+				// event, so there's nothing to wait for.
+				return false;
+			}
+			p.setActive(true);
 			updateGUI(Notification.START_OF_TURN, p);
-			p.act();
-
-			lock.lock();
-			try {
-				while (!playerNotified) {
-					actionReceived.await();
-				}
-				playerNotified = false;
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			} finally {
-				lock.unlock();
+			actor = p;
+			// Filled in for clients too, whose actions are checked against it.
+			decision.update(p, allPlayers.indexOf(p),
+					allPlayers.getButtonIndex(), allPlayers.size(),
+					board.getCardSet(), pots.getTotal(),
+					settings.getBigBlind());
+			p.act(decision);
+			if (!playerNotified) {
+				startClock(p);
 			}
-			p.setActive(false);
 		} else {
 			p.setIsClosed(true);
 		}
+		return true;
 	}
 
-	private void pauseShowdown() {
-		try {
-			Thread.sleep(allPlayers.inHandCount() > 1 ?
-					GameSettings.SHOWDOWN_PAUSE_MULTIPLE :
-					GameSettings.SHOWDOWN_PAUSE_SINGLE);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+	private long pauseShowdown() {
+		return pause(allPlayers.inHandCount() > 1 ?
+				GameSettings.SHOWDOWN_PAUSE_MULTIPLE :
+				GameSettings.SHOWDOWN_PAUSE_SINGLE);
 	}
 
-	private void pause(int time) {
-		try {
-			Thread.sleep(time);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+	/**
+	 * Returns how long to pause for. Simulations don't pause.
+	 * 
+	 * @param time pause in milliseconds
+	 * @return time, or 0 for a simulation
+	 */
+	private long pause(int time) {
+		return simulation ? 0 : time;
 	}
 
 	/**
@@ -575,8 +1081,8 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	 */
 	private boolean isEveryoneAllIn() {
 		int active = 0;
-		for (Player p : allPlayers.inHand()) {
-			if (!p.isAllIn()) {
+		for (Player p : allPlayers) {
+			if (p.isInHand() && !p.isAllIn()) {
 				active++;
 			}
 			if (active > 1) {
@@ -587,66 +1093,95 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	}
 	
 	private boolean isHandContested() {
-		int inHand = 0;
-		for (Player p : allPlayers.inHand()) {
-			if (p.isInHand()) {
-				inHand++;
-			}
-			if (inHand > 1) {
-				return true;
+		return allPlayers.inHandCount() > 1;
+	}
+
+	/**
+	 * Adds the hh for a street to the chat. Simulations skip building it.
+	 * 
+	 * @param aStreet street to print
+	 * @param showdown ranks of the players at showdown, or null
+	 */
+	private void updateStreetChat(String aStreet, ShowdownResult showdown) {
+		if (!simulation) {
+			record.startStreet(Arrays.asList(HandRecord.STREET_NAMES)
+					.indexOf(aStreet), pots.getMainPot().getSize());
+			if (aStreet.equals("Showdown") && showsHands()) {
+				for (Player p : allPlayers.inHand()) {
+					record.addSeatFlags(allPlayers.indexOf(p),
+							HandRecord.SHOWED);
+				}
 			}
+			updateChat(streetToString(aStreet, showdown));
 		}
-		return false;
 	}
 
 	/**
-	 * Prints hh for a single street.
+	 * Tells whether the players in the hand show it at showdown.
+	 */
+	private boolean showsHands() {
+		return allPlayers.inHandCount() > 1 || isEveryoneAllIn();
+	}
+
+	public String streetToString(String aStreet) {
+		return streetToString(aStreet, null);
+	}
+
+	/**
+	 * Prints hh for a single street, naming hands from an existing showdown
+	 * ranking.
 	 * 
 	 * @param aStreet street to print
-	 * @return String for HHPrinter
+	 * @param showdown ranks of the players at showdown, or null to rank them
+	 * here
+	 * @return String for the hand history
 	 */
-	public String streetToString(String aStreet) {
+	public String streetToString(String aStreet, ShowdownResult showdown) {
 		String toReturn = "";
 		if (aStreet.equals("Pre-flop")) {
 			int seat = 1;
 			for (Player p : allPlayers.inHand(allPlayers.getSBIndex())) {
-				chatSeatString(seat, p);
+				toReturn += seatString(seat, p);
 				seat++;
 			}
 		}
-		toReturn += aStreet + ": (" + pots.get(MAIN_POT_INDEX).getSize() + ")"
+		toReturn += aStreet + ": (" + pots.getMainPot().getSize() + ")"
 				+ "\n";
 		if (board.getCardCount() > 0) {
 			toReturn += board.toString() + "\n";
 		}
 		toReturn += "(" + allPlayers.inHandCount() + " Players)" + "\n";
 		if (aStreet.equals("Showdown")) {
-			if (allPlayers.inHandCount() > 1 || isEveryoneAllIn()) {
+			if (showsHands()) {
+				if (showdown == null) {
+					showdown = HandRanker.rankShowdown(allPlayers.inHand(),
+							board);
+				}
 				for (Player p : allPlayers.inHand()) {
 					toReturn += p.getName() + " shows "
 							+ p.getHand().toString() + " for "
-							+ HandRanker.getHandName(p.getHand(), board) + "\n";
+							+ showdown.getHandName(p) + "\n";
 				}
 			}
 		}
 		return toReturn;
 	}
 
-	private void chatSeatString(int seat, Player p) {
-		updateChat("Seat " + seat);
+	private String seatString(int seat, Player p) {
+		String toReturn = "Seat " + seat;
 		if (seat == 1) {
-			updateChat(" (SB)");
+			toReturn += " (SB)";
 		} else if (seat == 2) {
-			updateChat(" (BB)");
+			toReturn += " (BB)";
 		}
 		if (allPlayers.inHandCount() == 2) {
 			if (seat == 1) {
-				updateChat("/BTN");
+				toReturn += "/BTN";
 			}
 		} else if (seat == 3) {
-			updateChat(" (BTN)");
+			toReturn += " (BTN)";
 		}
-		updateChat(": " + p.getName() + "\n");
+		return toReturn + ": " + p.getName() + "\n";
 	}
 
 	/**
@@ -654,7 +1189,7 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	 * 
 	 * @param winner
 	 *            player who won pot
-	 * @return String for HHPrinter
+	 * @return String for the hand history
 	 */
 	public String getResults(String winner, Pot pot) {
 		return winner + " wins " + pot.getSize() + "\n";
@@ -664,7 +1199,7 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 	 * Returns information about each player's hand
 	 */
 	public String toString() {
-		String s = "POT: " + pots.get(MAIN_POT_INDEX).getSize() + "\n";
+		String s = "POT: " + pots.getMainPot().getSize() + "\n";
 		for (Player p : allPlayers) {
 			s += p.toString() + "\n";
 		}
@@ -680,120 +1215,197 @@ public class GameModel extends AbstractModel implements PropertyChangeListener,
 		return allPlayers.size();
 	}
 
+	/**
+	 * Takes a flat snapshot of every seat. The view only ever sees these
+	 * snapshots, never the live players.
+	 * 
+	 * @return snapshots of all the seats, in seat order
+	 */
+	private ArrayList<SeatState> makeSeats() {
+		ArrayList<SeatState> seats = new ArrayList<SeatState>(allPlayers.size());
+		int index = 0;
+		for (Player p : allPlayers) {
+			seats.add(new SeatState(index, p));
+			index++;
+		}
+		return seats;
+	}
+
+	// The previous state isn't sent as the old value; the view never reads it
+	// and it would double the size of every broadcast.
 	private void updateGUI(Notification updateType, Player active) {
-		GameState oldState = currentState;
-		currentState = new GameState(allPlayers.getPlayersCopy(), active,
-				pots, board, allPlayers.indexOf(active));
+		if (simulation) {
+			return;
+		}
+		GameState state = new GameState(makeSeats(), active, pots.getPots(),
+				board, allPlayers.indexOf(active));
+		flushChat();
 		if (updateType == Notification.START_OF_TURN) {
-			firePropertyChange(GameView.GENERATE_GUI_START_OF_TURN, oldState,
-					currentState);
+			firePropertyChange(GameView.GENERATE_GUI_START_OF_TURN, null,
+					state);
 		} else {
 			throw new AssertionError("Not a legal update");
 		}
 	}
 
+	/**
+	 * Tells the view that everyone is all in.
+	 * 
+	 * @param equities equity of each seat, or null if there are none
+	 */
+	private void updateAllIn(double[] equities) {
+		flushChat();
+		firePropertyChange(GameView.GENERATE_GUI_ALL_IN, null,
+				new GameState(makeSeats(), pots.getPots(), board, equities));
+	}
+
+	/**
+	 * Tells the view that everyone is all in, with the exact equity of every
+	 * player left in the hand. Heads-up preflop all ins are looked up in the
+	 * preflop table when one is configured. Otherwise all the remaining
+	 * runouts are counted on the calculator's pool, which for a multiway all
+	 * in before the flop takes a while, so the view is told at once without
+	 * equities and again when they come back, unless the street has been
+	 * dealt by then. Folded hands aren't treated as dead, as nobody at the
+	 * table knows them.
+	 */
+	private void announceEquities() {
+		final ArrayList<Player> live = allPlayers.inHand();
+		long[] hands = new long[live.size()];
+		for (int i = 0; i < hands.length; i++) {
+			hands[i] = live.get(i).getHand().getCardSet();
+		}
+		PreflopEquityTable table = PreflopEquityTable.getDefault();
+		if (table != null && hands.length == 2
+				&& board.getCardSet() == CardSet.EMPTY) {
+			double[] equities = noEquities();
+			equities[allPlayers.indexOf(live.get(0))] =
+					table.getEquity(hands[0], hands[1]);
+			equities[allPlayers.indexOf(live.get(1))] =
+					table.getEquity(hands[1], hands[0]);
+			updateAllIn(equities);
+			return;
+		}
+		updateAllIn(null);
+		final int hand = handCount;
+		final int boardCards = board.getCardCount();
+		EQUITY_CALCULATOR.enumerateLater(hands, board.getCardSet(),
+				CardSet.EMPTY, new EquityCalculator.Listener() {
+			public void equitiesReady(final EquityResult result) {
+				onTable(new Runnable() {
+					public void run() {
+						if (handCount != hand
+								|| board.getCardCount() != boardCards) {
+							// Too late for the street they were for.
+							return;
+						}
+						double[] equities = noEquities();
+						for (int i = 0; i < live.size(); i++) {
+							equities[allPlayers.indexOf(live.get(i))] =
+									result.getEquity(i);
+						}
+						updateAllIn(equities);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Returns an equity for each seat, all GameState.NO_EQUITY.
+	 */
+	private double[] noEquities() {
+		double[] equities = new double[allPlayers.size()];
+		Arrays.fill(equities, GameState.NO_EQUITY);
+		return equities;
+	}
+
 	private void updateGUI(Notification updateType) {
-		GameState oldState = currentState;
-		currentState = new GameState(allPlayers.getPlayersCopy(), pots, board);
+		if (simulation) {
+			return;
+		}
+		GameState state = new GameState(makeSeats(), pots.getPots(), board);
+		flushChat();
 		switch (updateType) {
-		case ALL_IN:
-			firePropertyChange(GameView.GENERATE_GUI_ALL_IN, oldState,
-					currentState);
-			break;
 		case START_OF_STREET:
-			firePropertyChange(GameView.GENERATE_GUI_START_OF_STREET, oldState,
-					currentState);
+			firePropertyChange(GameView.GENERATE_GUI_START_OF_STREET, null,
+					state);
 			break;
 		case SHOWDOWN:
-			firePropertyChange(GameView.GENERATE_GUI_SHOWDOWN, oldState,
-					currentState);
+			firePropertyChange(GameView.GENERATE_GUI_SHOWDOWN, null, state);
 			break;
 		case END_OF_HAND:
-			firePropertyChange(GameView.GENERATE_GUI_END_OF_HAND, oldState,
-					currentState);
+			firePropertyChange(GameView.GENERATE_GUI_END_OF_HAND, null, state);
 			break;
 		case PLAYER_JOINED:
-//			 firePropertyChange(GameView.GENERATE_GUI_PLAYER_JOINED, oldState,
-//					 currentState);
+//			 firePropertyChange(GameView.GENERATE_GUI_PLAYER_JOINED, null,
+//					 state);
 			break;
 		default:
 			throw new AssertionError("Not a legal update.");
 		}
 	}
 
+	/**
+	 * Drops every notification when the table is a simulation.
+	 */
+	@Override
+	protected void firePropertyChange(String identifier, Object oldValue,
+			Object newValue) {
+		if (!simulation) {
+			super.firePropertyChange(identifier, oldValue, newValue);
+		}
+	}
+
 	@Override
 	public void propertyChange(PropertyChangeEvent evt) {
 		if (evt.getPropertyName().equals(PLAYER_FOLDED)) {
 			remainingActiveCount--;
-			for (Pot p : pots) {
-				p.removePlayer((Player) evt.getSource());
-			}
+			recordAction(evt.getSource(), HandRecord.FOLD, 0);
 			firePropertyChange(GameView.FOLD_MADE, "", "");
 			actionReceived();
 		} else if (evt.getPropertyName().equals(PLAYER_RAISED)) {
 			oldRaise = currentRaise;
 			currentRaise = (Integer.parseInt(evt.getNewValue().toString()));
+			recordAction(evt.getSource(), HandRecord.RAISE, currentRaise);
 			firePropertyChange(GameView.RAISE_MADE, new String(), new String());
 			actionReceived();
 		} else if (evt.getPropertyName().equals(PLAYER_BET)) {
 			oldRaise = currentRaise;
 			currentRaise = (Integer.parseInt(evt.getNewValue().toString()));
+			recordAction(evt.getSource(), HandRecord.BET, currentRaise);
 			firePropertyChange(GameView.BET_MADE, new String(), new String());
 			actionReceived();
 		} else if (evt.getPropertyName().equals(PLAYER_CALLED)) {
+			recordAction(evt.getSource(), HandRecord.CALL, lastPayment);
 			firePropertyChange(GameView.CALL_MADE, new String(), new String());
 			actionReceived();
 		} else if (evt.getPropertyName().equals(PLAYER_CHECKED)) {
+			recordAction(evt.getSource(), HandRecord.CHECK, 0);
 			firePropertyChange(GameView.CHECK_MADE, new String(), new String());
 			actionReceived();
 		} else if (evt.getPropertyName().equals(MONEY_PAID)) {
 			int paid = Integer.parseInt(evt.getNewValue().toString());
-			addMoneyToPots(paid, (Player) evt.getSource());
+			lastPayment = paid;
+			pots.add((Player) evt.getSource(), paid);
 		} else if (evt.getPropertyName().equals(CHAT_UPDATE)) {
 			updateChat((String) evt.getNewValue());
 		} else if (evt.getPropertyName().equals(GameView.PLAYER_ACTION)) {
-			for (Player p : allPlayers.inHand()) {
-				Action action = (Action) evt.getNewValue();
+			Action action = (Action) evt.getNewValue();
+			for (Player p : allPlayers) {
 				if (p.getName().equals(action.getPlayerName())) {
-					takeAction(p, action);
+					submitAction(p, action);
 				}
 			}
 		}
 	}
 
-	private void takeAction(Player p, Action action) {
-		if (action.getAction().equals(Action.ActionType.RAISE)) {
-			p.raise(action.getSize());
-		} else if (action.getAction().equals(Action.ActionType.BET)) {
-			p.bet(action.getSize());
-		} else if (action.getAction()
-				.equals(Action.ActionType.FOLD)) {
-			p.fold();
-		} else if (action.getAction()
-				.equals(Action.ActionType.CALL)) {
-			p.call();
-		} else if (action.getAction().equals(
-				Action.ActionType.CHECK)) {
-			p.check();
-		}
-	}
-
-	private void addMoneyToPots(int paid, Player player) {
-		pots.get(MAIN_POT_INDEX).addPlayer(player);
-		pots = Pot.generatePots(pots.get(MAIN_POT_INDEX).getPlayers());
-	}
-
 	/**
-	 * Allows the model to process the action of a player.
+	 * Allows the model to process the action of a player. Runs on the table,
+	 * either inside act or inside submitAction.
 	 */
 	private void actionReceived() {
-		lock.lock();
-		try {
-			playerNotified = true;
-			actionReceived.signalAll();
-		} finally {
-			lock.unlock();
-		}
+		playerNotified = true;
 	}
 	
 	public GameSettings getSettings() {
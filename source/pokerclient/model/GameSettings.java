@@ -32,6 +32,15 @@ public class GameSettings implements Serializable {
 	 */
 	public final static int SHOWDOWN_PAUSE_SINGLE = 1000;
 	
+	/**
+	 * Time a player has for each decision before drawing on their time bank.
+	 */
+	public final static int DECISION_TIME = 15000;
+	
+	/**
+	 * Time bank each player sits down with, in milliseconds. It is used up
+	 * by decisions that take longer than DECISION_TIME.
+	 */
 	private int timebank;
 	private int bigBlind;
 	private int smallBlind;
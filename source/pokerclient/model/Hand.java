@@ -139,6 +139,21 @@ public class Hand implements Cloneable, Serializable {
 		hand[1].fold();
 	}
 
+	/**
+	 * Returns the cards of the hand that have been dealt as a CardSet.
+	 * 
+	 * @return set of the dealt cards
+	 */
+	public long getCardSet() {
+		long set = CardSet.EMPTY;
+		for (int i = 0; i < hand.length; i++) {
+			if (isSet(i)) {
+				set |= CardSet.of(hand[i].getIndex());
+			}
+		}
+		return set;
+	}
+	
 	/**
 	 * Returns an array of both the cards in the hand.
 	 * 
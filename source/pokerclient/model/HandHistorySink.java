@@ -0,0 +1,425 @@
+package pokerclient.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes finished hands to the hand history segments on a thread of its
+ * own. Tables hand over each hand's record as it ends and never wait on the
+ * disk: the records queue up to a fixed limit, past which they are dropped
+ * and counted. The writer takes everything queued at once and writes each
+ * segment's share with a single write.
+ *
+ * Each table writes segments named hhID-N.hhs in the sink's directory,
+ * numbered on from its earlier segments. A segment that has grown past
+ * the size limit, or has been open longer than the age limit, is closed
+ * with its footer and the next one is started. Once a batch is written
+ * the hands are added to the tables' indexes, through which
+ * HandHistoryStore finds them.
+ */
+public class HandHistorySink {
+
+	/**
+	 * Size at which the default sink starts a new segment.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+	/**
+	 * Age at which the default sink starts a new segment.
+	 */
+	public static final long DEFAULT_MAX_AGE = 24L * 60 * 60 * 1000;
+
+	/**
+	 * Hands the default sink holds before dropping them.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Extension of segment files.
+	 */
+	public static final String SEGMENT_SUFFIX = ".hhs";
+
+	/**
+	 * Queued by close to stop the writer once the hands before it are
+	 * written.
+	 */
+	private static final HandRecord STOP = new HandRecord();
+
+	private final File directory;
+
+	private final long maxBytes;
+
+	private final long maxAge;
+
+	private final ArrayBlockingQueue<HandRecord> queue;
+
+	private final Thread writer;
+
+	/**
+	 * Segments being written, by table id. Only used by the writer.
+	 */
+	private final HashMap<Integer, Output> outputs =
+			new HashMap<Integer, Output>();
+
+	/**
+	 * Indexes of the segments. Only used by the writer.
+	 */
+	private final HandHistoryStore store;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Number of the last hand submitted by each table, by table id. Only a
+	 * table's own thread submits its hands, so the numbers only go up.
+	 */
+	private final ConcurrentHashMap<Integer, Integer> lastHands =
+			new ConcurrentHashMap<Integer, Integer>();
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates a sink and starts its writer.
+	 *
+	 * @param directory directory of the segments
+	 * @param maxBytes size past which a segment is closed
+	 * @param maxAge milliseconds after which a segment is closed
+	 * @param capacity most hands waiting to be written
+	 */
+	public HandHistorySink(File directory, long maxBytes, long maxAge,
+			int capacity) {
+		if (maxBytes < 1 || maxAge < 0 || capacity < 1) {
+			throw new IllegalArgumentException("Bad limits for the sink.");
+		}
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.maxAge = maxAge;
+		store = new HandHistoryStore(directory, true);
+		queue = new ArrayBlockingQueue<HandRecord>(capacity);
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeAll();
+			}
+		}, "hand-history");
+		// Hands still queued at exit are written by the default sink's
+		// shutdown hook, or by whoever closes the sink.
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Returns the sink shared by every table in the process, which writes
+	 * to the working directory and is closed when the process exits.
+	 *
+	 * @return shared sink
+	 */
+	public static HandHistorySink getDefault() {
+		return DefaultSink.INSTANCE;
+	}
+
+	/**
+	 * Returns the file of one of a table's segments.
+	 *
+	 * @param directory directory of the segments
+	 * @param tableId id of the table
+	 * @param number number of the segment
+	 * @return segment file
+	 */
+	public static File segmentFile(File directory, int tableId, int number) {
+		return new File(directory, "hh" + tableId + "-" + number
+				+ SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * Returns the numbers of a table's segments in the directory, in order.
+	 */
+	static int[] segmentNumbers(File directory, int tableId) {
+		String prefix = "hh" + tableId + "-";
+		String[] names = directory.list();
+		int[] numbers = new int[names == null ? 0 : names.length];
+		int count = 0;
+		for (int i = 0; i < numbers.length; i++) {
+			String name = names[i];
+			if (!name.startsWith(prefix) || !name.endsWith(SEGMENT_SUFFIX)) {
+				continue;
+			}
+			try {
+				numbers[count] = Integer.parseInt(name.substring(
+						prefix.length(), name.length()
+						- SEGMENT_SUFFIX.length()));
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			if (numbers[count] > 0) {
+				count++;
+			}
+		}
+		numbers = Arrays.copyOf(numbers, count);
+		Arrays.sort(numbers);
+		return numbers;
+	}
+
+	/**
+	 * Queues a finished hand. The record belongs to the sink from here on
+	 * and mustn't be changed.
+	 *
+	 * @param record record of the hand
+	 * @return false if the queue was full or the sink closed, and the hand
+	 * was dropped
+	 */
+	public boolean submit(HandRecord record) {
+		Integer last = lastHands.get(record.getTableId());
+		if (last == null || record.getHandNumber() > last) {
+			lastHands.put(record.getTableId(), record.getHandNumber());
+		}
+		if (closed || !queue.offer(record)) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of the last hand of a table, whether written in an
+	 * earlier run or still queued, so that a table started again numbers
+	 * its hands on from there rather than overwriting them.
+	 *
+	 * @param tableId id of the table
+	 * @return highest hand number submitted or in the index, or 0 if there
+	 * is none
+	 */
+	public int getLastHandNumber(int tableId) {
+		Integer submitted = lastHands.get(tableId);
+		int last = submitted == null ? 0 : submitted;
+		try {
+			last = Math.max(last, new HandHistoryStore(directory)
+					.getLastHandNumber(tableId));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return last;
+	}
+
+	/**
+	 * Returns the number of hands dropped so far.
+	 *
+	 * @return dropped hands
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Writes the hands already queued, closes the segments and stops the
+	 * writer. Hands submitted afterwards are dropped.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the
+	 * writer
+	 */
+	public void close() throws InterruptedException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		queue.put(STOP);
+		writer.join();
+	}
+
+	private void writeAll() {
+		ArrayList<HandRecord> batch = new ArrayList<HandRecord>();
+		ArrayList<Output> touched = new ArrayList<Output>();
+		boolean stopping = false;
+		while (!stopping) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				continue;
+			}
+			queue.drainTo(batch);
+			long now = System.currentTimeMillis();
+			for (HandRecord record : batch) {
+				if (record == STOP) {
+					stopping = true;
+					break;
+				}
+				Output out = outputs.get(record.getTableId());
+				if (out == null) {
+					out = new Output(record.getTableId());
+					outputs.put(record.getTableId(), out);
+				}
+				out.add(record, now);
+				if (!touched.contains(out)) {
+					touched.add(out);
+				}
+			}
+			for (Output out : touched) {
+				out.write();
+			}
+			batch.clear();
+			touched.clear();
+		}
+		for (Output out : outputs.values()) {
+			out.close();
+		}
+		store.force();
+	}
+
+	/**
+	 * Holder for the shared sink, so that it is only made when a table
+	 * first needs it.
+	 */
+	private static class DefaultSink {
+
+		private static final HandHistorySink INSTANCE = new HandHistorySink(
+				new File("."), DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE,
+				DEFAULT_CAPACITY);
+
+		static {
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				public void run() {
+					try {
+						INSTANCE.close();
+					} catch (InterruptedException e) {
+						// Exiting anyway.
+					}
+				}
+			});
+		}
+
+	}
+
+	/**
+	 * The segment a table is writing.
+	 */
+	private class Output {
+
+		private final int tableId;
+
+		private HandSegmentWriter segment;
+
+		/**
+		 * Number of the segment, or of the last one if none is open.
+		 */
+		private int number;
+
+		private long opened;
+
+		/**
+		 * Records appended to the segment and not yet written.
+		 */
+		private int pending;
+
+		/**
+		 * Hand numbers and offsets of the pending records, to index once
+		 * they are written.
+		 */
+		private int[] pendingHands = new int[16];
+
+		private int[] pendingOffsets = new int[16];
+
+		private Output(int tableId) {
+			this.tableId = tableId;
+		}
+
+		/**
+		 * Adds a hand to the segment, starting a new segment first if the
+		 * current one is past the limits.
+		 */
+		private void add(HandRecord record, long now) {
+			if (segment != null && segment.getRecordCount() > 0
+					&& (segment.size() >= maxBytes || now - opened >= maxAge)) {
+				write();
+				close();
+			}
+			if (segment == null) {
+				open(now);
+			}
+			if (segment == null) {
+				dropped.incrementAndGet();
+				return;
+			}
+			if (pending == pendingHands.length) {
+				pendingHands = Arrays.copyOf(pendingHands, 2 * pending);
+				pendingOffsets = Arrays.copyOf(pendingOffsets, 2 * pending);
+			}
+			pendingHands[pending] = record.getHandNumber();
+			pendingOffsets[pending] = segment.append(record);
+			pending++;
+		}
+
+		private void open(long now) {
+			if (number == 0) {
+				// First segment of this run: carry on after the earlier ones,
+				// whose index a crash may have left behind.
+				int[] earlier = segmentNumbers(directory, tableId);
+				if (earlier.length > 0) {
+					number = earlier[earlier.length - 1];
+					try {
+						store.recover(tableId, number);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+			number++;
+			while (segmentFile(directory, tableId, number).exists()) {
+				number++;
+			}
+			try {
+				segment = new HandSegmentWriter(segmentFile(directory,
+						tableId, number));
+				opened = now;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * Writes the pending hands. Hands that can't be written are dropped
+		 * along with the segment, as the next batch would likely fail too.
+		 */
+		private void write() {
+			if (segment == null || pending == 0) {
+				return;
+			}
+			try {
+				segment.write();
+			} catch (IOException e) {
+				e.printStackTrace();
+				dropped.addAndGet(pending);
+				close();
+				return;
+			}
+			try {
+				for (int i = 0; i < pending; i++) {
+					store.put(tableId, pendingHands[i], number,
+							pendingOffsets[i]);
+				}
+			} catch (IOException e) {
+				// The hands are in the segment, where a rebuild finds them.
+				e.printStackTrace();
+			}
+			pending = 0;
+		}
+
+		private void close() {
+			if (segment == null) {
+				return;
+			}
+			try {
+				segment.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			segment = null;
+			pending = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,386 @@
+package pokerclient.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * Finds hands in the hand history segments by table id and hand number.
+ *
+ * Each table has an index file, hhID.hhx, next to its segments. It is
+ * mapped into memory and holds an entry per hand number, at a position
+ * worked out from the number, naming the segment the hand is in and its
+ * offset there. A lookup reads one entry and then the record straight from
+ * the mapped segment.
+ *
+ * The sink adds entries as it writes hands. An index lost or left behind
+ * by a crash is rebuilt from the segments, which index their own hands.
+ * A table started again numbers its hands on from the last one indexed;
+ * where a number repeats anyway, as after a crash, the index keeps the
+ * latest hand.
+ *
+ * A store isn't thread safe.
+ */
+public class HandHistoryStore {
+
+	/**
+	 * Extension of index files.
+	 */
+	public static final String INDEX_SUFFIX = ".hhx";
+
+	/**
+	 * First four bytes of an index, "HHX" and the format version.
+	 */
+	static final int INDEX_MAGIC = 0x48485801;
+
+	/**
+	 * Bytes before the entry of hand 0, padded so entries stay aligned.
+	 */
+	static final int INDEX_HEADER_SIZE = 8;
+
+	/**
+	 * Bytes of each entry: segment number, 0 for no hand, and offset.
+	 */
+	static final int INDEX_ENTRY_SIZE = 4 + 4;
+
+	/**
+	 * Hands a new index has room for before it is grown.
+	 */
+	private static final int INITIAL_HANDS = 1 << 12;
+
+	private final File directory;
+
+	/**
+	 * True if the store adds to the indexes, which the sink's does.
+	 */
+	private final boolean writable;
+
+	/**
+	 * Mapped indexes, by table id.
+	 */
+	private final HashMap<Integer, MappedByteBuffer> indexes =
+			new HashMap<Integer, MappedByteBuffer>();
+
+	/**
+	 * Segments read so far, by table id in the high half and segment number
+	 * in the low half.
+	 */
+	private final HashMap<Long, HandSegmentReader> segments =
+			new HashMap<Long, HandSegmentReader>();
+
+	/**
+	 * Opens the hand histories in a directory for lookups.
+	 *
+	 * @param directory directory of the segments
+	 */
+	public HandHistoryStore(File directory) {
+		this(directory, false);
+	}
+
+	HandHistoryStore(File directory, boolean writable) {
+		this.directory = directory;
+		this.writable = writable;
+	}
+
+	/**
+	 * Returns the index file of a table.
+	 *
+	 * @param directory directory of the segments
+	 * @param tableId id of the table
+	 * @return index file
+	 */
+	public static File indexFile(File directory, int tableId) {
+		return new File(directory, "hh" + tableId + INDEX_SUFFIX);
+	}
+
+	/**
+	 * Decodes a hand.
+	 *
+	 * @param tableId id of the table
+	 * @param handNumber number of the hand at the table
+	 * @param into record to fill
+	 * @return false if the index has no such hand
+	 * @throws IOException if the index or segment can't be read
+	 */
+	public boolean read(int tableId, int handNumber, HandRecord into)
+			throws IOException {
+		long entry = entry(tableId, handNumber);
+		if (entry < 0) {
+			return false;
+		}
+		int offset = (int) entry;
+		segment(tableId, (int) (entry >>> 32), offset).readAt(offset, into);
+		return true;
+	}
+
+	/**
+	 * Returns the encoded record of a hand, without copying it out of the
+	 * mapped segment.
+	 *
+	 * @param tableId id of the table
+	 * @param handNumber number of the hand at the table
+	 * @return read only buffer holding the record, or null if the index
+	 * has no such hand
+	 * @throws IOException if the index or segment can't be read
+	 */
+	public ByteBuffer find(int tableId, int handNumber) throws IOException {
+		long entry = entry(tableId, handNumber);
+		if (entry < 0) {
+			return null;
+		}
+		int offset = (int) entry;
+		return segment(tableId, (int) (entry >>> 32), offset)
+				.getRecordBytes(offset);
+	}
+
+	/**
+	 * Returns a hand's entry, with the segment number in the high half and
+	 * the offset in the low half, or -1 if there is none.
+	 */
+	private long entry(int tableId, int handNumber) throws IOException {
+		int position = position(handNumber);
+		ByteBuffer index = index(tableId, position, false);
+		if (index == null) {
+			return -1;
+		}
+		int segment = index.getInt(position);
+		if (segment == 0) {
+			return -1;
+		}
+		return (long) segment << 32 | index.getInt(position + 4) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Returns the highest hand number in a table's index.
+	 *
+	 * @param tableId id of the table
+	 * @return last hand number, or 0 if the table has no hands
+	 * @throws IOException if the index can't be read
+	 */
+	public int getLastHandNumber(int tableId) throws IOException {
+		ByteBuffer index = index(tableId, INDEX_HEADER_SIZE, false);
+		if (index == null) {
+			return 0;
+		}
+		int hands = (index.limit() - INDEX_HEADER_SIZE) / INDEX_ENTRY_SIZE;
+		for (int number = hands - 1; number > 0; number--) {
+			if (index.getInt(position(number)) != 0) {
+				return number;
+			}
+		}
+		return 0;
+	}
+
+	private static int position(int handNumber) {
+		long position = INDEX_HEADER_SIZE + (long) handNumber
+				* INDEX_ENTRY_SIZE;
+		if (handNumber < 0 || position > Integer.MAX_VALUE - INDEX_ENTRY_SIZE) {
+			throw new IllegalArgumentException("Bad hand number "
+					+ handNumber);
+		}
+		return (int) position;
+	}
+
+	/**
+	 * Returns a table's index mapped far enough to hold the entry at a
+	 * position, or null if the index doesn't reach the entry and isn't
+	 * being grown.
+	 *
+	 * @param growing true to grow the index to hold the entry
+	 */
+	private MappedByteBuffer index(int tableId, int position, boolean growing)
+			throws IOException {
+		MappedByteBuffer index = indexes.get(tableId);
+		if (index != null && position + INDEX_ENTRY_SIZE <= index.limit()) {
+			return index;
+		}
+		// The index has grown since it was mapped, or needs to.
+		File file = indexFile(directory, tableId);
+		if (!growing && !file.exists()) {
+			return null;
+		}
+		long size = 0;
+		if (growing) {
+			size = INDEX_HEADER_SIZE + (long) INITIAL_HANDS * INDEX_ENTRY_SIZE;
+			while (size < position + INDEX_ENTRY_SIZE) {
+				size *= 2;
+			}
+			size = Math.min(size, Integer.MAX_VALUE);
+		}
+		index = map(file, size);
+		indexes.put(tableId, index);
+		return position + INDEX_ENTRY_SIZE <= index.limit() ? index : null;
+	}
+
+	/**
+	 * Maps an index file, making it at least a size if the store is
+	 * writable.
+	 */
+	private MappedByteBuffer map(File file, long size) throws IOException {
+		FileChannel channel = writable
+				? FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+						StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		MappedByteBuffer index;
+		try {
+			size = Math.max(size, channel.size());
+			index = channel.map(writable ? FileChannel.MapMode.READ_WRITE
+					: FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			// The mapping stays valid once the channel is closed.
+			channel.close();
+		}
+		if (writable && size >= 4 && index.getInt(0) == 0) {
+			index.putInt(0, INDEX_MAGIC);
+		}
+		if (size < INDEX_HEADER_SIZE || index.getInt(0) != INDEX_MAGIC) {
+			throw new IOException(file + " isn't a hand history index");
+		}
+		return index;
+	}
+
+	/**
+	 * Returns a segment that has been read up to an offset, reading it again
+	 * if it has grown past where it was last read.
+	 */
+	private HandSegmentReader segment(int tableId, int number, int offset)
+			throws IOException {
+		Long key = (long) tableId << 32 | number;
+		HandSegmentReader segment = segments.get(key);
+		if (segment == null || offset >= segment.size()) {
+			segment = new HandSegmentReader(HandHistorySink.segmentFile(
+					directory, tableId, number));
+			segments.put(key, segment);
+		}
+		return segment;
+	}
+
+	/**
+	 * Points a hand's entry at where it was written.
+	 */
+	void put(int tableId, int handNumber, int segment, int offset)
+			throws IOException {
+		int position = position(handNumber);
+		ByteBuffer index = index(tableId, position, true);
+		// Offset first, so that a reader never pairs a new segment with an
+		// old offset.
+		index.putInt(position + 4, offset);
+		index.putInt(position, segment);
+	}
+
+	/**
+	 * Rebuilds a table's index after a crash, unless it already points at
+	 * the last hand the table's last segment holds.
+	 *
+	 * @param tableId id of the table
+	 * @param lastSegment number of the table's last segment
+	 * @throws IOException if the segments can't be read
+	 */
+	void recover(int tableId, int lastSegment) throws IOException {
+		File file = HandHistorySink.segmentFile(directory, tableId,
+				lastSegment);
+		if (file.length() < 4) {
+			// Made just before the crash and never written to.
+			lastSegment--;
+			if (lastSegment < 1) {
+				return;
+			}
+			file = HandHistorySink.segmentFile(directory, tableId,
+					lastSegment);
+		}
+		HandSegmentReader segment = new HandSegmentReader(file);
+		int count = segment.getRecordCount();
+		if (count > 0 && entry(tableId, segment.getHandNumber(count - 1))
+				== ((long) lastSegment << 32 | segment.getOffset(count - 1))) {
+			return;
+		}
+		rebuild(tableId);
+	}
+
+	/**
+	 * Writes a table's index afresh from its segments. Segments are read in
+	 * order, so a later hand with a number already seen replaces the
+	 * earlier one. The table mustn't be writing hands meanwhile.
+	 *
+	 * @param tableId id of the table
+	 * @return number of hands read from the segments
+	 * @throws IOException if a segment can't be read or the index can't be
+	 * written
+	 */
+	public int rebuild(int tableId) throws IOException {
+		ByteBuffer entries = ByteBuffer.allocate(INDEX_HEADER_SIZE
+				+ INITIAL_HANDS * INDEX_ENTRY_SIZE);
+		entries.putInt(0, INDEX_MAGIC);
+		int end = INDEX_HEADER_SIZE;
+		int hands = 0;
+		for (int number : HandHistorySink.segmentNumbers(directory,
+				tableId)) {
+			File file = HandHistorySink.segmentFile(directory, tableId,
+					number);
+			if (file.length() < 4) {
+				// Made just before a crash and never written to.
+				continue;
+			}
+			HandSegmentReader segment = new HandSegmentReader(file);
+			for (int i = 0; i < segment.getRecordCount(); i++) {
+				if (segment.getTableId(i) != tableId) {
+					continue;
+				}
+				int position = position(segment.getHandNumber(i));
+				if (position + INDEX_ENTRY_SIZE > entries.capacity()) {
+					ByteBuffer larger = ByteBuffer.allocate((int) Math.min(
+							Integer.MAX_VALUE, Math.max(2L * entries.capacity(),
+							position + INDEX_ENTRY_SIZE)));
+					entries.clear();
+					larger.put(entries);
+					entries = larger;
+				}
+				entries.putInt(position, number);
+				entries.putInt(position + 4, segment.getOffset(i));
+				end = Math.max(end, position + INDEX_ENTRY_SIZE);
+				hands++;
+			}
+		}
+		entries.position(0);
+		entries.limit(end);
+
+		// Write the new index beside the old and swap it in, so that a crash
+		// now leaves one or the other.
+		File file = indexFile(directory, tableId);
+		File temp = new File(directory, file.getName() + ".tmp");
+		FileChannel channel = FileChannel.open(temp.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		try {
+			while (entries.hasRemaining()) {
+				channel.write(entries);
+			}
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+		Files.move(temp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		indexes.remove(tableId);
+		return hands;
+	}
+
+	/**
+	 * Writes the entries added so far out to the index files.
+	 */
+	void force() {
+		for (MappedByteBuffer index : indexes.values()) {
+			if (writable) {
+				index.force();
+			}
+		}
+	}
+
+}
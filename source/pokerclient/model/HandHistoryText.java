@@ -0,0 +1,162 @@
+package pokerclient.model;
+
+/**
+ * Renders hand records as the text hand history the table used to write,
+ * line for line.
+ */
+public class HandHistoryText {
+
+	private static final String[] ACTION_WORDS = {
+		"folds", "checks", "calls", "bets", "raises to" };
+
+	private HandHistoryText() {
+	}
+
+	/**
+	 * Appends the text of a hand.
+	 *
+	 * @param record hand to render
+	 * @param out buffer to append to
+	 */
+	public static void render(HandRecord record, StringBuilder out) {
+		int seats = record.getSeatCount();
+		out.append("Hand #").append(record.getHandNumber()).append('\n');
+		int inHand = seats;
+		int action = 0;
+		for (int i = 0; i < record.getStreetCount(); i++) {
+			int start = record.getStreetStart(i);
+			for (; action < start; action++) {
+				if (record.getActionType(action) == HandRecord.FOLD) {
+					inHand--;
+				}
+			}
+			int street = record.getStreet(i);
+			if (street == HandRecord.PRE_FLOP) {
+				appendSeats(record, out);
+			}
+			out.append(HandRecord.STREET_NAMES[street]).append(": (")
+					.append(record.getStreetPot(i)).append(")\n");
+			int cards = boardCount(record, street);
+			if (cards > 0) {
+				out.append('[');
+				for (int c = 0; c < cards; c++) {
+					if (c > 0) {
+						out.append(", ");
+					}
+					out.append(new Card(record.getBoardCard(c)));
+				}
+				out.append("]\n");
+			}
+			out.append('(').append(inHand).append(" Players)\n");
+			if (street == HandRecord.SHOWDOWN) {
+				appendShows(record, out);
+			}
+			int end = i + 1 < record.getStreetCount()
+					? record.getStreetStart(i + 1) : record.getActionCount();
+			for (int a = start; a < end; a++) {
+				appendAction(record, a, out);
+			}
+		}
+		for (int i = 0; i < record.getResultCount(); i++) {
+			out.append(record.getName(record.getResultSeat(i)))
+					.append(" wins ").append(record.getResultPot(i))
+					.append('\n');
+		}
+		out.append("\n-----\n");
+	}
+
+	/**
+	 * Renders a hand as text.
+	 *
+	 * @param record hand to render
+	 * @return text of the hand
+	 */
+	public static String render(HandRecord record) {
+		StringBuilder out = new StringBuilder(512);
+		render(record, out);
+		return out.toString();
+	}
+
+	/**
+	 * Lists the seats from the small blind, as the pre-flop section starts.
+	 */
+	private static void appendSeats(HandRecord record, StringBuilder out) {
+		int seats = record.getSeatCount();
+		int smallBlind = record.getButton() + (seats == 2 ? 0 : 1);
+		for (int seat = 1; seat <= seats; seat++) {
+			out.append("Seat ").append(seat);
+			if (seat == 1) {
+				out.append(" (SB)");
+			} else if (seat == 2) {
+				out.append(" (BB)");
+			}
+			if (seats == 2) {
+				if (seat == 1) {
+					out.append("/BTN");
+				}
+			} else if (seat == 3) {
+				out.append(" (BTN)");
+			}
+			out.append(": ")
+					.append(record.getName((smallBlind + seat - 1) % seats))
+					.append('\n');
+		}
+	}
+
+	/**
+	 * Lists the hands shown at showdown, from the seat after the button.
+	 */
+	private static void appendShows(HandRecord record, StringBuilder out) {
+		int seats = record.getSeatCount();
+		long board = 0;
+		for (int c = 0; c < record.getBoardCount(); c++) {
+			board |= CardSet.of(record.getBoardCard(c));
+		}
+		for (int i = 1; i <= seats; i++) {
+			int seat = (record.getButton() + i) % seats;
+			if ((record.getSeatFlags(seat) & HandRecord.SHOWED) == 0) {
+				continue;
+			}
+			int first = record.getHoleCard(seat, 0);
+			int second = record.getHoleCard(seat, 1);
+			out.append(record.getName(seat)).append(" shows [")
+					.append(new Card(first)).append(", ")
+					.append(new Card(second)).append("] for ")
+					.append(TableHandEvaluator.nameHand(board
+							| CardSet.of(first) | CardSet.of(second)))
+					.append('\n');
+		}
+	}
+
+	private static void appendAction(HandRecord record, int action,
+			StringBuilder out) {
+		int type = record.getActionType(action);
+		if (type >= ACTION_WORDS.length) {
+			// Posts aren't in the text history.
+			return;
+		}
+		out.append(record.getName(record.getActionSeat(action))).append(' ')
+				.append(ACTION_WORDS[type]);
+		if (type != HandRecord.FOLD && type != HandRecord.CHECK) {
+			out.append(' ').append(record.getActionAmount(action));
+		}
+		out.append(" \n");
+	}
+
+	/**
+	 * Returns the number of board cards showing at a street.
+	 */
+	private static int boardCount(HandRecord record, int street) {
+		switch (street) {
+		case HandRecord.PRE_FLOP:
+			return 0;
+		case HandRecord.FLOP:
+			return Math.min(3, record.getBoardCount());
+		case HandRecord.TURN:
+			return Math.min(4, record.getBoardCount());
+		default:
+			return record.getBoardCount();
+		}
+	}
+
+}
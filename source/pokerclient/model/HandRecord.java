@@ -0,0 +1,380 @@
+package pokerclient.model;
+
+import java.util.Arrays;
+
+/**
+ * Everything that happened in one hand, kept as flat arrays of numbers so
+ * that it is cheap to write and cheap to read back in bulk. Seats are
+ * indices in table order; cards are Card indices. A record can be cleared
+ * and filled again, so a reader scanning many hands needs only one.
+ *
+ * Actions are (seat, type, amount) tuples. Calls carry the chips paid,
+ * bets and raises the size bet or raised to, and posts the chips posted.
+ * Streets mark where each section of the text history begins.
+ */
+public class HandRecord {
+
+	/**
+	 * Action types. The first five match Action.ActionType.
+	 */
+	public static final int FOLD = 0;
+	public static final int CHECK = 1;
+	public static final int CALL = 2;
+	public static final int BET = 3;
+	public static final int RAISE = 4;
+	public static final int SMALL_BLIND = 5;
+	public static final int BIG_BLIND = 6;
+	public static final int ANTE = 7;
+
+	/**
+	 * Number of action types.
+	 */
+	public static final int ACTION_TYPES = 8;
+
+	/**
+	 * Streets, in the order they are played.
+	 */
+	public static final int PRE_FLOP = 0;
+	public static final int FLOP = 1;
+	public static final int TURN = 2;
+	public static final int RIVER = 3;
+	public static final int SHOWDOWN = 4;
+
+	/**
+	 * Names of the streets as the text history prints them.
+	 */
+	public static final String[] STREET_NAMES = {
+		"Pre-flop", "Flop", "Turn", "River", "Showdown" };
+
+	/**
+	 * Most seats a record holds.
+	 */
+	public static final int MAX_SEATS = 16;
+
+	/**
+	 * Seat flag: the seat showed its hand at showdown.
+	 */
+	public static final int SHOWED = 1;
+
+	private int tableId;
+	private int handNumber;
+	private long startTime;
+	private int smallBlind;
+	private int bigBlind;
+	private int ante;
+	private int button;
+
+	private int seatCount;
+	private String[] names = new String[MAX_SEATS];
+	private int[] stacks = new int[MAX_SEATS];
+	private int[] holeCards = new int[2 * MAX_SEATS];
+	private int[] seatFlags = new int[MAX_SEATS];
+
+	private int actionCount;
+	private int[] actionSeats = new int[32];
+	private int[] actionTypes = new int[32];
+	private int[] actionAmounts = new int[32];
+
+	private int streetCount;
+	private int[] streets = new int[SHOWDOWN + 1];
+	private int[] streetStarts = new int[SHOWDOWN + 1];
+	private int[] streetPots = new int[SHOWDOWN + 1];
+
+	private int boardCount;
+	private int[] board = new int[5];
+
+	private int resultCount;
+	private int[] resultSeats = new int[4];
+	private int[] resultPots = new int[4];
+	private int[] resultWinnings = new int[4];
+
+	/**
+	 * Creates an empty record.
+	 */
+	public HandRecord() {
+	}
+
+	/**
+	 * Starts the record of a new hand, forgetting anything recorded before.
+	 *
+	 * @param tableId id of the table
+	 * @param handNumber number of the hand at the table
+	 * @param startTime time the hand started, in milliseconds since the
+	 * epoch
+	 * @param smallBlind small blind
+	 * @param bigBlind big blind
+	 * @param ante ante
+	 * @param button seat of the button
+	 */
+	public void start(int tableId, int handNumber, long startTime,
+			int smallBlind, int bigBlind, int ante, int button) {
+		this.tableId = tableId;
+		this.handNumber = handNumber;
+		this.startTime = startTime;
+		this.smallBlind = smallBlind;
+		this.bigBlind = bigBlind;
+		this.ante = ante;
+		this.button = button;
+		seatCount = 0;
+		actionCount = 0;
+		streetCount = 0;
+		boardCount = 0;
+		resultCount = 0;
+	}
+
+	/**
+	 * Adds the next seat in table order.
+	 *
+	 * @param name player's name
+	 * @param stack player's stack before the antes and blinds
+	 * @return index of the seat
+	 */
+	public int addSeat(String name, int stack) {
+		if (seatCount == MAX_SEATS) {
+			throw new IllegalArgumentException("A record holds at most "
+					+ MAX_SEATS + " seats.");
+		}
+		names[seatCount] = name;
+		stacks[seatCount] = stack;
+		holeCards[2 * seatCount] = 0;
+		holeCards[2 * seatCount + 1] = 0;
+		seatFlags[seatCount] = 0;
+		return seatCount++;
+	}
+
+	/**
+	 * Sets the cards a seat was dealt.
+	 *
+	 * @param seat index of the seat
+	 * @param first index of the first card
+	 * @param second index of the second card
+	 */
+	public void setHoleCards(int seat, int first, int second) {
+		checkSeat(seat);
+		holeCards[2 * seat] = first;
+		holeCards[2 * seat + 1] = second;
+	}
+
+	/**
+	 * Sets flags on a seat.
+	 *
+	 * @param seat index of the seat
+	 * @param flags flags to add, such as SHOWED
+	 */
+	public void addSeatFlags(int seat, int flags) {
+		checkSeat(seat);
+		seatFlags[seat] |= flags;
+	}
+
+	/**
+	 * Adds an action.
+	 *
+	 * @param seat index of the seat acting
+	 * @param type one of the action types
+	 * @param amount chips of the action, 0 for folds and checks
+	 */
+	public void addAction(int seat, int type, int amount) {
+		checkSeat(seat);
+		if (type < 0 || type >= ACTION_TYPES) {
+			throw new IllegalArgumentException("No action type " + type);
+		}
+		if (actionCount == actionSeats.length) {
+			int length = 2 * actionCount;
+			actionSeats = Arrays.copyOf(actionSeats, length);
+			actionTypes = Arrays.copyOf(actionTypes, length);
+			actionAmounts = Arrays.copyOf(actionAmounts, length);
+		}
+		actionSeats[actionCount] = seat;
+		actionTypes[actionCount] = type;
+		actionAmounts[actionCount] = amount;
+		actionCount++;
+	}
+
+	/**
+	 * Marks the start of a street. The actions added from here on belong to
+	 * it.
+	 *
+	 * @param street one of the streets
+	 * @param pot size of the main pot as the street starts
+	 */
+	public void startStreet(int street, int pot) {
+		startStreetAt(street, actionCount, pot);
+	}
+
+	/**
+	 * Marks the start of a street at a given action, for readers that fill
+	 * in the streets before the actions.
+	 */
+	void startStreetAt(int street, int start, int pot) {
+		if (street < PRE_FLOP || street > SHOWDOWN) {
+			throw new IllegalArgumentException("No street " + street);
+		}
+		if (streetCount == streets.length) {
+			throw new IllegalArgumentException("Too many streets.");
+		}
+		if (start < 0) {
+			throw new IllegalArgumentException("No action " + start);
+		}
+		streets[streetCount] = street;
+		streetStarts[streetCount] = start;
+		streetPots[streetCount] = pot;
+		streetCount++;
+	}
+
+	/**
+	 * Adds the next card of the board.
+	 *
+	 * @param card index of the card
+	 */
+	public void addBoardCard(int card) {
+		if (boardCount == board.length) {
+			throw new IllegalArgumentException("The board is full.");
+		}
+		board[boardCount++] = card;
+	}
+
+	/**
+	 * Adds a pot won, or part of one when it was split.
+	 *
+	 * @param seat index of the winner
+	 * @param pot size of the pot
+	 * @param won chips the winner got from it
+	 */
+	public void addResult(int seat, int pot, int won) {
+		checkSeat(seat);
+		if (resultCount == resultSeats.length) {
+			int length = 2 * resultCount;
+			resultSeats = Arrays.copyOf(resultSeats, length);
+			resultPots = Arrays.copyOf(resultPots, length);
+			resultWinnings = Arrays.copyOf(resultWinnings, length);
+		}
+		resultSeats[resultCount] = seat;
+		resultPots[resultCount] = pot;
+		resultWinnings[resultCount] = won;
+		resultCount++;
+	}
+
+	private void checkSeat(int seat) {
+		if (seat < 0 || seat >= seatCount) {
+			throw new IllegalArgumentException("No seat " + seat);
+		}
+	}
+
+	public int getTableId() {
+		return tableId;
+	}
+
+	public int getHandNumber() {
+		return handNumber;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public int getSmallBlind() {
+		return smallBlind;
+	}
+
+	public int getBigBlind() {
+		return bigBlind;
+	}
+
+	public int getAnte() {
+		return ante;
+	}
+
+	public int getButton() {
+		return button;
+	}
+
+	public int getSeatCount() {
+		return seatCount;
+	}
+
+	public String getName(int seat) {
+		return names[seat];
+	}
+
+	public int getStack(int seat) {
+		return stacks[seat];
+	}
+
+	/**
+	 * Returns a seat's hole card.
+	 *
+	 * @param seat index of the seat
+	 * @param card 0 or 1
+	 * @return index of the card
+	 */
+	public int getHoleCard(int seat, int card) {
+		return holeCards[2 * seat + card];
+	}
+
+	public int getSeatFlags(int seat) {
+		return seatFlags[seat];
+	}
+
+	public int getActionCount() {
+		return actionCount;
+	}
+
+	public int getActionSeat(int action) {
+		return actionSeats[action];
+	}
+
+	public int getActionType(int action) {
+		return actionTypes[action];
+	}
+
+	public int getActionAmount(int action) {
+		return actionAmounts[action];
+	}
+
+	public int getStreetCount() {
+		return streetCount;
+	}
+
+	public int getStreet(int index) {
+		return streets[index];
+	}
+
+	/**
+	 * Returns the index of the first action of a street.
+	 *
+	 * @param index index of the street in the record
+	 * @return index of the street's first action
+	 */
+	public int getStreetStart(int index) {
+		return streetStarts[index];
+	}
+
+	public int getStreetPot(int index) {
+		return streetPots[index];
+	}
+
+	public int getBoardCount() {
+		return boardCount;
+	}
+
+	public int getBoardCard(int index) {
+		return board[index];
+	}
+
+	public int getResultCount() {
+		return resultCount;
+	}
+
+	public int getResultSeat(int result) {
+		return resultSeats[result];
+	}
+
+	public int getResultPot(int result) {
+		return resultPots[result];
+	}
+
+	public int getResultWinnings(int result) {
+		return resultWinnings[result];
+	}
+
+}
@@ -0,0 +1,395 @@
+package pokerclient.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reads the hand records of a segment written by HandSegmentWriter. The
+ * file is mapped into memory and records are decoded straight from it into
+ * a HandRecord the caller reuses, so a scan allocates nothing per hand.
+ *
+ * A closed segment's hands are found through its footer. A segment whose
+ * writer is still open, or never closed it, is scanned from the start
+ * instead, up to the last whole record.
+ *
+ * Once opened, a reader can be read from by several threads at once.
+ */
+public class HandSegmentReader {
+
+	private final File file;
+
+	private final ByteBuffer data;
+
+	private final ArrayList<String> names = new ArrayList<String>();
+
+	private int[] tableIds;
+
+	private int[] handNumbers;
+
+	private int[] offsets;
+
+	private int recordCount;
+
+	/**
+	 * True if the segment had a footer.
+	 */
+	private boolean closed;
+
+	/**
+	 * Opens a segment and finds its hands.
+	 *
+	 * @param file segment file
+	 * @throws IOException if the file can't be read or isn't a segment
+	 */
+	public HandSegmentReader(File file) throws IOException {
+		this.file = file;
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large for a segment");
+			}
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, size);
+			data = mapped;
+		} finally {
+			// The mapping stays valid once the channel is closed.
+			channel.close();
+		}
+		if (data.limit() < 4 || data.getInt(0) != HandSegmentWriter.MAGIC) {
+			throw new IOException(file + " isn't a hand history segment");
+		}
+		try {
+			if (!readFooter()) {
+				scan();
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException(file + " has a damaged footer", e);
+		}
+	}
+
+	private boolean readFooter() throws IOException {
+		int limit = data.limit();
+		if (limit < 4 + HandSegmentWriter.TRAILER_SIZE || data.getInt(limit - 4)
+				!= HandSegmentWriter.FOOTER_MAGIC) {
+			return false;
+		}
+		long footer = data.getLong(limit - HandSegmentWriter.TRAILER_SIZE);
+		if (footer < 4 || footer > limit - HandSegmentWriter.TRAILER_SIZE) {
+			throw new IOException(file + " has a damaged footer");
+		}
+		ByteBuffer in = data.duplicate();
+		in.position((int) footer);
+		int nameCount = getVarInt(in);
+		for (int i = 0; i < nameCount; i++) {
+			names.add(getString(in));
+		}
+		recordCount = in.getInt();
+		if (recordCount < 0 || (long) recordCount
+				* HandSegmentWriter.INDEX_ENTRY_SIZE != limit
+				- HandSegmentWriter.TRAILER_SIZE - in.position()) {
+			throw new IOException(file + " has a damaged index");
+		}
+		tableIds = new int[recordCount];
+		handNumbers = new int[recordCount];
+		offsets = new int[recordCount];
+		for (int i = 0; i < recordCount; i++) {
+			tableIds[i] = in.getInt();
+			handNumbers[i] = in.getInt();
+			offsets[i] = in.getInt();
+		}
+		closed = true;
+		return true;
+	}
+
+	/**
+	 * Finds the records of a segment without a footer by reading each one,
+	 * which also collects the names they define.
+	 */
+	private void scan() {
+		tableIds = new int[64];
+		handNumbers = new int[64];
+		offsets = new int[64];
+		HandRecord record = new HandRecord();
+		ByteBuffer in = data.duplicate();
+		in.position(4);
+		while (in.hasRemaining()) {
+			int offset = in.position();
+			try {
+				int length = getVarInt(in);
+				if (length > in.remaining()) {
+					break;
+				}
+				ByteBuffer body = in.slice();
+				body.limit(length);
+				decode(body, record, true);
+				in.position(in.position() + length);
+			} catch (IOException e) {
+				break;
+			} catch (BufferUnderflowException e) {
+				break;
+			}
+			if (recordCount == offsets.length) {
+				tableIds = Arrays.copyOf(tableIds, 2 * recordCount);
+				handNumbers = Arrays.copyOf(handNumbers, 2 * recordCount);
+				offsets = Arrays.copyOf(offsets, 2 * recordCount);
+			}
+			tableIds[recordCount] = record.getTableId();
+			handNumbers[recordCount] = record.getHandNumber();
+			offsets[recordCount] = offset;
+			recordCount++;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Tells whether the segment was closed with a footer.
+	 *
+	 * @return false if the segment was read up to its last whole record
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Returns the size of the segment as it was when opened.
+	 *
+	 * @return size in bytes
+	 */
+	public int size() {
+		return data.limit();
+	}
+
+	/**
+	 * Returns the table id of a record, from the index.
+	 *
+	 * @param record index of the record in the segment
+	 * @return table id
+	 */
+	public int getTableId(int record) {
+		checkRecord(record);
+		return tableIds[record];
+	}
+
+	/**
+	 * Returns the hand number of a record, from the index.
+	 *
+	 * @param record index of the record in the segment
+	 * @return hand number
+	 */
+	public int getHandNumber(int record) {
+		checkRecord(record);
+		return handNumbers[record];
+	}
+
+	/**
+	 * Returns where a record starts in the file.
+	 *
+	 * @param record index of the record in the segment
+	 * @return offset of the record
+	 */
+	public int getOffset(int record) {
+		checkRecord(record);
+		return offsets[record];
+	}
+
+	/**
+	 * Decodes a record.
+	 *
+	 * @param record index of the record in the segment
+	 * @param into record to fill
+	 * @throws IOException if the record is damaged
+	 */
+	public void read(int record, HandRecord into) throws IOException {
+		checkRecord(record);
+		readAt(offsets[record], into);
+	}
+
+	/**
+	 * Decodes the record starting at an offset, as found in an index.
+	 *
+	 * @param offset offset of the record
+	 * @param into record to fill
+	 * @throws IOException if there is no whole record at the offset
+	 */
+	public void readAt(int offset, HandRecord into) throws IOException {
+		ByteBuffer in = recordAt(offset);
+		try {
+			decode(in, into, false);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Record at " + offset + " in " + file
+					+ " is cut short", e);
+		}
+	}
+
+	/**
+	 * Returns the encoded record starting at an offset. The bytes are those
+	 * of the mapped file, not a copy.
+	 *
+	 * @param offset offset of the record
+	 * @return read only buffer holding the record
+	 * @throws IOException if there is no whole record at the offset
+	 */
+	public ByteBuffer getRecordBytes(int offset) throws IOException {
+		return recordAt(offset).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns a view of the data limited to the record at an offset and
+	 * positioned after its length.
+	 */
+	private ByteBuffer recordAt(int offset) throws IOException {
+		if (offset < 4 || offset >= data.limit()) {
+			throw new IOException("No record at " + offset + " in " + file);
+		}
+		ByteBuffer in = data.duplicate();
+		in.position(offset);
+		try {
+			int length = getVarInt(in);
+			if (length > in.remaining()) {
+				throw new IOException("Record at " + offset + " in " + file
+						+ " is cut short");
+			}
+			in.limit(in.position() + length);
+			return in;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Record at " + offset + " in " + file
+					+ " is cut short", e);
+		}
+	}
+
+	private void checkRecord(int record) {
+		if (record < 0 || record >= recordCount) {
+			throw new IndexOutOfBoundsException("No record " + record
+					+ " in " + file);
+		}
+	}
+
+	/**
+	 * Fills a record from its bytes.
+	 *
+	 * @param defining true to add the names the record defines to the table,
+	 * false to skip over them
+	 */
+	private void decode(ByteBuffer in, HandRecord record, boolean defining)
+			throws IOException {
+		int tableId = getVarInt(in);
+		int handNumber = getVarInt(in);
+		long startTime = getVarLong(in);
+		int smallBlind = getVarInt(in);
+		int bigBlind = getVarInt(in);
+		int ante = getVarInt(in);
+		int button = in.get() & 0xFF;
+		record.start(tableId, handNumber, startTime, smallBlind, bigBlind,
+				ante, button);
+		try {
+			int seats = in.get() & 0xFF;
+			for (int i = 0; i < seats; i++) {
+				String name = getName(in, defining);
+				int seat = record.addSeat(name, getVarInt(in));
+				int first = in.get();
+				int second = in.get();
+				record.setHoleCards(seat, first, second);
+				record.addSeatFlags(seat, in.get() & 0xFF);
+			}
+			int streets = in.get() & 0xFF;
+			for (int i = 0; i < streets; i++) {
+				int street = in.get();
+				int start = getVarInt(in);
+				record.startStreetAt(street, start, getVarInt(in));
+			}
+			int boardCount = in.get() & 0xFF;
+			for (int i = 0; i < boardCount; i++) {
+				record.addBoardCard(in.get());
+			}
+			int actions = getVarInt(in);
+			for (int i = 0; i < actions; i++) {
+				int packed = in.get() & 0xFF;
+				int type = packed & 7;
+				int amount = type == HandRecord.FOLD
+						|| type == HandRecord.CHECK ? 0 : getVarInt(in);
+				record.addAction(packed >>> 3, type, amount);
+			}
+			int results = in.get() & 0xFF;
+			for (int i = 0; i < results; i++) {
+				int seat = in.get() & 0xFF;
+				int pot = getVarInt(in);
+				record.addResult(seat, pot, getVarInt(in));
+			}
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Damaged record: " + e.getMessage(), e);
+		}
+		if (in.hasRemaining()) {
+			throw new IOException("Record has " + in.remaining()
+					+ " bytes left over");
+		}
+	}
+
+	private String getName(ByteBuffer in, boolean defining)
+			throws IOException {
+		int ref = getVarInt(in);
+		int number = ref >>> 1;
+		if ((ref & 1) != 0) {
+			if (defining && number == names.size()) {
+				names.add(getString(in));
+			} else {
+				int length = getVarInt(in);
+				in.position(in.position() + length);
+			}
+		}
+		if (number >= names.size()) {
+			throw new IOException("No name " + number + " in " + file);
+		}
+		return names.get(number);
+	}
+
+	static int getVarInt(ByteBuffer in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Varint is too long");
+	}
+
+	static long getVarLong(ByteBuffer in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Varint is too long");
+	}
+
+	static String getString(ByteBuffer in) throws IOException {
+		int length = getVarInt(in);
+		if (length < 0 || length > in.remaining()) {
+			throw new IOException("String runs past the end");
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, HandSegmentWriter.CHARSET);
+	}
+
+}
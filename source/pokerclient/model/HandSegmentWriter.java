@@ -0,0 +1,287 @@
+package pokerclient.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Appends hand records to a segment file. A segment is a header, the
+ * records one after another, and, once the segment is closed, a footer
+ * with the player names and an index of the hands.
+ *
+ * Numbers are written as varints, and an action takes two or three bytes.
+ * Player names are numbered within a segment: a record spells out a name
+ * the first time the segment uses it and refers to it by number after
+ * that, and the footer lists them all so any record can be read on its
+ * own.
+ *
+ * A writer isn't thread safe.
+ */
+public class HandSegmentWriter {
+
+	/**
+	 * First four bytes of a segment, "HHB" and the format version.
+	 */
+	static final int MAGIC = 0x48484201;
+
+	/**
+	 * Last four bytes of a closed segment, after the footer's offset.
+	 */
+	static final int FOOTER_MAGIC = 0x48484246;
+
+	/**
+	 * Bytes after the footer: its offset and FOOTER_MAGIC.
+	 */
+	static final int TRAILER_SIZE = 8 + 4;
+
+	/**
+	 * Bytes of each index entry: table id, hand number and offset.
+	 */
+	static final int INDEX_ENTRY_SIZE = 4 + 4 + 4;
+
+	static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private final File file;
+
+	private final FileChannel channel;
+
+	/**
+	 * Records not yet written to the file.
+	 */
+	private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+
+	/**
+	 * Record being encoded, which goes into pending after its length.
+	 */
+	private ByteBuffer scratch = ByteBuffer.allocate(1 << 10);
+
+	/**
+	 * Bytes in the file, and in it once pending is written.
+	 */
+	private long written;
+
+	private final HashMap<String, Integer> nameNumbers =
+			new HashMap<String, Integer>();
+
+	private final ArrayList<String> names = new ArrayList<String>();
+
+	/**
+	 * Index entries of the records appended so far.
+	 */
+	private ByteBuffer index = ByteBuffer.allocate(64 * INDEX_ENTRY_SIZE);
+
+	private int recordCount;
+
+	/**
+	 * Creates a new segment. The file mustn't exist yet.
+	 *
+	 * @param file segment file to create
+	 * @throws IOException if the file can't be created
+	 */
+	public HandSegmentWriter(File file) throws IOException {
+		this.file = file;
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.WRITE);
+		pending.putInt(MAGIC);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the size of the segment so far, counting records not yet
+	 * written out.
+	 *
+	 * @return size in bytes
+	 */
+	public long size() {
+		return written + pending.position();
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Adds a record. It is only encoded here; write puts it in the file.
+	 *
+	 * @param record hand to add
+	 * @return offset of the record in the segment
+	 */
+	public int append(HandRecord record) {
+		int definedNames = names.size();
+		while (true) {
+			scratch.clear();
+			try {
+				encode(record, scratch);
+				break;
+			} catch (BufferOverflowException e) {
+				// Forget the names the failed attempt defined.
+				while (names.size() > definedNames) {
+					nameNumbers.remove(names.remove(names.size() - 1));
+				}
+				scratch = ByteBuffer.allocate(2 * scratch.capacity());
+			}
+		}
+		scratch.flip();
+		pending = ensureRemaining(pending, 5 + scratch.remaining());
+		index = ensureRemaining(index, INDEX_ENTRY_SIZE);
+		index.putInt(record.getTableId());
+		index.putInt(record.getHandNumber());
+		int offset = (int) size();
+		index.putInt(offset);
+		putVarInt(pending, scratch.remaining());
+		pending.put(scratch);
+		recordCount++;
+		return offset;
+	}
+
+	private static ByteBuffer ensureRemaining(ByteBuffer buffer, int needed) {
+		if (buffer.remaining() >= needed) {
+			return buffer;
+		}
+		ByteBuffer larger = ByteBuffer.allocate(
+				Math.max(2 * buffer.capacity(), buffer.position() + needed));
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+
+	private void encode(HandRecord record, ByteBuffer out) {
+		putVarInt(out, record.getTableId());
+		putVarInt(out, record.getHandNumber());
+		putVarLong(out, record.getStartTime());
+		putVarInt(out, record.getSmallBlind());
+		putVarInt(out, record.getBigBlind());
+		putVarInt(out, record.getAnte());
+		out.put((byte) record.getButton());
+		int seats = record.getSeatCount();
+		out.put((byte) seats);
+		for (int i = 0; i < seats; i++) {
+			putName(out, record.getName(i));
+			putVarInt(out, record.getStack(i));
+			out.put((byte) record.getHoleCard(i, 0));
+			out.put((byte) record.getHoleCard(i, 1));
+			out.put((byte) record.getSeatFlags(i));
+		}
+		out.put((byte) record.getStreetCount());
+		for (int i = 0; i < record.getStreetCount(); i++) {
+			out.put((byte) record.getStreet(i));
+			putVarInt(out, record.getStreetStart(i));
+			putVarInt(out, record.getStreetPot(i));
+		}
+		out.put((byte) record.getBoardCount());
+		for (int i = 0; i < record.getBoardCount(); i++) {
+			out.put((byte) record.getBoardCard(i));
+		}
+		putVarInt(out, record.getActionCount());
+		for (int i = 0; i < record.getActionCount(); i++) {
+			int type = record.getActionType(i);
+			out.put((byte) (record.getActionSeat(i) << 3 | type));
+			if (type != HandRecord.FOLD && type != HandRecord.CHECK) {
+				putVarInt(out, record.getActionAmount(i));
+			}
+		}
+		out.put((byte) record.getResultCount());
+		for (int i = 0; i < record.getResultCount(); i++) {
+			out.put((byte) record.getResultSeat(i));
+			putVarInt(out, record.getResultPot(i));
+			putVarInt(out, record.getResultWinnings(i));
+		}
+	}
+
+	/**
+	 * Writes a name's number, shifted left a bit, with the low bit set and
+	 * the name after it the first time the segment uses the name.
+	 */
+	private void putName(ByteBuffer out, String name) {
+		Integer number = nameNumbers.get(name);
+		if (number != null) {
+			putVarInt(out, number << 1);
+			return;
+		}
+		number = names.size();
+		nameNumbers.put(name, number);
+		names.add(name);
+		putVarInt(out, number << 1 | 1);
+		putString(out, name);
+	}
+
+	/**
+	 * Writes the records appended so far to the file.
+	 *
+	 * @throws IOException if the file can't be written
+	 */
+	public void write() throws IOException {
+		pending.flip();
+		try {
+			while (pending.hasRemaining()) {
+				written += channel.write(pending);
+			}
+		} finally {
+			pending.compact();
+		}
+	}
+
+	/**
+	 * Writes the remaining records and the footer, and closes the file.
+	 *
+	 * @throws IOException if the file can't be written
+	 */
+	public void close() throws IOException {
+		try {
+			write();
+			long footer = written;
+			putVarInt(pending, names.size());
+			for (String name : names) {
+				pending = ensureRemaining(pending, 5 + 3 * name.length());
+				putString(pending, name);
+			}
+			write();
+			index.flip();
+			ByteBuffer count = ByteBuffer.allocate(4);
+			count.putInt(recordCount);
+			count.flip();
+			ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+			trailer.putLong(footer);
+			trailer.putInt(FOOTER_MAGIC);
+			trailer.flip();
+			ByteBuffer[] buffers = { count, index, trailer };
+			while (trailer.hasRemaining()) {
+				written += channel.write(buffers);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	static void putVarInt(ByteBuffer out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	static void putVarLong(ByteBuffer out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	static void putString(ByteBuffer out, String s) {
+		byte[] bytes = s.getBytes(CHARSET);
+		putVarInt(out, bytes.length);
+		out.put(bytes);
+	}
+
+}
@@ -3,9 +3,6 @@ package pokerclient.model;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.Serializable;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a player in the game.
@@ -17,16 +14,6 @@ public class Player implements Cloneable, Serializable {
 	 */
 	private static final long serialVersionUID = -7884865759477347009L;
 
-	/**
-	 * Used to create and utilize conditions.
-	 */
-	private Lock lock;
-	
-	/**
-	 * Condition player waits for when taking action.
-	 */
-	private Condition actionTaken;
-
 	/**
 	 * Min raise the player can make.
 	 */
@@ -44,9 +31,11 @@ public class Player implements Cloneable, Serializable {
 	
 	/**
 	 * Listener associated with the player; the model. The player notifies the 
-	 * listener when taking an action.
+	 * listener when taking an action. Transient so that a stray serialized
+	 * player can never pull the model along with it; the view receives
+	 * SeatState snapshots instead.
 	 */
-	private PropertyChangeListener listener;
+	private transient PropertyChangeListener listener;
 	
 	/**
 	 * Size of stack.
@@ -108,6 +97,28 @@ public class Player implements Cloneable, Serializable {
 
 	private GameSettings settings;
 	
+	/**
+	 * Decides this player's actions in process, or null if they come from a
+	 * client.
+	 */
+	private transient PlayerAgent agent;
+	
+	/**
+	 * True if the player's actions are written to the chat.
+	 */
+	private boolean announcing = true;
+	
+	/**
+	 * Milliseconds left in the player's time bank.
+	 */
+	private int timeBank;
+	
+	/**
+	 * True once the player has put money in the current hand's pots. Kept by
+	 * the table's PotLedger, so that it needn't search its contributors.
+	 */
+	private boolean contributor;
+	
 	/**
 	 * Constructor for the player that initializes a new hand, restacks the 
 	 * player stack, assigns an ID, and assigns a name.
@@ -121,8 +132,7 @@ public class Player implements Cloneable, Serializable {
 		this.listener = listener;
 		this.settings = settings;
 		this.stack = settings.getStartingStack();
-		lock = new ReentrantLock();
-		actionTaken = lock.newCondition();
+		this.timeBank = settings.getTimebank();
 		resetHand();
 	}
 	
@@ -230,12 +240,25 @@ public class Player implements Cloneable, Serializable {
 	}
 	
 	/**
-	 * Takes a turn of a player.
+	 * True if the last call to updateSizing left the player something to
+	 * decide. It is false when the player already responded to the current
+	 * raise.
+	 * 
+	 * @return true if the player needs to act
+	 */
+	public boolean hasDecision() {
+		return canAct;
+	}
+	
+	/**
+	 * Takes a turn of a player. A player sitting out or with an agent acts
+	 * straight away; otherwise this returns at once and the action arrives
+	 * later from the client, through GameModel.submitAction.
 	 * 
-	 * @param raiseSize size of raise player faces
-	 * @return money to be added to pot
+	 * @param context the player's legal actions and sizing, filled in by the
+	 * table, which keeps one and reuses it
 	 */
-	public void act() {
+	public void act(DecisionContext context) {
 		if (!canAct) {
 			return;
 		}
@@ -245,25 +268,14 @@ public class Player implements Cloneable, Serializable {
 			return;
 		}
 		
-		lock.lock();
-		try {
-			actionTaken.await();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} finally {
-			lock.unlock();
-		}
-	}
-	
-	/**
-	 * Notifies the player when an action has been taken.
-	 */
-	public void notifyPlayer() {
-		lock.lock();
-		try {
-			actionTaken.signalAll();
-		} finally {
-			lock.unlock();
+		if (agent != null) {
+			Action action = agent.decide(context);
+			if (!context.isLegal(action)) {
+				System.err.println(name + "'s agent chose an illegal action, "
+						+ action.describe());
+				action = context.checkOrFold();
+			}
+			acceptAction(action);
 		}
 	}
 	
@@ -307,7 +319,6 @@ public class Player implements Cloneable, Serializable {
 		acted = true;
 		this.actionClosed = actionClosed;
 		this.inHand = inHand;
-		this.notifyPlayer();
 		toCall = 0;
 	}
 	
@@ -607,9 +618,40 @@ public class Player implements Cloneable, Serializable {
 	}
 	
 	
+	/**
+	 * Lets an agent decide this player's actions instead of a client.
+	 * 
+	 * @param agent agent to ask, or null to wait for a client again
+	 */
+	public void setAgent(PlayerAgent agent) {
+		this.agent = agent;
+	}
+	
+	public PlayerAgent getAgent() {
+		return agent;
+	}
+	
+	/**
+	 * Sets whether the player's actions are written to the chat. Simulated
+	 * tables turn this off so that no chat text is built.
+	 * 
+	 * @param announcing true to write actions to the chat
+	 */
+	public void setAnnouncing(boolean announcing) {
+		this.announcing = announcing;
+	}
+	
 	public void sitOut() {
 		sittingOut = true;
 	}
+	
+	public int getTimeBank() {
+		return timeBank;
+	}
+	
+	public void setTimeBank(int timeBank) {
+		this.timeBank = timeBank;
+	}
 
 	/**
 	 * Clones a player.
@@ -651,6 +693,9 @@ public class Player implements Cloneable, Serializable {
 	 * @param anAction action taken
 	 */
 	public void printAction(String anAction) {
+		if (!announcing) {
+			return;
+		}
 		listener.propertyChange(new PropertyChangeEvent(this, GameModel.CHAT_UPDATE,
 				null, name + " " + anAction + " \n"));
 	}
@@ -663,12 +708,23 @@ public class Player implements Cloneable, Serializable {
 	 * @param aSize size associated with action
 	 */
 	public void printAction(String anAction, int aSize) {
+		if (!announcing) {
+			return;
+		}
 		listener.propertyChange(
 				new PropertyChangeEvent(this,
 						GameModel.CHAT_UPDATE, null,
 						name + " " + anAction + " " + aSize + " \n"));
 	}
 
+	boolean isContributor() {
+		return contributor;
+	}
+	
+	void setContributor(boolean contributor) {
+		this.contributor = contributor;
+	}
+	
 	/**
 	 * True if the player is all in.
 	 * 
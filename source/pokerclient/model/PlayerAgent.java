@@ -0,0 +1,22 @@
+package pokerclient.model;
+
+/**
+ * Decides a player's actions inside the server process, e.g. a bot or a
+ * scripted player in a simulation. An agent answers straight away, so the
+ * table never waits on the network for its players, and is called on the
+ * table's thread with no locks or threads of its own.
+ */
+public interface PlayerAgent {
+
+	/**
+	 * Chooses the next action of a player. This is called on the table's
+	 * thread when it is the player's turn. An action the context says is
+	 * illegal is taken as a check, or a fold if the player can't check.
+	 * 
+	 * @param context the player's legal actions, sizing and cards; it is
+	 * reused for the next decision, so it must not be kept
+	 * @return a legal action for the player
+	 */
+	Action decide(DecisionContext context);
+
+}
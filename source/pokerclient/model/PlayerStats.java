@@ -0,0 +1,567 @@
+package pokerclient.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Per player counts over the hands in the hand histories, from which a HUD
+ * works out VPIP, PFR, 3-bet, aggression factor and showdown win rate.
+ *
+ * Counts are kept by column, one array per statistic indexed by the
+ * player's row, and are written to disk the same way: a header, the names
+ * sorted, and then each column whole. Loading a file maps it and copies
+ * each column out in one go.
+ *
+ * Stats aren't thread safe; parallel jobs give each task its own and
+ * merge them, as PlayerStatsTask does.
+ */
+public class PlayerStats {
+
+	/**
+	 * Count columns.
+	 */
+	public static final int HANDS = 0;
+
+	/**
+	 * Hands in which the player called, bet or raised before the flop.
+	 */
+	public static final int VPIP = 1;
+
+	/**
+	 * Hands in which the player bet or raised before the flop.
+	 */
+	public static final int PFR = 2;
+
+	/**
+	 * Hands in which the player acted before the flop facing one raise.
+	 */
+	public static final int THREE_BET_CHANCES = 3;
+
+	/**
+	 * Hands in which the player raised before the flop facing one raise.
+	 */
+	public static final int THREE_BETS = 4;
+
+	/**
+	 * Bets and raises, on every street.
+	 */
+	public static final int AGGRESSIVE_ACTIONS = 5;
+
+	/**
+	 * Calls, on every street.
+	 */
+	public static final int CALLS = 6;
+
+	/**
+	 * Hands the player showed down.
+	 */
+	public static final int SHOWDOWNS = 7;
+
+	/**
+	 * Hands showed down in which the player won chips.
+	 */
+	public static final int SHOWDOWNS_WON = 8;
+
+	/**
+	 * First of the showdowns by the type of hand shown, in the order of
+	 * EvalHandEvaluator's types from HIGH to STRAIGHTFLUSH.
+	 */
+	public static final int SHOWDOWN_TYPES = 9;
+
+	/**
+	 * Number of count columns.
+	 */
+	public static final int COUNT_COLUMNS = SHOWDOWN_TYPES
+			+ EvalHandEvaluator.STRAIGHTFLUSH + 1;
+
+	/**
+	 * First four bytes of a stats file, "PST" and the format version.
+	 */
+	static final int MAGIC = 0x50535401;
+
+	/**
+	 * Extension of stats files.
+	 */
+	public static final String SUFFIX = ".pst";
+
+	/**
+	 * Flags of what a seat did in the hand being added.
+	 */
+	private static final int VOLUNTARY = 1;
+	private static final int RAISED = 2;
+	private static final int FACED_RAISE = 4;
+	private static final int THREE_BET = 8;
+
+	private int rowCount;
+
+	private String[] names;
+
+	private int[][] counts;
+
+	private long[] netChips;
+
+	/**
+	 * Rows by name, or null while the rows are those of a loaded file,
+	 * which are sorted by name.
+	 */
+	private HashMap<String, Integer> rows;
+
+	private long handCount;
+
+	private long damagedRecords;
+
+	// Scratch space for add, by seat.
+	private final int[] seatRows = new int[HandRecord.MAX_SEATS];
+	private final int[] seatFlags = new int[HandRecord.MAX_SEATS];
+	private final int[] paidInHand = new int[HandRecord.MAX_SEATS];
+	private final int[] paidOnStreet = new int[HandRecord.MAX_SEATS];
+
+	/**
+	 * Creates empty stats.
+	 */
+	public PlayerStats() {
+		this(64);
+		rows = new HashMap<String, Integer>();
+	}
+
+	private PlayerStats(int capacity) {
+		names = new String[capacity];
+		counts = new int[COUNT_COLUMNS][capacity];
+		netChips = new long[capacity];
+	}
+
+	/**
+	 * Returns the number of players.
+	 *
+	 * @return rows in the stats
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public String getName(int row) {
+		checkRow(row);
+		return names[row];
+	}
+
+	/**
+	 * Finds a player's row.
+	 *
+	 * @param name player's name
+	 * @return row of the player, or -1 if the player has no hands
+	 */
+	public int indexOf(String name) {
+		if (rows == null) {
+			int row = Arrays.binarySearch(names, 0, rowCount, name);
+			return row < 0 ? -1 : row;
+		}
+		Integer row = rows.get(name);
+		return row == null ? -1 : row;
+	}
+
+	/**
+	 * Returns a count.
+	 *
+	 * @param column one of the count columns
+	 * @param row row of the player
+	 * @return count
+	 */
+	public int getCount(int column, int row) {
+		checkRow(row);
+		return counts[column][row];
+	}
+
+	/**
+	 * Returns the chips the player won less the chips the player put in.
+	 *
+	 * @param row row of the player
+	 * @return net chips
+	 */
+	public long getNetChips(int row) {
+		checkRow(row);
+		return netChips[row];
+	}
+
+	/**
+	 * Returns the share of hands in which the player put chips in the pot
+	 * before the flop without being made to.
+	 *
+	 * @param row row of the player
+	 * @return VPIP, from 0 to 1
+	 */
+	public double getVpip(int row) {
+		return ratio(VPIP, HANDS, row);
+	}
+
+	/**
+	 * Returns the share of hands the player raised before the flop.
+	 *
+	 * @param row row of the player
+	 * @return PFR, from 0 to 1
+	 */
+	public double getPfr(int row) {
+		return ratio(PFR, HANDS, row);
+	}
+
+	/**
+	 * Returns the share of chances to re-raise before the flop the player
+	 * took.
+	 *
+	 * @param row row of the player
+	 * @return 3-bet, from 0 to 1
+	 */
+	public double getThreeBet(int row) {
+		return ratio(THREE_BETS, THREE_BET_CHANCES, row);
+	}
+
+	/**
+	 * Returns bets and raises over calls.
+	 *
+	 * @param row row of the player
+	 * @return aggression factor, infinite for a player who never called
+	 * but bet
+	 */
+	public double getAggression(int row) {
+		checkRow(row);
+		int aggressive = counts[AGGRESSIVE_ACTIONS][row];
+		int calls = counts[CALLS][row];
+		if (calls == 0) {
+			return aggressive == 0 ? 0 : Double.POSITIVE_INFINITY;
+		}
+		return (double) aggressive / calls;
+	}
+
+	/**
+	 * Returns the share of the showdowns in which the player won chips.
+	 *
+	 * @param row row of the player
+	 * @return showdown win rate, from 0 to 1
+	 */
+	public double getShowdownWinRate(int row) {
+		return ratio(SHOWDOWNS_WON, SHOWDOWNS, row);
+	}
+
+	private double ratio(int column, int of, int row) {
+		checkRow(row);
+		int total = counts[of][row];
+		return total == 0 ? 0 : (double) counts[column][row] / total;
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException("No row " + row);
+		}
+	}
+
+	/**
+	 * Returns the number of hands added, directly or by merging.
+	 *
+	 * @return hands counted
+	 */
+	public long getHandCount() {
+		return handCount;
+	}
+
+	/**
+	 * Returns the number of records that couldn't be read and were left
+	 * out.
+	 *
+	 * @return damaged records
+	 */
+	public long getDamagedRecords() {
+		return damagedRecords;
+	}
+
+	void addDamagedRecord() {
+		damagedRecords++;
+	}
+
+	/**
+	 * Returns a player's row, adding one if the player has none.
+	 */
+	private int row(String name) {
+		if (rows == null) {
+			rows = new HashMap<String, Integer>();
+			for (int i = 0; i < rowCount; i++) {
+				rows.put(names[i], i);
+			}
+		}
+		Integer row = rows.get(name);
+		if (row != null) {
+			return row;
+		}
+		if (rowCount == names.length) {
+			int capacity = 2 * rowCount;
+			names = Arrays.copyOf(names, capacity);
+			for (int column = 0; column < COUNT_COLUMNS; column++) {
+				counts[column] = Arrays.copyOf(counts[column], capacity);
+			}
+			netChips = Arrays.copyOf(netChips, capacity);
+		}
+		names[rowCount] = name;
+		rows.put(name, rowCount);
+		return rowCount++;
+	}
+
+	/**
+	 * Counts a hand.
+	 *
+	 * @param record hand to count
+	 */
+	public void add(HandRecord record) {
+		int seats = record.getSeatCount();
+		for (int seat = 0; seat < seats; seat++) {
+			seatRows[seat] = row(record.getName(seat));
+			seatFlags[seat] = 0;
+			paidInHand[seat] = 0;
+			paidOnStreet[seat] = 0;
+			counts[HANDS][seatRows[seat]]++;
+		}
+
+		// The posts come before the pre-flop street starts and count
+		// towards it, as the raises there are sized including them.
+		int street = HandRecord.PRE_FLOP;
+		int nextStreet = 0;
+		int raises = 0;
+		for (int a = 0; a < record.getActionCount(); a++) {
+			while (nextStreet < record.getStreetCount()
+					&& record.getStreetStart(nextStreet) <= a) {
+				street = record.getStreet(nextStreet++);
+				if (street != HandRecord.PRE_FLOP) {
+					Arrays.fill(paidOnStreet, 0, seats, 0);
+				}
+			}
+			int seat = record.getActionSeat(a);
+			int type = record.getActionType(a);
+			int amount = record.getActionAmount(a);
+			int row = seatRows[seat];
+			int paid;
+			switch (type) {
+			case HandRecord.BET:
+			case HandRecord.RAISE:
+				paid = amount - paidOnStreet[seat];
+				counts[AGGRESSIVE_ACTIONS][row]++;
+				break;
+			case HandRecord.CALL:
+				paid = amount;
+				counts[CALLS][row]++;
+				break;
+			case HandRecord.SMALL_BLIND:
+			case HandRecord.BIG_BLIND:
+			case HandRecord.ANTE:
+				paid = amount;
+				break;
+			default:
+				paid = 0;
+			}
+			paidOnStreet[seat] += paid;
+			paidInHand[seat] += paid;
+
+			if (street != HandRecord.PRE_FLOP || type == HandRecord.SMALL_BLIND
+					|| type == HandRecord.BIG_BLIND || type == HandRecord.ANTE) {
+				continue;
+			}
+			if (raises == 1) {
+				seatFlags[seat] |= FACED_RAISE;
+			}
+			if (type == HandRecord.CALL) {
+				seatFlags[seat] |= VOLUNTARY;
+			} else if (type == HandRecord.BET || type == HandRecord.RAISE) {
+				seatFlags[seat] |= VOLUNTARY | RAISED;
+				if (raises == 1) {
+					seatFlags[seat] |= THREE_BET;
+				}
+				raises++;
+			}
+		}
+
+		for (int i = 0; i < record.getResultCount(); i++) {
+			netChips[seatRows[record.getResultSeat(i)]] +=
+					record.getResultWinnings(i);
+		}
+		long board = CardSet.EMPTY;
+		for (int c = 0; c < record.getBoardCount(); c++) {
+			board |= CardSet.of(record.getBoardCard(c));
+		}
+		for (int seat = 0; seat < seats; seat++) {
+			int row = seatRows[seat];
+			int flags = seatFlags[seat];
+			netChips[row] -= paidInHand[seat];
+			if ((flags & VOLUNTARY) != 0) {
+				counts[VPIP][row]++;
+			}
+			if ((flags & RAISED) != 0) {
+				counts[PFR][row]++;
+			}
+			if ((flags & FACED_RAISE) != 0) {
+				counts[THREE_BET_CHANCES][row]++;
+			}
+			if ((flags & THREE_BET) != 0) {
+				counts[THREE_BETS][row]++;
+			}
+			if ((record.getSeatFlags(seat) & HandRecord.SHOWED) != 0) {
+				addShowdown(record, seat, row, board);
+			}
+		}
+		handCount++;
+	}
+
+	private void addShowdown(HandRecord record, int seat, int row,
+			long board) {
+		counts[SHOWDOWNS][row]++;
+		for (int i = 0; i < record.getResultCount(); i++) {
+			if (record.getResultSeat(i) == seat
+					&& record.getResultWinnings(i) > 0) {
+				counts[SHOWDOWNS_WON][row]++;
+				break;
+			}
+		}
+		long cards = board | CardSet.of(record.getHoleCard(seat, 0))
+				| CardSet.of(record.getHoleCard(seat, 1));
+		int type = EvalHandEvaluator.typeOfRank(
+				TableHandEvaluator.rankCards(cards));
+		if (type <= EvalHandEvaluator.STRAIGHTFLUSH) {
+			counts[SHOWDOWN_TYPES + type][row]++;
+		}
+	}
+
+	/**
+	 * Adds the counts of other stats to these.
+	 *
+	 * @param other stats to add
+	 * @return these stats
+	 */
+	public PlayerStats merge(PlayerStats other) {
+		for (int i = 0; i < other.rowCount; i++) {
+			int row = row(other.names[i]);
+			for (int column = 0; column < COUNT_COLUMNS; column++) {
+				counts[column][row] += other.counts[column][i];
+			}
+			netChips[row] += other.netChips[i];
+		}
+		handCount += other.handCount;
+		damagedRecords += other.damagedRecords;
+		return this;
+	}
+
+	/**
+	 * Writes the stats to a file, with the players sorted by name.
+	 *
+	 * @param file file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(File file) throws IOException {
+		Integer[] order = new Integer[rowCount];
+		for (int i = 0; i < rowCount; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return names[a].compareTo(names[b]);
+			}
+		});
+		byte[][] encoded = new byte[rowCount][];
+		int nameBytes = 0;
+		for (int i = 0; i < rowCount; i++) {
+			encoded[i] = names[order[i]].getBytes(HandSegmentWriter.CHARSET);
+			nameBytes += encoded[i].length;
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(4 * 4 + 4 * (rowCount + 1)
+				+ nameBytes + COUNT_COLUMNS * 4 * rowCount + 8 * rowCount);
+		out.putInt(MAGIC);
+		out.putInt(rowCount);
+		out.putInt(COUNT_COLUMNS);
+		out.putInt(nameBytes);
+		int end = 0;
+		out.putInt(end);
+		for (int i = 0; i < rowCount; i++) {
+			end += encoded[i].length;
+			out.putInt(end);
+		}
+		for (int i = 0; i < rowCount; i++) {
+			out.put(encoded[i]);
+		}
+		for (int column = 0; column < COUNT_COLUMNS; column++) {
+			for (int i = 0; i < rowCount; i++) {
+				out.putInt(counts[column][order[i]]);
+			}
+		}
+		for (int i = 0; i < rowCount; i++) {
+			out.putLong(netChips[order[i]]);
+		}
+		out.flip();
+
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		try {
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads stats written by write.
+	 *
+	 * @param file file to read
+	 * @return stats in the file
+	 * @throws IOException if the file can't be read or isn't a stats file
+	 */
+	public static PlayerStats load(File file) throws IOException {
+		ByteBuffer in;
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			MappedByteBuffer mapped = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			in = mapped;
+		} finally {
+			// The mapping stays valid once the channel is closed.
+			channel.close();
+		}
+		if (in.limit() < 4 * 4 || in.getInt() != MAGIC) {
+			throw new IOException(file + " isn't a player stats file");
+		}
+		int rowCount = in.getInt();
+		int columns = in.getInt();
+		int nameBytes = in.getInt();
+		if (columns != COUNT_COLUMNS || rowCount < 0 || nameBytes < 0
+				|| in.remaining() != 4L * (rowCount + 1) + nameBytes
+				+ 4L * columns * rowCount + 8L * rowCount) {
+			throw new IOException(file + " has a damaged header");
+		}
+		PlayerStats stats = new PlayerStats(Math.max(rowCount, 1));
+		stats.rowCount = rowCount;
+		int[] ends = new int[rowCount + 1];
+		in.asIntBuffer().get(ends);
+		in.position(in.position() + 4 * ends.length);
+		byte[] bytes = new byte[nameBytes];
+		in.get(bytes);
+		for (int i = 0; i < rowCount; i++) {
+			if (ends[i] < 0 || ends[i] > ends[i + 1]
+					|| ends[i + 1] > nameBytes) {
+				throw new IOException(file + " has a damaged name");
+			}
+			stats.names[i] = new String(bytes, ends[i], ends[i + 1] - ends[i],
+					HandSegmentWriter.CHARSET);
+		}
+		for (int column = 0; column < COUNT_COLUMNS; column++) {
+			in.asIntBuffer().get(stats.counts[column], 0, rowCount);
+			in.position(in.position() + 4 * rowCount);
+		}
+		in.asLongBuffer().get(stats.netChips, 0, rowCount);
+		return stats;
+	}
+
+}
@@ -0,0 +1,120 @@
+package pokerclient.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts player stats over hand history segments on a fork-join pool. The
+ * segments are split in halves down to one each, and a segment's hands in
+ * halves down to HANDS_PER_TASK, so that every worker has a share however
+ * the hands are spread over the files. Each task counts into stats of its
+ * own and the halves are merged on the way back up.
+ */
+public class PlayerStatsTask extends RecursiveTask<PlayerStats> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Most hands a task counts without splitting them further.
+	 */
+	static final int HANDS_PER_TASK = 1 << 14;
+
+	private final File[] segments;
+
+	private final int from;
+
+	private final int to;
+
+	/**
+	 * Creates a task counting the hands in segments.
+	 *
+	 * @param segments segment files
+	 */
+	public PlayerStatsTask(File[] segments) {
+		this(segments, 0, segments.length);
+	}
+
+	private PlayerStatsTask(File[] segments, int from, int to) {
+		this.segments = segments;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected PlayerStats compute() {
+		if (to - from > 1) {
+			int middle = (from + to) >>> 1;
+			PlayerStatsTask left = new PlayerStatsTask(segments, from, middle);
+			left.fork();
+			PlayerStats right = new PlayerStatsTask(segments, middle, to)
+					.compute();
+			return merge(left.join(), right);
+		}
+		if (to == from) {
+			return new PlayerStats();
+		}
+		HandSegmentReader segment;
+		try {
+			segment = new HandSegmentReader(segments[from]);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return new PlayerStats();
+		}
+		return new RangeTask(segment, 0, segment.getRecordCount()).compute();
+	}
+
+	/**
+	 * Merges the smaller of two stats into the larger.
+	 */
+	private static PlayerStats merge(PlayerStats a, PlayerStats b) {
+		return a.getRowCount() >= b.getRowCount() ? a.merge(b) : b.merge(a);
+	}
+
+	/**
+	 * Counts a range of the hands in one segment. The segment is shared by
+	 * the tasks splitting it, which only read it.
+	 */
+	private static class RangeTask extends RecursiveTask<PlayerStats> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final HandSegmentReader segment;
+
+		private final int from;
+
+		private final int to;
+
+		private RangeTask(HandSegmentReader segment, int from, int to) {
+			this.segment = segment;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected PlayerStats compute() {
+			if (to - from > HANDS_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				RangeTask left = new RangeTask(segment, from, middle);
+				left.fork();
+				PlayerStats right = new RangeTask(segment, middle, to)
+						.compute();
+				return merge(left.join(), right);
+			}
+			PlayerStats stats = new PlayerStats();
+			HandRecord record = new HandRecord();
+			for (int i = from; i < to; i++) {
+				try {
+					segment.read(i, record);
+				} catch (IOException e) {
+					stats.addDamagedRecord();
+					continue;
+				}
+				stats.add(record);
+			}
+			return stats;
+		}
+
+	}
+
+}
@@ -15,10 +15,17 @@ public class Players implements Iterable<Player>, Serializable {
 	
 	private List<Player> players;
 	
+	/**
+	 * List backing players. Loops that read every seat lock players once and
+	 * then read this directly, instead of locking for each get and size.
+	 */
+	private ArrayList<Player> seats;
+	
 	private int buttonIndex;
 	
 	public Players() {
-		players = Collections.synchronizedList(new ArrayList<Player>());
+		seats = new ArrayList<Player>();
+		players = Collections.synchronizedList(seats);
 	}
 	
 	/**
@@ -51,11 +58,14 @@ public class Players implements Iterable<Player>, Serializable {
 
 			@Override
 			public Player next() {
-				while (!players.get(i % players.size()).isInHand()) {
+				synchronized (players) {
+					int size = seats.size();
+					while (!seats.get(i % size).isInHand()) {
+						i++;
+					}
 					i++;
+					return seats.get((i - 1) % size);
 				}
-				i++;
-				return players.get((i - 1) % players.size());
 			}
 
 			@Override
@@ -67,7 +77,8 @@ public class Players implements Iterable<Player>, Serializable {
 
 	@Override
 	public Iterator<Player> iterator() {
-		return players.iterator();
+		// The synchronized list hands out the backing list's iterator anyway.
+		return seats.iterator();
 	}
 	
 	public ArrayList<Player> getPlayersCopy() {
@@ -96,23 +107,28 @@ public class Players implements Iterable<Player>, Serializable {
 
 	public int inHandCount() {
 		int inHand = 0;
-		for (int i = 0; i < players.size(); i++) {
-			if (players.get(i).isInHand()) {
-				inHand++;
+		synchronized (players) {
+			for (int i = 0; i < seats.size(); i++) {
+				if (seats.get(i).isInHand()) {
+					inHand++;
+				}
 			}
 		}
 		return inHand;
 	}
 
 	public ArrayList<Player> inHand(int start) {
-		ArrayList<Player> inHandPlayers = new ArrayList<Player>();
-		for (int i = start; i < players.size() + start; i++) {
-			Player p = players.get(i % players.size());
-			if (p.isInHand()) {
-				inHandPlayers.add(p);
+		synchronized (players) {
+			int size = seats.size();
+			ArrayList<Player> inHandPlayers = new ArrayList<Player>(size);
+			for (int i = start; i < size + start; i++) {
+				Player p = seats.get(i % size);
+				if (p.isInHand()) {
+					inHandPlayers.add(p);
+				}
 			}
+			return inHandPlayers;
 		}
-		return inHandPlayers;
 	}
 	
 	/*
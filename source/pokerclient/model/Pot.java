@@ -88,7 +88,7 @@ public class Pot implements Iterable<Player>, Serializable, Cloneable {
 	 * @param aSize
 	 *            amount of money to add to the pot.
 	 */
-	private void add(int aSize) {
+	void add(int aSize) {
 		size += aSize;
 	}
 
@@ -0,0 +1,258 @@
+package pokerclient.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Keeps the pots of a hand up to date as money goes in, instead of
+ * regenerating them after every action.
+ *
+ * Until someone is all in there is a single pot, and a payment just adds to
+ * it. Once a contributor is all in the pots are layered at every distinct
+ * contribution level, exactly as Pot.generatePots lays them out. The layers
+ * are built once, and from then on a payment only touches the layers
+ * between the player's old and new totals, splitting a layer where the new
+ * total falls inside it and merging two where the old total was the last of
+ * its level.
+ */
+public class PotLedger implements Serializable {
+
+	/**
+	 * Automatically generated serial ID.
+	 */
+	private static final long serialVersionUID = 3906574127425178391L;
+
+	/**
+	 * Orders players by how much they have put in this hand, least first.
+	 */
+	private static final Comparator<Player> BY_CONTRIBUTION =
+			new ContributionComparator();
+
+	/**
+	 * Players who have put money in this hand, in the order they first paid.
+	 */
+	private final ArrayList<Player> contributors;
+
+	/**
+	 * Current pots, main pot first. Once there are side pots, pot i holds
+	 * the slice of every contribution between levels i - 1 and i.
+	 */
+	private final ArrayList<Pot> pots;
+
+	/**
+	 * Distinct contribution levels, least first, once there are side pots.
+	 * Each is the top of the pot at the same index.
+	 */
+	private final ArrayList<Integer> levels;
+
+	/**
+	 * Number of contributors at each level.
+	 */
+	private final ArrayList<Integer> counts;
+
+	/**
+	 * True once a contributor is all in, so that the pots are layered.
+	 */
+	private boolean sidePots;
+
+	private int total;
+
+	/**
+	 * Creates a ledger holding an empty main pot.
+	 */
+	public PotLedger() {
+		contributors = new ArrayList<Player>();
+		pots = new ArrayList<Pot>();
+		levels = new ArrayList<Integer>();
+		counts = new ArrayList<Integer>();
+		reset();
+	}
+
+	/**
+	 * Empties the ledger for a new hand.
+	 */
+	public void reset() {
+		for (Player p : contributors) {
+			p.setContributor(false);
+		}
+		contributors.clear();
+		pots.clear();
+		pots.add(new Pot());
+		levels.clear();
+		counts.clear();
+		sidePots = false;
+		total = 0;
+	}
+
+	/**
+	 * Records a payment. The player's total for the hand must already include
+	 * it.
+	 *
+	 * @param player player who paid
+	 * @param amount amount paid
+	 */
+	public void add(Player player, int amount) {
+		if (amount <= 0) {
+			return;
+		}
+		total += amount;
+		boolean newContributor = !player.isContributor();
+		if (newContributor) {
+			player.setContributor(true);
+			contributors.add(player);
+		}
+		if (sidePots) {
+			move(player, player.getTotalPutInPot() - amount,
+					player.getTotalPutInPot());
+		} else if (player.isAllIn()) {
+			sidePots = true;
+			layerPots();
+		} else {
+			Pot main = pots.get(GameModel.MAIN_POT_INDEX);
+			main.add(amount);
+			if (newContributor) {
+				main.addPlayer(player);
+			}
+		}
+	}
+
+	/**
+	 * Returns the pots, main pot first. There is always at least a main pot.
+	 *
+	 * @return current pots
+	 */
+	public ArrayList<Pot> getPots() {
+		return pots;
+	}
+
+	/**
+	 * Returns the main pot.
+	 *
+	 * @return main pot
+	 */
+	public Pot getMainPot() {
+		return pots.get(GameModel.MAIN_POT_INDEX);
+	}
+
+	/**
+	 * Returns the total of all the pots.
+	 *
+	 * @return money in the pots
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Builds one pot for each distinct contribution level. Each pot holds
+	 * the slice between its level and the one below from every player who
+	 * reached it, and those players are eligible for it.
+	 */
+	private void layerPots() {
+		ArrayList<Player> ordered = new ArrayList<Player>(contributors);
+		Collections.sort(ordered, BY_CONTRIBUTION);
+		pots.clear();
+		int lastLevel = 0;
+		for (int i = 0; i < ordered.size(); i++) {
+			int level = ordered.get(i).getTotalPutInPot();
+			if (level == lastLevel) {
+				int last = counts.size() - 1;
+				counts.set(last, counts.get(last) + 1);
+				continue;
+			}
+			Pot pot = new Pot();
+			pot.add((level - lastLevel) * (ordered.size() - i));
+			for (int j = i; j < ordered.size(); j++) {
+				pot.addPlayer(ordered.get(j));
+			}
+			pots.add(pot);
+			levels.add(level);
+			counts.add(1);
+			lastLevel = level;
+		}
+	}
+
+	/**
+	 * Moves a player's contribution up from one level to another.
+	 *
+	 * @param player player who paid
+	 * @param from total before the payment, 0 for a new contributor
+	 * @param to total after it
+	 */
+	private void move(Player player, int from, int to) {
+		int top = split(to);
+		counts.set(top, counts.get(top) + 1);
+		int bottom = from == 0 ? -1 : Collections.binarySearch(levels, from);
+		// The player's slice of each layer above the old total.
+		for (int i = bottom + 1; i <= top; i++) {
+			pots.get(i).add(levels.get(i) - level(i - 1));
+			pots.get(i).addPlayer(player);
+		}
+		if (bottom >= 0) {
+			int left = counts.get(bottom) - 1;
+			if (left > 0) {
+				counts.set(bottom, left);
+			} else {
+				// Nobody stops at the old level any more, so its layer and
+				// the next have the same players.
+				pots.get(bottom + 1).add(pots.get(bottom).getSize());
+				pots.remove(bottom);
+				levels.remove(bottom);
+				counts.remove(bottom);
+			}
+		}
+	}
+
+	/**
+	 * Makes sure a level exists, splitting the layer it falls in or adding
+	 * one on top.
+	 *
+	 * @return index of the level
+	 */
+	private int split(int level) {
+		int i = Collections.binarySearch(levels, level);
+		if (i >= 0) {
+			return i;
+		}
+		i = -i - 1;
+		Pot lower = new Pot();
+		if (i < levels.size()) {
+			// Everyone in the layer reached its top, so the slice below the
+			// new level is shared by the same players.
+			Pot upper = pots.get(i);
+			int below = level - level(i - 1);
+			int players = upper.getNumberEligible();
+			lower.add(below * players);
+			upper.remove(below * players);
+			for (Player p : upper) {
+				lower.addPlayer(p);
+			}
+		}
+		pots.add(i, lower);
+		levels.add(i, level);
+		counts.add(i, 0);
+		return i;
+	}
+
+	private int level(int index) {
+		return index < 0 ? 0 : levels.get(index);
+	}
+
+	private static class ContributionComparator implements Comparator<Player>,
+			Serializable {
+
+		/**
+		 * Automatically generated serial ID.
+		 */
+		private static final long serialVersionUID = -1502843170617413627L;
+
+		@Override
+		public int compare(Player first, Player second) {
+			return first.getTotalPutInPot() - second.getTotalPutInPot();
+		}
+
+	}
+
+}
@@ -0,0 +1,388 @@
+package pokerclient.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Heads-up preflop all-in equities, read from a file that is memory-mapped
+ * when the table is opened. Lookups are a single read from the mapping, so
+ * there is nothing to warm up.
+ *
+ * The file holds the equity of every starting hand against every other
+ * (1326 x 1326) and of every starting hand class against every other
+ * (169 x 169). Equities are stored as unsigned 16 bit fractions of 1.
+ * Hands are numbered by their two card indices c1 < c2 as
+ * c2 * (c2 - 1) / 2 + c1. Classes are numbered on the usual 13 x 13 grid with
+ * aces first: pairs on the diagonal, suited hands above it and offsuit hands
+ * below it.
+ *
+ * The file is built by generate, which enumerates every board for one suit
+ * pattern of each matchup and copies the result to the other patterns. It
+ * records how many rows are finished after each row, so an interrupted run
+ * picks up where it stopped.
+ */
+public class PreflopEquityTable {
+
+	/**
+	 * System property naming the file the default table is loaded from.
+	 */
+	public static final String TABLE_PROPERTY = "pokerclient.prefloptable";
+
+	/**
+	 * Number of distinct starting hands.
+	 */
+	public static final int NUM_HANDS = CardSet.NUM_CARDS
+			* (CardSet.NUM_CARDS - 1) / 2;
+
+	private static final int NUM_RANKS = EvalCard.NUM_RANKS;
+
+	private static final int NUM_SUITS = EvalCard.NUM_SUITS;
+
+	/**
+	 * Number of starting hand classes (AA, AKs, AKo, ...).
+	 */
+	public static final int NUM_CLASSES = NUM_RANKS * NUM_RANKS;
+
+	private static final int FILE_MAGIC = 0x504b5046;
+
+	private static final int FILE_VERSION = 1;
+
+	private static final int ROWS_OFFSET = 8;
+
+	private static final int HAND_TABLE_OFFSET = 16;
+
+	private static final int CLASS_TABLE_OFFSET = HAND_TABLE_OFFSET
+			+ 2 * NUM_HANDS * NUM_HANDS;
+
+	private static final int FILE_SIZE = CLASS_TABLE_OFFSET
+			+ 2 * NUM_CLASSES * NUM_CLASSES;
+
+	/**
+	 * Stored value of an equity of 1.
+	 */
+	private static final int SCALE = 0xFFFF;
+
+	/**
+	 * CardSet of each hand, by hand index.
+	 */
+	private static final long[] HANDS = makeHands();
+
+	private final MappedByteBuffer map;
+
+	/**
+	 * Opens a table written by generate.
+	 *
+	 * @param file file to map
+	 * @throws IOException if the file can't be read, is not a table file or
+	 * is not finished
+	 */
+	public PreflopEquityTable(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() != FILE_SIZE) {
+				throw new IOException("Not a preflop equity table: " + file);
+			}
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_SIZE);
+		} finally {
+			raf.close();
+		}
+		if (map.getInt(0) != FILE_MAGIC || map.getInt(4) != FILE_VERSION) {
+			throw new IOException("Not a preflop equity table: " + file);
+		}
+		if (map.getInt(ROWS_OFFSET) != NUM_HANDS) {
+			throw new IOException("Preflop equity table is unfinished: "
+					+ file);
+		}
+	}
+
+	/**
+	 * Returns the table named by the TABLE_PROPERTY system property.
+	 *
+	 * @return the default table, or null if there is none
+	 */
+	public static PreflopEquityTable getDefault() {
+		return DefaultTable.TABLE;
+	}
+
+	/**
+	 * Returns the equity of a hand against another.
+	 *
+	 * @param hand CardSet of the first hand
+	 * @param opponent CardSet of the second hand
+	 * @return share of the pot the first hand can expect
+	 */
+	public double getEquity(long hand, long opponent) {
+		if (CardSet.overlaps(hand, opponent)) {
+			throw new IllegalArgumentException("A card is used twice.");
+		}
+		return toEquity(map.getChar(handOffset(handIndex(hand),
+				handIndex(opponent))));
+	}
+
+	/**
+	 * Returns the average equity of a hand class against another, weighting
+	 * every pair of hands that doesn't share a card equally.
+	 *
+	 * @param handClass class index of the first hand
+	 * @param opponentClass class index of the second hand
+	 * @return share of the pot the first class can expect
+	 */
+	public double getClassEquity(int handClass, int opponentClass) {
+		return toEquity(map.getChar(classOffset(handClass, opponentClass)));
+	}
+
+	/**
+	 * Returns the index of a starting hand.
+	 *
+	 * @param hand CardSet holding exactly two cards
+	 * @return hand index, from 0 to NUM_HANDS - 1
+	 */
+	public static int handIndex(long hand) {
+		if (CardSet.size(hand) != 2) {
+			throw new IllegalArgumentException("Not a starting hand: "
+					+ CardSet.toString(hand));
+		}
+		int low = CardSet.first(hand);
+		int high = CardSet.first(hand & (hand - 1));
+		return high * (high - 1) / 2 + low;
+	}
+
+	/**
+	 * Returns the class of a starting hand on the 13 x 13 grid.
+	 *
+	 * @param hand CardSet holding exactly two cards
+	 * @return class index, from 0 (AA) to NUM_CLASSES - 1 (22)
+	 */
+	public static int classIndex(long hand) {
+		int[] cards = CardSet.toIndices(hand);
+		if (cards.length != 2) {
+			throw new IllegalArgumentException("Not a starting hand: "
+					+ CardSet.toString(hand));
+		}
+		int first = NUM_RANKS - 1 - cards[0] % NUM_RANKS;
+		int second = NUM_RANKS - 1 - cards[1] % NUM_RANKS;
+		int high = Math.min(first, second);
+		int low = Math.max(first, second);
+		if (cards[0] / NUM_RANKS == cards[1] / NUM_RANKS) {
+			return high * NUM_RANKS + low;
+		}
+		return low * NUM_RANKS + high;
+	}
+
+	private static double toEquity(char value) {
+		return (double) value / SCALE;
+	}
+
+	private static int handOffset(int hand, int opponent) {
+		return HAND_TABLE_OFFSET + 2 * (hand * NUM_HANDS + opponent);
+	}
+
+	private static int classOffset(int handClass, int opponentClass) {
+		return CLASS_TABLE_OFFSET + 2 * (handClass * NUM_CLASSES
+				+ opponentClass);
+	}
+
+	private static long[] makeHands() {
+		long[] hands = new long[NUM_HANDS];
+		for (int high = 1; high < CardSet.NUM_CARDS; high++) {
+			for (int low = 0; low < high; low++) {
+				hands[high * (high - 1) / 2 + low] = CardSet.of(low)
+						| CardSet.of(high);
+			}
+		}
+		return hands;
+	}
+
+	/**
+	 * Builds, for every way to relabel the suits, the index each hand turns
+	 * into.
+	 */
+	private static int[][] makeSuitPermutations() {
+		int[][] permutations = new int[24][];
+		int count = 0;
+		for (int a = 0; a < NUM_SUITS; a++) {
+			for (int b = 0; b < NUM_SUITS; b++) {
+				for (int c = 0; c < NUM_SUITS; c++) {
+					int d = 6 - a - b - c;
+					if (a == b || a == c || b == c || d == a || d == b
+							|| d == c) {
+						continue;
+					}
+					int[] suits = {a, b, c, d};
+					int[] hands = new int[NUM_HANDS];
+					for (int h = 0; h < NUM_HANDS; h++) {
+						long relabelled = CardSet.EMPTY;
+						for (int card : CardSet.toIndices(HANDS[h])) {
+							relabelled |= CardSet.of(CardSet.index(
+									card % NUM_RANKS, suits[card / NUM_RANKS]));
+						}
+						hands[h] = handIndex(relabelled);
+					}
+					permutations[count++] = hands;
+				}
+			}
+		}
+		return permutations;
+	}
+
+	/**
+	 * Computes the table, or the rest of it if the file holds a partly
+	 * finished one. The file is flushed after every row, so the run can be
+	 * stopped at any time.
+	 *
+	 * @param file file to write
+	 * @param maxRows most rows to compute in this run, or 0 for no limit
+	 * @param calculator calculator used to enumerate the boards
+	 * @param progress stream to report progress on, or null
+	 * @return true if the table is finished
+	 * @throws IOException if the file can't be written or is not a table
+	 */
+	public static boolean generate(File file, int maxRows,
+			EquityCalculator calculator, PrintStream progress)
+			throws IOException {
+		boolean exists = file.exists();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		MappedByteBuffer out;
+		try {
+			if (exists && raf.length() != FILE_SIZE) {
+				throw new IOException("Not a preflop equity table: " + file);
+			}
+			raf.setLength(FILE_SIZE);
+			out = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+					FILE_SIZE);
+		} finally {
+			raf.close();
+		}
+		if (!exists) {
+			out.putInt(0, FILE_MAGIC);
+			out.putInt(4, FILE_VERSION);
+			out.putInt(ROWS_OFFSET, 0);
+			out.force();
+		} else if (out.getInt(0) != FILE_MAGIC
+				|| out.getInt(4) != FILE_VERSION) {
+			throw new IOException("Not a preflop equity table: " + file);
+		}
+
+		int[][] permutations = makeSuitPermutations();
+		int row = out.getInt(ROWS_OFFSET);
+		int last = maxRows > 0 ? Math.min(NUM_HANDS, row + maxRows)
+				: NUM_HANDS;
+		for (; row < last; row++) {
+			long start = System.currentTimeMillis();
+			int computed = fillRow(out, row, permutations, calculator);
+			out.putInt(ROWS_OFFSET, row + 1);
+			if (row + 1 == NUM_HANDS) {
+				fillClasses(out);
+			}
+			out.force();
+			if (progress != null) {
+				progress.println("Row " + (row + 1) + "/" + NUM_HANDS + ": "
+						+ computed + " matchups enumerated in "
+						+ (System.currentTimeMillis() - start) + " ms");
+			}
+		}
+		return row == NUM_HANDS;
+	}
+
+	/**
+	 * Fills a row of the hand table, and by symmetry the matching column.
+	 * Entries to the left of the diagonal were filled by earlier rows.
+	 *
+	 * A matchup is enumerated only if it is the smallest of its suit
+	 * relabellings. Every other matchup is copied from that smallest one,
+	 * which is either in an earlier row or earlier in the first pass over
+	 * this row.
+	 *
+	 * @return number of matchups enumerated
+	 */
+	private static int fillRow(MappedByteBuffer out, int row,
+			int[][] permutations, EquityCalculator calculator) {
+		int computed = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			for (int col = row + 1; col < NUM_HANDS; col++) {
+				if (CardSet.overlaps(HANDS[row], HANDS[col])) {
+					continue;
+				}
+				int firstHand = row;
+				int secondHand = col;
+				for (int[] p : permutations) {
+					if (p[row] < firstHand
+							|| (p[row] == firstHand && p[col] < secondHand)) {
+						firstHand = p[row];
+						secondHand = p[col];
+					}
+				}
+				boolean canonical = firstHand == row && secondHand == col;
+				char value;
+				if (pass == 0 && canonical) {
+					EquityResult result = calculator.enumerate(
+							new long[] {HANDS[row], HANDS[col]},
+							CardSet.EMPTY, CardSet.EMPTY);
+					value = (char) Math.round(result.getEquity(0) * SCALE);
+					computed++;
+				} else if (pass == 1 && !canonical) {
+					value = out.getChar(handOffset(firstHand, secondHand));
+				} else {
+					continue;
+				}
+				out.putChar(handOffset(row, col), value);
+				out.putChar(handOffset(col, row), (char) (SCALE - value));
+			}
+		}
+		return computed;
+	}
+
+	/**
+	 * Fills the class table by averaging the finished hand table.
+	 */
+	private static void fillClasses(MappedByteBuffer out) {
+		double[] sums = new double[NUM_CLASSES * NUM_CLASSES];
+		int[] counts = new int[NUM_CLASSES * NUM_CLASSES];
+		for (int hand = 0; hand < NUM_HANDS; hand++) {
+			int handClass = classIndex(HANDS[hand]);
+			for (int opponent = 0; opponent < NUM_HANDS; opponent++) {
+				if (CardSet.overlaps(HANDS[hand], HANDS[opponent])) {
+					continue;
+				}
+				int entry = handClass * NUM_CLASSES
+						+ classIndex(HANDS[opponent]);
+				sums[entry] += out.getChar(handOffset(hand, opponent));
+				counts[entry]++;
+			}
+		}
+		for (int entry = 0; entry < sums.length; entry++) {
+			out.putChar(CLASS_TABLE_OFFSET + 2 * entry,
+					(char) Math.round(sums[entry] / counts[entry]));
+		}
+	}
+
+	/**
+	 * Holds the default table, which is loaded the first time it is asked for.
+	 */
+	private static class DefaultTable {
+
+		static final PreflopEquityTable TABLE = load();
+
+		private static PreflopEquityTable load() {
+			String path = System.getProperty(TABLE_PROPERTY);
+			if (path == null) {
+				return null;
+			}
+			try {
+				return new PreflopEquityTable(new File(path));
+			} catch (IOException e) {
+				System.err.println("Could not use preflop equity table "
+						+ path + "; enumerating instead.");
+				e.printStackTrace();
+				return null;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,153 @@
+package pokerclient.model;
+
+/**
+ * Chips won and lost by each agent over hands of self-play. Every hand
+ * starts with every stack at the starting stack, so the hands are
+ * independent samples of each agent's win per hand, and its expected value
+ * carries a standard error and a 95% confidence interval like an equity
+ * estimate. Figures are in big blinds per 100 hands, the usual measure of a
+ * win rate.
+ *
+ * Results aren't thread safe; each SelfPlayTask fills in its own and they
+ * are merged.
+ */
+public class SelfPlayResult {
+
+	private final String[] names;
+
+	private final int bigBlind;
+
+	private long hands;
+
+	/**
+	 * Sum over the hands of each agent's net win, in chips.
+	 */
+	private final long[] net;
+
+	/**
+	 * Sum over the hands of each agent's squared net win.
+	 */
+	private final double[] squaredNet;
+
+	/**
+	 * Creates an empty result.
+	 *
+	 * @param names names of the agents, in seat order
+	 * @param bigBlind big blind the hands were played at
+	 */
+	public SelfPlayResult(String[] names, int bigBlind) {
+		this.names = names.clone();
+		this.bigBlind = bigBlind;
+		net = new long[names.length];
+		squaredNet = new double[names.length];
+	}
+
+	/**
+	 * Adds a hand.
+	 *
+	 * @param wins each agent's net win in the hand, in seat order
+	 */
+	public void addHand(int[] wins) {
+		hands++;
+		for (int i = 0; i < wins.length; i++) {
+			net[i] += wins[i];
+			squaredNet[i] += (double) wins[i] * wins[i];
+		}
+	}
+
+	/**
+	 * Adds the hands of another result for the same agents.
+	 *
+	 * @param other result to add
+	 * @return this result
+	 */
+	public SelfPlayResult merge(SelfPlayResult other) {
+		if (other.names.length != names.length) {
+			throw new IllegalArgumentException("Results of "
+					+ other.names.length + " agents can't be merged into "
+					+ names.length);
+		}
+		hands += other.hands;
+		for (int i = 0; i < names.length; i++) {
+			net[i] += other.net[i];
+			squaredNet[i] += other.squaredNet[i];
+		}
+		return this;
+	}
+
+	public long getHandCount() {
+		return hands;
+	}
+
+	public int getAgentCount() {
+		return names.length;
+	}
+
+	public String getName(int agent) {
+		return names[agent];
+	}
+
+	/**
+	 * Returns the agent's net win over all the hands, in chips.
+	 */
+	public long getNet(int agent) {
+		return net[agent];
+	}
+
+	/**
+	 * Returns the agent's mean win per hand, in chips.
+	 */
+	public double getMean(int agent) {
+		return hands == 0 ? 0 : (double) net[agent] / hands;
+	}
+
+	/**
+	 * Returns the standard error of the mean win per hand, in chips.
+	 */
+	public double getStandardError(int agent) {
+		if (hands < 2) {
+			return 0;
+		}
+		double mean = getMean(agent);
+		double variance = (squaredNet[agent] - hands * mean * mean)
+				/ (hands - 1);
+		return Math.sqrt(Math.max(0, variance) / hands);
+	}
+
+	/**
+	 * Returns the agent's win rate in big blinds per 100 hands.
+	 */
+	public double getBbPer100(int agent) {
+		return getMean(agent) * 100 / bigBlind;
+	}
+
+	/**
+	 * Returns the lower end of the 95% confidence interval for the win rate,
+	 * in big blinds per 100 hands.
+	 */
+	public double getLowerBound(int agent) {
+		return (getMean(agent) - EquityResult.Z_95 * getStandardError(agent))
+				* 100 / bigBlind;
+	}
+
+	/**
+	 * Returns the upper end of the 95% confidence interval for the win rate,
+	 * in big blinds per 100 hands.
+	 */
+	public double getUpperBound(int agent) {
+		return (getMean(agent) + EquityResult.Z_95 * getStandardError(agent))
+				* 100 / bigBlind;
+	}
+
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < names.length; i++) {
+			s.append(String.format("%s: %+.2f bb/100 [%+.2f, %+.2f],"
+					+ " %+d chips\n", names[i], getBbPer100(i),
+					getLowerBound(i), getUpperBound(i), net[i]));
+		}
+		s.append(hands).append(" hands");
+		return s.toString();
+	}
+
+}
@@ -0,0 +1,124 @@
+package pokerclient.model;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays agents against each other on simulated tables on a fork-join pool.
+ * The hands are split in halves down to HANDS_PER_TABLE, and each piece is
+ * played on a table of its own by agents of its own, so agents needn't be
+ * thread safe. Before every hand each stack is put back to the starting
+ * stack, so that a hand's result doesn't depend on the hands before it.
+ * The tables don't top off stacks themselves, since that would hide the
+ * losers' losses.
+ */
+public class SelfPlayTask extends RecursiveTask<SelfPlayResult> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Most hands played on one table.
+	 */
+	static final long HANDS_PER_TABLE = 1 << 14;
+
+	/**
+	 * Makes the agent for one seat at each table.
+	 */
+	public interface AgentFactory {
+
+		/**
+		 * Makes an agent. Each table has its own agents, used on its own
+		 * thread.
+		 *
+		 * @return new agent
+		 */
+		PlayerAgent newAgent();
+
+	}
+
+	private final GameSettings settings;
+
+	private final String[] names;
+
+	private final AgentFactory[] agents;
+
+	private final long hands;
+
+	/**
+	 * Creates a task playing a number of hands.
+	 *
+	 * @param settings settings of the tables; whether they top off is
+	 * ignored
+	 * @param names names of the players, in seat order
+	 * @param agents makers of the players' agents, in seat order
+	 * @param hands number of hands to play
+	 * @throws IllegalArgumentException if the players don't fit the tables
+	 * or the names repeat
+	 */
+	public SelfPlayTask(GameSettings settings, String[] names,
+			AgentFactory[] agents, long hands) {
+		if (names.length != agents.length) {
+			throw new IllegalArgumentException(names.length + " names for "
+					+ agents.length + " agents");
+		}
+		if (names.length < 2 || names.length > settings.getMaxPlayers()) {
+			throw new IllegalArgumentException("Can't seat " + names.length
+					+ " players at a table of " + settings.getMaxPlayers());
+		}
+		for (int i = 0; i < names.length; i++) {
+			for (int j = 0; j < i; j++) {
+				if (names[i].equals(names[j])) {
+					throw new IllegalArgumentException("Two players are named "
+							+ names[i]);
+				}
+			}
+		}
+		if (hands < 0) {
+			throw new IllegalArgumentException("Negative hand count: "
+					+ hands);
+		}
+		this.settings = new GameSettings(settings.getStartingStack(),
+				settings.getBigBlind(), settings.getSmallBlind(),
+				settings.getAnte(), settings.getTimebank(),
+				settings.getMaxPlayers(), false);
+		this.names = names.clone();
+		this.agents = agents.clone();
+		this.hands = hands;
+	}
+
+	@Override
+	protected SelfPlayResult compute() {
+		if (hands > HANDS_PER_TABLE) {
+			long half = hands >>> 1;
+			SelfPlayTask left = new SelfPlayTask(settings, names, agents, half);
+			left.fork();
+			SelfPlayResult right = new SelfPlayTask(settings, names, agents,
+					hands - half).compute();
+			return left.join().merge(right);
+		}
+		return playTable();
+	}
+
+	private SelfPlayResult playTable() {
+		SelfPlayResult result = new SelfPlayResult(names,
+				settings.getBigBlind());
+		GameModel model = new GameModel(settings, 0, true);
+		Player[] players = new Player[names.length];
+		for (int i = 0; i < players.length; i++) {
+			players[i] = new Player(names[i], "", settings, model);
+			players[i].setAgent(agents[i].newAgent());
+			model.addPlayer(players[i]);
+		}
+		int stack = settings.getStartingStack();
+		int[] wins = new int[players.length];
+		for (long hand = 0; hand < hands; hand++) {
+			model.playHands(1);
+			for (int i = 0; i < players.length; i++) {
+				wins[i] = players[i].getStack() - stack;
+				players[i].setStack(stack);
+			}
+			result.addHand(wins);
+		}
+		return result;
+	}
+
+}
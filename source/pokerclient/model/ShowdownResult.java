@@ -0,0 +1,108 @@
+package pokerclient.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Ranks of every player at a showdown. Each hand is ranked once, when the
+ * result is made; finding the winners of each pot and naming the hands then
+ * only reads the stored ranks.
+ *
+ * Only the players the result was made for take part. A player who is
+ * eligible for a pot but wasn't ranked (because they folded) can't win it.
+ */
+public class ShowdownResult implements Serializable {
+
+	/**
+	 * Automatically generated serial ID.
+	 */
+	private static final long serialVersionUID = -7391805377524018326L;
+
+	/**
+	 * Rank given to players who aren't part of the showdown.
+	 */
+	public static final int NO_HAND = -1;
+
+	private final ArrayList<Player> players;
+
+	private final int[] ranks;
+
+	/**
+	 * Ranks each player's hand together with the board.
+	 *
+	 * @param players players still in the hand
+	 * @param board final board
+	 */
+	public ShowdownResult(Iterable<Player> players, Board board) {
+		this.players = new ArrayList<Player>();
+		for (Player p : players) {
+			this.players.add(p);
+		}
+		ranks = new int[this.players.size()];
+		long boardCards = board.getCardSet();
+		for (int i = 0; i < ranks.length; i++) {
+			ranks[i] = TableHandEvaluator.rankCards(
+					this.players.get(i).getHand().getCardSet() | boardCards);
+		}
+	}
+
+	/**
+	 * Returns the rank of a player's hand.
+	 *
+	 * @param player player to look up
+	 * @return rank of the hand, higher is better, or NO_HAND if the player
+	 * isn't part of the showdown
+	 */
+	public int getRank(Player player) {
+		// Tables are small enough that a scan beats hashing.
+		for (int i = 0; i < ranks.length; i++) {
+			if (players.get(i) == player) {
+				return ranks[i];
+			}
+		}
+		return NO_HAND;
+	}
+
+	/**
+	 * Returns the name of a player's hand ('a Flush, Ace High', etc.)
+	 *
+	 * @param player player to look up
+	 * @return name of the hand
+	 */
+	public String getHandName(Player player) {
+		int rank = getRank(player);
+		if (rank == NO_HAND) {
+			throw new IllegalArgumentException(player.getName()
+					+ " is not part of the showdown.");
+		}
+		return EvalHandEvaluator.nameRank(rank);
+	}
+
+	/**
+	 * Returns the players with the best hand among those eligible for a pot.
+	 * Each winner is due an equal share of the pot.
+	 *
+	 * @param pot pot to award
+	 * @return list of winners; empty if no ranked player is eligible
+	 */
+	public ArrayList<Player> findWinners(Pot pot) {
+		// It's unlikely that we'll have more than 2 ties.
+		ArrayList<Player> winners = new ArrayList<Player>(2);
+		int bestRankYet = NO_HAND;
+		for (Player player : pot) {
+			int rank = getRank(player);
+			if (rank == NO_HAND) {
+				continue;
+			}
+			if (rank > bestRankYet) {
+				bestRankYet = rank;
+				winners.clear();
+				winners.add(player);
+			} else if (rank == bestRankYet) {
+				winners.add(player);
+			}
+		}
+		return winners;
+	}
+
+}
@@ -0,0 +1,167 @@
+package pokerclient.model;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Small pool of threads shared by many tables. Each table gets its own
+ * queue from newScheduler; a queue's events run one at a time on whichever
+ * pool thread is free, and a table waiting for a player or a pause holds no
+ * thread at all. Pauses and timeouts wait on one TimerWheel for the whole
+ * executor.
+ *
+ * In ThreadMode.VIRTUAL each drain of a queue runs on a virtual thread of
+ * its own instead of a pool thread; the order of a table's events is kept
+ * the same way.
+ */
+public class TableExecutor {
+
+	/**
+	 * Most events a queue runs before giving its thread to the other tables.
+	 */
+	private static final int BATCH_SIZE = 64;
+
+	private final ExecutorService pool;
+
+	private final TimerWheel wheel;
+
+	/**
+	 * Creates an executor with a number of platform threads.
+	 *
+	 * @param threads number of threads to share between the tables
+	 */
+	public TableExecutor(int threads) {
+		this(threads, ThreadMode.PLATFORM);
+	}
+
+	/**
+	 * Creates an executor running on threads of a given mode.
+	 *
+	 * @param threads number of threads to share between the tables, which
+	 * virtual threads don't need
+	 * @param mode kind of thread to run the events on
+	 * @throws UnsupportedOperationException if the JVM lacks the mode
+	 */
+	public TableExecutor(int threads, ThreadMode mode) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one thread is needed.");
+		}
+		// Tables never keep the process alive by themselves: the threads
+		// are daemons.
+		pool = mode.newExecutor(threads, "table-");
+		wheel = new TimerWheel();
+	}
+
+	/**
+	 * Returns the executor shared by every table in the process, with a
+	 * thread for each processor, of the mode ThreadMode.getConfigured names.
+	 *
+	 * @return shared executor
+	 */
+	public static TableExecutor getDefault() {
+		return DefaultExecutor.INSTANCE;
+	}
+
+	/**
+	 * Makes the queue for a new table.
+	 *
+	 * @param tableId id of the table, which failures are logged with
+	 * @return scheduler that runs the table's events in order
+	 */
+	public TableScheduler newScheduler(int tableId) {
+		return new SerialQueue(tableId);
+	}
+
+	/**
+	 * Stops the threads once the queued events have run. Pending delays are
+	 * dropped.
+	 */
+	public void shutdown() {
+		wheel.shutdown();
+		pool.shutdown();
+	}
+
+	/**
+	 * Holder for the shared executor, so that it is only made when a table
+	 * first needs it.
+	 */
+	private static class DefaultExecutor {
+
+		private static final TableExecutor INSTANCE = new TableExecutor(
+				Runtime.getRuntime().availableProcessors(),
+				ThreadMode.getConfigured());
+
+	}
+
+	/**
+	 * Events of one table. At most one drain of the queue is submitted to the
+	 * pool at a time, which is what keeps the events in order.
+	 */
+	private class SerialQueue implements TableScheduler, Runnable {
+
+		private final ConcurrentLinkedQueue<Runnable> events =
+				new ConcurrentLinkedQueue<Runnable>();
+
+		private final AtomicBoolean draining = new AtomicBoolean();
+
+		private final int tableId;
+
+		private SerialQueue(int tableId) {
+			this.tableId = tableId;
+		}
+
+		@Override
+		public void execute(Runnable event) {
+			events.add(event);
+			if (draining.compareAndSet(false, true)) {
+				pool.execute(this);
+			}
+		}
+
+		@Override
+		public void schedule(Runnable event, long delayMillis) {
+			scheduleTimeout(event, delayMillis);
+		}
+
+		@Override
+		public TimerWheel.Timeout scheduleTimeout(final Runnable event,
+				long delayMillis) {
+			return wheel.schedule(new Runnable() {
+				public void run() {
+					execute(event);
+				}
+			}, delayMillis);
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (int i = 0; i < BATCH_SIZE; i++) {
+					Runnable event = events.poll();
+					if (event == null) {
+						break;
+					}
+					try {
+						event.run();
+					} catch (Throwable t) {
+						// One bad event mustn't stall the table for good,
+						// and the model's state checks throw AssertionError.
+						System.err.println("Event failed at table " + tableId
+								+ ": " + t);
+						t.printStackTrace();
+					}
+				}
+			} finally {
+				draining.set(false);
+			}
+			// An event may have been added after the last poll but before the
+			// flag was cleared, and nobody else will submit a drain for it.
+			if (!events.isEmpty() && draining.compareAndSet(false, true)) {
+				pool.execute(this);
+			}
+		}
+
+	}
+
+}
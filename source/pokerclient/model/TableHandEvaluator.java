@@ -0,0 +1,351 @@
+package pokerclient.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Hand evaluator backed by precomputed rank tables. It returns exactly the
+ * same numbers as EvalHandEvaluator.rankHand, so ranks from the two evaluators
+ * can be compared freely, but it does not allocate and does not branch on the
+ * hand type.
+ *
+ * Cards are handled as a CardSet, bit i standing for the card with index i
+ * (13 * suit + rank). That layout puts each suit in its own 13 bit field, so
+ * a flush is found by counting the bits of each field and its value is read
+ * from a table indexed by the field. Every other hand only
+ * depends on how many cards of each rank it holds; those counts are hashed to
+ * a dense index (a combinatorial rank of the base 5 count string) into a table
+ * holding the value for that rank pattern.
+ *
+ * The tables are built once, when the class is loaded, from
+ * EvalHandEvaluator.rankHand. If the TABLE_PROPERTY system property names a
+ * file, the tables are memory-mapped from that file instead, and the file is
+ * written the first time it is missing.
+ */
+public final class TableHandEvaluator {
+
+	/**
+	 * System property naming the file the tables are loaded from.
+	 */
+	public static final String TABLE_PROPERTY = "pokerclient.evaltable";
+
+	/**
+	 * Smallest hand the tables cover. Smaller hands are ranked by
+	 * EvalHandEvaluator.
+	 */
+	public static final int MIN_CARDS = 5;
+
+	/**
+	 * Largest hand the tables cover.
+	 */
+	public static final int MAX_CARDS = 7;
+
+	private static final int NUM_RANKS = EvalCard.NUM_RANKS;
+
+	private static final int NUM_SUITS = EvalCard.NUM_SUITS;
+
+	/**
+	 * Largest number of cards of a single rank.
+	 */
+	private static final int MAX_COUNT = NUM_SUITS;
+
+	private static final int SUIT_MASK = (1 << NUM_RANKS) - 1;
+
+	/**
+	 * One bit for each suit of the deuce. Shifting this left by a rank selects
+	 * all four cards of that rank.
+	 */
+	private static final long RANK_MASK = 1L | 1L << NUM_RANKS
+			| 1L << (2 * NUM_RANKS) | 1L << (3 * NUM_RANKS);
+
+	private static final int FILE_MAGIC = 0x504b4556;
+
+	private static final int FILE_VERSION = 1;
+
+	/**
+	 * Offsets used to hash the rank counts of a hand. The entry for
+	 * (rank, cards left, count) is the number of count strings that sort
+	 * before this one because they hold fewer cards of that rank.
+	 */
+	private static final int[] HASH_OFFSETS = makeHashOffsets();
+
+	/**
+	 * Value of a flush (or straight flush), indexed by the ranks in the flush
+	 * suit.
+	 */
+	private static int[] flushRanks;
+
+	/**
+	 * Values of all other hands, indexed by the number of cards and then by
+	 * the hash of the rank counts.
+	 */
+	private static int[][] patternRanks;
+
+	static {
+		String path = System.getProperty(TABLE_PROPERTY);
+		if (path == null) {
+			generateTables();
+		} else {
+			initTables(new File(path));
+		}
+	}
+
+	private TableHandEvaluator() {
+	}
+
+	/**
+	 * Get a numerical ranking of this hand.
+	 *
+	 * @param h any hand of up to 7 cards
+	 * @return the same value EvalHandEvaluator.rankHand returns for the hand
+	 */
+	public static int rankHand(EvalHand h) {
+		int[] cards = h.getCardArray();
+		long set = CardSet.EMPTY;
+		for (int i = 1; i <= cards[0]; i++) {
+			set |= CardSet.of(cards[i]);
+		}
+		return rankCards(set);
+	}
+
+	/**
+	 * Get a numerical ranking of a set of cards.
+	 *
+	 * @param cards a CardSet of up to 7 cards
+	 * @return the same value EvalHandEvaluator.rankHand returns for the cards
+	 */
+	public static int rankCards(long cards) {
+		int size = Long.bitCount(cards);
+		if (size < MIN_CARDS) {
+			return EvalHandEvaluator.rankHand(toEvalHand(cards));
+		}
+		for (int suit = 0; suit < NUM_SUITS; suit++) {
+			int suited = (int) (cards >>> (suit * NUM_RANKS)) & SUIT_MASK;
+			if (Integer.bitCount(suited) >= MIN_CARDS) {
+				// With at most seven cards, neither quads nor a full house
+				// can share the hand with a flush.
+				return flushRanks[suited];
+			}
+		}
+		return patternRanks[size][hashRanks(cards, size)];
+	}
+
+	/**
+	 * Hashes the rank counts of a set of cards to a dense index.
+	 */
+	private static int hashRanks(long cards, int size) {
+		int index = 0;
+		int left = size;
+		for (int rank = 0; left > 0; rank++) {
+			int count = Long.bitCount(cards & (RANK_MASK << rank));
+			index += HASH_OFFSETS[offsetIndex(rank, left, count)];
+			left -= count;
+		}
+		return index;
+	}
+
+	private static int offsetIndex(int rank, int left, int count) {
+		return (rank * (MAX_CARDS + 1) + left) * (MAX_COUNT + 1) + count;
+	}
+
+	/**
+	 * Returns the number of ways to spread a number of cards over a number of
+	 * ranks.
+	 */
+	private static int[][] makePatternCounts() {
+		int[][] counts = new int[NUM_RANKS + 1][MAX_CARDS + 1];
+		counts[0][0] = 1;
+		for (int ranks = 1; ranks <= NUM_RANKS; ranks++) {
+			for (int cards = 0; cards <= MAX_CARDS; cards++) {
+				for (int c = 0; c <= Math.min(MAX_COUNT, cards); c++) {
+					counts[ranks][cards] += counts[ranks - 1][cards - c];
+				}
+			}
+		}
+		return counts;
+	}
+
+	private static int[] makeHashOffsets() {
+		int[][] counts = makePatternCounts();
+		int[] offsets = new int[NUM_RANKS * (MAX_CARDS + 1) * (MAX_COUNT + 1)];
+		for (int rank = 0; rank < NUM_RANKS; rank++) {
+			int ranksAfter = NUM_RANKS - rank - 1;
+			for (int left = 0; left <= MAX_CARDS; left++) {
+				int below = 0;
+				for (int count = 0; count <= MAX_COUNT; count++) {
+					offsets[offsetIndex(rank, left, count)] = below;
+					if (count <= left) {
+						below += counts[ranksAfter][left - count];
+					}
+				}
+			}
+		}
+		return offsets;
+	}
+
+	/**
+	 * Builds both tables with EvalHandEvaluator.
+	 */
+	private static void generateTables() {
+		flushRanks = new int[1 << NUM_RANKS];
+		for (int suited = 0; suited < flushRanks.length; suited++) {
+			int size = Integer.bitCount(suited);
+			if (size >= MIN_CARDS && size <= MAX_CARDS) {
+				flushRanks[suited] = EvalHandEvaluator.rankHand(
+						toEvalHand(suited & 0xFFFFFFFFL));
+			}
+		}
+
+		int[][] counts = makePatternCounts();
+		patternRanks = new int[MAX_CARDS + 1][];
+		for (int size = MIN_CARDS; size <= MAX_CARDS; size++) {
+			patternRanks[size] = new int[counts[NUM_RANKS][size]];
+			fillPatterns(patternRanks[size], new int[NUM_RANKS], 0, size, size);
+		}
+	}
+
+	/**
+	 * Enumerates every way to spread the remaining cards over the remaining
+	 * ranks and stores the value of each resulting hand.
+	 */
+	private static void fillPatterns(int[] table, int[] rankCounts, int rank,
+			int left, int size) {
+		if (rank == NUM_RANKS) {
+			if (left == 0) {
+				long cards = patternCards(rankCounts);
+				table[hashRanks(cards, size)] =
+						EvalHandEvaluator.rankHand(toEvalHand(cards));
+			}
+			return;
+		}
+		for (int c = 0; c <= Math.min(MAX_COUNT, left); c++) {
+			rankCounts[rank] = c;
+			fillPatterns(table, rankCounts, rank + 1, left - c, size);
+		}
+		rankCounts[rank] = 0;
+	}
+
+	/**
+	 * Builds a hand with the given rank counts. Suits are handed out in turn,
+	 * so no suit holds more than two of seven cards and the hand can't be a
+	 * flush.
+	 */
+	private static long patternCards(int[] rankCounts) {
+		long cards = 0L;
+		int suit = 0;
+		for (int rank = 0; rank < NUM_RANKS; rank++) {
+			for (int c = 0; c < rankCounts[rank]; c++) {
+				cards |= 1L << EvalCard.toIndex(rank, suit);
+				suit = (suit + 1) % NUM_SUITS;
+			}
+		}
+		return cards;
+	}
+
+	private static EvalHand toEvalHand(long cards) {
+		return new EvalHand(cards);
+	}
+
+	/**
+	 * Given a set of cards, return a string naming the hand ('a Flush, Ace
+	 * High', etc.)
+	 *
+	 * @param cards a CardSet of up to 7 cards
+	 * @return name of the hand
+	 */
+	public static String nameHand(long cards) {
+		return EvalHandEvaluator.nameRank(rankCards(cards));
+	}
+
+	/**
+	 * Loads the tables from a file, writing the file first if it doesn't exist
+	 * yet.
+	 */
+	private static void initTables(File file) {
+		try {
+			if (!file.exists()) {
+				generateTables();
+				saveTables(file);
+			} else {
+				loadTables(file);
+			}
+		} catch (IOException e) {
+			System.err.println("Could not use hand rank table " + file
+					+ "; generating it instead.");
+			e.printStackTrace();
+			generateTables();
+		}
+	}
+
+	/**
+	 * Memory-maps the tables from a file written by saveTables.
+	 *
+	 * @param file file to read
+	 * @throws IOException if the file can't be read or is not a table file
+	 */
+	public static synchronized void loadTables(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			IntBuffer in = map.asIntBuffer();
+			if (in.get() != FILE_MAGIC || in.get() != FILE_VERSION) {
+				throw new IOException("Not a hand rank table: " + file);
+			}
+			int[] flush = new int[in.get()];
+			in.get(flush);
+			int[][] patterns = new int[MAX_CARDS + 1][];
+			for (int size = MIN_CARDS; size <= MAX_CARDS; size++) {
+				patterns[size] = new int[in.get()];
+				in.get(patterns[size]);
+			}
+			flushRanks = flush;
+			patternRanks = patterns;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes the tables to a file so that later runs can map them instead of
+	 * building them.
+	 *
+	 * @param file file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public static synchronized void saveTables(File file) throws IOException {
+		int length = 3 + flushRanks.length;
+		for (int size = MIN_CARDS; size <= MAX_CARDS; size++) {
+			length += 1 + patternRanks[size].length;
+		}
+		ByteBuffer out = ByteBuffer.allocate(length * 4);
+		out.putInt(FILE_MAGIC);
+		out.putInt(FILE_VERSION);
+		out.putInt(flushRanks.length);
+		out.asIntBuffer().put(flushRanks);
+		out.position(out.position() + flushRanks.length * 4);
+		for (int size = MIN_CARDS; size <= MAX_CARDS; size++) {
+			out.putInt(patternRanks[size].length);
+			out.asIntBuffer().put(patternRanks[size]);
+			out.position(out.position() + patternRanks[size].length * 4);
+		}
+		out.flip();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			channel.truncate(0);
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+}
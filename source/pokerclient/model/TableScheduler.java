@@ -0,0 +1,35 @@
+package pokerclient.model;
+
+/**
+ * Runs the events of one table. Events are run one at a time in the order
+ * they were submitted, so a table's state is only ever touched by one thread
+ * at once, but no thread belongs to the table.
+ */
+public interface TableScheduler {
+
+	/**
+	 * Runs an event on the table as soon as the events before it are done.
+	 *
+	 * @param event event to run
+	 */
+	void execute(Runnable event);
+
+	/**
+	 * Runs an event on the table after a delay.
+	 *
+	 * @param event event to run
+	 * @param delayMillis delay in milliseconds
+	 */
+	void schedule(Runnable event, long delayMillis);
+
+	/**
+	 * Runs an event on the table after a delay, unless it is cancelled
+	 * first. Meant for timeouts, which are mostly cancelled.
+	 *
+	 * @param event event to run
+	 * @param delayMillis delay in milliseconds
+	 * @return handle that cancels the event
+	 */
+	TimerWheel.Timeout scheduleTimeout(Runnable event, long delayMillis);
+
+}
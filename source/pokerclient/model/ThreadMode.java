@@ -0,0 +1,162 @@
+package pokerclient.model;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kind of thread the tables and clients run on, chosen at startup through
+ * the PROPERTY system property.
+ *
+ * Virtual threads need Java 21. The code is built for older JVMs too, so
+ * they are made by reflection and are only available where the running JVM
+ * has them.
+ *
+ * Code that may run on a virtual thread takes a ReentrantLock, not a
+ * monitor, around anything that can block, so that it never pins its
+ * carrier: a virtual thread blocked inside synchronized holds the platform
+ * thread under it.
+ */
+public enum ThreadMode {
+
+	/**
+	 * Ordinary threads: tables share a pool sized to the processors.
+	 */
+	PLATFORM,
+
+	/**
+	 * A virtual thread per task, on the JVM's own carrier threads.
+	 */
+	VIRTUAL;
+
+	/**
+	 * System property naming the mode, in either case.
+	 */
+	public static final String PROPERTY = "pokerclient.threadmode";
+
+	/**
+	 * Thread.ofVirtual, or null if the JVM has no virtual threads.
+	 */
+	private static final Method OF_VIRTUAL = findMethod(Thread.class,
+			"ofVirtual");
+
+	/**
+	 * Executors.newThreadPerTaskExecutor, or null before Java 21.
+	 */
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(
+			Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+	/**
+	 * Returns the mode the PROPERTY system property names, PLATFORM if it
+	 * is unset.
+	 *
+	 * @return configured mode
+	 * @throws IllegalArgumentException if the property names no mode
+	 */
+	public static ThreadMode getConfigured() {
+		return valueOf(System.getProperty(PROPERTY, PLATFORM.name())
+				.toUpperCase());
+	}
+
+	/**
+	 * Says whether the running JVM can make threads of this mode.
+	 *
+	 * @return true if newThread will work
+	 */
+	public boolean isAvailable() {
+		return this == PLATFORM || (OF_VIRTUAL != null
+				&& NEW_THREAD_PER_TASK_EXECUTOR != null);
+	}
+
+	/**
+	 * Makes an unstarted thread of this mode. Platform threads are made
+	 * daemons; virtual threads always are.
+	 *
+	 * @param task what the thread runs
+	 * @param name name of the thread
+	 * @return new thread
+	 * @throws UnsupportedOperationException if the mode isn't available
+	 */
+	public Thread newThread(Runnable task, String name) {
+		if (this == PLATFORM) {
+			Thread t = new Thread(task, name);
+			t.setDaemon(true);
+			return t;
+		}
+		if (OF_VIRTUAL == null) {
+			throw new UnsupportedOperationException(
+					"This JVM has no virtual threads.");
+		}
+		try {
+			// Called through the public Thread.Builder, as the builder's own
+			// class isn't accessible.
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = builderClass.getMethod("name", String.class)
+					.invoke(builder, name);
+			return (Thread) builderClass.getMethod("unstarted",
+					Runnable.class).invoke(builder, task);
+		} catch (ClassNotFoundException e) {
+			throw new UnsupportedOperationException(e);
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException(e);
+		} catch (NoSuchMethodException e) {
+			throw new UnsupportedOperationException(e);
+		} catch (InvocationTargetException e) {
+			throw new UnsupportedOperationException(e.getCause());
+		}
+	}
+
+	/**
+	 * Makes an executor for tasks that may block. A platform executor has
+	 * a fixed number of threads; a virtual one starts a thread per task and
+	 * ignores the number.
+	 *
+	 * @param threads threads of a platform executor
+	 * @param prefix start of the threads' names
+	 * @return new executor
+	 */
+	public ExecutorService newExecutor(int threads, final String prefix) {
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return ThreadMode.this.newThread(r,
+						prefix + count.incrementAndGet());
+			}
+		};
+		if (this == PLATFORM) {
+			return new ThreadPoolExecutor(threads, threads, 0,
+					TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+					factory);
+		}
+		if (NEW_THREAD_PER_TASK_EXECUTOR == null) {
+			throw new UnsupportedOperationException(
+					"This JVM has no virtual threads.");
+		}
+		try {
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null,
+					factory);
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException(e);
+		} catch (InvocationTargetException e) {
+			throw new UnsupportedOperationException(e.getCause());
+		}
+	}
+
+	private static Method findMethod(Class<?> c, String name,
+			Class<?>... parameters) {
+		try {
+			return c.getMethod(name, parameters);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,241 @@
+package pokerclient.model;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel: a ring of buckets, one per tick, turned by a thread
+ * of its own. A timeout goes in the bucket its deadline falls in, with the
+ * number of whole turns of the wheel still to wait, so scheduling and
+ * cancelling a timeout cost the same however many are pending; each tick
+ * only looks at one bucket. Timeouts never fire early, and at most two
+ * ticks late.
+ *
+ * Tasks run on the wheel's thread and must be short; tables hand theirs
+ * straight on to their own scheduler.
+ */
+public class TimerWheel {
+
+	public static final long DEFAULT_TICK_MILLIS = 10;
+
+	/**
+	 * Buckets in the default wheel: a turn of a little over five seconds,
+	 * about as long as most decisions take.
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+
+	/**
+	 * Handle of a pending task.
+	 */
+	public interface Timeout {
+
+		/**
+		 * Stops the task from running.
+		 *
+		 * @return false if it had run or been cancelled already
+		 */
+		boolean cancel();
+
+	}
+
+	private final long tickNanos;
+
+	/**
+	 * First timeout of each bucket, or null.
+	 */
+	private final Entry[] buckets;
+
+	private final int mask;
+
+	private final Thread thread;
+
+	/**
+	 * Ticks done so far. Guarded by the wheel's lock, as are the buckets
+	 * and the entries' links.
+	 */
+	private long ticks;
+
+	private int pending;
+
+	private volatile boolean stopped;
+
+	/**
+	 * Starts a wheel.
+	 *
+	 * @param tickMillis length of a tick in milliseconds
+	 * @param wheelSize number of buckets, a power of two
+	 */
+	public TimerWheel(long tickMillis, int wheelSize) {
+		if (tickMillis < 1) {
+			throw new IllegalArgumentException("Ticks must be positive.");
+		}
+		if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+			throw new IllegalArgumentException(
+					"The wheel size must be a power of two.");
+		}
+		tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		buckets = new Entry[wheelSize];
+		mask = wheelSize - 1;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				turn();
+			}
+		}, "timer-wheel");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Starts a wheel with the default tick and size.
+	 */
+	public TimerWheel() {
+		this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * Runs a task on the wheel's thread after a delay, unless cancelled
+	 * first.
+	 *
+	 * @param task task to run
+	 * @param delayMillis delay in milliseconds
+	 * @return handle that cancels the task
+	 */
+	public Timeout schedule(Runnable task, long delayMillis) {
+		long delay = Math.max(0, (TimeUnit.MILLISECONDS.toNanos(delayMillis)
+				+ tickNanos - 1) / tickNanos);
+		Entry entry = new Entry(task);
+		synchronized (this) {
+			// The tick under way may be nearly over, so the task waits for
+			// the one after its delay.
+			entry.rounds = delay / buckets.length;
+			entry.bucket = (int) ((ticks + delay + 1) & mask);
+			entry.next = buckets[entry.bucket];
+			if (entry.next != null) {
+				entry.next.previous = entry;
+			}
+			buckets[entry.bucket] = entry;
+			pending++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns the number of tasks waiting to run.
+	 *
+	 * @return pending tasks
+	 */
+	public synchronized int getPendingCount() {
+		return pending;
+	}
+
+	/**
+	 * Stops the wheel. Pending tasks never run.
+	 */
+	public void shutdown() {
+		stopped = true;
+		LockSupport.unpark(thread);
+	}
+
+	private void turn() {
+		long start = System.nanoTime();
+		ArrayList<Entry> expired = new ArrayList<Entry>();
+		long done = 0;
+		while (!stopped) {
+			long wait = start + (done + 1) * tickNanos - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait);
+				continue;
+			}
+			synchronized (this) {
+				ticks++;
+				done = ticks;
+				expire(expired);
+			}
+			for (Entry e : expired) {
+				try {
+					e.task.run();
+				} catch (RuntimeException ex) {
+					// One bad task mustn't stop the wheel for everyone.
+					ex.printStackTrace();
+				}
+			}
+			expired.clear();
+		}
+	}
+
+	/**
+	 * Takes the timeouts due this tick out of their bucket, and counts down
+	 * the turns of the rest. The lock is held.
+	 */
+	private void expire(ArrayList<Entry> expired) {
+		Entry e = buckets[(int) (ticks & mask)];
+		while (e != null) {
+			Entry next = e.next;
+			if (e.rounds == 0) {
+				unlink(e);
+				expired.add(e);
+			} else {
+				e.rounds--;
+			}
+			e = next;
+		}
+	}
+
+	/**
+	 * Takes a timeout out of its bucket. The lock is held.
+	 */
+	private void unlink(Entry e) {
+		if (e.previous != null) {
+			e.previous.next = e.next;
+		} else {
+			buckets[e.bucket] = e.next;
+		}
+		if (e.next != null) {
+			e.next.previous = e.previous;
+		}
+		e.next = null;
+		e.previous = null;
+		e.bucket = -1;
+		pending--;
+	}
+
+	/**
+	 * A pending task, linked into its bucket.
+	 */
+	private class Entry implements Timeout {
+
+		private final Runnable task;
+
+		/**
+		 * Turns of the wheel left before the task is due.
+		 */
+		private long rounds;
+
+		/**
+		 * Index of the bucket, or -1 once the entry has left it.
+		 */
+		private int bucket;
+
+		private Entry previous;
+
+		private Entry next;
+
+		private Entry(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public boolean cancel() {
+			synchronized (TimerWheel.this) {
+				if (bucket < 0) {
+					return false;
+				}
+				unlink(this);
+				return true;
+			}
+		}
+
+	}
+
+}
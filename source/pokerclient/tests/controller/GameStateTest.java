@@ -0,0 +1,113 @@
+package pokerclient.tests.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pokerclient.controller.GameState;
+import pokerclient.controller.SeatState;
+import pokerclient.model.Board;
+import pokerclient.model.Card;
+import pokerclient.model.GameSettings;
+import pokerclient.model.Hand;
+import pokerclient.model.Player;
+import pokerclient.model.Pot;
+
+/**
+ * Checks which hole cards each audience of a GameState gets to see.
+ */
+public class GameStateTest {
+
+	private static final GameSettings settings =
+			new GameSettings(1000, 10, 5, 0, 50, 6, false);
+
+	private ArrayList<Player> players;
+
+	@Before
+	public void setUp() {
+		PropertyChangeListener ignore = new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+			}
+		};
+		players = new ArrayList<Player>();
+		for (int i = 0; i < 3; i++) {
+			Player p = new Player("p" + i, "path", settings, ignore);
+			Hand h = new Hand();
+			h.setCard(0, new Card(2 * i));
+			h.setCard(1, new Card(2 * i + 1));
+			p.setHand(h);
+			players.add(p);
+		}
+		players.get(2).fold();
+	}
+
+	private GameState state() {
+		ArrayList<SeatState> seats = new ArrayList<SeatState>();
+		for (int i = 0; i < players.size(); i++) {
+			seats.add(new SeatState(i, players.get(i)));
+		}
+		ArrayList<Pot> pots = new ArrayList<Pot>();
+		pots.add(new Pot());
+		return new GameState(seats, pots, new Board());
+	}
+
+	private boolean[] known(GameState state) {
+		boolean[] known = new boolean[players.size()];
+		for (int i = 0; i < known.length; i++) {
+			known[i] = state.hasCards(i);
+		}
+		return known;
+	}
+
+	@Test
+	public void testPlayerSeesOnlyOwnCards() {
+		GameState mine = state().forAudience(1, false);
+		assertEquals("[false, true, false]", Arrays.toString(known(mine)));
+		Iterator<SeatState> seats = mine.getAllPlayers();
+		seats.next();
+		assertEquals(players.get(1).getHand().getCardSet(),
+				seats.next().getHand().getCardSet());
+	}
+
+	@Test
+	public void testSpectatorSeesNoCards() {
+		GameState spectator = state().forAudience(GameState.NO_SEAT, false);
+		for (boolean k : known(spectator)) {
+			assertFalse(k);
+		}
+		assertTrue(spectator.getFoldedStatus(2));
+	}
+
+	@Test
+	public void testShowdownShowsHandsStillIn() {
+		GameState showdown = state().forAudience(GameState.NO_SEAT, true);
+		assertEquals("[true, true, false]", Arrays.toString(known(showdown)));
+	}
+
+	@Test
+	public void testNothingToHideKeepsState() {
+		for (Player p : players) {
+			p.resetHand();
+		}
+		GameState state = state();
+		assertSame(state, state.forAudience(GameState.NO_SEAT, false));
+	}
+
+	@Test
+	public void testSeatIndex() {
+		GameState state = state();
+		assertEquals(2, state.getSeatIndex("p2"));
+		assertEquals(GameState.NO_SEAT, state.getSeatIndex("nobody"));
+	}
+
+}
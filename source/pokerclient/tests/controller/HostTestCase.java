@@ -0,0 +1,87 @@
+package pokerclient.tests.controller;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.After;
+
+import pokerclient.controller.GameServer;
+import pokerclient.controller.TableHost;
+import pokerclient.model.HandHistorySink;
+import pokerclient.model.TableExecutor;
+import pokerclient.tests.model.ScratchDirectoryTest;
+
+/**
+ * Base of the tests that run a TableHost on a free port, writing its hands
+ * to the scratch directory, and stop it after each test.
+ */
+public abstract class HostTestCase extends ScratchDirectoryTest {
+
+	/**
+	 * How long the selector thread is given to handle a join or a hang up.
+	 */
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	protected TableHost host;
+
+	private TableExecutor executor;
+
+	private HandHistorySink sink;
+
+	/**
+	 * Starts the host serving on a thread of its own.
+	 *
+	 * @param maxTables most tables the host runs
+	 */
+	protected void startHost(int maxTables) throws IOException {
+		executor = new TableExecutor(1);
+		sink = new HandHistorySink(directory,
+				HandHistorySink.DEFAULT_MAX_BYTES,
+				HandHistorySink.DEFAULT_MAX_AGE,
+				HandHistorySink.DEFAULT_CAPACITY);
+		host = new TableHost(0, maxTables, GameServer.defaultSettings(),
+				executor, sink);
+		Thread thread = new Thread(host, "host");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits for the host to be running a number of tables, as it is once
+	 * the selector thread has handled the joins and hang ups sent so far.
+	 */
+	protected void awaitTables(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (host.getTableCount() != count) {
+			assertTrue(host.getTableCount() + " tables are running",
+					System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	protected TableClient join(String name, int tableId) throws IOException {
+		return TableClient.join(host.getPort(), name, tableId);
+	}
+
+	/**
+	 * Stops the host before the directory it writes to is deleted.
+	 */
+	@Override
+	@After
+	public void deleteDirectory() {
+		try {
+			if (host != null) {
+				host.close();
+				executor.shutdown();
+				sink.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		super.deleteDirectory();
+	}
+
+}
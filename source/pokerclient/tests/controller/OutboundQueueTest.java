@@ -0,0 +1,123 @@
+package pokerclient.tests.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import pokerclient.controller.OutboundQueue;
+import pokerclient.controller.OverflowPolicy;
+
+/**
+ * Checks what each overflow policy gives up when a client's queue is full.
+ */
+public class OutboundQueueTest {
+
+	private static final int CAPACITY = 4;
+
+	/**
+	 * Makes a one byte frame holding a tag, so tests can see which frames
+	 * survived.
+	 */
+	private static ByteBuffer frame(int tag) {
+		return ByteBuffer.wrap(new byte[] { (byte) tag });
+	}
+
+	private static String drain(OutboundQueue queue) {
+		String tags = "";
+		ByteBuffer frame;
+		while ((frame = queue.peek()) != null) {
+			tags += frame.get(frame.position());
+			queue.remove();
+		}
+		return tags;
+	}
+
+	@Test
+	public void testDisconnectWhenFull() {
+		OutboundQueue queue = new OutboundQueue(CAPACITY,
+				OverflowPolicy.DISCONNECT);
+		for (int i = 0; i < CAPACITY; i++) {
+			assertTrue(queue.offer(frame(i), OutboundQueue.Kind.CHAT));
+		}
+		assertFalse(queue.offer(frame(9), OutboundQueue.Kind.CHAT));
+		assertEquals("0123", drain(queue));
+	}
+
+	@Test
+	public void testDropOldestChat() {
+		OutboundQueue queue = new OutboundQueue(CAPACITY, OverflowPolicy.DROP);
+		queue.offer(frame(0), OutboundQueue.Kind.CHAT);
+		queue.offer(frame(1), OutboundQueue.Kind.CHAT);
+		queue.offer(frame(2), OutboundQueue.Kind.EVENT);
+		queue.offer(frame(3), OutboundQueue.Kind.CHAT);
+		// The head may be mid-write, so chat 1 goes rather than chat 0.
+		assertTrue(queue.offer(frame(4), OutboundQueue.Kind.STATE));
+		assertEquals(1, queue.getDropped());
+		assertEquals(CAPACITY, queue.getMaxDepth());
+		assertEquals("0234", drain(queue));
+	}
+
+	@Test
+	public void testDropIncomingChat() {
+		OutboundQueue queue = new OutboundQueue(CAPACITY, OverflowPolicy.DROP);
+		for (int i = 0; i < CAPACITY; i++) {
+			queue.offer(frame(i), OutboundQueue.Kind.EVENT);
+		}
+		assertTrue(queue.offer(frame(9), OutboundQueue.Kind.CHAT));
+		assertFalse(queue.offer(frame(9), OutboundQueue.Kind.STATE));
+		assertEquals(1, queue.getDropped());
+		assertEquals("0123", drain(queue));
+	}
+
+	@Test
+	public void testCoalesceStates() {
+		OutboundQueue queue = new OutboundQueue(CAPACITY,
+				OverflowPolicy.COALESCE);
+		queue.offer(frame(0), OutboundQueue.Kind.STATE);
+		queue.offer(frame(1), OutboundQueue.Kind.STATE);
+		queue.offer(frame(2), OutboundQueue.Kind.EVENT);
+		queue.offer(frame(3), OutboundQueue.Kind.STATE);
+		assertTrue(queue.offer(frame(4), OutboundQueue.Kind.STATE));
+		assertEquals(2, queue.getCoalesced());
+		assertEquals(3, queue.getDepth());
+		assertEquals(3, queue.getBytes());
+		assertEquals("024", drain(queue));
+		assertEquals(0, queue.getBytes());
+	}
+
+	@Test
+	public void testDeltaOverflowLosesState() {
+		OutboundQueue queue = new OutboundQueue(CAPACITY,
+				OverflowPolicy.COALESCE);
+		queue.offer(frame(0), OutboundQueue.Kind.DELTA);
+		queue.offer(frame(1), OutboundQueue.Kind.DELTA);
+		queue.offer(frame(2), OutboundQueue.Kind.EVENT);
+		queue.offer(frame(3), OutboundQueue.Kind.DELTA);
+		assertFalse(queue.takeStateLost());
+		// The deltas after the head go, and so does the new one, since the
+		// client couldn't apply it.
+		assertTrue(queue.offer(frame(4), OutboundQueue.Kind.DELTA));
+		assertTrue(queue.takeStateLost());
+		assertFalse(queue.takeStateLost());
+		assertEquals(3, queue.getCoalesced());
+		// A full state replaces what is left.
+		assertTrue(queue.offer(frame(5), OutboundQueue.Kind.STATE));
+		assertFalse(queue.takeStateLost());
+		assertEquals("025", drain(queue));
+	}
+
+	@Test
+	public void testSharedFrameUntouched() {
+		OutboundQueue queue = new OutboundQueue(CAPACITY,
+				OverflowPolicy.COALESCE);
+		ByteBuffer shared = frame(7);
+		queue.offer(shared, OutboundQueue.Kind.EVENT);
+		queue.peek().get();
+		assertEquals(0, shared.position());
+	}
+
+}
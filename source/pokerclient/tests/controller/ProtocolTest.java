@@ -0,0 +1,316 @@
+package pokerclient.tests.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pokerclient.controller.Frames;
+import pokerclient.controller.GameState;
+import pokerclient.controller.JoinSettings;
+import pokerclient.controller.Protocol;
+import pokerclient.controller.SeatState;
+import pokerclient.controller.StateStream;
+import pokerclient.gui.GameView;
+import pokerclient.model.Action;
+import pokerclient.model.Board;
+import pokerclient.model.Card;
+import pokerclient.model.GameSettings;
+import pokerclient.model.Hand;
+import pokerclient.model.Player;
+import pokerclient.model.Pot;
+
+/**
+ * Round trips every message through its binary form, and follows game
+ * states through full states and deltas.
+ */
+public class ProtocolTest {
+
+	private static final GameSettings settings =
+			new GameSettings(1000, 10, 5, 0, 50, 6, false);
+
+	/**
+	 * Checks the length prefix of a frame and returns its payload.
+	 */
+	private static ByteBuffer payload(ByteBuffer frame) {
+		assertEquals(frame.remaining() - Frames.HEADER_SIZE, frame.getInt(0));
+		ByteBuffer payload = frame.duplicate();
+		payload.position(Frames.HEADER_SIZE);
+		return payload;
+	}
+
+	private StateStream states;
+
+	private ArrayList<Player> players;
+
+	private Board board;
+
+	@Before
+	public void setUp() {
+		states = new StateStream();
+		PropertyChangeListener ignore = new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+			}
+		};
+		players = new ArrayList<Player>();
+		for (int i = 0; i < 3; i++) {
+			Player p = new Player("p\u00e9" + i, "images/" + i + ".png",
+					settings, ignore);
+			Hand h = new Hand();
+			h.setCard(0, new Card(2 * i));
+			h.setCard(1, new Card(2 * i + 1));
+			p.setHand(h);
+			players.add(p);
+		}
+		players.get(2).fold();
+		board = new Board();
+		board.addCard(new Card(40));
+		board.addCard(new Card(51));
+		board.addCard(new Card(0));
+	}
+
+	private PropertyChangeEvent event(ByteBuffer frame) throws IOException {
+		return Protocol.decodeEvent(payload(frame), "test", states);
+	}
+
+	/**
+	 * Takes a snapshot of the table with a player to act.
+	 */
+	private GameState state(int active) {
+		ArrayList<SeatState> seats = new ArrayList<SeatState>();
+		for (int i = 0; i < players.size(); i++) {
+			seats.add(new SeatState(i, players.get(i)));
+		}
+		ArrayList<Pot> pots = new ArrayList<Pot>();
+		pots.add(new Pot());
+		pots.add(new Pot());
+		return new GameState(seats, players.get(active), pots, board, active);
+	}
+
+	private static void assertSameState(GameState sent, GameState got) {
+		assertEquals(sent.activeIsNull(), got.activeIsNull());
+		assertEquals(sent.getActiveName(), got.getActiveName());
+		assertEquals(sent.getMinBet(), got.getMinBet());
+		assertEquals(sent.getMaxBet(), got.getMaxBet());
+		assertEquals(sent.getToCall(), got.getToCall());
+		assertEquals(sent.getPlayerStack(), got.getPlayerStack());
+		assertEquals(sent.isCheckable(), got.isCheckable());
+		assertEquals(sent.getStableIndex(), got.getStableIndex());
+		assertEquals(Arrays.toString(sent.getPotSizes()),
+				Arrays.toString(got.getPotSizes()));
+		assertEquals(sent.getBoard().toString(), got.getBoard().toString());
+		Iterator<SeatState> sentSeats = sent.getAllPlayers();
+		Iterator<SeatState> gotSeats = got.getAllPlayers();
+		while (sentSeats.hasNext()) {
+			SeatState s = sentSeats.next();
+			SeatState g = gotSeats.next();
+			assertEquals(s.getSeatIndex(), g.getSeatIndex());
+			assertEquals(s.getName(), g.getName());
+			assertEquals(s.getAvatarPath(), g.getAvatarPath());
+			assertEquals(s.getStack(), g.getStack());
+			assertEquals(s.getPutInPotOnStreet(), g.getPutInPotOnStreet());
+			assertEquals(s.getTotalPutInPot(), g.getTotalPutInPot());
+			assertEquals(s.isFolded(), g.isFolded());
+			assertEquals(s.isInHand(), g.isInHand());
+			assertEquals(s.hasCards(), g.hasCards());
+			assertEquals(s.getHand().getCardSet(), g.getHand().getCardSet());
+			assertEquals(s.getHand().isFolded(), g.getHand().isFolded());
+			assertEquals(s.getHand().getFirst().isHidden(),
+					g.getHand().getFirst().isHidden());
+		}
+		assertFalse(gotSeats.hasNext());
+	}
+
+	@Test
+	public void testJoin() throws IOException {
+		ByteBuffer payload = payload(Protocol.encodeJoin(
+				new JoinSettings("Zo\u00eb \u2660", "images/avatars/panda.png",
+						4711)));
+		assertEquals(Protocol.Type.JOIN, Protocol.readType(payload));
+		JoinSettings join = Protocol.decodeJoin(payload);
+		assertEquals("Zo\u00eb \u2660", join.getName());
+		assertEquals("images/avatars/panda.png", join.getAvatarPath());
+		assertEquals(4711, join.getTableId());
+		assertFalse(payload.hasRemaining());
+	}
+
+	@Test
+	public void testChecksNames() throws IOException {
+		JoinSettings.checkName("Zo\u00eb \u2660");
+		JoinSettings.checkName("\ud83c\udca1 12345678901234567890123456789a");
+		for (String name : new String[] { "", "a\u0000b", "tab\there",
+				"two\nlines", "bidi\u202e", "half\ud83c",
+				"123456789012345678901234567890123" }) {
+			try {
+				JoinSettings.checkName(name);
+				fail("Took " + name);
+			} catch (IOException e) {
+				// Expected.
+			}
+		}
+	}
+
+	@Test
+	public void testAction() throws IOException {
+		ByteBuffer payload = payload(Protocol.encodeAction(
+				new Action("me", Action.ActionType.RAISE, 120)));
+		assertEquals(Protocol.Type.ACTION, Protocol.readType(payload));
+		Action action = Protocol.decodeAction(payload, "server's name");
+		assertEquals(Action.ActionType.RAISE, action.getAction());
+		assertEquals(120, action.getSize());
+		assertEquals("server's name", action.getPlayerName());
+	}
+
+	@Test
+	public void testState() throws IOException {
+		GameState sent = state(1).forAudience(1, false);
+		PropertyChangeEvent evt = event(Protocol.encodeState(
+				GameView.GENERATE_GUI_START_OF_TURN, 7, sent));
+		assertEquals(GameView.GENERATE_GUI_START_OF_TURN,
+				evt.getPropertyName());
+		GameState got = (GameState) evt.getNewValue();
+		assertFalse(got.activeIsNull());
+		assertSameState(sent, got);
+		assertFalse(got.hasEquity(0));
+		assertEquals(7, states.getSequence());
+	}
+
+	@Test
+	public void testDelta() throws IOException {
+		GameState first = state(0).forAudience(1, false);
+		ByteBuffer full = Protocol.encodeState(
+				GameView.GENERATE_GUI_START_OF_TURN, 1, first);
+		event(full);
+		players.get(0).pay(40);
+		board.addCard(new Card(20));
+		GameState second = state(1).forAudience(1, false);
+		ByteBuffer delta = Protocol.encodeDelta(
+				GameView.GENERATE_GUI_START_OF_TURN, 2, first, second);
+		assertTrue(delta.remaining() * 3 < full.remaining());
+		PropertyChangeEvent evt = event(delta);
+		assertEquals(GameView.GENERATE_GUI_START_OF_TURN,
+				evt.getPropertyName());
+		assertSameState(second, (GameState) evt.getNewValue());
+		assertEquals(2, states.getSequence());
+		assertFalse(states.takeResyncRequest());
+	}
+
+	@Test
+	public void testDeltaNeedsSameSeats() {
+		GameState first = state(0);
+		players.remove(2);
+		assertNull(Protocol.encodeDelta(GameView.GENERATE_GUI_START_OF_TURN,
+				2, first, state(0)));
+	}
+
+	@Test
+	public void testGapAsksForResync() throws IOException {
+		GameState first = state(0);
+		event(Protocol.encodeState(GameView.GENERATE_GUI_START_OF_TURN, 1,
+				first));
+		GameState second = state(1);
+		GameState third = state(0);
+		assertNull(event(Protocol.encodeDelta(
+				GameView.GENERATE_GUI_START_OF_TURN, 3, second, third)));
+		assertTrue(states.takeResyncRequest());
+		// Deltas are ignored until a full state arrives, and only one resync
+		// is asked for.
+		assertNull(event(Protocol.encodeDelta(
+				GameView.GENERATE_GUI_START_OF_TURN, 2, first, second)));
+		assertFalse(states.takeResyncRequest());
+		event(Protocol.encodeState(GameView.GENERATE_GUI_START_OF_TURN, 3,
+				third));
+		assertSameState(third, states.getState());
+		assertTrue(event(Protocol.encodeDelta(
+				GameView.GENERATE_GUI_START_OF_TURN, 4, third, second))
+				!= null);
+	}
+
+	@Test
+	public void testEquities() throws IOException {
+		ArrayList<SeatState> seats = new ArrayList<SeatState>();
+		GameState sent = new GameState(seats, new ArrayList<Pot>(),
+				new Board(), new double[] { 0.25, GameState.NO_EQUITY, 0.75 });
+		GameState got = (GameState) event(Protocol.encodeState(
+				GameView.GENERATE_GUI_ALL_IN, 1, sent)).getNewValue();
+		assertTrue(got.activeIsNull());
+		assertTrue(got.hasEquity(0));
+		assertFalse(got.hasEquity(1));
+		assertEquals(0.75, got.getEquity(2), 0);
+	}
+
+	@Test
+	public void testEvents() throws IOException {
+		PropertyChangeEvent evt = event(Protocol.encodeEvent(
+				new PropertyChangeEvent(this, GameView.UPDATE_CHAT, "",
+						"p1 raises to 40")));
+		assertEquals(GameView.UPDATE_CHAT, evt.getPropertyName());
+		assertEquals("p1 raises to 40", evt.getNewValue());
+		evt = event(Protocol.encodeEvent(new PropertyChangeEvent(this,
+				GameView.UPDATE_BTN, "", Integer.valueOf(4))));
+		assertEquals(GameView.UPDATE_BTN, evt.getPropertyName());
+		assertEquals("4", evt.getNewValue().toString());
+		evt = event(Protocol.encodeEvent(new PropertyChangeEvent(this,
+				GameView.CALL_MADE, "", "")));
+		assertEquals(GameView.CALL_MADE, evt.getPropertyName());
+		evt = event(Protocol.encodeTimer(15000));
+		assertEquals(GameView.UPDATE_TIMER, evt.getPropertyName());
+		assertNull(evt.getOldValue());
+		assertEquals(Integer.valueOf(15000), evt.getNewValue());
+	}
+
+	@Test
+	public void testError() {
+		try {
+			event(Protocol.encodeError("The name p1 is taken at table 3"));
+			fail("An error decoded as an event");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().endsWith(
+					"The name p1 is taken at table 3"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownEvent() {
+		Protocol.encodeEvent(new PropertyChangeEvent(this, "Not a message",
+				"", ""));
+	}
+
+	@Test
+	public void testRejectsOtherVersion() {
+		ByteBuffer payload = payload(Protocol.encodeChat("hi"));
+		payload.put(payload.position(), (byte) (Protocol.VERSION + 1));
+		try {
+			Protocol.decodeEvent(payload, "test", states);
+			fail("Decoded a message of another version");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRejectsTruncated() {
+		ByteBuffer payload = payload(Protocol.encodeState(
+				GameView.GENERATE_GUI_END_OF_HAND, 1, state(0)));
+		payload.limit(payload.limit() - 1);
+		try {
+			Protocol.decodeEvent(payload, "test", states);
+			fail("Decoded a truncated message");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package pokerclient.tests.controller;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Sends a host frames it can't handle and checks that it drops only the
+ * connections that sent them.
+ */
+public class SelectorServerTest extends HostTestCase {
+
+	@Test
+	public void testKeepsServingAfterBadFrames() throws Exception {
+		startHost(10);
+		TableClient a = join("a", 1);
+		TableClient b = join("b", 1);
+		a.assertSeated();
+		b.assertSeated();
+
+		// A name too long for the frames that would carry it.
+		char[] chars = new char[65530];
+		Arrays.fill(chars, 'x');
+		String name = new String(chars);
+		join(name, 1).assertTurnedAway();
+		join(name, 1).assertTurnedAway();
+		join("a\u0007", 1).assertTurnedAway();
+
+		TableClient garbage = new TableClient(host.getPort(), "garbage");
+		garbage.send(ByteBuffer.wrap(new byte[] { 0, 0, 0, 3, 99, 99, 99 }));
+		garbage.assertDropped();
+
+		TableClient late = join("late", 1);
+		late.assertSeated();
+		late.close();
+		b.close();
+		a.close();
+		awaitTables(0);
+	}
+
+}
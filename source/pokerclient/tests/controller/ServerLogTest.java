@@ -0,0 +1,112 @@
+package pokerclient.tests.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import pokerclient.controller.ServerLog;
+
+/**
+ * Checks that printed lines reach the output and tails whole, and that a
+ * log whose output is stuck drops lines rather than growing.
+ */
+public class ServerLogTest {
+
+	/**
+	 * Output that holds the log's thread on its first write until released.
+	 */
+	private static class StuckOutput extends OutputStream {
+
+		private final CountDownLatch writing = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		@Override
+		public void write(int b) {
+			bytes.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			writing.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			bytes.write(b, off, len);
+		}
+
+	}
+
+	private static String[] lines(String text) {
+		return text.split(System.getProperty("line.separator"));
+	}
+
+	@Test
+	public void testWritesWholeLines() throws InterruptedException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ServerLog log = new ServerLog(output, 16);
+		final StringBuilder tailed = new StringBuilder();
+		log.addTail(new ServerLog.Tail() {
+			public void append(String lines) {
+				tailed.append(lines);
+			}
+		});
+		PrintStream out = log.newPrintStream(ServerLog.INFO);
+		PrintStream err = log.newPrintStream(ServerLog.ERROR);
+		out.print("Table 3 ");
+		out.println("started");
+		err.println("No room");
+		out.print("unfinished");
+		log.close();
+
+		String[] written = lines(output.toString());
+		assertEquals(2, written.length);
+		assertTrue(written[0], written[0].matches(
+				"\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3} INFO \\["
+				+ Thread.currentThread().getName() + "\\] Table 3 started"));
+		assertTrue(written[1], written[1].endsWith(" ERROR ["
+				+ Thread.currentThread().getName() + "] No room"));
+		assertEquals(output.toString(), tailed.toString());
+		assertEquals(0, log.getDropped());
+	}
+
+	@Test
+	public void testDropsWhenFull() throws InterruptedException {
+		StuckOutput output = new StuckOutput();
+		ServerLog log = new ServerLog(output, 4);
+		assertTrue(log.log(ServerLog.INFO, "first"));
+		output.writing.await();
+
+		// The log's thread is stuck writing the first line.
+		for (int i = 0; i < 4; i++) {
+			assertTrue(log.log(ServerLog.INFO, "queued " + i));
+		}
+		assertFalse(log.log(ServerLog.INFO, "dropped"));
+		assertEquals(1, log.getDropped());
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < ServerLog.MAX_LINE + 10; i++) {
+			longLine.append('x');
+		}
+		assertFalse(log.log(ServerLog.INFO, longLine.toString()));
+		output.release.countDown();
+		log.close();
+
+		String[] written = lines(output.bytes.toString());
+		assertEquals(6, written.length);
+		assertTrue(written[0].endsWith("] first"));
+		assertTrue(written[4].endsWith("] queued 3"));
+		assertTrue(written[5].endsWith(" ERROR [ServerLog] 2 lines dropped"));
+		assertFalse(log.log(ServerLog.INFO, "after close"));
+	}
+
+}
@@ -0,0 +1,133 @@
+package pokerclient.tests.controller;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.beans.PropertyChangeEvent;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import pokerclient.controller.Frames;
+import pokerclient.controller.GameState;
+import pokerclient.controller.JoinSettings;
+import pokerclient.controller.Protocol;
+import pokerclient.controller.StateStream;
+
+/**
+ * Blocking client of a test's host, reading frames as the real client does.
+ */
+class TableClient {
+
+	/**
+	 * How long a read waits before the host is taken to have hung.
+	 */
+	private static final int TIMEOUT_MILLIS = 5000;
+
+	private final String name;
+
+	private final Socket socket;
+
+	private final OutputStream out;
+
+	private final DataInputStream in;
+
+	private final StateStream states = new StateStream();
+
+	/**
+	 * Connects without joining.
+	 */
+	TableClient(int port, String name) throws IOException {
+		this.name = name;
+		socket = new Socket("localhost", port);
+		socket.setSoTimeout(TIMEOUT_MILLIS);
+		out = socket.getOutputStream();
+		in = new DataInputStream(new BufferedInputStream(
+				socket.getInputStream()));
+	}
+
+	/**
+	 * Connects and asks to join a table.
+	 */
+	static TableClient join(int port, String name, int tableId)
+			throws IOException {
+		TableClient client = new TableClient(port, name);
+		client.send(Protocol.encodeJoin(new JoinSettings(name, "", tableId)));
+		return client;
+	}
+
+	void send(ByteBuffer frame) throws IOException {
+		Frames.write(out, frame);
+	}
+
+	/**
+	 * Reads the next frame, which is null for frames that carry no event.
+	 *
+	 * @throws IOException if the host turned the client away or hung up
+	 */
+	PropertyChangeEvent read() throws IOException {
+		return Protocol.decodeEvent(Frames.read(in), name, states);
+	}
+
+	/**
+	 * Reads frames up to the next that carries a game state.
+	 */
+	GameState readState() throws IOException {
+		while (true) {
+			PropertyChangeEvent evt = read();
+			if (evt != null && evt.getNewValue() instanceof GameState) {
+				return (GameState) evt.getNewValue();
+			}
+		}
+	}
+
+	/**
+	 * Checks that the host sends the client something, as it does once the
+	 * client is seated.
+	 */
+	void assertSeated() throws IOException {
+		read();
+	}
+
+	/**
+	 * Checks that the host sends the client an error frame and hangs up.
+	 */
+	void assertTurnedAway() throws IOException {
+		try {
+			while (true) {
+				read();
+			}
+		} catch (SocketTimeoutException e) {
+			fail("The client is still connected");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(
+					"Turned away"));
+		}
+		close();
+	}
+
+	/**
+	 * Checks that the host drops the client, after an error frame or not.
+	 */
+	void assertDropped() throws IOException {
+		try {
+			while (true) {
+				read();
+			}
+		} catch (SocketTimeoutException e) {
+			fail("The client is still connected");
+		} catch (IOException e) {
+			// Turned away or hung up on.
+		}
+		close();
+	}
+
+	void close() throws IOException {
+		socket.close();
+	}
+
+}
@@ -0,0 +1,79 @@
+package pokerclient.tests.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import pokerclient.controller.GameState;
+
+/**
+ * Joins a host's tables over sockets: clients are routed by the table they
+ * name, a table past the limit is refused, and a table closes with its last
+ * client and can be started again.
+ */
+public class TableHostTest extends HostTestCase {
+
+	private static void assertSeatedWith(TableClient client, String seated,
+			String elsewhere) throws Exception {
+		GameState state = client.readState();
+		assertTrue(state.getSeatIndex(seated) != GameState.NO_SEAT);
+		assertEquals(GameState.NO_SEAT, state.getSeatIndex(elsewhere));
+	}
+
+	@Test
+	public void testRoutesByTableId() throws Exception {
+		startHost(10);
+		TableClient a = join("a", 1);
+		TableClient b = join("b", 1);
+		TableClient c = join("c", 2);
+		TableClient d = join("d", 2);
+		assertSeatedWith(a, "b", "c");
+		assertSeatedWith(c, "d", "a");
+		awaitTables(2);
+		a.close();
+		b.close();
+		c.close();
+		d.close();
+		awaitTables(0);
+	}
+
+	@Test
+	public void testRefusesTablesPastTheLimit() throws Exception {
+		startHost(1);
+		TableClient a = join("a", 1);
+		TableClient b = join("b", 1);
+		a.assertSeated();
+		join("c", 2).assertTurnedAway();
+		// The running table still takes players.
+		TableClient c = join("c", 1);
+		c.assertSeated();
+		awaitTables(1);
+		a.close();
+		b.close();
+		c.close();
+		awaitTables(0);
+	}
+
+	@Test
+	public void testClosesEmptyTableAndStartsItAgain() throws Exception {
+		startHost(1);
+		TableClient a = join("a", 1);
+		TableClient b = join("b", 1);
+		a.assertSeated();
+		awaitTables(1);
+		a.close();
+		b.close();
+		awaitTables(0);
+
+		// The id is free again, and so is the room the table took.
+		TableClient c = join("c", 1);
+		TableClient d = join("d", 1);
+		assertSeatedWith(c, "d", "a");
+		awaitTables(1);
+		c.close();
+		d.close();
+		awaitTables(0);
+	}
+
+}
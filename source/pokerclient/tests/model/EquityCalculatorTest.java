@@ -0,0 +1,105 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import pokerclient.model.CardSet;
+import pokerclient.model.EquityCalculator;
+import pokerclient.model.EquityResult;
+import pokerclient.model.EvalHand;
+
+public class EquityCalculatorTest {
+
+	private static final long SAMPLES = 200000;
+
+	private final EquityCalculator calculator = new EquityCalculator();
+
+	private static long cards(String s) {
+		return new EvalHand(s).getCardSet();
+	}
+
+	@Test
+	public void testAcesAgainstKings() {
+		EquityResult r = calculator.simulate(
+				new long[] {cards("Ah As"), cards("Kh Ks")}, CardSet.EMPTY,
+				CardSet.EMPTY, SAMPLES, 0);
+		assertEquals(SAMPLES, r.getSamples());
+		assertEquals(0.82, r.getEquity(0), 0.01);
+		assertEquals(1.0, r.getEquity(0) + r.getEquity(1), 1e-9);
+		assertTrue(r.getLowerBound(0) < r.getEquity(0));
+		assertTrue(r.getUpperBound(0) > r.getEquity(0));
+	}
+
+	@Test
+	public void testCompleteBoard() {
+		EquityResult r = calculator.simulate(
+				new long[] {cards("Ah As"), cards("Kh Ks"), cards("Qh Qs")},
+				cards("2c 7d 9h Jc Kd"), CardSet.EMPTY, 1000, 0);
+		assertEquals(0.0, r.getEquity(0), 0.0);
+		assertEquals(1.0, r.getEquity(1), 0.0);
+		assertEquals(0.0, r.getStandardError(1), 0.0);
+	}
+
+	@Test
+	public void testSplitPot() {
+		EquityResult r = calculator.simulate(
+				new long[] {cards("2c 3c"), cards("2d 3d")},
+				cards("Ah Kh Qs Js Td"), CardSet.EMPTY, 1000, 0);
+		assertEquals(1.0, r.getTieProbability(0), 0.0);
+		assertEquals(0.5, r.getEquity(1), 0.0);
+	}
+
+	@Test
+	public void testUnknownHand() {
+		EquityResult r = calculator.simulate(
+				new long[] {cards("Ah As"), CardSet.EMPTY}, CardSet.EMPTY,
+				CardSet.EMPTY, SAMPLES, 0);
+		assertEquals(0.85, r.getEquity(0), 0.01);
+	}
+
+	@Test
+	public void testTimeBudget() {
+		EquityResult r = calculator.simulate(
+				new long[] {cards("Ah As"), cards("Kh Ks")}, CardSet.EMPTY,
+				CardSet.EMPTY, 0, 50);
+		assertTrue(r.getSamples() > 0);
+	}
+
+	@Test
+	public void testEnumerateCountsEveryRunout() {
+		EquityResult r = calculator.enumerate(
+				new long[] {cards("Ah As"), cards("Kh Ks")}, cards("2c 7d 9h"),
+				CardSet.EMPTY);
+		assertTrue(r.isExact());
+		assertEquals(45 * 44 / 2, r.getSamples());
+		assertEquals(1.0, r.getEquity(0) + r.getEquity(1), 1e-9);
+	}
+
+	@Test
+	public void testEnumerateMatchesSimulation() {
+		long[] hands = {cards("Ah As"), cards("Kh Ks"), cards("7c 8c")};
+		EquityResult exact = calculator.enumerate(hands, CardSet.EMPTY,
+				CardSet.EMPTY);
+		EquityResult estimate = calculator.simulate(hands, CardSet.EMPTY,
+				CardSet.EMPTY, SAMPLES, 0);
+		assertEquals(46L * 45 * 44 * 43 * 42 / 120, exact.getSamples());
+		for (int i = 0; i < hands.length; i++) {
+			assertEquals(exact.getEquity(i), estimate.getEquity(i), 0.01);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEnumerateUnknownHand() {
+		calculator.enumerate(new long[] {cards("Ah As"), CardSet.EMPTY},
+				CardSet.EMPTY, CardSet.EMPTY);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSharedCard() {
+		calculator.simulate(new long[] {cards("Ah As"), cards("Ah Ks")},
+				CardSet.EMPTY, CardSet.EMPTY, 1000, 0);
+	}
+
+}
@@ -1,5 +1,405 @@
 package pokerclient.tests.model;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pokerclient.gui.GameView;
+import pokerclient.model.Action;
+import pokerclient.model.GameModel;
+import pokerclient.model.GameSettings;
+import pokerclient.model.HandHistorySink;
+import pokerclient.model.HandHistoryText;
+import pokerclient.model.HandRecord;
+import pokerclient.model.HandSegmentReader;
+import pokerclient.model.Player;
+import pokerclient.model.PlayerStats;
+import pokerclient.model.PlayerStatsTask;
+import pokerclient.model.TableScheduler;
+import pokerclient.model.TimerWheel;
+
+/**
+ * Drives a table by hand through a scheduler that only runs events when
+ * asked, so each test sees exactly where the state machine stops.
+ */
 public class GameModelTest {
 
+	private static final int TABLE_ID = -1;
+
+	private static final int STACK = 1000;
+
+	private static final GameSettings settings =
+			new GameSettings(STACK, 10, 5, 0, 50, 6, false);
+
+	private ManualScheduler scheduler;
+
+	private GameModel model;
+
+	private ArrayList<Player> players;
+
+	private File historyDirectory;
+
+	private HandHistorySink historySink;
+
+	@Before
+	public void setUp() throws IOException {
+		scheduler = new ManualScheduler();
+		historyDirectory = Files.createTempDirectory("hh").toFile();
+		historySink = new HandHistorySink(historyDirectory,
+				HandHistorySink.DEFAULT_MAX_BYTES,
+				HandHistorySink.DEFAULT_MAX_AGE,
+				HandHistorySink.DEFAULT_CAPACITY);
+		model = new GameModel(settings, TABLE_ID, scheduler, historySink);
+		players = new ArrayList<Player>();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		historySink.close();
+		for (File f : historyDirectory.listFiles()) {
+			f.delete();
+		}
+		historyDirectory.delete();
+	}
+
+	private void seat(int count) {
+		for (int i = 0; i < count; i++) {
+			Player p = new Player("p" + i, "path", settings, model);
+			players.add(p);
+			model.addPlayer(p);
+		}
+		model.start();
+		scheduler.runAll();
+	}
+
+	private Player active() {
+		Player active = null;
+		for (Player p : players) {
+			if (p.isActive()) {
+				assertTrue("Two players are active", active == null);
+				active = p;
+			}
+		}
+		return active;
+	}
+
+	private int totalChips() {
+		int total = 0;
+		for (Player p : players) {
+			total += p.getStack() + p.getTotalPutInPot();
+		}
+		return total;
+	}
+
+	private Action passive(Player p) {
+		return new Action(p.getName(), p.isCheckable() ?
+				Action.ActionType.CHECK : Action.ActionType.CALL);
+	}
+
+	@Test
+	public void testWaitsForOnePlayer() {
+		model.addPlayer(new Player("alone", "path", settings, model));
+		model.start();
+		scheduler.runAll();
+		assertEquals(0, scheduler.delays);
+		Player second = new Player("second", "path", settings, model);
+		players.add(second);
+		model.addPlayer(second);
+		scheduler.runAll();
+		assertSame(second, active());
+	}
+
+	@Test
+	public void testRefusesTakenName() {
+		seat(2);
+		Player impostor = new Player("p0", "path", settings, model);
+		assertFalse(model.addPlayer(impostor));
+		scheduler.runAll();
+		assertFalse(impostor.isActive());
+
+		// A name is free again once its player has left.
+		Player waiting = new Player("waiting", "path", settings, model);
+		assertTrue(model.addPlayer(waiting));
+		model.sitOutPlayer(waiting);
+		scheduler.runAll();
+		assertTrue(model.addPlayer(new Player("waiting", "path", settings,
+				model)));
+	}
+
+	@Test
+	public void testIgnoresActionOutOfTurn() {
+		seat(3);
+		Player first = active();
+		assertNotNull(first);
+		for (Player p : players) {
+			if (p != first) {
+				model.submitAction(p,
+						new Action(p.getName(), Action.ActionType.FOLD));
+			}
+		}
+		scheduler.runAll();
+		assertSame(first, active());
+		for (Player p : players) {
+			assertTrue(p.isInHand());
+		}
+	}
+
+	@Test
+	public void testFoldStartsNextHand() {
+		seat(2);
+		Player first = active();
+		model.submitAction(first,
+				new Action(first.getName(), Action.ActionType.FOLD));
+		scheduler.runAll();
+		assertTrue(scheduler.delays > 0);
+		assertNotNull(active());
+		assertTrue(first.isInHand());
+		assertEquals(2 * STACK, totalChips());
+	}
+
+	@Test
+	public void testFoldsIllegalAction() {
+		seat(4);
+		Player first = active();
+		model.submitAction(first, new Action(first.getName(),
+				Action.ActionType.RAISE, 10 * STACK));
+		scheduler.runAll();
+		assertFalse(first.isInHand());
+		assertEquals(STACK, first.getStack());
+
+		Player second = active();
+		model.submitAction(second, new Action(second.getName(),
+				Action.ActionType.CHECK));
+		scheduler.runAll();
+		assertFalse(second.isInHand());
+		assertEquals(4 * STACK, totalChips());
+	}
+
+	@Test
+	public void testActsWhenClockRunsOut() {
+		seat(3);
+		Player first = active();
+		assertEquals(1, scheduler.timeouts.size());
+		scheduler.expireTimeouts();
+		scheduler.runAll();
+		assertTrue(!first.isInHand());
+
+		Player smallBlind = active();
+		assertTrue(smallBlind != first);
+		model.submitAction(smallBlind, passive(smallBlind));
+		scheduler.runAll();
+		Player bigBlind = active();
+		assertTrue(bigBlind.isCheckable());
+		// The small blind's clock stopped when they called.
+		assertEquals(1, scheduler.timeouts.size());
+		scheduler.expireTimeouts();
+		scheduler.runAll();
+		assertTrue(bigBlind.isInHand());
+		assertEquals(STACK - 10, bigBlind.getStack());
+		assertNotNull(active());
+		assertEquals(1, scheduler.timeouts.size());
+		assertEquals(3 * STACK, totalChips());
+	}
+
+	@Test
+	public void testPlaysHandsThroughShowdown() {
+		seat(4);
+		for (int i = 0; i < 200; i++) {
+			Player p = active();
+			assertNotNull(p);
+			model.submitAction(p, passive(p));
+			scheduler.runAll();
+			assertEquals(4 * STACK, totalChips());
+		}
+	}
+
+	@Test
+	public void testBatchesChat() {
+		final ArrayList<String> chat = new ArrayList<String>();
+		model.setPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (evt.getPropertyName().equals(GameView.UPDATE_CHAT)) {
+					chat.add((String) evt.getNewValue());
+				}
+			}
+		});
+		seat(3);
+		int actions = 0;
+		String text = "";
+		int messages = 0;
+		while (!text.contains("-----")) {
+			Player p = active();
+			model.submitAction(p, passive(p));
+			scheduler.runAll();
+			actions++;
+			// Stop at the end of the first hand.
+			while (messages < chat.size() && !text.contains("-----")) {
+				String message = chat.get(messages++);
+				assertTrue(message, message.endsWith("\n"));
+				text += message;
+			}
+		}
+		assertTrue(text.contains("Seat 1 (SB): "));
+		assertTrue(text.contains("Seat 3 (BTN): "));
+		int lines = text.split("\n").length;
+		// One message for each action, street and the end of the hand, where
+		// every fragment used to be a message of its own.
+		assertTrue(messages <= actions + 5);
+		assertTrue(messages * 2 < lines);
+	}
+
+	/**
+	 * Plays actions, mostly checks and calls with some raises and folds so
+	 * that pots are won without a showdown too.
+	 */
+	private void playMixed(int actions) {
+		for (int i = 0; i < actions; i++) {
+			Player p = active();
+			Action action = passive(p);
+			if (i % 7 == 3 && p.canRaise()) {
+				action = new Action(p.getName(), p.isBettable() ?
+						Action.ActionType.BET : Action.ActionType.RAISE,
+						p.getMinBet());
+			} else if (i % 11 == 5 && !p.isCheckable()) {
+				action = new Action(p.getName(), Action.ActionType.FOLD);
+			}
+			model.submitAction(p, action);
+			scheduler.runAll();
+		}
+	}
+
+	@Test
+	public void testRecordsRenderAsChat() throws Exception {
+		final StringBuilder chat = new StringBuilder();
+		model.setPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (evt.getPropertyName().equals(GameView.UPDATE_CHAT)) {
+					chat.append(evt.getNewValue());
+				}
+			}
+		});
+		seat(4);
+		playMixed(300);
+		historySink.close();
+		HandSegmentReader segment = new HandSegmentReader(
+				HandHistorySink.segmentFile(historyDirectory, TABLE_ID, 1));
+		assertTrue(segment.isClosed());
+		assertTrue(segment.getRecordCount() > 10);
+		HandRecord record = new HandRecord();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < segment.getRecordCount(); i++) {
+			segment.read(i, record);
+			assertEquals(i + 1, record.getHandNumber());
+			HandHistoryText.render(record, text);
+		}
+		// The chat carries on into the hand that wasn't finished.
+		assertEquals(text.toString(), chat.substring(0, text.length()));
+		assertTrue(chat.indexOf("-----", text.length()) < 0);
+	}
+
+	@Test
+	public void testStatsMatchStacks() throws Exception {
+		seat(4);
+		playMixed(300);
+		historySink.close();
+		PlayerStats stats = new PlayerStatsTask(new File[] {
+				HandHistorySink.segmentFile(historyDirectory, TABLE_ID, 1) })
+				.invoke();
+		assertTrue(stats.getHandCount() > 10);
+		for (Player p : players) {
+			int row = stats.indexOf(p.getName());
+			assertEquals(stats.getHandCount(), stats.getCount(
+					PlayerStats.HANDS, row));
+			// What the player had as the unfinished hand started.
+			assertEquals(p.getStack() + p.getTotalPutInPot() - STACK,
+					stats.getNetChips(row));
+		}
+	}
+
+	@Test
+	public void testRestartedTableNumbersOn() throws Exception {
+		seat(3);
+		playMixed(100);
+		// The table starts again under the same id, as a host restarts a
+		// closed table; the first one is never run again.
+		scheduler = new ManualScheduler();
+		model = new GameModel(settings, TABLE_ID, scheduler, historySink);
+		players.clear();
+		seat(3);
+		playMixed(100);
+		historySink.close();
+		HandSegmentReader segment = new HandSegmentReader(
+				HandHistorySink.segmentFile(historyDirectory, TABLE_ID, 1));
+		HandRecord record = new HandRecord();
+		for (int i = 0; i < segment.getRecordCount(); i++) {
+			segment.read(i, record);
+			assertEquals(i + 1, record.getHandNumber());
+		}
+		assertTrue(segment.getRecordCount() > 10);
+	}
+
+	/**
+	 * Queues events until runAll is called, running delayed events as if
+	 * their delay had passed.
+	 */
+	private static class ManualScheduler implements TableScheduler {
+
+		private final LinkedList<Runnable> events = new LinkedList<Runnable>();
+
+		private int delays;
+
+		@Override
+		public void execute(Runnable event) {
+			events.add(event);
+		}
+
+		@Override
+		public void schedule(Runnable event, long delayMillis) {
+			delays++;
+			events.add(event);
+		}
+
+		private final LinkedList<Runnable> timeouts = new LinkedList<Runnable>();
+
+		@Override
+		public TimerWheel.Timeout scheduleTimeout(final Runnable event,
+				long delayMillis) {
+			timeouts.add(event);
+			return new TimerWheel.Timeout() {
+				public boolean cancel() {
+					return timeouts.remove(event);
+				}
+			};
+		}
+
+		public void runAll() {
+			while (!events.isEmpty()) {
+				events.removeFirst().run();
+			}
+		}
+
+		/**
+		 * Runs out every pending timeout. Their events run with the others.
+		 */
+		public void expireTimeouts() {
+			events.addAll(timeouts);
+			timeouts.clear();
+		}
+
+	}
+
 }
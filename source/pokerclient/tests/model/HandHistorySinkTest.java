@@ -0,0 +1,103 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import pokerclient.model.HandHistorySink;
+import pokerclient.model.HandRecord;
+import pokerclient.model.HandSegmentReader;
+
+/**
+ * Writes hands through a sink into a scratch directory and reads the
+ * segments back.
+ */
+public class HandHistorySinkTest extends ScratchDirectoryTest {
+
+	private HandSegmentReader segment(int table, int number)
+			throws IOException {
+		HandSegmentReader reader = new HandSegmentReader(
+				HandHistorySink.segmentFile(directory, table, number));
+		assertTrue(reader.isClosed());
+		return reader;
+	}
+
+	@Test
+	public void testWritesHandsInOrder() throws Exception {
+		HandHistorySink sink = new HandHistorySink(directory, 1 << 20,
+				HandHistorySink.DEFAULT_MAX_AGE, 16);
+		for (int i = 0; i < 5; i++) {
+			assertTrue(sink.submit(hand(1, i, 1000)));
+		}
+		sink.submit(hand(2, 0, 1000));
+		sink.close();
+		HandSegmentReader first = segment(1, 1);
+		assertEquals(5, first.getRecordCount());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(i, first.getHandNumber(i));
+		}
+		assertEquals(1, segment(2, 1).getRecordCount());
+		assertFalse(sink.submit(hand(1, 5, 1000)));
+		assertEquals(1, sink.getDropped());
+	}
+
+	@Test
+	public void testRotatesBySize() throws Exception {
+		HandHistorySink sink = new HandHistorySink(directory, 40,
+				HandHistorySink.DEFAULT_MAX_AGE, 16);
+		for (int i = 0; i < 5; i++) {
+			sink.submit(hand(1, i, 1000));
+		}
+		sink.close();
+		// The header and first hand take 33 bytes and the second hand 25,
+		// after which the segment is past the limit.
+		assertEquals(2, segment(1, 1).getRecordCount());
+		assertEquals(2, segment(1, 2).getRecordCount());
+		assertEquals(2, segment(1, 2).getHandNumber(0));
+		assertEquals(1, segment(1, 3).getRecordCount());
+	}
+
+	@Test
+	public void testRotatesByAge() throws Exception {
+		HandHistorySink sink = new HandHistorySink(directory, 1 << 20, 0, 16);
+		sink.submit(hand(1, 0, 1000));
+		sink.submit(hand(1, 1, 1000));
+		sink.close();
+		assertEquals(0, segment(1, 1).getHandNumber(0));
+		assertEquals(1, segment(1, 2).getHandNumber(0));
+	}
+
+	@Test
+	public void testStartsAfterEarlierRun() throws Exception {
+		HandHistorySink sink = new HandHistorySink(directory, 1 << 20,
+				HandHistorySink.DEFAULT_MAX_AGE, 16);
+		sink.submit(hand(1, 0, 1000));
+		sink.close();
+		sink = new HandHistorySink(directory, 1 << 20,
+				HandHistorySink.DEFAULT_MAX_AGE, 16);
+		sink.submit(hand(1, 1, 1000));
+		sink.close();
+		assertEquals(0, segment(1, 1).getHandNumber(0));
+		assertEquals(1, segment(1, 2).getHandNumber(0));
+	}
+
+	@Test
+	public void testKnowsLastHandNumber() throws Exception {
+		HandHistorySink sink = new HandHistorySink(directory, 1 << 20,
+				HandHistorySink.DEFAULT_MAX_AGE, 16);
+		sink.submit(hand(1, 40, 1000));
+		sink.submit(hand(1, 41, 1000));
+		assertEquals(41, sink.getLastHandNumber(1));
+		assertEquals(0, sink.getLastHandNumber(2));
+		sink.close();
+		sink = new HandHistorySink(directory, 1 << 20,
+				HandHistorySink.DEFAULT_MAX_AGE, 16);
+		assertEquals(41, sink.getLastHandNumber(1));
+		sink.close();
+	}
+
+}
@@ -0,0 +1,111 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import pokerclient.model.HandHistorySink;
+import pokerclient.model.HandHistoryStore;
+import pokerclient.model.HandRecord;
+
+/**
+ * Writes hands through a sink and looks them up by table and hand number.
+ */
+public class HandHistoryStoreTest extends ScratchDirectoryTest {
+
+	/**
+	 * Writes count hands of a table from a number, in small segments.
+	 */
+	private void write(int table, int first, int count, int stack)
+			throws InterruptedException {
+		HandHistorySink sink = new HandHistorySink(directory, 200,
+				HandHistorySink.DEFAULT_MAX_AGE, 1 << 14);
+		for (int i = first; i < first + count; i++) {
+			assertTrue(sink.submit(hand(table, i, stack)));
+		}
+		sink.close();
+	}
+
+	private int stackOf(HandHistoryStore store, int table, int number)
+			throws IOException {
+		HandRecord got = new HandRecord();
+		assertTrue(store.read(table, number, got));
+		assertEquals(table, got.getTableId());
+		assertEquals(number, got.getHandNumber());
+		return got.getStack(0);
+	}
+
+	@Test
+	public void testFindsHands() throws Exception {
+		write(1, 1, 10000, 1000);
+		write(2, 1, 3, 2000);
+		HandHistoryStore store = new HandHistoryStore(directory);
+		for (int i = 1; i <= 10000; i += 997) {
+			assertEquals(1000, stackOf(store, 1, i));
+		}
+		assertEquals(2000, stackOf(store, 2, 3));
+		assertFalse(store.read(1, 10001, new HandRecord()));
+		assertFalse(store.read(2, 4, new HandRecord()));
+		assertNull(store.find(3, 1));
+
+		ByteBuffer bytes = store.find(1, 5000);
+		assertTrue(bytes.isReadOnly());
+		assertEquals(1, bytes.get(0));
+	}
+
+	@Test
+	public void testFindsLastHandNumber() throws Exception {
+		write(1, 1, 5000, 1000);
+		write(2, 7, 1, 1000);
+		HandHistoryStore store = new HandHistoryStore(directory);
+		assertEquals(5000, store.getLastHandNumber(1));
+		assertEquals(7, store.getLastHandNumber(2));
+		assertEquals(0, store.getLastHandNumber(3));
+	}
+
+	@Test
+	public void testKeepsLatestOfRepeatedNumbers() throws Exception {
+		write(1, 1, 5, 1000);
+		write(1, 1, 3, 3000);
+		HandHistoryStore store = new HandHistoryStore(directory);
+		assertEquals(3000, stackOf(store, 1, 2));
+		assertEquals(1000, stackOf(store, 1, 5));
+		assertEquals(8, store.rebuild(1));
+		assertEquals(3000, stackOf(store, 1, 2));
+		assertEquals(1000, stackOf(store, 1, 5));
+	}
+
+	@Test
+	public void testRebuildsIndex() throws Exception {
+		write(1, 1, 100, 1000);
+		File index = HandHistoryStore.indexFile(directory, 1);
+		assertTrue(index.delete());
+		HandHistoryStore store = new HandHistoryStore(directory);
+		assertFalse(store.read(1, 50, new HandRecord()));
+		assertEquals(100, store.rebuild(1));
+		assertEquals(1000, stackOf(store, 1, 50));
+	}
+
+	@Test
+	public void testSinkRecoversIndexAfterCrash() throws Exception {
+		write(1, 1, 100, 1000);
+		// Lose the last hands' entries, as a crash could.
+		RandomAccessFile raf = new RandomAccessFile(
+				HandHistoryStore.indexFile(directory, 1), "rw");
+		raf.setLength(8 + 8 * 60);
+		raf.close();
+		write(1, 101, 10, 2000);
+		HandHistoryStore store = new HandHistoryStore(directory);
+		assertEquals(1000, stackOf(store, 1, 80));
+		assertEquals(2000, stackOf(store, 1, 105));
+	}
+
+}
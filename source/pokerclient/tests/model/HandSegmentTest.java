@@ -0,0 +1,173 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pokerclient.model.HandHistoryText;
+import pokerclient.model.HandRecord;
+import pokerclient.model.HandSegmentReader;
+import pokerclient.model.HandSegmentWriter;
+
+/**
+ * Writes hand records to segments and reads them back, through the footer
+ * and by scanning.
+ */
+public class HandSegmentTest {
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("hands", ".hhs");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Records a three handed hand that goes to showdown.
+	 */
+	private static HandRecord hand(int number) {
+		HandRecord record = new HandRecord();
+		record.start(3, number, 1234567890123L, 5, 10, 1, 2);
+		record.addSeat("Zo\u00eb", 1000);
+		record.addSeat("b", 250000);
+		record.addSeat("c", 40);
+		record.setHoleCards(0, 51, 50);
+		record.setHoleCards(1, 0, 13);
+		record.setHoleCards(2, 7, 8);
+		for (int seat = 0; seat < 3; seat++) {
+			record.addAction(seat, HandRecord.ANTE, 1);
+		}
+		record.addAction(0, HandRecord.SMALL_BLIND, 5);
+		record.addAction(1, HandRecord.BIG_BLIND, 10);
+		record.startStreet(HandRecord.PRE_FLOP, 18);
+		record.addAction(2, HandRecord.FOLD, 0);
+		record.addAction(0, HandRecord.RAISE, 300);
+		record.addAction(1, HandRecord.CALL, 290);
+		record.startStreet(HandRecord.FLOP, 618);
+		record.addAction(0, HandRecord.CHECK, 0);
+		record.addAction(1, HandRecord.BET, 20);
+		record.addAction(0, HandRecord.CALL, 20);
+		record.startStreet(HandRecord.SHOWDOWN, 658);
+		for (int card : new int[] { 12, 25, 38, 2, 3 }) {
+			record.addBoardCard(card);
+		}
+		record.addSeatFlags(0, HandRecord.SHOWED);
+		record.addSeatFlags(1, HandRecord.SHOWED);
+		record.addResult(0, 658, 658);
+		return record;
+	}
+
+	private static void assertSameHand(HandRecord sent, HandRecord got) {
+		assertEquals(HandHistoryText.render(sent), HandHistoryText.render(got));
+		assertEquals(sent.getTableId(), got.getTableId());
+		assertEquals(sent.getStartTime(), got.getStartTime());
+		assertEquals(sent.getAnte(), got.getAnte());
+		assertEquals(sent.getActionCount(), got.getActionCount());
+		for (int i = 0; i < sent.getActionCount(); i++) {
+			assertEquals(sent.getActionSeat(i), got.getActionSeat(i));
+			assertEquals(sent.getActionType(i), got.getActionType(i));
+			assertEquals(sent.getActionAmount(i), got.getActionAmount(i));
+		}
+		for (int i = 0; i < sent.getSeatCount(); i++) {
+			assertEquals(sent.getStack(i), got.getStack(i));
+			assertEquals(sent.getHoleCard(i, 1), got.getHoleCard(i, 1));
+			assertEquals(sent.getSeatFlags(i), got.getSeatFlags(i));
+		}
+		assertEquals(sent.getResultWinnings(0), got.getResultWinnings(0));
+	}
+
+	@Test
+	public void testRender() {
+		assertEquals("Hand #7\n"
+				+ "Seat 1 (SB): Zo\u00eb\n"
+				+ "Seat 2 (BB): b\n"
+				+ "Seat 3 (BTN): c\n"
+				+ "Pre-flop: (18)\n"
+				+ "(3 Players)\n"
+				+ "c folds \n"
+				+ "Zo\u00eb raises to 300 \n"
+				+ "b calls 290 \n"
+				+ "Flop: (618)\n"
+				+ "[Ac, Ad, Ah]\n"
+				+ "(2 Players)\n"
+				+ "Zo\u00eb checks \n"
+				+ "b bets 20 \n"
+				+ "Zo\u00eb calls 20 \n"
+				+ "Showdown: (658)\n"
+				+ "[Ac, Ad, Ah, 4c, 5c]\n"
+				+ "(2 Players)\n"
+				+ "Zo\u00eb shows [As, Ks] for Four of a Kind, Aces\n"
+				+ "b shows [2c, 2d] for a Full House, Aces over Twos\n"
+				+ "Zo\u00eb wins 658\n"
+				+ "\n-----\n", HandHistoryText.render(hand(7)));
+	}
+
+	@Test
+	public void testFooter() throws IOException {
+		HandSegmentWriter writer = new HandSegmentWriter(file);
+		for (int i = 0; i < 100; i++) {
+			writer.append(hand(i));
+			if (i % 30 == 0) {
+				writer.write();
+			}
+		}
+		writer.close();
+		HandSegmentReader reader = new HandSegmentReader(file);
+		assertTrue(reader.isClosed());
+		assertEquals(100, reader.getRecordCount());
+		HandRecord got = new HandRecord();
+		reader.read(57, got);
+		assertSameHand(hand(57), got);
+		assertEquals(3, reader.getTableId(57));
+		assertEquals(57, reader.getHandNumber(57));
+		reader.readAt(reader.getOffset(0), got);
+		assertSameHand(hand(0), got);
+	}
+
+	@Test
+	public void testScansUnclosedSegment() throws IOException {
+		HandSegmentWriter writer = new HandSegmentWriter(file);
+		for (int i = 0; i < 3; i++) {
+			writer.append(hand(i));
+		}
+		writer.write();
+		// Cut the last record short, as a crash while writing would.
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 5);
+		raf.close();
+		HandSegmentReader reader = new HandSegmentReader(file);
+		assertFalse(reader.isClosed());
+		assertEquals(2, reader.getRecordCount());
+		HandRecord got = new HandRecord();
+		reader.read(1, got);
+		assertSameHand(hand(1), got);
+	}
+
+	@Test
+	public void testRejectsOtherFiles() throws IOException {
+		Files.write(file.toPath(), "Hand #1\n".getBytes("UTF-8"));
+		try {
+			new HandSegmentReader(file);
+			fail("Read a text file as a segment");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+}
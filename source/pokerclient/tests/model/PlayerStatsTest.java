@@ -0,0 +1,153 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import pokerclient.model.EvalHandEvaluator;
+import pokerclient.model.HandRecord;
+import pokerclient.model.HandSegmentWriter;
+import pokerclient.model.PlayerStats;
+import pokerclient.model.PlayerStatsTask;
+
+/**
+ * Counts stats over a hand whose numbers are worked out by hand, and over
+ * segments of it counted in parallel.
+ */
+public class PlayerStatsTest extends ScratchDirectoryTest {
+
+	/**
+	 * Four handed: d opens, a calls, b 3-bets from the small blind, c folds
+	 * the big blind, d calls and a folds. On the flop b bets and calls d's
+	 * raise, and d's flush beats b's jacks.
+	 */
+	private static HandRecord hand(int number) {
+		HandRecord record = new HandRecord();
+		record.start(1, number, 0, 5, 10, 0, 0);
+		for (String name : new String[] { "a", "b", "c", "d" }) {
+			record.addSeat(name, 1000);
+		}
+		record.setHoleCards(0, 30, 31);
+		record.setHoleCards(1, 22, 14);
+		record.setHoleCards(2, 40, 41);
+		record.setHoleCards(3, 12, 2);
+		record.addAction(1, HandRecord.SMALL_BLIND, 5);
+		record.addAction(2, HandRecord.BIG_BLIND, 10);
+		record.startStreet(HandRecord.PRE_FLOP, 15);
+		record.addAction(3, HandRecord.RAISE, 30);
+		record.addAction(0, HandRecord.CALL, 30);
+		record.addAction(1, HandRecord.RAISE, 90);
+		record.addAction(2, HandRecord.FOLD, 0);
+		record.addAction(3, HandRecord.CALL, 60);
+		record.addAction(0, HandRecord.FOLD, 0);
+		record.startStreet(HandRecord.FLOP, 220);
+		record.addAction(1, HandRecord.BET, 100);
+		record.addAction(3, HandRecord.RAISE, 300);
+		record.addAction(1, HandRecord.CALL, 200);
+		record.startStreet(HandRecord.SHOWDOWN, 820);
+		for (int card : new int[] { 0, 5, 7, 35, 50 }) {
+			record.addBoardCard(card);
+		}
+		record.addSeatFlags(1, HandRecord.SHOWED);
+		record.addSeatFlags(3, HandRecord.SHOWED);
+		record.addResult(3, 820, 820);
+		return record;
+	}
+
+	private static void assertCounts(PlayerStats stats, String name,
+			long net, int... counts) {
+		int row = stats.indexOf(name);
+		assertTrue(row >= 0);
+		assertEquals(name, stats.getName(row));
+		assertEquals(net, stats.getNetChips(row));
+		for (int column = 0; column < counts.length; column++) {
+			assertEquals(name + " column " + column, counts[column],
+					stats.getCount(column, row));
+		}
+	}
+
+	/**
+	 * Checks the counts of hands many of the test hand, up to the showdowns
+	 * won.
+	 */
+	private static void assertHands(PlayerStats stats, int hands) {
+		int n = hands;
+		assertCounts(stats, "a", -30L * n, n, n, 0, n, 0, 0, n, 0, 0);
+		assertCounts(stats, "b", -390L * n, n, n, n, n, n, 2 * n, n, n, 0);
+		assertCounts(stats, "c", -10L * n, n, 0, 0, 0, 0, 0, 0, 0, 0);
+		assertCounts(stats, "d", 430L * n, n, n, n, 0, 0, 2 * n, n, n, n);
+	}
+
+	@Test
+	public void testCountsHand() {
+		PlayerStats stats = new PlayerStats();
+		stats.add(hand(1));
+		stats.add(hand(2));
+		assertHands(stats, 2);
+		assertEquals(4, stats.getRowCount());
+		int b = stats.indexOf("b");
+		int d = stats.indexOf("d");
+		assertEquals(1.0, stats.getThreeBet(b), 0);
+		assertEquals(0.0, stats.getThreeBet(stats.indexOf("a")), 0);
+		assertEquals(2.0, stats.getAggression(d), 0);
+		assertEquals(0.0, stats.getShowdownWinRate(b), 0);
+		assertEquals(1.0, stats.getShowdownWinRate(d), 0);
+		assertEquals(2, stats.getCount(PlayerStats.SHOWDOWN_TYPES
+				+ EvalHandEvaluator.PAIR, b));
+		assertEquals(2, stats.getCount(PlayerStats.SHOWDOWN_TYPES
+				+ EvalHandEvaluator.FLUSH, d));
+		assertEquals(-1, stats.indexOf("e"));
+	}
+
+	@Test
+	public void testWritesColumns() throws IOException {
+		PlayerStats stats = new PlayerStats();
+		stats.add(hand(1));
+		HandRecord other = new HandRecord();
+		other.start(1, 2, 0, 5, 10, 0, 0);
+		other.addSeat("\u00e9mile", 1000);
+		other.addSeat("aa", 1000);
+		stats.add(other);
+		File file = new File(directory, "stats" + PlayerStats.SUFFIX);
+		stats.write(file);
+		PlayerStats loaded = PlayerStats.load(file);
+		assertEquals(6, loaded.getRowCount());
+		assertEquals("a", loaded.getName(0));
+		assertEquals("aa", loaded.getName(1));
+		assertEquals("\u00e9mile", loaded.getName(5));
+		assertEquals(1, loaded.getCount(PlayerStats.HANDS,
+				loaded.indexOf("\u00e9mile")));
+		assertHands(loaded, 1);
+
+		// Loaded stats can be added to.
+		loaded.add(hand(3));
+		assertCounts(loaded, "d", 860, 2, 2, 2);
+	}
+
+	@Test
+	public void testCountsSegmentsInParallel() throws IOException {
+		int[] sizes = { 20000, 3, 0, 500 };
+		File[] segments = new File[sizes.length];
+		int hands = 0;
+		for (int s = 0; s < sizes.length; s++) {
+			segments[s] = new File(directory, s + ".hhs");
+			HandSegmentWriter writer = new HandSegmentWriter(segments[s]);
+			for (int i = 0; i < sizes[s]; i++) {
+				writer.append(hand(++hands));
+			}
+			writer.close();
+		}
+		PlayerStats stats = new ForkJoinPool(4).invoke(
+				new PlayerStatsTask(segments));
+		assertEquals(hands, stats.getHandCount());
+		assertEquals(4, stats.getRowCount());
+		assertEquals(0, stats.getDamagedRecords());
+		assertHands(stats, hands);
+	}
+
+}
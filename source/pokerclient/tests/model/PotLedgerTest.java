@@ -0,0 +1,116 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pokerclient.model.GameModel;
+import pokerclient.model.GameSettings;
+import pokerclient.model.Player;
+import pokerclient.model.Pot;
+import pokerclient.model.PotLedger;
+
+/**
+ * Checks that the ledger lays out the same pots as Pot.generatePots, by
+ * comparing the two after every payment of many random hands.
+ */
+public class PotLedgerTest {
+
+	private static final int HANDS = 5000;
+
+	private static final int MAX_PLAYERS = 9;
+
+	private static final long SEED = 4321;
+
+	private static final GameSettings settings =
+			new GameSettings(1000, 10, 5, 0, 50, MAX_PLAYERS, false);
+
+	private PotLedger ledger;
+
+	private ArrayList<Player> players;
+
+	@Before
+	public void setUp() {
+		ledger = new PotLedger();
+		players = new ArrayList<Player>();
+		PropertyChangeListener listener = new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (evt.getPropertyName().equals(GameModel.MONEY_PAID)) {
+					ledger.add((Player) evt.getSource(),
+							(Integer) evt.getNewValue());
+				}
+			}
+		};
+		for (int i = 0; i < MAX_PLAYERS; i++) {
+			players.add(new Player("p" + i, "path", settings, listener));
+		}
+	}
+
+	private void checkMatches(int playerCount) {
+		HashSet<Player> contributors = new HashSet<Player>();
+		for (int i = 0; i < playerCount; i++) {
+			if (players.get(i).getTotalPutInPot() > 0) {
+				contributors.add(players.get(i));
+			}
+		}
+		ArrayList<Pot> expected = Pot.generatePots(contributors);
+		ArrayList<Pot> actual = ledger.getPots();
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getSize(), actual.get(i).getSize());
+			assertEquals(expected.get(i).getPlayers(),
+					actual.get(i).getPlayers());
+		}
+	}
+
+	@Test
+	public void testMatchesGeneratePots() {
+		Random r = new Random(SEED);
+		for (int hand = 0; hand < HANDS; hand++) {
+			int playerCount = 2 + r.nextInt(MAX_PLAYERS - 1);
+			ledger.reset();
+			for (int i = 0; i < playerCount; i++) {
+				Player p = players.get(i);
+				p.resetHand();
+				p.setStack(1 + r.nextInt(1000));
+			}
+			checkMatches(playerCount);
+			int payments = r.nextInt(4 * playerCount);
+			for (int i = 0; i < payments; i++) {
+				Player p = players.get(r.nextInt(playerCount));
+				if (p.getStack() == 0) {
+					continue;
+				}
+				int amount = r.nextInt(4) == 0 ? p.getStack()
+						: 1 + r.nextInt(p.getStack());
+				p.pay(amount);
+				checkMatches(playerCount);
+			}
+		}
+	}
+
+	@Test
+	public void testSinglePotUntilAllIn() {
+		Player first = players.get(0);
+		Player second = players.get(1);
+		first.setStack(100);
+		second.setStack(500);
+		first.pay(50);
+		second.pay(200);
+		assertEquals(1, ledger.getPots().size());
+		assertEquals(250, ledger.getMainPot().getSize());
+		first.pay(50);
+		assertEquals(2, ledger.getPots().size());
+		assertEquals(200, ledger.getMainPot().getSize());
+		assertEquals(100, ledger.getPots().get(1).getSize());
+		assertEquals(300, ledger.getTotal());
+	}
+
+}
@@ -0,0 +1,56 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import pokerclient.model.CardSet;
+import pokerclient.model.EvalHand;
+import pokerclient.model.PreflopEquityTable;
+
+public class PreflopEquityTableTest {
+
+	private static long cards(String s) {
+		return new EvalHand(s).getCardSet();
+	}
+
+	@Test
+	public void testHandIndicesAreDense() {
+		boolean[] seen = new boolean[PreflopEquityTable.NUM_HANDS];
+		for (int high = 1; high < CardSet.NUM_CARDS; high++) {
+			for (int low = 0; low < high; low++) {
+				int index = PreflopEquityTable.handIndex(CardSet.of(low)
+						| CardSet.of(high));
+				assertFalse(seen[index]);
+				seen[index] = true;
+			}
+		}
+	}
+
+	@Test
+	public void testClassSizes() {
+		int[] sizes = new int[PreflopEquityTable.NUM_CLASSES];
+		for (int high = 1; high < CardSet.NUM_CARDS; high++) {
+			for (int low = 0; low < high; low++) {
+				sizes[PreflopEquityTable.classIndex(CardSet.of(low)
+						| CardSet.of(high))]++;
+			}
+		}
+		for (int row = 0; row < 13; row++) {
+			for (int col = 0; col < 13; col++) {
+				int expected = row == col ? 6 : row < col ? 4 : 12;
+				assertEquals(expected, sizes[row * 13 + col]);
+			}
+		}
+	}
+
+	@Test
+	public void testClassGrid() {
+		assertEquals(0, PreflopEquityTable.classIndex(cards("Ah As")));
+		assertEquals(1, PreflopEquityTable.classIndex(cards("Kh Ah")));
+		assertEquals(13, PreflopEquityTable.classIndex(cards("Ah Ks")));
+		assertEquals(168, PreflopEquityTable.classIndex(cards("2c 2d")));
+	}
+
+}
@@ -0,0 +1,49 @@
+package pokerclient.tests.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+
+import pokerclient.model.HandRecord;
+
+/**
+ * Base of the tests that write files: each test gets a scratch directory of
+ * its own, deleted after it.
+ */
+public abstract class ScratchDirectoryTest {
+
+	protected File directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("scratch").toFile();
+	}
+
+	@After
+	public void deleteDirectory() {
+		for (File f : directory.listFiles()) {
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Makes a heads up hand with no actions.
+	 *
+	 * @param table table the hand was played at
+	 * @param number hand number
+	 * @param stack stack of the first seat
+	 * @return new record
+	 */
+	protected static HandRecord hand(int table, int number, int stack) {
+		HandRecord record = new HandRecord();
+		record.start(table, number, 0, 5, 10, 0, 0);
+		record.addSeat("a", stack);
+		record.addSeat("b", 1000);
+		return record;
+	}
+
+}
@@ -0,0 +1,159 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import pokerclient.model.Action;
+import pokerclient.model.CardSet;
+import pokerclient.model.DecisionContext;
+import pokerclient.model.GameSettings;
+import pokerclient.model.PlayerAgent;
+import pokerclient.model.SelfPlayResult;
+import pokerclient.model.SelfPlayTask;
+
+/**
+ * Plays agents against each other, checking what they are told on every
+ * decision and that a player who never calls loses the blinds at the rate
+ * worked out by hand.
+ */
+public class SelfPlayTest {
+
+	private static final int STACK = 1000;
+
+	private static final int BIG_BLIND = 10;
+
+	@Test
+	public void testContextIsConsistent() {
+		int players = 4;
+		GameSettings settings = new GameSettings(STACK, BIG_BLIND,
+				BIG_BLIND / 2, 0, 0, players, true);
+		String[] names = new String[players];
+		SelfPlayTask.AgentFactory[] agents =
+				new SelfPlayTask.AgentFactory[players];
+		for (int i = 0; i < players; i++) {
+			names[i] = "Bot " + i;
+			agents[i] = new SelfPlayTask.AgentFactory() {
+				public PlayerAgent newAgent() {
+					return new CheckingAgent();
+				}
+			};
+		}
+		SelfPlayResult result = new ForkJoinPool(2).invoke(
+				new SelfPlayTask(settings, names, agents, 3000));
+		assertEquals(3000, result.getHandCount());
+		assertEquals(players, result.getAgentCount());
+		for (int i = 0; i < players; i++) {
+			assertEquals(names[i], result.getName(i));
+			assertTrue(result.getStandardError(i) > 0);
+			assertTrue(result.getLowerBound(i) < result.getBbPer100(i));
+			assertTrue(result.getUpperBound(i) > result.getBbPer100(i));
+		}
+	}
+
+	@Test
+	public void testFolderLosesHalfTheBlinds() {
+		GameSettings settings = new GameSettings(STACK, BIG_BLIND,
+				BIG_BLIND / 2, 0, 0, 2, true);
+		SelfPlayTask.AgentFactory folder = new SelfPlayTask.AgentFactory() {
+			public PlayerAgent newAgent() {
+				return new PlayerAgent() {
+					public Action decide(DecisionContext context) {
+						return context.checkOrFold();
+					}
+				};
+			}
+		};
+		SelfPlayTask.AgentFactory caller = new SelfPlayTask.AgentFactory() {
+			public PlayerAgent newAgent() {
+				return new PlayerAgent() {
+					public Action decide(DecisionContext context) {
+						return context.checkOrCall();
+					}
+				};
+			}
+		};
+		// More hands than one table plays, so the task splits.
+		int hands = 40000;
+		SelfPlayResult result = new ForkJoinPool(2).invoke(new SelfPlayTask(
+				settings, new String[] { "Folder", "Caller" },
+				new SelfPlayTask.AgentFactory[] { folder, caller }, hands));
+		assertEquals(hands, result.getHandCount());
+		assertEquals(0, result.getNet(0) + result.getNet(1));
+
+		// The folder gives up its small blind when it has it and checks
+		// down from the big blind, which is even on average.
+		double expected = -BIG_BLIND / 4.0;
+		assertTrue(result.toString(), Math.abs(result.getMean(0) - expected)
+				< 4 * result.getStandardError(0));
+		assertEquals(expected * 100 / BIG_BLIND, result.getBbPer100(0),
+				100.0 * 4 * result.getStandardError(0) / BIG_BLIND);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsRepeatedNames() {
+		GameSettings settings = new GameSettings(STACK, BIG_BLIND,
+				BIG_BLIND / 2, 0, 0, 2, true);
+		SelfPlayTask.AgentFactory agent = new SelfPlayTask.AgentFactory() {
+			public PlayerAgent newAgent() {
+				return new CheckingAgent();
+			}
+		};
+		new SelfPlayTask(settings, new String[] { "Bot", "Bot" },
+				new SelfPlayTask.AgentFactory[] { agent, agent }, 1);
+	}
+
+	/**
+	 * Checks every context against the rules, then takes a random legal
+	 * action.
+	 */
+	private static class CheckingAgent implements PlayerAgent {
+
+		private final Random random = new Random(17);
+
+		@Override
+		public Action decide(DecisionContext context) {
+			assertEquals(2, CardSet.size(context.getHoleCards()));
+			int board = CardSet.size(context.getBoard());
+			assertTrue(board == 0 || board >= 3 && board <= 5);
+			assertTrue(!CardSet.overlaps(context.getHoleCards(),
+					context.getBoard()));
+			assertTrue(context.getSeat() >= 0
+					&& context.getSeat() < context.getPlayerCount());
+			assertTrue(context.getPot() >= BIG_BLIND);
+			assertTrue(context.getMinBet() <= context.getMaxBet());
+			assertTrue(context.getToCall() >= 0);
+
+			assertTrue(context.isLegal(Action.ActionType.FOLD));
+			assertTrue(context.isLegal(Action.ActionType.CHECK)
+					!= context.isLegal(Action.ActionType.CALL));
+			assertEquals(context.getToCall() == 0,
+					context.isLegal(Action.ActionType.CHECK));
+			assertTrue(!context.isLegal(Action.ActionType.BET)
+					|| !context.isLegal(Action.ActionType.RAISE));
+			if (context.getStack() <= context.getToCall()) {
+				assertTrue(!context.isLegal(Action.ActionType.BET)
+						&& !context.isLegal(Action.ActionType.RAISE));
+			}
+
+			Action action;
+			int roll = random.nextInt(10);
+			if (roll < 2) {
+				action = context.checkOrFold();
+			} else if (roll < 7) {
+				action = context.checkOrCall();
+			} else {
+				action = context.betOrRaise(context.getMinBet()
+						+ random.nextInt(3 * BIG_BLIND));
+			}
+			assertTrue(context.isLegal(action));
+			return action;
+		}
+
+	}
+
+}
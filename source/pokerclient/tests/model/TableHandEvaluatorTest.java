@@ -0,0 +1,68 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import pokerclient.model.EvalDeck;
+import pokerclient.model.EvalHand;
+import pokerclient.model.EvalHandEvaluator;
+import pokerclient.model.TableHandEvaluator;
+
+public class TableHandEvaluatorTest {
+
+	private static final int RANDOM_HANDS = 200000;
+
+	private static final long SEED = 1234;
+
+	private void checkRandomHands(int size) {
+		Random r = new Random(SEED + size);
+		for (int i = 0; i < RANDOM_HANDS; i++) {
+			EvalHand h = new EvalHand();
+			long cards = 0L;
+			while (h.size() < size) {
+				int card = r.nextInt(EvalDeck.NUM_CARDS);
+				if ((cards & (1L << card)) == 0) {
+					cards |= 1L << card;
+					h.addCard(card);
+				}
+			}
+			assertEquals(h.toString(), EvalHandEvaluator.rankHand(h),
+					TableHandEvaluator.rankHand(h));
+		}
+	}
+
+	@Test
+	public void testMatchesFiveCardHands() {
+		checkRandomHands(5);
+	}
+
+	@Test
+	public void testMatchesSixCardHands() {
+		checkRandomHands(6);
+	}
+
+	@Test
+	public void testMatchesSevenCardHands() {
+		checkRandomHands(7);
+	}
+
+	@Test
+	public void testStraightFlushes() {
+		assertEquals(EvalHandEvaluator.rankHand(new EvalHand("Ah 2h 3h 4h 5h Kd Kc")),
+				TableHandEvaluator.rankHand(new EvalHand("Ah 2h 3h 4h 5h Kd Kc")));
+		assertEquals(EvalHandEvaluator.rankHand(new EvalHand("Kc 8c 9c Tc Jc Qc Ac")),
+				TableHandEvaluator.rankHand(new EvalHand("Kc 8c 9c Tc Jc Qc Ac")));
+	}
+
+	@Test
+	public void testQuadsAndFullHouses() {
+		assertEquals(EvalHandEvaluator.rankHand(new EvalHand("7c 7d 7h 7s 2c 2d 2h")),
+				TableHandEvaluator.rankHand(new EvalHand("7c 7d 7h 7s 2c 2d 2h")));
+		assertEquals(EvalHandEvaluator.rankHand(new EvalHand("7c 7d 7h 2s 2c 3d 3h")),
+				TableHandEvaluator.rankHand(new EvalHand("7c 7d 7h 2s 2c 3d 3h")));
+	}
+
+}
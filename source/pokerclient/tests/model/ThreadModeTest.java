@@ -0,0 +1,101 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import pokerclient.model.TableExecutor;
+import pokerclient.model.TableScheduler;
+import pokerclient.model.ThreadMode;
+
+/**
+ * Runs tasks in every mode the JVM has, and checks that virtual threads are
+ * offered exactly where the JVM makes them.
+ */
+public class ThreadModeTest {
+
+	@Test
+	public void testAvailability() {
+		assertTrue(ThreadMode.PLATFORM.isAvailable());
+		assertEquals(Runtime.version().feature() >= 21,
+				ThreadMode.VIRTUAL.isAvailable());
+	}
+
+	@Test
+	public void testRunsTasks() throws InterruptedException {
+		for (ThreadMode mode : ThreadMode.values()) {
+			if (!mode.isAvailable()) {
+				continue;
+			}
+			final CountDownLatch ran = new CountDownLatch(2);
+			Runnable task = new Runnable() {
+				public void run() {
+					ran.countDown();
+				}
+			};
+			Thread t = mode.newThread(task, "test");
+			assertTrue(t.isDaemon());
+			assertEquals("test", t.getName());
+			t.start();
+			ExecutorService executor = mode.newExecutor(1, "test-");
+			executor.execute(task);
+			assertTrue(mode.toString(), ran.await(5, TimeUnit.SECONDS));
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testTablesKeepOrder() throws InterruptedException {
+		for (ThreadMode mode : ThreadMode.values()) {
+			if (!mode.isAvailable()) {
+				continue;
+			}
+			TableExecutor executor = new TableExecutor(2, mode);
+			TableScheduler table = executor.newScheduler(0);
+			final int[] next = new int[1];
+			final CountDownLatch done = new CountDownLatch(1);
+			final int events = 1000;
+			for (int i = 0; i < events; i++) {
+				final int expected = i;
+				table.execute(new Runnable() {
+					public void run() {
+						if (next[0] == expected) {
+							next[0]++;
+						}
+						if (expected == events - 1) {
+							done.countDown();
+						}
+					}
+				});
+			}
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(mode.toString(), events, next[0]);
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testTableOutlivesFailedEvent() throws InterruptedException {
+		TableExecutor executor = new TableExecutor(1);
+		TableScheduler table = executor.newScheduler(0);
+		final CountDownLatch ran = new CountDownLatch(1);
+		table.execute(new Runnable() {
+			public void run() {
+				throw new AssertionError("Failing on purpose");
+			}
+		});
+		table.execute(new Runnable() {
+			public void run() {
+				ran.countDown();
+			}
+		});
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+		executor.shutdown();
+	}
+
+}
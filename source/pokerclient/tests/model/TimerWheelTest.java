@@ -0,0 +1,115 @@
+package pokerclient.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pokerclient.model.TimerWheel;
+
+/**
+ * Runs timeouts on a small, fast wheel, so that they go round it more than
+ * once.
+ */
+public class TimerWheelTest {
+
+	private static final int TICK = 5;
+
+	private static final int SIZE = 8;
+
+	private TimerWheel wheel;
+
+	@Before
+	public void setUp() {
+		wheel = new TimerWheel(TICK, SIZE);
+	}
+
+	@After
+	public void tearDown() {
+		wheel.shutdown();
+	}
+
+	@Test
+	public void testRunsInDeadlineOrder() throws InterruptedException {
+		final List<Integer> fired =
+				Collections.synchronizedList(new ArrayList<Integer>());
+		int[] delays = { 150, 10, 60, 3 * TICK * SIZE + 1, 30 };
+		final CountDownLatch done = new CountDownLatch(delays.length);
+		long start = System.nanoTime();
+		for (final int delay : delays) {
+			wheel.schedule(new Runnable() {
+				public void run() {
+					fired.add(delay);
+					done.countDown();
+				}
+			}, delay);
+		}
+		assertEquals(delays.length, wheel.getPendingCount());
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start
+				>= TimeUnit.MILLISECONDS.toNanos(150));
+		assertEquals(10, fired.get(0).intValue());
+		assertEquals(30, fired.get(1).intValue());
+		assertEquals(60, fired.get(2).intValue());
+		assertEquals(3 * TICK * SIZE + 1, fired.get(3).intValue());
+		assertEquals(150, fired.get(4).intValue());
+		assertEquals(0, wheel.getPendingCount());
+	}
+
+	@Test
+	public void testCancels() throws InterruptedException {
+		final CountDownLatch ran = new CountDownLatch(1);
+		final boolean[] cancelledRan = new boolean[1];
+		TimerWheel.Timeout cancelled = wheel.schedule(new Runnable() {
+			public void run() {
+				cancelledRan[0] = true;
+			}
+		}, 20);
+		TimerWheel.Timeout kept = wheel.schedule(new Runnable() {
+			public void run() {
+				ran.countDown();
+			}
+		}, 40);
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+		assertFalse(cancelledRan[0]);
+		assertFalse(kept.cancel());
+	}
+
+	@Test
+	public void testCancelsManyPending() {
+		TimerWheel.Timeout[] timeouts = new TimerWheel.Timeout[100000];
+		Runnable nothing = new Runnable() {
+			public void run() {
+			}
+		};
+		for (int i = 0; i < timeouts.length; i++) {
+			timeouts[i] = wheel.schedule(nothing, 60000 + i);
+		}
+		assertEquals(timeouts.length, wheel.getPendingCount());
+		for (int i = timeouts.length - 1; i >= 0; i -= 2) {
+			assertTrue(timeouts[i].cancel());
+		}
+		assertEquals(timeouts.length / 2, wheel.getPendingCount());
+		for (int i = 0; i < timeouts.length; i += 2) {
+			assertTrue(timeouts[i].cancel());
+		}
+		assertEquals(0, wheel.getPendingCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsSizeNotPowerOfTwo() {
+		new TimerWheel(TICK, 6);
+	}
+
+}